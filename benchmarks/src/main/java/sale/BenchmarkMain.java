@@ -0,0 +1,40 @@
+package sale;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JMH启动入口
+ *
+ * 参数与JMH命令行相同,另外-t可以写成逗号分隔的多个线程数,例如-t 1,4,16,
+ * 每个线程数依次完整运行一遍所选的基准测试。
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>();
+        List<Integer> threads = new ArrayList<>();
+        for(int i = 0; i < args.length; i++) {
+            if(args[i].equals("-t") && i + 1 < args.length) {
+                for(String t : args[++i].split(",")) {
+                    threads.add(Integer.parseInt(t.trim()));
+                }
+            } else {
+                jmhArgs.add(args[i]);
+            }
+        }
+
+        CommandLineOptions options = new CommandLineOptions(jmhArgs.toArray(new String[0]));
+        if(threads.isEmpty()) {
+            new Runner(options).run();
+            return;
+        }
+        for(int t : threads) {
+            new Runner(new OptionsBuilder().parent(options).threads(t).build()).run();
+        }
+    }
+}
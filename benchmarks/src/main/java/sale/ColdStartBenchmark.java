@@ -0,0 +1,143 @@
+package sale;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 冷启动首帧耗时基准测试
+ *
+ * 每次启动一个新的JVM运行HouseSellingSystem,子进程在登录窗口第一次显示时输出"首帧",
+ * 后台加载完成后自行退出。先做一次训练运行生成AppCDS动态归档,再分别不用归档和使用归档
+ * 各启动N次,报告从创建子进程到读到首帧输出的耗时(含JVM启动)、子进程自报的main到首帧
+ * 和数据就绪耗时的中位数与最小值。所有运行共用一个临时数据目录,训练运行写入测试数据,
+ * 之后的运行都从日志恢复。需要图形环境,无显示设备时子进程无法显示窗口,测试报错退出。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=ColdStartBenchmark -PharnessArgs="[次数=5]"
+ */
+public class ColdStartBenchmark {
+    private static final String FIRST_FRAME = "首帧: ";     // 子进程首帧输出的前缀
+    private static final String DATA_READY = "数据就绪: ";  // 子进程数据就绪输出的前缀
+    private static final long TIMEOUT_SECONDS = 60;        // 子进程超过这个时间未退出即强制结束
+
+    /**
+     * 一次启动的耗时,毫秒
+     */
+    private static final class Run {
+        long wallMillis;   // 创建子进程到读到首帧
+        long frameMillis;  // 子进程自报的main到首帧
+        long dataMillis;   // 子进程自报的main到数据就绪
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        // 归档只收录JAR中的类,类路径必须是应用的JAR
+        Path jar = Paths.get(HouseSellingSystem.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        if(!Files.isRegularFile(jar)) {
+            throw new IllegalStateException("HouseSellingSystem不是从JAR加载的,无法使用AppCDS: " + jar);
+        }
+        Path dir = Files.createTempDirectory("cold-start");
+        Path archive = dir.resolve("house.jsa");
+        Path data = dir.resolve("data");
+
+        launch(jar, data, "-XX:ArchiveClassesAtExit=" + archive);
+        if(!Files.isRegularFile(archive)) {
+            throw new IllegalStateException("训练运行未生成归档: " + archive);
+        }
+        System.out.printf("训练运行完成, 归档%d KB%n", Files.size(archive) / 1024);
+
+        List<Run> plain = new ArrayList<>();
+        List<Run> shared = new ArrayList<>();
+        for(int r = 0; r < runs; r++) {
+            // 交替运行,两组受系统缓存等因素的影响相当
+            plain.add(launch(jar, data, "-Xshare:auto"));
+            shared.add(launch(jar, data, "-XX:SharedArchiveFile=" + archive));
+        }
+        report("默认CDS", plain);
+        report("AppCDS", shared);
+    }
+
+    /**
+     * 启动一次应用,读到首帧输出即记下耗时,再等子进程退出
+     */
+    private static Run launch(Path jar, Path data, String cdsOption) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(Arrays.asList(
+            java, cdsOption, "-cp", jar.toString(),
+            "-Dhouse.startup.report=true",
+            "-Dhouse.startup.exitAfterFirstFrame=true",
+            "-Dhouse.data.dir=" + data,
+            "-Dhouse.snapshot.minutes=0",
+            "-Dsun.stdout.encoding=UTF-8",
+            "sale.HouseSellingSystem"));
+        ProcessBuilder builder = new ProcessBuilder(command).redirectErrorStream(true);
+        builder.directory(new File(System.getProperty("user.dir")));
+
+        Run run = new Run();
+        long start = System.nanoTime();
+        Process process = builder.start();
+        Thread watchdog = new Thread(() -> {
+            try {
+                if(!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch(InterruptedException e) {
+                process.destroyForcibly();
+            }
+        }, "cold-start-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+        StringBuilder output = new StringBuilder();
+        try(BufferedReader in = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), Charset.forName("UTF-8")))) {
+            String line;
+            while((line = in.readLine()) != null) {
+                if(line.startsWith(FIRST_FRAME) && run.wallMillis == 0) {
+                    run.wallMillis = (System.nanoTime() - start) / 1_000_000;
+                    run.frameMillis = parseMillis(line, FIRST_FRAME);
+                } else if(line.startsWith(DATA_READY)) {
+                    run.dataMillis = parseMillis(line, DATA_READY);
+                } else {
+                    output.append(line).append('\n');
+                }
+            }
+        }
+        int exit = process.waitFor();
+        if(run.wallMillis == 0) {
+            throw new IllegalStateException("子进程未显示登录窗口(退出码" + exit + "),需要图形环境:\n" + output);
+        }
+        return run;
+    }
+
+    private static long parseMillis(String line, String prefix) {
+        return Long.parseLong(line.substring(prefix.length()).replace("ms", "").trim());
+    }
+
+    private static void report(String label, List<Run> runs) {
+        List<Long> wall = new ArrayList<>();
+        List<Long> frame = new ArrayList<>();
+        List<Long> data = new ArrayList<>();
+        for(Run run : runs) {
+            wall.add(run.wallMillis);
+            frame.add(run.frameMillis);
+            data.add(run.dataMillis);
+        }
+        Collections.sort(wall);
+        Collections.sort(frame);
+        Collections.sort(data);
+        System.out.printf("%s: 进程启动到首帧 中位数%d ms 最小%d ms, main到首帧 中位数%d ms, main到数据就绪 中位数%d ms%n",
+                          label, wall.get(wall.size() / 2), wall.get(0),
+                          frame.get(frame.size() / 2), data.get(data.size() / 2));
+    }
+}
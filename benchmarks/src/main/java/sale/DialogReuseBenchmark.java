@@ -0,0 +1,133 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 打开预售管理对话框:每次重新构建 对比 构建一次后再次显示
+ *
+ * 两次打开之间有changes套房屋被其他人锁定又释放。rebuild每次新建表格模型、表格、按钮和面板,
+ * 订阅变更并扫描全部房屋装载可售房屋;reuse在关闭时暂停订阅,再次打开时恢复,
+ * 只把期间合并后的变更应用到已有的表格。对话框窗口本身需要显示器,这里只构建其内容,
+ * 变更同步投递。加上-prof gc可以看到每次打开分配的字节数。
+ *
+ * 例: gradle :benchmarks:jmh -PjmhArgs="DialogReuse -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class DialogReuseBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"10"})
+    public int changes;
+
+    private InventoryEngine engine;
+    private String[] ids;
+    private ThemeResources theme;
+    private HouseTableModel model;                      // reuse的表格
+    private InventoryEvents.Subscription subscription;  // reuse的订阅
+
+    @Setup
+    public void setUp() {
+        engine = Inventories.engine(size, 3);
+        ids = Inventories.ids(size);
+        theme = new ThemeResources(new ThemeConfig());
+        model = presaleModel();
+        buildContent(model);
+        subscription = engine.getEvents().subscribe(Runnable::run, model::applyChanges);
+        model.setSortedHouses(HouseTableModel.sortedRows(engine.getHouses(), House::isAvailable));
+        subscription.pause();
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.close();
+    }
+
+    @Benchmark
+    public JComponent rebuild() {
+        changeSomeHouses();
+        HouseTableModel fresh = presaleModel();
+        JComponent content = buildContent(fresh);
+        InventoryEvents.Subscription s = engine.getEvents().subscribe(Runnable::run, fresh::applyChanges);
+        fresh.setSortedHouses(HouseTableModel.sortedRows(engine.getHouses(), House::isAvailable));
+        s.close();
+        return content;
+    }
+
+    @Benchmark
+    public int reuse() {
+        changeSomeHouses();
+        subscription.resume();
+        subscription.pause();
+        return model.getRowCount();
+    }
+
+    /**
+     * 两次打开之间其他人锁定又释放的房屋
+     */
+    private void changeSomeHouses() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int i = 0; i < changes; i++) {
+            String id = ids[random.nextInt(ids.length)];
+            if(engine.hold(id, "other", 60_000) == InventoryEngine.ReserveResult.SUCCESS) {
+                engine.release(id, "other");
+            }
+        }
+    }
+
+    private static HouseTableModel presaleModel() {
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+            HouseTableModel.Column.BUILDING, HouseTableModel.Column.UNIT,
+            HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+            HouseTableModel.Column.PRICE, HouseTableModel.Column.STATUS);
+        model.setFilter(House::isAvailable);
+        return model;
+    }
+
+    /**
+     * 与预售管理对话框相同的内容:一排按钮和可售房屋表格
+     */
+    private JComponent buildContent(HouseTableModel model) {
+        Font font = theme.font(Font.BOLD, 32);
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 50);
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        for(String text : new String[]{"预订房屋", "锁定待付款", "我的锁定", "我的房产"}) {
+            JButton button = new JButton(text);
+            button.setFont(font);
+            buttonPanel.add(button);
+        }
+        JPanel content = new JPanel(new BorderLayout(10, 10));
+        content.add(buttonPanel, BorderLayout.NORTH);
+        content.add(new JScrollPane(table), BorderLayout.CENTER);
+        return content;
+    }
+}
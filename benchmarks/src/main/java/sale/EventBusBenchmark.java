@@ -0,0 +1,113 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 库存变更通知基准测试
+ *
+ * N个线程在给定秒数内不断锁定再释放随机的房屋,偶尔预订一套,先不订阅、再由一个单线程的
+ * 订阅者(代替EDT)把变更批量应用到只显示可售房屋的HouseTableModel,每批额外耗费给定的
+ * 毫秒数模拟界面重绘。报告两种情况下的每秒操作数、发布的变更数、投递的批次数和平均批量,
+ * 最后校验增量维护的表格与重新扫描全部房屋得到的结果一致。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=EventBusBenchmark -PharnessArgs="[房屋数=200000] [线程数=4] [秒数=5] [每批重绘毫秒=5]"
+ */
+public class EventBusBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int paintMillis = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        InventoryEngine engine = Inventories.engine(size, 0);
+        String[] ids = Inventories.ids(size);
+        Metrics metrics = engine.getMetrics();
+
+        double plain = run(engine, ids, threads, seconds);
+        System.out.printf("无订阅者: %.0f 次操作/秒%n", plain);
+
+        ExecutorService ui = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "ui");
+            t.setDaemon(true);
+            return t;
+        });
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID, HouseTableModel.Column.STATUS);
+        model.setFilter(House::isAvailable);
+        LongAdder applied = new LongAdder();
+        InventoryEvents.Subscription subscription = engine.getEvents().subscribe(ui, changes -> {
+            model.applyChanges(changes);
+            applied.add(changes.size());
+            if(paintMillis > 0) {
+                try {
+                    Thread.sleep(paintMillis);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ui.submit(() -> model.setSortedHouses(
+            HouseTableModel.sortedRows(engine.getHouses(), House::isAvailable))).get();
+
+        long published0 = metrics.counterValues().getOrDefault("事件.发布", 0L);
+        double subscribed = run(engine, ids, threads, seconds);
+        ui.submit(() -> { }).get();  // 发布线程已结束,等最后一批投递完
+        long published = metrics.counterValues().getOrDefault("事件.发布", 0L) - published0;
+        long batches = metrics.counterValues().getOrDefault("事件.投递批次", 0L);
+        System.out.printf("一个订阅者: %.0f 次操作/秒, 发布%d个变更, 投递%d批, 平均每批%.0f个(合并后), 每秒%.1f批%n",
+                          subscribed, published, batches, applied.sum() / (double)Math.max(1, batches),
+                          batches / (double)seconds);
+
+        List<House> expected = HouseTableModel.sortedRows(engine.getHouses(), House::isAvailable);
+        List<House> actual = ui.submit(() -> {
+            List<House> rows = new ArrayList<>(model.getRowCount());
+            for(int i = 0; i < model.getRowCount(); i++) {
+                rows.add(model.getHouseAt(i));
+            }
+            return rows;
+        }).get();
+        subscription.close();
+        ui.shutdown();
+        if(!expected.equals(actual)) {
+            throw new IllegalStateException("表格有" + actual.size() + "行,重新扫描应有" + expected.size() + "行");
+        }
+        System.out.println("校验通过: 表格" + actual.size() + "行");
+    }
+
+    /**
+     * 各线程锁定后立即释放,每50次预订一套,返回每秒操作数
+     */
+    private static double run(InventoryEngine engine, String[] ids, int threads, int seconds) throws Exception {
+        LongAdder ops = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for(int t = 0; t < threads; t++) {
+            String buyer = "buyer" + t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long n = 0;
+                while(System.nanoTime() < deadline) {
+                    String id = ids[random.nextInt(ids.length)];
+                    if(++n % 50 == 0) {
+                        engine.reserve(id, buyer);
+                    } else if(engine.hold(id, buyer, 60_000) == InventoryEngine.ReserveResult.SUCCESS) {
+                        engine.release(id, buyer);
+                    }
+                }
+                ops.add(n);
+            }, "writer-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,82 @@
+package sale;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 锁定到期基准测试
+ *
+ * 在N套房屋上各锁定一次,锁定时长在给定秒数内均匀分布;其中1/4确认购买、1/4主动释放,
+ * 其余等待时间轮到期释放。报告锁定和确认的吞吐量、全部到期所需的时间与最晚到期时间的差距,
+ * 并校验到期后没有残留的锁定、已售数等于确认数、销售汇总与完整重算一致。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=HoldExpiryBenchmark -PharnessArgs="[房屋数=300000] [最长锁定秒数=10]"
+ */
+public class HoldExpiryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        InventoryEngine engine = Inventories.engine(size, 0);
+        String[] ids = Inventories.ids(size);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long start = System.nanoTime();
+        long latest = 0;  // 最晚的到期时间(System.nanoTime)
+        for(int i = 0; i < size; i++) {
+            long holdMillis = 1000 + random.nextLong(seconds * 1000L);
+            latest = Math.max(latest, System.nanoTime() + holdMillis * 1_000_000L);
+            if(engine.hold(ids[i], "buyer" + (i % 1000), holdMillis) != InventoryEngine.ReserveResult.SUCCESS) {
+                throw new IllegalStateException("锁定失败: " + ids[i]);
+            }
+        }
+        long holdNanos = System.nanoTime() - start;
+        System.out.printf("锁定%d套: %.1f ms, %.0f 次/秒, 锁定中%d套%n",
+                          size, holdNanos / 1e6, size / (holdNanos / 1e9), engine.getHoldCount());
+
+        long confirmStart = System.nanoTime();
+        int confirmed = 0;
+        for(int i = 0; i < size; i += 4) {
+            if(engine.confirm(ids[i], "buyer" + (i % 1000)) == InventoryEngine.ReserveResult.SUCCESS) {
+                confirmed++;
+            }
+        }
+        long confirmNanos = System.nanoTime() - confirmStart;
+        int released = 0;
+        for(int i = 1; i < size; i += 4) {
+            if(engine.release(ids[i], "buyer" + (i % 1000)) == InventoryEngine.ReserveResult.SUCCESS) {
+                released++;
+            }
+        }
+        System.out.printf("确认%d套: %.0f 次/秒, 释放%d套%n", confirmed, confirmed / (confirmNanos / 1e9), released);
+
+        // 等待全部到期
+        while(engine.getHoldCount() > 0) {
+            Thread.sleep(10);
+        }
+        long lag = System.nanoTime() - latest;
+        long expired = engine.getMetrics().counterValues().getOrDefault("锁定过期", 0L);
+        System.out.printf("到期释放%d套, 全部到期比最晚到期时间晚%.0f ms%n", expired, lag / 1e6);
+
+        int held = 0;
+        for(House h : engine.getHouses()) {
+            if(h.isHeld()) {
+                held++;
+            }
+        }
+        if(held != 0) {
+            throw new IllegalStateException("到期后仍有" + held + "套处于锁定状态");
+        }
+        if(engine.getSummary().soldCount != confirmed) {
+            throw new IllegalStateException("确认" + confirmed + "套,但已售" + engine.getSummary().soldCount + "套");
+        }
+        if(confirmed + released + expired != size) {
+            throw new IllegalStateException("确认、释放、到期之和不等于锁定数");
+        }
+        String mismatch = engine.verifyAggregates();
+        if(mismatch != null) {
+            throw new IllegalStateException("销售汇总不一致:\n" + mismatch);
+        }
+        System.out.println("校验通过");
+    }
+}
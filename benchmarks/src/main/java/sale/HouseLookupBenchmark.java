@@ -0,0 +1,71 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按编号查找房屋(原houses.get)的耗时
+ *
+ * 每个线程按自己的伪随机序列访问编号,库存较大时能体现缓存未命中。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HouseLookupBenchmark {
+    @Param({"20", "1000", "100000", "1000000"})
+    int size;  // 房屋数
+
+    private InventoryEngine engine;
+    private String[] ids;
+
+    /**
+     * 每个线程自己的随机游标
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int seed;
+
+        @Setup
+        public void setup(ThreadParams params) {
+            seed = 0x9E3779B9 * (params.getThreadIndex() + 1);
+        }
+
+        int next(int bound) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 17;
+            seed ^= seed << 5;
+            return (int)(((seed & 0xFFFFFFFFL) * bound) >>> 32);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        engine = Inventories.engine(size, 10);
+        ids = Inventories.ids(size);
+    }
+
+    @Benchmark
+    public House getHouse(Cursor cursor) {
+        return engine.getHouse(ids[cursor.next(size)]);
+    }
+
+    @Benchmark
+    public House getHouseMissing(Cursor cursor) {
+        return engine.getHouse("X" + cursor.next(size));
+    }
+}
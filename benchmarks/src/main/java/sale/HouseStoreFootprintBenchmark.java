@@ -0,0 +1,99 @@
+package sale;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 房屋存储占用与扫描速度基准测试:HashMap<String, House> 对比 ColumnarHouseStore
+ *
+ * 分别装入N套房屋(其中十分之一已售),以GC后的堆占用差值估算内存占用,
+ * 再重复扫描计算销售总额和可售数量,报告每次扫描的平均耗时。
+ *
+ * 用法: java -Xmx4g sale.HouseStoreFootprintBenchmark [房屋数=1000000] [扫描次数=20]
+ */
+public class HouseStoreFootprintBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int units = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int scans = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        String[] ids = new String[units];
+        for(int i = 0; i < units; i++) {
+            ids[i] = "P" + i;
+        }
+
+        long base = usedMemory();
+        Map<String, House> map = new HashMap<>();
+        for(int i = 0; i < units; i++) {
+            House h = new House(ids[i], "B" + (i % 50), String.valueOf(i % 6),
+                                String.valueOf(100 + i % 40), 80 + i % 90, 10000 + i % 20000);
+            if(i % 10 == 0) {
+                h.trySell("buyer" + (i % 1000), new java.util.Date());
+            }
+            map.put(ids[i], h);
+        }
+        long mapBytes = usedMemory() - base;
+
+        base = usedMemory();
+        ColumnarHouseStore store = new ColumnarHouseStore(units);
+        for(int i = 0; i < units; i++) {
+            int row = store.add(ids[i], "B" + (i % 50), String.valueOf(i % 6),
+                                String.valueOf(100 + i % 40), 80 + i % 90, 10000 + i % 20000);
+            if(i % 10 == 0) {
+                store.trySell(row, "buyer" + (i % 1000), System.currentTimeMillis());
+            }
+        }
+        long storeBytes = usedMemory() - base;
+
+        // 扫描:销售总额+可售数量,先各自预热
+        double check = 0;
+        for(int r = 0; r < 3; r++) {
+            check += scanMap(map) + store.totalSales() + store.availableCount();
+        }
+        long start = System.nanoTime();
+        for(int r = 0; r < scans; r++) {
+            check += scanMap(map);
+        }
+        long mapScan = (System.nanoTime() - start) / scans;
+        start = System.nanoTime();
+        for(int r = 0; r < scans; r++) {
+            check += store.totalSales() + store.availableCount();
+        }
+        long storeScan = (System.nanoTime() - start) / scans;
+
+        // 编号字符串两边共用,不计入占用
+        System.out.printf("房屋数: %d (编号字符串两边共用,不计入)%n", units);
+        System.out.printf("HashMap<String, House>: %.1f MB, %.1f 字节/套, 扫描 %.2f ms%n",
+                          mapBytes / 1e6, (double)mapBytes / units, mapScan / 1e6);
+        System.out.printf("ColumnarHouseStore:     %.1f MB, %.1f 字节/套, 扫描 %.2f ms%n",
+                          storeBytes / 1e6, (double)storeBytes / units, storeScan / 1e6);
+        if(check == 42) {
+            System.out.println();  // 防止扫描被优化掉
+        }
+        if(map.size() != store.getHouseCount()) {
+            throw new IllegalStateException("两种存储的房屋数不一致");
+        }
+    }
+
+    private static double scanMap(Map<String, House> map) {
+        double total = 0;
+        int available = 0;
+        for(House h : map.values()) {
+            if(House.STATUS_SOLD.equals(h.getStatus())) {
+                total += h.getArea() * h.getPrice();
+            } else if(h.isAvailable()) {
+                available++;
+            }
+        }
+        return total + available;
+    }
+
+    private static long usedMemory() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        for(int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
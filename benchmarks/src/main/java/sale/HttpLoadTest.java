@@ -0,0 +1,182 @@
+package sale;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP接口压力测试
+ *
+ * 在本机启动InventoryServer,多个客户端线程通过localhost按固定比例混合发送请求:
+ * 50%查看单套房屋,20%按楼栋分页查询,10%销售汇总,15%预订,5%查看已购房屋。
+ * 结束后报告吞吐量、延迟分位数,并核对预订成功数与引擎中的已售数一致。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=HttpLoadTest -PharnessArgs="[客户端数=64] [秒数=10] [房屋数=100000]"
+ */
+public class HttpLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int units = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        // 压测的是接口本身,Basic认证的凭据在首次校验后即被缓存,注册时不需要生产强度的密码散列
+        if(System.getProperty("house.password.iterations") == null) {
+            System.setProperty("house.password.iterations", "10000");
+        }
+
+        InventoryEngine engine = new InventoryEngine();
+        for(int i = 0; i < units; i++) {
+            engine.addHouse(new House(id(i), "B" + (i % 50), String.valueOf(i % 6),
+                                      String.valueOf(100 + i % 40), 80 + i % 90, 10000 + i % 20000));
+        }
+        String[] auth = new String[clients];
+        for(int c = 0; c < clients; c++) {
+            engine.registerUser("user" + c, "pw" + c, User.ROLE_USER);
+            auth[c] = "Basic " + Base64.getEncoder().encodeToString(
+                ("user" + c + ":pw" + c).getBytes(StandardCharsets.UTF_8));
+        }
+        InventoryServer server = new InventoryServer(engine, 0, Math.max(clients, 16));
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+
+        LongAdder ok = new LongAdder();
+        LongAdder conflicts = new LongAdder();
+        LongAdder failures = new LongAdder();
+        LongAdder reserved = new LongAdder();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        long start = System.nanoTime();
+        for(int c = 0; c < clients; c++) {
+            int index = c;
+            Thread t = new Thread(() -> {
+                long[] lat = new long[1 << 16];
+                int n = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while(System.nanoTime() < deadline) {
+                        int r = random.nextInt(100);
+                        boolean post = r >= 80 && r < 95;
+                        long begin = System.nanoTime();
+                        int status;
+                        try {
+                            status = send(base, auth[index], r, random, units);
+                        } catch(IOException e) {
+                            status = -1;
+                        }
+                        long elapsed = System.nanoTime() - begin;
+                        if(n == lat.length) {
+                            lat = Arrays.copyOf(lat, n * 2);
+                        }
+                        lat[n++] = elapsed;
+                        if(status == 200) {
+                            ok.increment();
+                            if(post) {
+                                reserved.increment();
+                            }
+                        } else if(status == 409) {
+                            conflicts.increment();
+                        } else {
+                            failures.increment();
+                        }
+                    }
+                } finally {
+                    latencies[index] = lat;
+                    counts[index] = n;
+                    done.countDown();
+                }
+            }, "load-" + c);
+            t.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        server.stop(0);
+
+        int total = 0;
+        for(int n : counts) {
+            total += n;
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for(int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, pos, counts[c]);
+            pos += counts[c];
+        }
+        Arrays.sort(all);
+
+        System.out.printf("客户端: %d, 时长: %d s, 房屋数: %d%n", clients, seconds, units);
+        System.out.printf("请求: %d, 吞吐量: %.0f 次/秒%n", total, total / (elapsed / 1e9));
+        System.out.printf("成功: %d, 冲突(409): %d, 失败: %d%n", ok.sum(), conflicts.sum(), failures.sum());
+        System.out.printf("延迟 p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, 最大 %.2f ms%n",
+                          percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99),
+                          total == 0 ? 0 : all[total - 1] / 1e6);
+
+        long sold = engine.getSummary().soldCount;
+        if(sold != reserved.sum()) {
+            throw new IllegalStateException("预订成功" + reserved.sum() + "次,但已售" + sold + "套");
+        }
+        String mismatch = engine.verifyAggregates();
+        if(mismatch != null) {
+            throw new IllegalStateException("销售汇总不一致:\n" + mismatch);
+        }
+        System.out.println("预订成功数与已售数一致: " + sold);
+    }
+
+    /**
+     * 按比例r选择一个请求发出,读完响应体以便连接复用,返回状态码
+     */
+    private static int send(String base, String auth, int r, ThreadLocalRandom random, int units)
+            throws IOException {
+        String id = id(random.nextInt(units));
+        String path;
+        String method = "GET";
+        boolean authenticated = false;
+        if(r < 50) {
+            path = "/api/houses/" + id;
+        } else if(r < 70) {
+            path = "/api/houses?building=B" + random.nextInt(50) + "&limit=20";
+        } else if(r < 80) {
+            path = "/api/stats";
+        } else if(r < 95) {
+            path = "/api/houses/" + id + "/reserve";
+            method = "POST";
+            authenticated = true;
+        } else {
+            path = "/api/my-houses";
+            authenticated = true;
+        }
+
+        HttpURLConnection conn = (HttpURLConnection)new URL(base + path).openConnection();
+        conn.setRequestMethod(method);
+        if(authenticated) {
+            conn.setRequestProperty("Authorization", auth);
+        }
+        int status = conn.getResponseCode();
+        try(InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            if(in != null) {
+                in.readAllBytes();
+            }
+        }
+        return status;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if(sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int)Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    private static String id(int i) {
+        return String.format("P%07d", i);
+    }
+}
@@ -0,0 +1,61 @@
+package sale;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 批量导入基准测试
+ *
+ * 生成N行的CSV(含表头、少量重复编号和格式错误的行),测量导入到空库存的耗时,
+ * 并核对导入、重复、错误的行数。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=ImportBenchmark -PharnessArgs="[行数=1000000]"
+ */
+public class ImportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = Files.createTempFile("houses", ".csv");
+        int duplicates = 0;
+        int invalid = 0;
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("编号,楼栋号,单元号,房间号,面积,单价\n");
+            for(int i = 0; i < rows; i++) {
+                if(i % 100_000 == 99_999) {
+                    out.write("P" + (i - 2) + ",B,1,101,80,10000\n");  // 重复编号
+                    duplicates++;
+                } else if(i % 100_000 == 99_998) {
+                    out.write("P" + i + ",B,1,101,面积,10000\n");   // 格式错误
+                    invalid++;
+                } else {
+                    out.write("P" + i + ",\"" + (i % 50) + "号楼\"," + (i % 6) + "," + (100 + i % 40) + ","
+                              + (80 + i % 90) + "." + (i % 10) + "," + (10000 + i % 20000) + "\n");
+                }
+            }
+        }
+        long bytes = Files.size(file);
+
+        InventoryEngine engine = new InventoryEngine();
+        HouseImporter.Result result = new HouseImporter(engine).importCsv(file);
+        Files.delete(file);
+
+        System.out.printf("行数: %d, 文件 %.1f MB%n", rows, bytes / 1e6);
+        System.out.printf("导入: %d, 重复: %d, 错误: %d, 耗时 %d ms (%.0f 行/秒)%n",
+                          result.imported, result.duplicates, result.invalid, result.elapsedMillis,
+                          rows / (result.elapsedMillis / 1e3));
+        for(String error : result.errors) {
+            System.out.println(error);
+        }
+        if(result.duplicates != duplicates || result.invalid != invalid
+           || result.imported != rows - duplicates - invalid
+           || engine.getHouseCount() != result.imported) {
+            throw new IllegalStateException("导入结果与生成的数据不一致");
+        }
+        String mismatch = engine.verifyAggregates();
+        if(mismatch != null) {
+            throw new IllegalStateException("销售汇总不一致:\n" + mismatch);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package sale;
+
+/**
+ * 基准测试用的库存数据
+ */
+final class Inventories {
+
+    private Inventories() {
+    }
+
+    /**
+     * 第i套房屋的编号
+     */
+    static String id(int i) {
+        return String.format("P%07d", i);
+    }
+
+    /**
+     * 全部房屋编号
+     */
+    static String[] ids(int size) {
+        String[] ids = new String[size];
+        for(int i = 0; i < size; i++) {
+            ids[i] = id(i);
+        }
+        return ids;
+    }
+
+    /**
+     * 生成size套房屋的库存,每soldEvery套售出一套,0表示全部可售
+     */
+    static InventoryEngine engine(int size, int soldEvery) {
+        InventoryEngine engine = new InventoryEngine();
+        for(int i = 0; i < size; i++) {
+            engine.addHouse(new House(id(i), "B" + (i % 50), String.valueOf(i % 6),
+                                      String.valueOf(100 + i % 40), 80 + i % 90, 10000 + i % 20000));
+        }
+        if(soldEvery > 0) {
+            for(int i = 0; i < size; i += soldEvery) {
+                engine.reserve(id(i), "buyer" + (i % 1000));
+            }
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,140 @@
+package sale;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录吞吐量基准测试
+ *
+ * N个客户端线程在给定秒数内不断经LoginService登录,报告每秒登录数、每核每秒登录数、
+ * 延迟分位数和因排队已满被拒绝的次数;然后分别测量凭会话令牌和凭缓存的Basic凭据
+ * 通过认证的速度,这两条路径不计算密码散列。
+ * 散列的迭代次数取系统属性house.password.iterations(默认600000)。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=LoginBenchmark -PharnessArgs="[客户端数=16] [秒数=10] [校验队列=64]"
+ */
+public class LoginBenchmark {
+    private static final int USERS = 8;  // 注册的用户数
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int queue = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        InventoryEngine engine = new InventoryEngine();
+        long registerStart = System.nanoTime();
+        for(int u = 0; u < USERS; u++) {
+            engine.registerUser("user" + u, "pw" + u, User.ROLE_USER);
+        }
+        System.out.printf("CPU核数: %d, 注册%d个用户, 每次散列 %.1f ms%n",
+                          cores, USERS, (System.nanoTime() - registerStart) / 1e6 / USERS);
+
+        LoginService logins = new LoginService(engine, cores, queue, 30 * 60_000L, 60_000L);
+        LongAdder ok = new LongAdder();
+        LongAdder failed = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        for(int c = 0; c < clients; c++) {
+            int index = c;
+            Thread t = new Thread(() -> {
+                long[] lat = new long[1024];
+                int n = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while(System.nanoTime() < deadline) {
+                        int u = random.nextInt(USERS);
+                        boolean wrong = random.nextInt(10) == 0;  // 10%输错密码
+                        long begin = System.nanoTime();
+                        try {
+                            LoginService.Session session = logins.login("user" + u, wrong ? "bad" : "pw" + u);
+                            if(session != null) {
+                                ok.increment();
+                                logins.logout(session.getToken());
+                            } else if(wrong) {
+                                failed.increment();
+                            } else {
+                                throw new IllegalStateException("正确的密码登录失败: user" + u);
+                            }
+                        } catch(RejectedExecutionException e) {
+                            rejected.increment();
+                            Thread.sleep(10);  // 客户端退避
+                            continue;
+                        }
+                        if(n == lat.length) {
+                            lat = Arrays.copyOf(lat, n * 2);
+                        }
+                        lat[n++] = System.nanoTime() - begin;
+                    }
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latencies[index] = lat;
+                    counts[index] = n;
+                    done.countDown();
+                }
+            }, "login-" + c);
+            t.start();
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        int total = 0;
+        for(int n : counts) {
+            total += n;
+        }
+        long[] all = new long[total];
+        int pos = 0;
+        for(int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, pos, counts[c]);
+            pos += counts[c];
+        }
+        Arrays.sort(all);
+        double perSecond = total / (elapsed / 1e9);
+        System.out.printf("客户端: %d, 时长: %d s, 校验线程: %d, 校验队列: %d%n", clients, seconds, cores, queue);
+        System.out.printf("登录: %d (成功%d, 密码错误%d), %.1f 次/秒, 每核 %.1f 次/秒, 排队已满拒绝: %d%n",
+                          total, ok.sum(), failed.sum(), perSecond, perSecond / cores, rejected.sum());
+        System.out.printf("延迟 p50 %.1f ms, p99 %.1f ms, 最大 %.1f ms%n",
+                          percentile(all, 0.50), percentile(all, 0.99), total == 0 ? 0 : all[total - 1] / 1e6);
+
+        // 不计算散列的两条路径
+        LoginService.Session session = logins.login("user0", "pw0");
+        if(logins.basic("user1", "pw1") == null) {
+            throw new IllegalStateException("Basic认证失败");
+        }
+        int rounds = 2_000_000;
+        for(int warm = 0; warm < 2; warm++) {
+            long t0 = System.nanoTime();
+            for(int i = 0; i < rounds; i++) {
+                if(logins.session(session.getToken()) == null) {
+                    throw new IllegalStateException("会话令牌失效");
+                }
+            }
+            long t1 = System.nanoTime();
+            for(int i = 0; i < rounds / 10; i++) {
+                if(logins.basic("user1", "pw1") == null) {
+                    throw new IllegalStateException("Basic认证失败");
+                }
+            }
+            long t2 = System.nanoTime();
+            if(warm == 1) {
+                System.out.printf("会话令牌: %.0f ns/次, 缓存的Basic凭据: %.0f ns/次%n",
+                                  (t1 - t0) / (double)rounds, (t2 - t1) / (rounds / 10.0));
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if(sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int)Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
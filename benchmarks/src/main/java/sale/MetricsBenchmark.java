@@ -0,0 +1,47 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 指标记录的开销:单线程和多线程同时记录到同一个延迟记录器
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+    private final LatencyRecorder recorder = new LatencyRecorder("benchmark");
+
+    /**
+     * 热点路径上的完整用法:取开始时间,操作结束后记录
+     */
+    @Benchmark
+    public void recordSince() {
+        recorder.recordSince(System.nanoTime() - ThreadLocalRandom.current().nextInt(1_000_000));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordSinceContended() {
+        recorder.recordSince(System.nanoTime() - ThreadLocalRandom.current().nextInt(1_000_000));
+    }
+
+    @Benchmark
+    public long nanoTimeOnly() {
+        return System.nanoTime() - ThreadLocalRandom.current().nextInt(1_000_000);
+    }
+}
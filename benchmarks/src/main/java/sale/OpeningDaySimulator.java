@@ -0,0 +1,219 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 开盘日抢订模拟
+ *
+ * 每一轮新建只有addTestHouses中20套房屋的引擎,N个购买者线程在开盘瞬间的burst毫秒内陆续到达,
+ * 80%的人抢3套热门房屋,其余人在20套中随机选一套,经准入队列(或直接调用引擎)预订。
+ * 报告各结果的数量、延迟分位数,以及公平性:
+ *   最早到达者中签的比例  每套房屋的成交者是否是该房屋最早到达的请求,FIFO应接近100%
+ *   中签者的到达名次      成交者在该房屋请求中的到达名次/(请求数-1)的平均值,先到先得接近0
+ *   抽签者中的名次        抽签模式下成交者在参加抽签者(中签和未中签)中的到达名次,
+ *                         与到达先后无关时接近0.5
+ * 并校验每套房屋至多售出一次、销售汇总与完整重算一致。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=OpeningDaySimulator
+ *          -PharnessArgs="[模式=fifo|lottery|direct] [购买者数=1000] [轮数=20] [到达窗口ms=20] [队列容量=64]"
+ */
+public class OpeningDaySimulator {
+    private static final int HOT_UNITS = 3;  // 热门房屋数
+
+    /**
+     * 一次请求的记录
+     */
+    private static final class Attempt {
+        final int buyer;
+        final String houseId;
+        long arrival;  // 到达时间(System.nanoTime)
+        long latency;  // 耗时
+        String outcome;
+
+        Attempt(int buyer, String houseId) {
+            this.buyer = buyer;
+            this.houseId = houseId;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "fifo";
+        int buyers = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int burstMillis = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int capacity = args.length > 4 ? Integer.parseInt(args[4]) : 64;
+
+        runRounds(mode, buyers, Math.max(1, rounds / 5), burstMillis, capacity, new ArrayList<>());  // 预热
+
+        List<Attempt> all = new ArrayList<>();
+        long elapsed = runRounds(mode, buyers, rounds, burstMillis, capacity, all);
+
+        Map<String, Integer> outcomes = new HashMap<>();
+        long[] latencies = new long[all.size()];
+        for(int i = 0; i < all.size(); i++) {
+            Attempt a = all.get(i);
+            outcomes.merge(a.outcome, 1, Integer::sum);
+            latencies[i] = a.latency;
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("模式: %s, 购买者: %d, 轮数: %d, 到达窗口: %d ms, 队列容量: %d%n",
+                          mode, buyers, rounds, burstMillis, capacity);
+        System.out.printf("请求: %d, 耗时: %.0f ms, 结果: %s%n", all.size(), elapsed / 1e6, outcomes);
+        System.out.printf("延迟 p50 %.3f ms, p99 %.3f ms, 最大 %.3f ms%n",
+                          percentile(latencies, 0.50), percentile(latencies, 0.99),
+                          latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1e6);
+        reportFairness(all, rounds);
+    }
+
+    /**
+     * 执行若干轮,每轮的请求记录追加到attempts,返回各轮从开盘到全部结束的耗时之和
+     */
+    private static long runRounds(String mode, int buyers, int rounds, int burstMillis, int capacity,
+                                  List<Attempt> attempts) throws Exception {
+        long elapsed = 0;
+        for(int r = 0; r < rounds; r++) {
+            InventoryEngine engine = new InventoryEngine();
+            HouseSellingSystem.addTestHouses(engine);
+            List<House> houses = new ArrayList<>(engine.getHouses());
+            houses.sort((a, b) -> a.getId().compareTo(b.getId()));
+            PresaleGate gate = new PresaleGate(engine,
+                "lottery".equals(mode) ? PresaleGate.Mode.LOTTERY : PresaleGate.Mode.FIFO,
+                capacity, buyers, burstMillis * 2L, 2000);
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Attempt[] round = new Attempt[buyers];
+            long[] delays = new long[buyers];
+            for(int b = 0; b < buyers; b++) {
+                int unit = random.nextInt(100) < 80 ? random.nextInt(HOT_UNITS) : random.nextInt(houses.size());
+                round[b] = new Attempt(b, houses.get(unit).getId());
+                delays[b] = random.nextLong(burstMillis * 1_000_000L + 1);
+            }
+
+            CountDownLatch ready = new CountDownLatch(buyers);
+            CountDownLatch open = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(buyers);
+            long[] openAt = new long[1];
+            for(int b = 0; b < buyers; b++) {
+                Attempt a = round[b];
+                long delay = delays[b];
+                Thread t = new Thread(() -> {
+                    try {
+                        ready.countDown();
+                        open.await();
+                        long arriveAt = openAt[0] + delay;
+                        long wait;
+                        while((wait = arriveAt - System.nanoTime()) > 0) {
+                            Thread.sleep(wait / 1_000_000, (int)(wait % 1_000_000));
+                        }
+                        a.arrival = System.nanoTime();
+                        String buyer = "buyer" + a.buyer;
+                        a.outcome = "direct".equals(mode) ? engine.reserve(a.houseId, buyer).name()
+                                                          : gate.reserve(a.houseId, buyer).name();
+                        a.latency = System.nanoTime() - a.arrival;
+                    } catch(InterruptedException e) {
+                        a.outcome = "INTERRUPTED";
+                    } finally {
+                        done.countDown();
+                    }
+                });
+                t.start();
+            }
+            ready.await();
+            openAt[0] = System.nanoTime();
+            open.countDown();
+            done.await();
+            elapsed += System.nanoTime() - openAt[0];
+
+            verify(engine, round);
+            attempts.addAll(Arrays.asList(round));
+        }
+        return elapsed;
+    }
+
+    private static void verify(InventoryEngine engine, Attempt[] round) {
+        Map<String, Integer> winners = new HashMap<>();
+        for(Attempt a : round) {
+            if("SUCCESS".equals(a.outcome)) {
+                winners.merge(a.houseId, 1, Integer::sum);
+            }
+        }
+        for(Map.Entry<String, Integer> e : winners.entrySet()) {
+            if(e.getValue() != 1) {
+                throw new IllegalStateException(e.getKey() + "被预订成功" + e.getValue() + "次");
+            }
+        }
+        if(engine.getSummary().soldCount != winners.size()) {
+            throw new IllegalStateException("预订成功" + winners.size() + "套,但已售"
+                                            + engine.getSummary().soldCount + "套");
+        }
+        String mismatch = engine.verifyAggregates();
+        if(mismatch != null) {
+            throw new IllegalStateException("销售汇总不一致:\n" + mismatch);
+        }
+    }
+
+    /**
+     * 按轮和房屋分组,计算成交者在该房屋请求中的到达名次
+     */
+    private static void reportFairness(List<Attempt> all, int rounds) {
+        int perRound = all.size() / rounds;
+        int contested = 0;
+        int earliestWins = 0;
+        double rankSum = 0;
+        int drawn = 0;
+        double drawRankSum = 0;
+        for(int r = 0; r < rounds; r++) {
+            Map<String, List<Attempt>> byHouse = new HashMap<>();
+            for(Attempt a : all.subList(r * perRound, (r + 1) * perRound)) {
+                byHouse.computeIfAbsent(a.houseId, k -> new ArrayList<>()).add(a);
+            }
+            for(List<Attempt> list : byHouse.values()) {
+                if(list.size() < 2) {
+                    continue;
+                }
+                list.sort((x, y) -> Long.compare(x.arrival, y.arrival));
+                for(int i = 0; i < list.size(); i++) {
+                    if("SUCCESS".equals(list.get(i).outcome)) {
+                        contested++;
+                        if(i == 0) {
+                            earliestWins++;
+                        }
+                        rankSum += (double)i / (list.size() - 1);
+                    }
+                }
+                List<Attempt> entrants = new ArrayList<>();
+                for(Attempt a : list) {
+                    if("SUCCESS".equals(a.outcome) || "LOST".equals(a.outcome)) {
+                        entrants.add(a);
+                    }
+                }
+                for(int i = 0; entrants.size() > 1 && i < entrants.size(); i++) {
+                    if("SUCCESS".equals(entrants.get(i).outcome)) {
+                        drawn++;
+                        drawRankSum += (double)i / (entrants.size() - 1);
+                    }
+                }
+            }
+        }
+        System.out.printf("有竞争的成交: %d, 最早到达者中签: %.1f%%, 中签者平均到达名次: %.3f%n",
+                          contested, contested == 0 ? 0 : earliestWins * 100.0 / contested,
+                          contested == 0 ? 0 : rankSum / contested);
+        if(drawn > 0) {
+            System.out.printf("抽签成交: %d, 中签者在抽签者中的平均到达名次: %.3f%n", drawn, drawRankSum / drawn);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if(sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int)Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,156 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 购买者反向索引基准测试
+ *
+ * 一个代理人先买下给定套数,然后N个线程在给定秒数内随机预订、删除并以同一编号重新添加房屋,
+ * 结束后校验反向索引与按全部房屋重算的结果一致:没有已删除的房屋,每套已售房屋都能查到,
+ * 各购买者的套数之和等于已售数。最后对代理人测量成员判断、按编号翻页和整表读取的耗时,
+ * 并与在List中线性查找作对比。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=OwnerIndexBenchmark -PharnessArgs="[房屋数=200000] [代理人套数=20000] [线程数=4] [秒数=3]"
+ */
+public class OwnerIndexBenchmark {
+    private static final int BUYERS = 100;  // 随机预订的购买者数
+    private static final int PAGE = 50;     // 每页套数
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int agentUnits = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        InventoryEngine engine = Inventories.engine(size, 0);
+        String[] ids = Inventories.ids(size);
+        String agent = "agent";
+        for(int i = 0; i < agentUnits; i++) {
+            engine.reserve(ids[i], agent);
+        }
+
+        // 代理人的房屋之外随机预订、删除、重新添加
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Thread> workers = new ArrayList<>();
+        long[] ops = new long[threads];
+        for(int t = 0; t < threads; t++) {
+            int index = t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long n = 0;
+                while(System.nanoTime() < deadline) {
+                    int i = agentUnits + random.nextInt(size - agentUnits);
+                    String id = ids[i];
+                    int op = random.nextInt(10);
+                    if(op < 7) {
+                        engine.reserve(id, "buyer" + random.nextInt(BUYERS));
+                    } else if(op < 9) {
+                        engine.removeHouse(id);
+                    } else {
+                        engine.addHouse(new House(id, "B" + (i % 50), String.valueOf(i % 6),
+                                                  String.valueOf(100 + i % 40), 80 + i % 90, 10000 + i % 20000));
+                    }
+                    n++;
+                }
+                ops[index] = n;
+            }, "owner-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        long total = 0;
+        for(int t = 0; t < threads; t++) {
+            workers.get(t).join();
+            total += ops[t];
+        }
+        System.out.printf("并发预订/删除/重新添加: %d次, %.0f 次/秒%n", total, total / (double)seconds);
+
+        verify(engine, agent);
+
+        // 代理人:成员判断、翻页、整表
+        List<House> asList = new ArrayList<>(engine.getHousesOf(agent));
+        int rounds = 200_000;
+        for(int warm = 0; warm < 2; warm++) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long t0 = System.nanoTime();
+            int hits = 0;
+            for(int r = 0; r < rounds; r++) {
+                if(engine.ownsHouse(agent, ids[random.nextInt(agentUnits * 2)])) {
+                    hits++;
+                }
+            }
+            long t1 = System.nanoTime();
+            int listRounds = 200;
+            for(int r = 0; r < listRounds; r++) {
+                House probe = engine.getHouse(ids[random.nextInt(agentUnits * 2)]);
+                if(probe != null && asList.contains(probe)) {
+                    hits++;
+                }
+            }
+            long t2 = System.nanoTime();
+            int pages = 0;
+            String after = null;
+            while(true) {
+                List<House> page = engine.getHousesOf(agent, after, PAGE);
+                if(page.isEmpty()) {
+                    break;
+                }
+                pages++;
+                after = page.get(page.size() - 1).getId();
+            }
+            long t3 = System.nanoTime();
+            int full = engine.getHousesOf(agent).size();
+            long t4 = System.nanoTime();
+            if(warm == 1) {
+                System.out.printf("代理人%d套 (命中%d): 成员判断 %.0f ns, List线性查找 %.1f us, "
+                                  + "翻页%d页 每页 %.1f us, 整表读取 %.2f ms%n",
+                                  full, hits, (t1 - t0) / (double)rounds, (t2 - t1) / 1e3 / listRounds,
+                                  pages, (t3 - t2) / 1e3 / pages, (t4 - t3) / 1e6);
+            }
+        }
+    }
+
+    /**
+     * 按全部房屋重算各购买者的已购房屋,与反向索引比较
+     */
+    private static void verify(InventoryEngine engine, String agent) {
+        Map<String, Integer> expected = new HashMap<>();
+        long sold = 0;
+        for(House h : engine.getHouses()) {
+            if(h.isSettled()) {
+                sold++;
+                expected.merge(h.getBuyer(), 1, Integer::sum);
+                if(!engine.ownsHouse(h.getBuyer(), h.getId())) {
+                    throw new IllegalStateException("已售房屋不在索引中: " + h.getId());
+                }
+            }
+        }
+        List<String> buyers = new ArrayList<>();
+        buyers.add(agent);
+        for(int b = 0; b < BUYERS; b++) {
+            buyers.add("buyer" + b);
+        }
+        long indexed = 0;
+        for(String buyer : buyers) {
+            List<House> houses = engine.getHousesOf(buyer);
+            if(houses.size() != expected.getOrDefault(buyer, 0) || houses.size() != engine.getHouseCountOf(buyer)) {
+                throw new IllegalStateException(buyer + ": 索引" + houses.size() + "套, 重算"
+                                                + expected.getOrDefault(buyer, 0) + "套");
+            }
+            for(House h : houses) {
+                if(engine.getHouse(h.getId()) != h) {
+                    throw new IllegalStateException("索引中有已删除的房屋: " + h.getId());
+                }
+            }
+            indexed += houses.size();
+        }
+        if(indexed != sold || sold != engine.getSummary().soldCount) {
+            throw new IllegalStateException("索引" + indexed + "套, 已售" + sold + "套, 汇总"
+                                            + engine.getSummary().soldCount + "套");
+        }
+        System.out.println("校验通过: 已售" + sold + "套, 代理人" + engine.getHouseCountOf(agent) + "套");
+    }
+}
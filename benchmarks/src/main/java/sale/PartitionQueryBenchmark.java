@@ -0,0 +1,93 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多项目分区的查询:同样的总房屋数分给不同数量的项目,
+ * 比较不限项目的查询(并行分发到各分区)与只查一个项目的查询,以及全部项目汇总的读取
+ * 各项目使用相同的项目内编号,建库时校验不会相互覆盖。
+ *
+ * 例: gradle :benchmarks:jmh -PjmhArgs="PartitionQuery -p projects=1,8"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionQueryBenchmark {
+    @Param({"1", "8"})
+    public int projects;
+
+    @Param({"1000000"})
+    public int size;
+
+    private InventoryEngine engine;
+    private HouseQuery allProjects;
+    private HouseQuery oneProject;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new InventoryEngine();
+        int perProject = size / projects;
+        for(int p = 0; p < projects; p++) {
+            String project = "项目" + p;
+            List<House> batch = new ArrayList<>(perProject);
+            for(int i = 0; i < perProject; i++) {
+                batch.add(new House(House.qualify(project, Inventories.id(i)), "B" + (i % 50),
+                                    String.valueOf(i % 6), String.valueOf(100 + i % 40),
+                                    80 + i % 90, 10000 + i % 20000));
+            }
+            engine.addHouses(batch);
+            for(int i = 0; i < perProject; i += 4) {
+                engine.reserve(House.qualify(project, Inventories.id(i)), "buyer" + (i % 1000));
+            }
+        }
+        if(engine.getHouseCount() != perProject * projects) {
+            throw new IllegalStateException("同一项目内编号在不同项目间冲突");
+        }
+        String mismatch = engine.verifyAggregates();
+        if(mismatch != null) {
+            throw new IllegalStateException(mismatch);
+        }
+
+        // 单价区间约选中1%
+        allProjects = new HouseQuery();
+        allProjects.setPriceRange(10000.0, 10200.0);
+        allProjects.setStatus(House.STATUS_AVAILABLE);
+        oneProject = new HouseQuery();
+        oneProject.setProject("项目0");
+        oneProject.setPriceRange(10000.0, 10200.0);
+        oneProject.setStatus(House.STATUS_AVAILABLE);
+    }
+
+    @Benchmark
+    public List<House> queryAllProjects() {
+        return engine.query(allProjects);
+    }
+
+    @Benchmark
+    public List<House> queryOneProject() {
+        return engine.query(oneProject);
+    }
+
+    @Benchmark
+    public SalesAggregates.Summary summary() {
+        return engine.getSummary();
+    }
+}
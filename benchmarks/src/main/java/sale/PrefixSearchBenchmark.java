@@ -0,0 +1,79 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 边输入边搜索基准测试
+ *
+ * 生成N套房屋(每10套售出一套,购买者buyer0到buyer999),模拟逐字输入编号"P0001234"和
+ * 购买者"buyer120",每输入一个字符按前缀搜索一次,报告每个前缀的平均耗时和返回套数,
+ * 并与逐套判断的全表扫描对比。最后校验结果:返回的房屋都满足条件,不足上限时与全表扫描的结果一致。
+ *
+ * 用法: gradle :benchmarks:harness -Pharness=PrefixSearchBenchmark -PharnessArgs="[房屋数=1000000] [上限=200] [每个前缀重复次数=200]"
+ */
+public class PrefixSearchBenchmark {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int limit = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        InventoryEngine engine = Inventories.engine(size, 10);
+        List<String> prefixes = new ArrayList<>();
+        for(String typed : new String[]{Inventories.id(Math.min(1234, size - 1)), "buyer120"}) {
+            for(int i = 1; i <= typed.length(); i++) {
+                prefixes.add(typed.substring(0, i));
+            }
+        }
+
+        for(int warm = 0; warm < 2; warm++) {
+            for(String prefix : prefixes) {
+                long start = System.nanoTime();
+                int found = 0;
+                for(int r = 0; r < rounds; r++) {
+                    found = engine.searchPrefix(prefix, limit).size();
+                }
+                double searchMicros = (System.nanoTime() - start) / 1e3 / rounds;
+                start = System.nanoTime();
+                int scanned = scan(engine, prefix).size();
+                double scanMillis = (System.nanoTime() - start) / 1e6;
+                if(warm == 1) {
+                    System.out.printf("%-10s 前缀搜索 %8.1f us 返回%4d套 | 全表扫描 %7.1f ms 匹配%7d套%n",
+                                      prefix, searchMicros, found, scanMillis, scanned);
+                }
+            }
+        }
+        verify(engine, prefixes, limit);
+    }
+
+    /**
+     * 逐套判断全部房屋
+     */
+    private static List<House> scan(InventoryEngine engine, String prefix) {
+        List<House> result = new ArrayList<>();
+        for(House h : engine.getHouses()) {
+            if(InventoryEngine.matchesPrefix(h, prefix)) {
+                result.add(h);
+            }
+        }
+        return result;
+    }
+
+    private static void verify(InventoryEngine engine, List<String> prefixes, int limit) {
+        for(String prefix : prefixes) {
+            List<House> found = engine.searchPrefix(prefix, limit);
+            for(House h : found) {
+                if(!InventoryEngine.matchesPrefix(h, prefix)) {
+                    throw new IllegalStateException(prefix + ": 返回了不匹配的房屋" + h.getId());
+                }
+            }
+            List<House> expected = scan(engine, prefix);
+            if(found.size() > limit || (expected.size() <= limit && found.size() != expected.size())
+               || (expected.size() > limit && found.size() != limit)) {
+                throw new IllegalStateException(prefix + ": 返回" + found.size() + "套, 全表扫描匹配" + expected.size() + "套");
+            }
+        }
+        System.out.println("校验通过");
+    }
+}
@@ -0,0 +1,137 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.JButton;
+import javax.swing.JTable;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 界面重绘:一帧画一排渐变按钮和一屏房屋表格,画到离屏图像上,不需要显示器
+ * legacy为改用ThemeResources之前的画法(每次重绘新建GradientPaint、复制Graphics,
+ * 表格字体和渲染器各建一份),cached为现在的画法。加上-prof gc可以看到每帧分配的字节数。
+ *
+ * 例: gradle :benchmarks:jmh -PjmhArgs="Repaint -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RepaintBenchmark {
+    private static final int BUTTONS = 8;  // 一排按钮数,与主菜单相当
+    private static final int ROWS = 20;    // 一屏可见的表格行数
+
+    @Param({"legacy", "cached"})
+    public String mode;
+
+    private final ThemeConfig config = new ThemeConfig();
+    private JButton[] buttons;
+    private JTable table;
+    private BufferedImage frame;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp() {
+        ThemeResources theme = new ThemeResources(config);
+        boolean cached = mode.equals("cached");
+        buttons = new JButton[BUTTONS];
+        for(int i = 0; i < BUTTONS; i++) {
+            JButton button = cached ? new GradientButton("按钮" + i, theme) : legacyButton("按钮" + i);
+            button.setFont(cached ? theme.font(Font.BOLD, 32) : new Font("微软雅黑", Font.BOLD, 32));
+            button.setSize(300, 80);
+            buttons[i] = button;
+        }
+
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+            HouseTableModel.Column.BUILDING, HouseTableModel.Column.UNIT,
+            HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+            HouseTableModel.Column.PRICE, HouseTableModel.Column.STATUS);
+        model.setHouses(Inventories.engine(ROWS, 3).getHouses());
+        table = new JTable(model);
+        if(cached) {
+            theme.styleTable(table, theme.font(Font.BOLD, 32), 50);
+        } else {
+            Font font = new Font("微软雅黑", Font.BOLD, 32);
+            table.setFont(font);
+            table.setRowHeight(50);
+            table.setBackground(config.bgColor);
+            table.setForeground(config.textColor);
+            table.getTableHeader().setFont(font);
+            table.getTableHeader().setBackground(config.themeColor);
+            table.getTableHeader().setForeground(Color.WHITE);
+        }
+        table.setSize(1600, ROWS * 50);
+        table.doLayout();
+
+        frame = new BufferedImage(1600, 1000, BufferedImage.TYPE_INT_RGB);
+        graphics = frame.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintButtons() {
+        for(JButton button : buttons) {
+            Graphics g = graphics.create(0, 0, 300, 80);
+            button.paint(g);
+            g.dispose();
+        }
+        return frame;
+    }
+
+    @Benchmark
+    public BufferedImage paintTable() {
+        table.paint(graphics);
+        return frame;
+    }
+
+    /**
+     * 改用ThemeResources之前createGradientButton的画法
+     */
+    private JButton legacyButton(String text) {
+        JButton button = new JButton(text) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                Graphics2D g2 = (Graphics2D)g.create();
+                g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                GradientPaint gp = new GradientPaint(0, 0, config.themeColor,
+                                                     0, getHeight(), config.themeColor.darker());
+                g2.setPaint(gp);
+                g2.fillRoundRect(0, 0, getWidth(), getHeight(), 20, 20);
+                g2.setColor(Color.WHITE);
+                g2.drawString(getText(),
+                              (getWidth() - g2.getFontMetrics().stringWidth(getText())) / 2,
+                              (getHeight() + g2.getFontMetrics().getAscent()) / 2);
+                g2.dispose();
+            }
+        };
+        button.setForeground(Color.WHITE);
+        button.setFocusPainted(false);
+        button.setBorderPainted(false);
+        button.setContentAreaFilled(false);
+        return button;
+    }
+}
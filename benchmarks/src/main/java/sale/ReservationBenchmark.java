@@ -0,0 +1,94 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预订争用基准测试
+ *
+ * 每一轮新建一个只有addTestHouses中20套房屋的引擎,N个线程同时以随机顺序抢订全部房屋,
+ * 统计每秒完成的预订尝试次数(只计发令到全部线程结束的时间,不含建线程的开销),
+ * 并校验每套房屋恰好只被售出一次、销售汇总与完整重算一致。
+ *
+ * 用法: java sale.ReservationBenchmark [线程数=64] [轮数=2000]
+ */
+public class ReservationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        // 预热
+        runRounds(threads, Math.max(1, rounds / 10), new long[1]);
+
+        long[] elapsedHolder = new long[1];
+        long attempts = runRounds(threads, rounds, elapsedHolder);
+        long elapsed = elapsedHolder[0];
+
+        System.out.printf("线程数: %d, 轮数: %d%n", threads, rounds);
+        System.out.printf("预订尝试: %d, 耗时: %.1f ms%n", attempts, elapsed / 1e6);
+        System.out.printf("吞吐量: %.0f 次/秒%n", attempts / (elapsed / 1e9));
+    }
+
+    /**
+     * 执行若干轮抢订,返回预订尝试总次数,抢订耗时累加到elapsed[0]
+     */
+    private static long runRounds(int threads, int rounds, long[] elapsed) throws InterruptedException {
+        LongAdder attempts = new LongAdder();
+        for(int r = 0; r < rounds; r++) {
+            InventoryEngine engine = new InventoryEngine();
+            HouseSellingSystem.addTestHouses(engine);
+            List<String> ids = new ArrayList<>();
+            for(House h : engine.getHouses()) {
+                ids.add(h.getId());
+            }
+
+            AtomicInteger successes = new AtomicInteger();
+            CountDownLatch ready = new CountDownLatch(threads);
+            CountDownLatch go = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for(int t = 0; t < threads; t++) {
+                String buyer = "buyer" + t;
+                List<String> order = new ArrayList<>(ids);
+                Collections.shuffle(order, new Random(r * 31L + t));
+                Thread thread = new Thread(() -> {
+                    ready.countDown();
+                    try {
+                        go.await();
+                        for(String id : order) {
+                            if(engine.reserve(id, buyer) == InventoryEngine.ReserveResult.SUCCESS) {
+                                successes.incrementAndGet();
+                            }
+                        }
+                        attempts.add(order.size());
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+                thread.start();
+            }
+            ready.await();
+            long start = System.nanoTime();
+            go.countDown();
+            done.await();
+            elapsed[0] += System.nanoTime() - start;
+
+            if(successes.get() != ids.size()) {
+                throw new IllegalStateException("第" + r + "轮售出" + successes.get()
+                                                + "次,期望" + ids.size() + "次");
+            }
+            String mismatch = engine.verifyAggregates();
+            if(mismatch != null) {
+                throw new IllegalStateException("第" + r + "轮销售汇总不一致:\n" + mismatch);
+            }
+        }
+        return attempts.sum();
+    }
+}
@@ -0,0 +1,76 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预售界面"预订"按钮背后的预订路径:多个买家同时抢购,直到全部售罄
+ *
+ * 每轮重新生成全部可售的库存,每个线程从不同位置开始依次预订每一套房屋,
+ * 抢到的走成交路径,晚到的走冲突路径;测量整批库存售罄所需的时间。
+ * 与其它基准测试一致,成交分散在1000个买家名下。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SellOutBenchmark {
+    @Param({"20", "1000", "100000", "1000000"})
+    int size;  // 房屋数
+
+    private InventoryEngine engine;
+    private String[] ids;
+
+    @Setup(Level.Trial)
+    public void setupIds() {
+        ids = Inventories.ids(size);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupInventory() {
+        engine = Inventories.engine(size, 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void check() {
+        if(engine.getSummary().soldCount != size) {
+            throw new IllegalStateException("已售" + engine.getSummary().soldCount + "套,期望" + size);
+        }
+        String mismatch = engine.verifyAggregates();
+        if(mismatch != null) {
+            throw new IllegalStateException(mismatch);
+        }
+    }
+
+    @Benchmark
+    public int sellOut(ThreadParams params) {
+        int start = (int)((long)size * params.getThreadIndex() / params.getThreadCount());
+        int sold = 0;
+        for(int i = 0; i < size; i++) {
+            int index = start + i;
+            if(index >= size) {
+                index -= size;
+            }
+            if(engine.reserve(ids[index], "buyer" + (index % 1000)) == InventoryEngine.ReserveResult.SUCCESS) {
+                sold++;
+            }
+        }
+        return sold;
+    }
+}
@@ -0,0 +1,106 @@
+package sale;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * 启动耗时基准测试:全量重放日志 对比 映射快照加重放尾部日志
+ *
+ * 先生成N套房屋(其中十分之一已售)的日志,测量从空目录全量重放的耗时;
+ * 再做一次快照,追加一段尾部事件,测量快照加尾部的恢复耗时。
+ *
+ * 用法: java -Xmx4g sale.StartupBenchmark [房屋数=1000000] [尾部事件数=10000]
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int units = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int tail = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Path dir = Files.createTempDirectory("startup-bench");
+
+        // 生成日志
+        InventoryEngine engine = new InventoryEngine();
+        InventoryStore store = new InventoryStore(engine, dir, 4096, 1000);
+        store.open();
+        for(int i = 0; i < units; i++) {
+            engine.addHouse(new House(id(i), "B" + (i % 50), String.valueOf(i % 6),
+                                      String.valueOf(100 + i % 40), 80 + i % 90, 10000 + i % 20000));
+        }
+        // 每次成交都要等fsync,并发成交才能由组提交合并成批
+        InventoryEngine seller = engine;
+        IntStream.range(0, (units + 9) / 10).parallel().forEach(k -> {
+            int i = k * 10;
+            seller.reserve(id(i), "buyer" + (i % 1000));
+        });
+        store.close();
+        long journalBytes = totalSize(dir);
+
+        // 全量重放
+        long start = System.nanoTime();
+        engine = new InventoryEngine();
+        store = new InventoryStore(engine, dir, 4096, 1000);
+        store.open();
+        long fullReplay = System.nanoTime() - start;
+        check(engine, units);
+
+        // 快照后追加尾部事件
+        store.snapshot();
+        for(int i = 0; i < tail; i++) {
+            String id = id(i * 7 % units);
+            House h = engine.getHouse(id);
+            engine.updateHouse(id, h.getBuilding(), h.getUnit(), h.getRoom(), h.getArea(), h.getPrice() + 1);
+        }
+        store.close();
+        long snapshotBytes = totalSize(dir);
+
+        // 快照加尾部
+        start = System.nanoTime();
+        engine = new InventoryEngine();
+        store = new InventoryStore(engine, dir, 4096, 1000);
+        store.open();
+        long snapshotReplay = System.nanoTime() - start;
+        check(engine, units);
+        store.close();
+
+        System.out.printf("房屋数: %d, 尾部事件数: %d%n", units, tail);
+        System.out.printf("全量重放: %.0f ms (日志 %.1f MB)%n", fullReplay / 1e6, journalBytes / 1e6);
+        System.out.printf("快照+尾部: %.0f ms (快照+日志 %.1f MB)%n", snapshotReplay / 1e6, snapshotBytes / 1e6);
+        deleteAll(dir);
+    }
+
+    private static String id(int i) {
+        return String.format("P%07d", i);
+    }
+
+    private static void check(InventoryEngine engine, int units) {
+        if(engine.getHouseCount() != units) {
+            throw new IllegalStateException("恢复后房屋数为" + engine.getHouseCount() + ",期望" + units);
+        }
+        String mismatch = engine.verifyAggregates();
+        if(mismatch != null) {
+            throw new IllegalStateException("恢复后销售汇总不一致:\n" + mismatch);
+        }
+    }
+
+    private static long totalSize(Path dir) throws IOException {
+        long size = 0;
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for(Path p : stream) {
+                size += Files.size(p);
+            }
+        }
+        return size;
+    }
+
+    private static void deleteAll(Path dir) throws IOException {
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for(Path p : stream) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+}
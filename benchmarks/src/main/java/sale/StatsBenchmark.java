@@ -0,0 +1,103 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计报表的汇总:增量维护的销售汇总 对比 统计对话框原来逐套遍历的循环;
+ * 销售分析:预聚合报表 对比 逐套遍历按日分组。成交日期分布在约三年内
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsBenchmark {
+    @Param({"20", "1000", "100000", "1000000"})
+    int size;  // 房屋数
+
+    private InventoryEngine engine;
+
+    @Setup
+    public void setup() {
+        engine = Inventories.engine(size, 0);
+        SalesJournal.Handler handler = engine.replayHandler();
+        long start = System.currentTimeMillis() - 3 * 365 * 86_400_000L;
+        for(int i = 0; i < size; i += 10) {
+            long offset = (long)i * 3 * 365 * 86_400_000L / size;
+            handler.sellHouse(Inventories.id(i), "buyer" + (i % 1000), new Date(start + offset));
+        }
+    }
+
+    @Benchmark
+    public SalesAggregates.Summary summary() {
+        return engine.getSummary();
+    }
+
+    @Benchmark
+    public SalesRollups.Report rollupReport() {
+        return engine.getReport();
+    }
+
+    /**
+     * 不做预聚合时的销售分析:遍历全部房屋按成交日期分组累计
+     */
+    @Benchmark
+    public Map<Long, double[]> scanByDay() {
+        ZoneId zone = ZoneId.systemDefault();
+        Map<Long, double[]> days = new HashMap<>();
+        for(House house : engine.getHouses()) {
+            Date saleDate = house.getSaleDate();
+            if(saleDate != null) {
+                double[] sums = days.computeIfAbsent(
+                    LocalDate.ofInstant(saleDate.toInstant(), zone).toEpochDay(), k -> new double[3]);
+                sums[0]++;
+                sums[1] += house.getAmount();
+                sums[2] += house.getArea();
+            }
+        }
+        return days;
+    }
+
+    /**
+     * 统计对话框原来的做法:遍历全部房屋分别累计已售、销售额和可售
+     */
+    @Benchmark
+    public void scanHouses(Blackhole bh) {
+        int soldCount = 0;
+        double totalSales = 0;
+        for(House house : engine.getHouses()) {
+            if(House.STATUS_SOLD.equals(house.getStatus())) {
+                soldCount++;
+                totalSales += house.getAmount();
+            }
+        }
+        int availableCount = 0;
+        for(House house : engine.getHouses()) {
+            if(House.STATUS_AVAILABLE.equals(house.getStatus())) {
+                availableCount++;
+            }
+        }
+        bh.consume(soldCount);
+        bh.consume(totalSales);
+        bh.consume(availableCount);
+    }
+}
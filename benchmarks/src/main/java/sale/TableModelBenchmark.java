@@ -0,0 +1,63 @@
+package sale;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 房屋表格的填充:房屋管理(全部房屋)和预售(只含可售房屋)两个对话框打开时的数据准备
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableModelBenchmark {
+    @Param({"20", "1000", "100000", "1000000"})
+    int size;  // 房屋数
+
+    private InventoryEngine engine;
+
+    /**
+     * 每个线程一个表格模型,模型本身只在单线程(EDT)上使用
+     */
+    @State(Scope.Thread)
+    public static class Model {
+        HouseTableModel model;
+
+        @Setup
+        public void setup() {
+            model = new HouseTableModel(HouseTableModel.Column.ID, HouseTableModel.Column.BUILDING,
+                HouseTableModel.Column.UNIT, HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+                HouseTableModel.Column.PRICE, HouseTableModel.Column.STATUS);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        engine = Inventories.engine(size, 10);
+    }
+
+    @Benchmark
+    public int populateAll(Model m) {
+        m.model.setSortedHouses(HouseTableModel.sortedRows(engine.getHouses(), h -> true));
+        return m.model.getRowCount();
+    }
+
+    @Benchmark
+    public int populateAvailable(Model m) {
+        m.model.setSortedHouses(HouseTableModel.sortedRows(engine.getHouses(), House::isAvailable));
+        return m.model.getRowCount();
+    }
+}
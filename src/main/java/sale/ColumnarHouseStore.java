@@ -0,0 +1,346 @@
+package sale;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按列存储的房屋数据,适合超大库存
+ *
+ * 面积、单价存于double[],状态存于byte[],销售时间存于long[](毫秒,0表示未售),
+ * 楼栋、单元、房间号和购买者做字典编码后存于int[];编号到行号用开放寻址的int[]哈希表。
+ * 每套房屋不再是一个对象,读取通过可复用的HouseView游标完成。
+ *
+ * 添加、修改、删除需要调用方串行化,且不能与售出同时进行;
+ * 售出之间通过状态字节的CAS互斥,可以并发执行。
+ */
+public class ColumnarHouseStore {
+    static final byte AVAILABLE = 0;  // 可售
+    static final byte SOLD = 1;       // 已售
+    static final byte DELETED = 2;    // 已删除,行号不再复用
+
+    private static final VarHandle STATUS = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final int EMPTY = -1;  // 哈希表空槽
+
+    private int size;            // 已使用的行数(含已删除)
+    private int liveCount;       // 未删除的房屋数
+    private String[] ids;        // 房屋编号
+    private int[] buildings;     // 楼栋号编码
+    private int[] units;         // 单元号编码
+    private int[] rooms;         // 房间号编码
+    private double[] areas;      // 面积
+    private double[] prices;     // 单价
+    private volatile byte[] statuses;  // 状态
+    private int[] buyers;        // 购买者编码,-1表示无
+    private long[] saleTimes;    // 销售时间
+    private int[] slots;         // 编号哈希表,存行号
+
+    private final Dictionary dict = new Dictionary();  // 楼栋/单元/房间号/购买者共用的字典
+
+    /**
+     * 字符串字典,把重复出现的字符串编码为int;解码不加锁
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private volatile String[] values = new String[16];
+
+        synchronized int encode(String s) {
+            if(s == null) {
+                return -1;
+            }
+            Integer code = codes.get(s);
+            if(code == null) {
+                code = codes.size();
+                String[] v = values;
+                if(code == v.length) {
+                    v = Arrays.copyOf(v, v.length * 2);
+                }
+                v[code] = s;
+                values = v;
+                codes.put(s, code);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return code < 0 ? null : values[code];
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 预计房屋数
+     */
+    public ColumnarHouseStore(int capacity) {
+        capacity = Math.max(16, capacity);
+        ids = new String[capacity];
+        buildings = new int[capacity];
+        units = new int[capacity];
+        rooms = new int[capacity];
+        areas = new double[capacity];
+        prices = new double[capacity];
+        statuses = new byte[capacity];
+        buyers = new int[capacity];
+        saleTimes = new long[capacity];
+        slots = new int[tableSizeFor(capacity * 2)];
+        Arrays.fill(slots, EMPTY);
+    }
+
+    private static int tableSizeFor(int n) {
+        int size = Integer.highestOneBit(Math.max(2, n - 1)) << 1;
+        return size < 0 ? 1 << 30 : size;
+    }
+
+    // ---------------- 写入 ----------------
+
+    /**
+     * 添加房屋,编号已存在时返回-1,否则返回行号
+     */
+    public int add(String id, String building, String unit, String room, double area, double price) {
+        if(find(id) >= 0) {
+            return -1;
+        }
+        if(size == ids.length) {
+            grow();
+        }
+        int row = size;
+        ids[row] = id;
+        buildings[row] = dict.encode(building);
+        units[row] = dict.encode(unit);
+        rooms[row] = dict.encode(room);
+        areas[row] = area;
+        prices[row] = price;
+        buyers[row] = -1;
+        statuses[row] = AVAILABLE;
+        size++;
+        liveCount++;
+        insertSlot(id, row);
+        return row;
+    }
+
+    /**
+     * 修改房屋信息
+     */
+    public void update(int row, String building, String unit, String room, double area, double price) {
+        buildings[row] = dict.encode(building);
+        units[row] = dict.encode(unit);
+        rooms[row] = dict.encode(room);
+        areas[row] = area;
+        prices[row] = price;
+    }
+
+    /**
+     * 删除房屋,行号作废但不复用
+     */
+    public void remove(int row) {
+        if(statuses[row] == DELETED) {
+            return;
+        }
+        removeSlot(ids[row]);
+        STATUS.setVolatile(statuses, row, DELETED);
+        liveCount--;
+    }
+
+    /**
+     * 以CAS把状态从可售切换为已售,成功后写入购买者和销售时间
+     */
+    public boolean trySell(int row, String buyer, long saleTime) {
+        if(!STATUS.compareAndSet(statuses, row, AVAILABLE, SOLD)) {
+            return false;
+        }
+        buyers[row] = dict.encode(buyer);
+        saleTimes[row] = saleTime;
+        return true;
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        buildings = Arrays.copyOf(buildings, capacity);
+        units = Arrays.copyOf(units, capacity);
+        rooms = Arrays.copyOf(rooms, capacity);
+        areas = Arrays.copyOf(areas, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+        buyers = Arrays.copyOf(buyers, capacity);
+        saleTimes = Arrays.copyOf(saleTimes, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        if(capacity * 2 > slots.length) {
+            rebuildSlots(tableSizeFor(capacity * 2));
+        }
+    }
+
+    // ---------------- 编号哈希表 ----------------
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private void insertSlot(String id, int row) {
+        int mask = slots.length - 1;
+        int i = hash(id) & mask;
+        while(slots[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = row;
+    }
+
+    /**
+     * 从线性探测表中删除编号,把后面同一探测链上的行号前移,不留墓碑
+     */
+    private void removeSlot(String id) {
+        int mask = slots.length - 1;
+        int i = hash(id) & mask;
+        while(slots[i] != EMPTY && !ids[slots[i]].equals(id)) {
+            i = (i + 1) & mask;
+        }
+        if(slots[i] == EMPTY) {
+            return;
+        }
+        int j = i;
+        while(true) {
+            j = (j + 1) & mask;
+            if(slots[j] == EMPTY) {
+                break;
+            }
+            int home = hash(ids[slots[j]]) & mask;
+            // home落在(i, j]之间时该项不能前移到i
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if(!between) {
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        slots[i] = EMPTY;
+    }
+
+    private void rebuildSlots(int tableSize) {
+        slots = new int[tableSize];
+        Arrays.fill(slots, EMPTY);
+        for(int row = 0; row < size; row++) {
+            if(statuses[row] != DELETED) {
+                insertSlot(ids[row], row);
+            }
+        }
+    }
+
+    /**
+     * 按编号查找行号,不存在时返回-1
+     */
+    public int find(String id) {
+        int mask = slots.length - 1;
+        int i = hash(id) & mask;
+        while(true) {
+            int row = slots[i];
+            if(row == EMPTY) {
+                return -1;
+            }
+            if(ids[row].equals(id)) {
+                return row;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    // ---------------- 读取 ----------------
+
+    /**
+     * 已使用的行数(含已删除行),遍历时行号取[0, getRowCount())
+     */
+    public int getRowCount() {
+        return size;
+    }
+
+    /**
+     * 未删除的房屋数
+     */
+    public int getHouseCount() {
+        return liveCount;
+    }
+
+    public boolean isDeleted(int row) {
+        return statuses[row] == DELETED;
+    }
+
+    /**
+     * 直接扫描列计算已售房屋的销售总额
+     */
+    public double totalSales() {
+        double total = 0;
+        byte[] st = statuses;
+        for(int row = 0; row < size; row++) {
+            if(st[row] == SOLD) {
+                total += areas[row] * prices[row];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 直接扫描列计算可售房屋数
+     */
+    public int availableCount() {
+        int count = 0;
+        byte[] st = statuses;
+        for(int row = 0; row < size; row++) {
+            if(st[row] == AVAILABLE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 把一行复制为独立的House对象
+     */
+    public House toHouse(int row) {
+        House h = new House(ids[row], dict.decode(buildings[row]), dict.decode(units[row]),
+                            dict.decode(rooms[row]), areas[row], prices[row]);
+        if(statuses[row] == SOLD) {
+            h.trySell(dict.decode(buyers[row]), new Date(saleTimes[row]));
+        }
+        return h;
+    }
+
+    /**
+     * 创建一个游标,可通过moveTo反复定位到不同的行
+     */
+    public HouseView view() {
+        return new HouseView();
+    }
+
+    /**
+     * 房屋游标(享元),不复制数据,getter直接读取当前行的各列
+     */
+    public final class HouseView {
+        private int row = -1;  // 当前行号
+
+        /**
+         * 定位到指定行,返回自身以便链式调用
+         */
+        public HouseView moveTo(int row) {
+            this.row = row;
+            return this;
+        }
+
+        public int getRow() { return row; }
+        public String getId() { return ids[row]; }
+        public String getBuilding() { return dict.decode(buildings[row]); }
+        public String getUnit() { return dict.decode(units[row]); }
+        public String getRoom() { return dict.decode(rooms[row]); }
+        public double getArea() { return areas[row]; }
+        public double getPrice() { return prices[row]; }
+        public boolean isAvailable() { return statuses[row] == AVAILABLE; }
+        public String getStatus() {
+            return statuses[row] == SOLD ? House.STATUS_SOLD : House.STATUS_AVAILABLE;
+        }
+        public String getBuyer() { return dict.decode(buyers[row]); }
+        public Date getSaleDate() {
+            return statuses[row] == SOLD ? new Date(saleTimes[row]) : null;
+        }
+    }
+}
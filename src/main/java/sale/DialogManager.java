@@ -0,0 +1,114 @@
+package sale;
+
+import javax.swing.JDialog;
+import javax.swing.WindowConstants;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 可重复打开的对话框
+ *
+ * 每种对话框第一次打开时构建,关闭时只隐藏,控件、表格模型和库存订阅都保留;再次打开时只执行
+ * 登记的显示回调,把自上次关闭以来变化的数据补到已有的控件中。表格的订阅在关闭后暂停,
+ * 期间的变更在订阅的待处理表中按房屋合并,再次显示时作为一批投递。
+ * 退出登录时销毁全部对话框。只在EDT上使用。
+ */
+public class DialogManager {
+    private final Map<String, View> views = new HashMap<>();  // 名称 -> 已构建的对话框
+    private final LatencyRecorder buildTimer;   // 首次打开的构建耗时
+    private final LatencyRecorder reopenTimer;  // 再次打开时显示前的刷新耗时
+    private final LongAdder reopened;           // 再次打开的次数
+
+    /**
+     * 一个对话框及其生命周期回调
+     */
+    public static final class View {
+        private final JDialog dialog;
+        private Runnable onShow = () -> { };     // 每次显示前,包括第一次
+        private Runnable onHide = () -> { };     // 每次关闭后
+        private Runnable onDispose = () -> { };  // 销毁时
+
+        public View(JDialog dialog) {
+            this.dialog = dialog;
+        }
+
+        public View onShow(Runnable onShow) {
+            this.onShow = onShow;
+            return this;
+        }
+
+        public View onHide(Runnable onHide) {
+            this.onHide = onHide;
+            return this;
+        }
+
+        public View onDispose(Runnable onDispose) {
+            this.onDispose = onDispose;
+            return this;
+        }
+
+        public JDialog getDialog() { return dialog; }
+    }
+
+    /**
+     * 构造函数,构建和再次打开的耗时记到metrics中
+     */
+    public DialogManager(Metrics metrics) {
+        this.buildTimer = metrics.timer("界面.对话框构建");
+        this.reopenTimer = metrics.timer("界面.对话框再次打开");
+        this.reopened = metrics.counter("界面.对话框复用");
+    }
+
+    /**
+     * 显示名为key的模态对话框,尚未构建时先调用factory构建,已构建时factory可以为null
+     * 对话框关闭后才返回;对话框已经显示时只把它提到前面
+     */
+    public void show(String key, Supplier<View> factory) {
+        long start = System.nanoTime();
+        View view = views.get(key);
+        if(view != null && view.dialog.isVisible()) {
+            view.dialog.toFront();
+            return;
+        }
+        if(view == null) {
+            view = factory.get();
+            view.dialog.setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
+            views.put(key, view);
+            view.onShow.run();
+            buildTimer.recordSince(start);
+        } else {
+            view.onShow.run();
+            reopenTimer.recordSince(start);
+            reopened.increment();
+        }
+        view.dialog.setVisible(true);
+        view.onHide.run();
+    }
+
+    /**
+     * 名为key的对话框是否已经构建
+     */
+    public boolean contains(String key) {
+        return views.containsKey(key);
+    }
+
+    /**
+     * 已构建的对话框数
+     */
+    public int size() {
+        return views.size();
+    }
+
+    /**
+     * 销毁全部对话框,下次打开时重新构建
+     */
+    public void disposeAll() {
+        for(View view : views.values()) {
+            view.onDispose.run();
+            view.dialog.dispose();
+        }
+        views.clear();
+    }
+}
@@ -0,0 +1,138 @@
+package sale;
+
+import javax.swing.SwingUtilities;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.util.function.Consumer;
+
+/**
+ * EDT卡顿监测
+ *
+ * 后台守护线程定期向EDT投递一个心跳任务,心跳超过阈值仍未执行即认为EDT卡顿,
+ * 报告卡顿时长和EDT当时的调用栈;同一次卡顿只报告一次,恢复后报告总时长。
+ * 另外可以在系统事件队列上套一层计时,记录每个事件的分发耗时。
+ */
+public class EdtStallMonitor {
+    private final long thresholdMillis;        // 卡顿阈值
+    private volatile Consumer<String> reporter = System.err::println;  // 报告输出
+    private volatile Thread edt;               // 事件分发线程
+    private volatile long pendingSince;        // 尚未执行的心跳的投递时间,0表示没有
+    private Thread watcher;                    // 监测线程
+
+    /**
+     * 构造函数
+     *
+     * @param thresholdMillis EDT超过多少毫秒未响应视为卡顿
+     */
+    public EdtStallMonitor(long thresholdMillis) {
+        this.thresholdMillis = Math.max(10, thresholdMillis);
+    }
+
+    /**
+     * 设置报告输出,默认输出到标准错误
+     */
+    public void setReporter(Consumer<String> reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * 启动监测
+     */
+    public synchronized void start() {
+        if(watcher != null) {
+            return;
+        }
+        watcher = new Thread(this::watch, "edt-stall-monitor");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * 停止监测
+     */
+    public synchronized void stop() {
+        if(watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    private void watch() {
+        long interval = Math.max(5, thresholdMillis / 2);
+        boolean reported = false;
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                long since = pendingSince;
+                long now = System.currentTimeMillis();
+                if(since == 0) {
+                    reported = false;
+                    pendingSince = now;
+                    SwingUtilities.invokeLater(() -> {
+                        edt = Thread.currentThread();
+                        long stalled = System.currentTimeMillis() - pendingSince;
+                        pendingSince = 0;
+                        if(stalled >= thresholdMillis) {
+                            reporter.accept("EDT卡顿结束,共" + stalled + "ms");
+                        }
+                    });
+                } else if(!reported && now - since >= thresholdMillis) {
+                    reported = true;
+                    reporter.accept(describeStall(now - since));
+                }
+                Thread.sleep(interval);
+            }
+        } catch(InterruptedException e) {
+            // 停止监测
+        }
+    }
+
+    /**
+     * 在系统事件队列上套一层计时,把EDT分发每个事件的耗时记录到recorder
+     *
+     * 模态对话框会在事件处理中嵌套事件循环,嵌套循环等待和分发其他事件的时间
+     * 从外层事件中扣除,只记录每个事件自身占用EDT的时间。
+     */
+    public static void timeDispatch(LatencyRecorder recorder) {
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(new EventQueue() {
+            private int depth;      // 嵌套分发层数,只在EDT上访问
+            private long excluded;  // 当前事件中嵌套循环占用的时间
+
+            @Override
+            public AWTEvent getNextEvent() throws InterruptedException {
+                long start = System.nanoTime();
+                try {
+                    return super.getNextEvent();
+                } finally {
+                    excluded += System.nanoTime() - start;
+                }
+            }
+
+            @Override
+            protected void dispatchEvent(AWTEvent event) {
+                long start = System.nanoTime();
+                long outer = excluded;
+                excluded = 0;
+                depth++;
+                try {
+                    super.dispatchEvent(event);
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    recorder.record(elapsed - excluded);
+                    excluded = --depth == 0 ? 0 : outer + elapsed;
+                }
+            }
+        });
+    }
+
+    private String describeStall(long millis) {
+        StringBuilder sb = new StringBuilder("EDT已卡顿" + millis + "ms(阈值" + thresholdMillis + "ms)");
+        Thread t = edt;
+        if(t != null) {
+            for(StackTraceElement e : t.getStackTrace()) {
+                sb.append("\n\tat ").append(e);
+            }
+        }
+        return sb.toString();
+    }
+}
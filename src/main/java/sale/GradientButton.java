@@ -0,0 +1,65 @@
+package sale;
+
+import javax.swing.JButton;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * 主题色渐变背景的圆角按钮
+ *
+ * 背景图像取自ThemeResources的缓存,按钮自己记住当前用的那一张,尺寸、缩放和悬停状态不变时
+ * 重绘只是一次贴图加一行文字;鼠标悬停时换成较深的渐变。
+ */
+public class GradientButton extends JButton {
+    private static final long serialVersionUID = 1L;
+
+    private final ThemeResources theme;
+    private BufferedImage background;  // 当前背景
+    private int backgroundWidth;       // 当前背景对应的宽度
+    private int backgroundHeight;      // 当前背景对应的高度
+    private double backgroundScale;    // 当前背景对应的缩放比例
+    private boolean backgroundHover;   // 当前背景是否为悬停状态
+
+    public GradientButton(String text, ThemeResources theme) {
+        super(text);
+        this.theme = theme;
+        setForeground(Color.WHITE);
+        setFocusPainted(false);
+        setBorderPainted(false);
+        setContentAreaFilled(false);
+        setRolloverEnabled(true);  // 悬停状态变化时由按钮模型触发重绘
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D)g;
+        int width = getWidth();
+        int height = getHeight();
+        boolean hover = getModel().isRollover();
+        double scale = g2.getTransform().getScaleX();
+        if(background == null || width != backgroundWidth || height != backgroundHeight
+           || scale != backgroundScale || hover != backgroundHover) {
+            background = theme.buttonBackground(width, height, scale, hover);
+            backgroundWidth = width;
+            backgroundHeight = height;
+            backgroundScale = scale;
+            backgroundHover = hover;
+        }
+        g2.drawImage(background, 0, 0, width, height, null);
+
+        // 传入的Graphics由Swing复用,改过的提示和颜色画完后恢复
+        Object antialiasing = g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        Color color = g2.getColor();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setColor(Color.WHITE);
+        String text = getText();
+        FontMetrics metrics = g2.getFontMetrics();
+        g2.drawString(text, (width - metrics.stringWidth(text)) / 2, (height + metrics.getAscent()) / 2);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+        g2.setColor(color);
+    }
+}
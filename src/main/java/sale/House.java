@@ -0,0 +1,212 @@
+package sale;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Date;
+
+/**
+ * 房屋类,存储房屋信息
+ *
+ * 房屋编号在全部项目中唯一:项目内的编号前加"项目名/",如"云溪/A101";
+ * 不带项目名的编号属于默认项目(项目名为空串),与引入多项目之前的数据保持一致。
+ */
+public class House {
+    public static final String STATUS_AVAILABLE = "可售";  // 可售状态
+    public static final String STATUS_SOLD = "已售";       // 已售状态
+    public static final String STATUS_HELD = "已锁定";     // 锁定待付款状态
+    public static final char PROJECT_SEPARATOR = '/';      // 项目名与项目内编号的分隔符
+
+    private final String id;          // 房屋编号
+    private final String project;     // 所属项目,由编号决定
+    private volatile String building; // 楼栋号
+    private volatile String unit;     // 单元号
+    private volatile String room;     // 房间号
+    private volatile double area;     // 面积
+    private volatile double price;    // 单价
+    private volatile SaleState state = SaleState.AVAILABLE; // 销售状态(状态/购买者/销售日期)
+
+    // 以下两个字段由InventoryEngine在持有该房屋的分段锁时写入,索引、查询和搜索不加锁读取
+    private volatile String listedStatus = STATUS_AVAILABLE; // 已入账的状态,索引和组合查询都以它为准
+    private volatile double settledAmount;                    // 已计入销售汇总的成交金额
+
+    private static final VarHandle STATE;
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(House.class, "state", SaleState.class);
+        } catch(ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 销售状态,不可变对象,整体替换以保证状态、购买者和销售日期同时可见
+     */
+    static final class SaleState {
+        static final SaleState AVAILABLE = new SaleState(STATUS_AVAILABLE, null, null);
+
+        final String status;    // 状态(可售/已锁定/已售)
+        final String buyer;     // 购买者,锁定时为锁定人
+        final Date saleDate;    // 销售日期,锁定时为null
+
+        SaleState(String status, String buyer, Date saleDate) {
+            this.status = status;
+            this.buyer = buyer;
+            this.saleDate = saleDate;
+        }
+    }
+
+    /**
+     * 构造函数
+     */
+    public House(String id, String building, String unit, String room,
+                double area, double price) {
+        this.id = id;
+        this.project = projectOf(id);
+        this.building = building;
+        this.unit = unit;
+        this.room = room;
+        this.area = area;
+        this.price = price;
+    }
+
+    /**
+     * 编号所属的项目,不带项目名的编号属于默认项目
+     */
+    public static String projectOf(String id) {
+        int slash = id.indexOf(PROJECT_SEPARATOR);
+        return slash < 0 ? "" : id.substring(0, slash);
+    }
+
+    /**
+     * 由项目名和项目内编号组成房屋编号
+     */
+    public static String qualify(String project, String localId) {
+        return project == null || project.isEmpty() ? localId : project + PROJECT_SEPARATOR + localId;
+    }
+
+    // getter方法
+    public String getId() { return id; }
+    public String getProject() { return project; }
+    public String getBuilding() { return building; }
+    public String getUnit() { return unit; }
+    public String getRoom() { return room; }
+    public double getArea() { return area; }
+    public double getPrice() { return price; }
+    public String getStatus() { return state.status; }
+    public String getBuyer() { return state.buyer; }
+    public Date getSaleDate() { return state.saleDate; }
+
+    /**
+     * 是否可售
+     */
+    public boolean isAvailable() {
+        return state == SaleState.AVAILABLE;
+    }
+
+    /**
+     * 是否已售
+     */
+    public boolean isSold() {
+        return STATUS_SOLD.equals(state.status);
+    }
+
+    /**
+     * 是否已被锁定待付款
+     */
+    public boolean isHeld() {
+        return STATUS_HELD.equals(state.status);
+    }
+
+    /**
+     * 锁定房屋,以CAS方式把状态从可售切换为已锁定
+     *
+     * @return 锁定后的状态,确认或释放时用它做CAS;房屋已不是可售状态时返回null
+     */
+    SaleState tryHold(String buyer) {
+        SaleState held = new SaleState(STATUS_HELD, buyer, null);
+        return STATE.compareAndSet(this, SaleState.AVAILABLE, held) ? held : null;
+    }
+
+    /**
+     * 确认购买,把tryHold得到的锁定状态切换为已售
+     *
+     * @return 已售状态,撤销时用它做CAS;房屋已不是该锁定状态时返回null
+     */
+    SaleState tryConfirm(SaleState held, Date saleDate) {
+        SaleState sold = new SaleState(STATUS_SOLD, held.buyer, saleDate);
+        return STATE.compareAndSet(this, held, sold) ? sold : null;
+    }
+
+    /**
+     * 释放锁定,把tryHold得到的锁定状态切换回可售
+     */
+    boolean tryRelease(SaleState held) {
+        return STATE.compareAndSet(this, held, SaleState.AVAILABLE);
+    }
+
+    /**
+     * 撤销一次状态切换,把current换回previous;成交记录未能写入日志时使用
+     */
+    boolean tryRestore(SaleState current, SaleState previous) {
+        return STATE.compareAndSet(this, current, previous);
+    }
+
+    /**
+     * 当前的销售状态,撤销切换时作为CAS的比较值
+     */
+    SaleState getSaleState() {
+        return state;
+    }
+
+    /**
+     * 售出房屋,以CAS方式把状态从可售切换为已售
+     *
+     * @return 切换成功返回true;房屋已不是可售状态时返回false,原购买者不会被覆盖
+     */
+    boolean trySell(String buyer, Date saleDate) {
+        return STATE.compareAndSet(this, SaleState.AVAILABLE,
+                                   new SaleState(STATUS_SOLD, buyer, saleDate));
+    }
+
+    /**
+     * 成交金额(面积×单价)
+     */
+    public double getAmount() {
+        return area * price;
+    }
+
+    /**
+     * 已入账的状态:成交计入汇总后为已售,锁定登记后为已锁定,否则为可售
+     * 状态的CAS先于入账发生,两者之间getStatus已经变化而本状态还没有;索引和组合查询都用本状态,
+     * 房屋不会同时从可售和已售的结果中消失
+     */
+    public String getListedStatus() { return listedStatus; }
+
+    /**
+     * 成交是否已计入销售汇总
+     */
+    boolean isSettled() { return STATUS_SOLD.equals(listedStatus); }
+    double getSettledAmount() { return settledAmount; }
+
+    /**
+     * 成交入账或撤销入账,金额先于状态写入,读到已售时一定能读到对应的金额
+     */
+    void settle(boolean settled, double amount) {
+        this.settledAmount = amount;
+        this.listedStatus = settled ? STATUS_SOLD : STATUS_AVAILABLE;
+    }
+
+    /**
+     * 登记或撤销锁定:已锁定或可售
+     */
+    void setListedStatus(String status) {
+        this.listedStatus = status;
+    }
+
+    // setter方法,由InventoryEngine在持有该房屋的锁时调用
+    void setBuilding(String building) { this.building = building; }
+    void setUnit(String unit) { this.unit = unit; }
+    void setRoom(String room) { this.room = room; }
+    void setArea(double area) { this.area = area; }
+    void setPrice(double price) { this.price = price; }
+}
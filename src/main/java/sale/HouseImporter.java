@@ -0,0 +1,467 @@
+package sale;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 批量导入房屋
+ *
+ * CSV每行一套房屋: 编号,楼栋号,单元号,房间号,面积,单价。第一行的面积不是数字时视为表头跳过;
+ * 字段可以用双引号括起来以包含逗号,但不能跨行。
+ * 文件按行边界切成若干块,各块分别内存映射,在fork/join线程池中并行解析;
+ * 解析好的块按文件顺序分批加入库存,编号已存在的房屋(包括文件中重复出现的编号)跳过,
+ * 与逐套添加时的判断一致。
+ */
+public class HouseImporter {
+    private static final int FIELDS = 6;             // 每行字段数
+    private static final int MIN_CHUNK = 1 << 20;    // 每块至少1MB
+    private static final int MAX_CHUNK = 1 << 30;    // 单次映射的上限
+    private static final int BATCH_SIZE = 8192;      // 每批加入库存的房屋数
+    private static final int MAX_ERRORS = 100;       // 最多保留的错误信息条数
+
+    private static final UiExecutor.Progress NO_PROGRESS = new UiExecutor.Progress() {
+        @Override
+        public void update(int percent, String note) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    private final InventoryEngine engine;  // 库存引擎
+    private final ForkJoinPool pool;       // 解析线程池
+
+    /**
+     * 构造函数,使用公共fork/join线程池解析
+     */
+    public HouseImporter(InventoryEngine engine) {
+        this(engine, ForkJoinPool.commonPool());
+    }
+
+    public HouseImporter(InventoryEngine engine, ForkJoinPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    /**
+     * 导入结果
+     */
+    public static final class Result {
+        public final long rows;            // 数据行数,不含表头和空行
+        public final long imported;        // 成功导入的房屋数
+        public final long duplicates;      // 编号已存在而跳过的行数
+        public final long invalid;         // 格式错误而跳过的行数
+        public final List<String> errors;  // 前若干条错误信息
+        public final boolean cancelled;    // 是否中途取消,取消前已导入的房屋保留
+        public final long elapsedMillis;   // 耗时
+
+        Result(long rows, long imported, long duplicates, long invalid, List<String> errors,
+               boolean cancelled, long elapsedMillis) {
+            this.rows = rows;
+            this.imported = imported;
+            this.duplicates = duplicates;
+            this.invalid = invalid;
+            this.errors = Collections.unmodifiableList(errors);
+            this.cancelled = cancelled;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    public Result importCsv(Path file) throws IOException {
+        return importCsv(file, NO_PROGRESS);
+    }
+
+    /**
+     * 导入CSV文件,通过progress报告进度;取消后不再加入新的批次
+     */
+    public Result importCsv(Path file, UiExecutor.Progress progress) throws IOException {
+        long start = System.nanoTime();
+        long rows = 0;
+        long imported = 0;
+        long invalid = 0;
+        long lineBase = 0;
+        boolean cancelled = false;
+        List<String> errors = new ArrayList<>();
+
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Long> bounds = split(channel, size);
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            for(int i = 0; i + 1 < bounds.size(); i++) {
+                tasks.add(pool.submit(new ParseTask(channel, bounds.get(i), bounds.get(i + 1), i == 0)));
+            }
+
+            for(int i = 0; i < tasks.size() && !cancelled; i++) {
+                Chunk chunk;
+                try {
+                    chunk = tasks.get(i).join();
+                } catch(UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                for(int from = 0; from < chunk.houses.size(); from += BATCH_SIZE) {
+                    if(progress.isCancelled()) {
+                        cancelled = true;
+                        break;
+                    }
+                    int to = Math.min(from + BATCH_SIZE, chunk.houses.size());
+                    imported += engine.addHouses(chunk.houses.subList(from, to));
+                }
+                rows += chunk.rows;
+                invalid += chunk.errorLines.size();
+                for(int e = 0; e < chunk.errorLines.size() && errors.size() < MAX_ERRORS; e++) {
+                    errors.add("第" + (lineBase + chunk.errorLines.get(e)) + "行: " + chunk.errorMessages.get(e));
+                }
+                lineBase += chunk.lines;
+                int percent = size == 0 ? 100 : (int)(bounds.get(i + 1) * 100 / size);
+                progress.update(percent, "已导入" + imported + "套");
+            }
+            if(cancelled) {
+                for(ForkJoinTask<Chunk> task : tasks) {
+                    task.cancel(false);
+                }
+            }
+        }
+
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        long duplicates = rows - invalid - imported;
+        if(cancelled) {
+            duplicates = 0;  // 取消时未加入的行无法区分是否重复
+        }
+        return new Result(rows, imported, duplicates, invalid, errors, cancelled, elapsed);
+    }
+
+    /**
+     * 按行边界把文件切成大致等长的块,返回各块的起止位置
+     */
+    private List<Long> split(FileChannel channel, long size) throws IOException {
+        long chunkSize = Math.max(MIN_CHUNK, size / (pool.getParallelism() * 4L));
+        chunkSize = Math.min(chunkSize, MAX_CHUNK);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = chunkSize;
+        while(pos < size) {
+            long next = nextLine(channel, pos, size, buf);
+            bounds.add(next);
+            pos = next + chunkSize;
+        }
+        if(bounds.get(bounds.size() - 1) < size || bounds.size() == 1) {
+            bounds.add(size);
+        }
+        return bounds;
+    }
+
+    /**
+     * 从pos开始找到下一行的起始位置,没有换行时返回文件长度
+     */
+    private static long nextLine(FileChannel channel, long pos, long size, ByteBuffer buf) throws IOException {
+        while(pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if(n <= 0) {
+                break;
+            }
+            for(int i = 0; i < n; i++) {
+                if(buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * 一块的解析结果,行号从1开始,相对于块的起始位置
+     */
+    private static final class Chunk {
+        final List<House> houses = new ArrayList<>();         // 解析出的房屋
+        final List<Integer> errorLines = new ArrayList<>();   // 格式错误的行号
+        final List<String> errorMessages = new ArrayList<>(); // 对应的错误信息
+        int lines;   // 总行数
+        long rows;   // 数据行数
+    }
+
+    /**
+     * 映射并解析一块
+     */
+    private static final class ParseTask extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final boolean first;  // 是否文件的第一块,需要处理BOM和表头
+
+        ParseTask(FileChannel channel, long from, long to, boolean first) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.first = first;
+        }
+
+        @Override
+        protected Chunk compute() {
+            MappedByteBuffer buf;
+            try {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Parser(buf, first).parse();
+        }
+    }
+
+    /**
+     * 逐行解析映射的字节,不先把整行解码成字符串
+     */
+    private static final class Parser {
+        private static final double[] POW10 = new double[23];
+        static {
+            POW10[0] = 1;
+            for(int i = 1; i < POW10.length; i++) {
+                POW10[i] = POW10[i - 1] * 10;
+            }
+        }
+
+        private final ByteBuffer buf;
+        private final boolean first;
+        private final Chunk chunk = new Chunk();
+        private final int[] starts = new int[FIELDS];
+        private final int[] ends = new int[FIELDS];
+        private final boolean[] quoted = new boolean[FIELDS];
+        private final Map<String, String> strings = new HashMap<>();  // 楼栋、单元等重复值共用一个String
+        private byte[] scratch = new byte[64];
+        private boolean headerChecked;
+        private String error;  // 当前行的错误
+
+        Parser(ByteBuffer buf, boolean first) {
+            this.buf = buf;
+            this.first = first;
+            this.headerChecked = !first;
+        }
+
+        Chunk parse() {
+            int limit = buf.limit();
+            int pos = 0;
+            if(first && limit >= 3 && (buf.get(0) & 0xFF) == 0xEF
+               && (buf.get(1) & 0xFF) == 0xBB && (buf.get(2) & 0xFF) == 0xBF) {
+                pos = 3;  // UTF-8 BOM
+            }
+            while(pos < limit) {
+                int end = pos;
+                while(end < limit && buf.get(end) != '\n') {
+                    end++;
+                }
+                int next = end + 1;
+                if(end > pos && buf.get(end - 1) == '\r') {
+                    end--;
+                }
+                chunk.lines++;
+                line(pos, end);
+                pos = next;
+            }
+            return chunk;
+        }
+
+        private void line(int start, int end) {
+            if(isBlank(start, end)) {
+                return;
+            }
+            error = null;
+            int n = split(start, end);
+            if(error == null && n != FIELDS) {
+                error = "应有" + FIELDS + "个字段,实际" + n + "个";
+            }
+            if(!headerChecked) {
+                headerChecked = true;
+                if(error == null && Double.isNaN(number(4))) {
+                    return;  // 表头
+                }
+            }
+            chunk.rows++;
+            House house = error == null ? house() : null;
+            if(house == null) {
+                chunk.errorLines.add(chunk.lines);
+                chunk.errorMessages.add(error);
+            } else {
+                chunk.houses.add(house);
+            }
+        }
+
+        private House house() {
+            String id = string(0);
+            if(id.isEmpty()) {
+                error = "房屋编号为空";
+                return null;
+            }
+            double area = number(4);
+            double price = number(5);
+            if(Double.isNaN(area) || Double.isNaN(price)) {
+                error = "面积或单价不是有效的数字";
+                return null;
+            }
+            return new House(id, shared(string(1)), shared(string(2)), shared(string(3)), area, price);
+        }
+
+        /**
+         * 按逗号切分字段,返回字段数;格式错误时设置error
+         */
+        private int split(int start, int end) {
+            int n = 0;
+            int p = start;
+            while(true) {
+                if(n == FIELDS) {
+                    return n + 1;  // 字段过多
+                }
+                if(p < end && buf.get(p) == '"') {
+                    int q = p + 1;
+                    while(true) {
+                        if(q >= end) {
+                            error = "引号未闭合";
+                            return n;
+                        }
+                        if(buf.get(q) == '"') {
+                            if(q + 1 < end && buf.get(q + 1) == '"') {
+                                q += 2;
+                                continue;
+                            }
+                            break;
+                        }
+                        q++;
+                    }
+                    starts[n] = p + 1;
+                    ends[n] = q;
+                    quoted[n] = true;
+                    p = q + 1;
+                    if(p < end && buf.get(p) != ',') {
+                        error = "引号后应为逗号";
+                        return n;
+                    }
+                } else {
+                    int q = p;
+                    while(q < end && buf.get(q) != ',') {
+                        q++;
+                    }
+                    int s = p;
+                    int e = q;
+                    while(s < e && isSpace(buf.get(s))) {
+                        s++;
+                    }
+                    while(e > s && isSpace(buf.get(e - 1))) {
+                        e--;
+                    }
+                    starts[n] = s;
+                    ends[n] = e;
+                    quoted[n] = false;
+                    p = q;
+                }
+                n++;
+                if(p >= end) {
+                    return n;
+                }
+                p++;  // 跳过逗号
+            }
+        }
+
+        private String string(int field) {
+            int start = starts[field];
+            int len = ends[field] - start;
+            if(scratch.length < len) {
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            }
+            if(!quoted[field]) {
+                buf.get(start, scratch, 0, len);
+                return new String(scratch, 0, len, StandardCharsets.UTF_8);
+            }
+            // 引号内的两个双引号表示一个双引号
+            int n = 0;
+            for(int i = start; i < start + len; i++) {
+                byte b = buf.get(i);
+                scratch[n++] = b;
+                if(b == '"') {
+                    i++;
+                }
+            }
+            return new String(scratch, 0, n, StandardCharsets.UTF_8);
+        }
+
+        private String shared(String s) {
+            if(strings.size() > 4096) {
+                strings.clear();
+            }
+            String existing = strings.putIfAbsent(s, s);
+            return existing == null ? s : existing;
+        }
+
+        /**
+         * 解析数字字段,无效时返回NaN
+         * 常见的"整数.小数"格式直接从字节计算,其余格式交给Double.parseDouble
+         */
+        private double number(int field) {
+            int p = starts[field];
+            int end = ends[field];
+            boolean negative = false;
+            if(p < end && (buf.get(p) == '-' || buf.get(p) == '+')) {
+                negative = buf.get(p) == '-';
+                p++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fraction = -1;
+            for(; p < end; p++) {
+                byte b = buf.get(p);
+                if(b >= '0' && b <= '9') {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if(fraction >= 0) {
+                        fraction++;
+                    }
+                } else if(b == '.' && fraction < 0) {
+                    fraction = 0;
+                } else {
+                    break;
+                }
+            }
+            if(p == end && digits > 0 && digits <= 15 && fraction < POW10.length) {
+                double value = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+                return negative ? -value : value;
+            }
+            try {
+                double value = Double.parseDouble(string(field).trim());
+                return Double.isInfinite(value) ? Double.NaN : value;
+            } catch(NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+
+        private boolean isBlank(int start, int end) {
+            for(int i = start; i < end; i++) {
+                if(!isSpace(buf.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isSpace(byte b) {
+            return b == ' ' || b == '\t';
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * 房屋二级索引
+ *
+ * 楼栋、单元、状态使用哈希索引,面积和单价使用有序索引以支持范围查询。
+ * 索引的增删由InventoryEngine在持有对应房屋的分段锁时调用:修改前先remove,修改后再add。
+ * 状态按House.getListedStatus索引,成交入账后才算已售,与销售汇总保持一致;锁定待付款的房屋
+ * 单独放在已锁定桶中。锁定、释放、到期和确认时由引擎在分段锁内更新入账状态后调用restatus换桶。
+ */
+public class HouseIndex {
+    private final Map<String, Set<House>> byBuilding = new ConcurrentHashMap<>();  // 楼栋索引
+    private final Map<String, Set<House>> byUnit = new ConcurrentHashMap<>();      // 单元索引
+    private final Map<String, Set<House>> byStatus = new ConcurrentHashMap<>();    // 状态索引
+    private final NavigableMap<Double, Set<House>> byArea = new ConcurrentSkipListMap<>();   // 面积索引
+    private final NavigableMap<Double, Set<House>> byPrice = new ConcurrentSkipListMap<>();  // 单价索引
+
+    /**
+     * 把房屋加入全部索引
+     */
+    void add(House house) {
+        put(byBuilding, house.getBuilding(), house);
+        put(byUnit, house.getUnit(), house);
+        put(byStatus, statusOf(house), house);
+        put(byArea, house.getArea(), house);
+        put(byPrice, house.getPrice(), house);
+    }
+
+    /**
+     * 把房屋从全部索引中移除,必须在修改房屋字段之前调用
+     */
+    void remove(House house) {
+        delete(byBuilding, house.getBuilding(), house);
+        delete(byUnit, house.getUnit(), house);
+        deleteStatus(house);
+        delete(byArea, house.getArea(), house);
+        delete(byPrice, house.getPrice(), house);
+    }
+
+    /**
+     * 房屋的状态变化后(锁定、释放、到期、成交入账)把它移到对应的状态桶
+     */
+    void restatus(House house) {
+        deleteStatus(house);
+        put(byStatus, statusOf(house), house);
+    }
+
+    private static String statusOf(House house) {
+        return house.getListedStatus();
+    }
+
+    /**
+     * 从全部状态桶中移除;restatus在入账状态改变之后调用,此时已不知道房屋原来所在的桶
+     */
+    private void deleteStatus(House house) {
+        delete(byStatus, House.STATUS_AVAILABLE, house);
+        delete(byStatus, House.STATUS_HELD, house);
+        delete(byStatus, House.STATUS_SOLD, house);
+    }
+
+    private static <K> void put(Map<K, Set<House>> index, K key, House house) {
+        if(key == null) {
+            return;
+        }
+        index.compute(key, (k, set) -> {
+            if(set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(house);
+            return set;
+        });
+    }
+
+    private static <K> void delete(Map<K, Set<House>> index, K key, House house) {
+        if(key == null) {
+            return;
+        }
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(house);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * 按组合条件查询
+     *
+     * 优先从楼栋/单元索引中取最小的候选集;没有这两个条件时改用面积或单价的范围索引;
+     * 再没有时才用状态索引。候选集中的房屋再逐一用全部条件复核。
+     *
+     * @param query 查询条件
+     * @param all   没有任何条件时返回的全部房屋
+     */
+    public List<House> query(HouseQuery query, Collection<House> all) {
+        List<House> result = new ArrayList<>();
+        forEachMatch(query, all, result::add);
+        return result;
+    }
+
+    /**
+     * 与query相同的条件,把满足条件的房屋逐一交给action,不复制结果
+     */
+    public void forEachMatch(HouseQuery query, Collection<House> all, Consumer<? super House> action) {
+        Collection<Set<House>> candidates = null;
+        Set<House> smallest = smallest(lookup(byBuilding, query.getBuilding()),
+                                       lookup(byUnit, query.getUnit()));
+        if(smallest != null) {
+            candidates = Collections.singletonList(smallest);
+        } else if(query.hasPriceRange()) {
+            candidates = range(byPrice, query.getMinPrice(), query.getMaxPrice()).values();
+        } else if(query.hasAreaRange()) {
+            candidates = range(byArea, query.getMinArea(), query.getMaxArea()).values();
+        } else if(query.getStatus() != null) {
+            candidates = Collections.singletonList(lookup(byStatus, query.getStatus()));
+        }
+
+        if(candidates == null) {
+            for(House h : all) {
+                action.accept(h);
+            }
+            return;
+        }
+        for(Set<House> set : candidates) {
+            for(House h : set) {
+                if(query.matches(h)) {
+                    action.accept(h);
+                }
+            }
+        }
+    }
+
+    private static Set<House> lookup(Map<String, Set<House>> index, String key) {
+        if(key == null) {
+            return null;
+        }
+        return index.getOrDefault(key, Collections.emptySet());
+    }
+
+    private static Set<House> smallest(Set<House> a, Set<House> b) {
+        if(a == null) {
+            return b;
+        }
+        if(b == null) {
+            return a;
+        }
+        return a.size() <= b.size() ? a : b;
+    }
+
+    private static NavigableMap<Double, Set<House>> range(NavigableMap<Double, Set<House>> index,
+                                                          Double min, Double max) {
+        if(min != null && max != null) {
+            if(min > max) {
+                return Collections.emptyNavigableMap();
+            }
+            return index.subMap(min, true, max, true);
+        }
+        if(min != null) {
+            return index.tailMap(min, true);
+        }
+        return index.headMap(max, true);
+    }
+}
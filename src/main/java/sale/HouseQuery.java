@@ -0,0 +1,68 @@
+package sale;
+
+/**
+ * 房屋组合查询条件,为null的条件表示不限
+ */
+public class HouseQuery {
+    private String project;    // 项目,空串为默认项目
+    private String building;   // 楼栋号
+    private String unit;       // 单元号
+    private String status;     // 状态(可售/已锁定/已售),与入账状态比较
+    private Double minArea;    // 最小面积(含)
+    private Double maxArea;    // 最大面积(含)
+    private Double minPrice;   // 最低单价(含)
+    private Double maxPrice;   // 最高单价(含)
+
+    // getter方法
+    public String getProject() { return project; }
+    public String getBuilding() { return building; }
+    public String getUnit() { return unit; }
+    public String getStatus() { return status; }
+    public Double getMinArea() { return minArea; }
+    public Double getMaxArea() { return maxArea; }
+    public Double getMinPrice() { return minPrice; }
+    public Double getMaxPrice() { return maxPrice; }
+
+    // setter方法
+    public void setProject(String project) { this.project = project; }
+    public void setBuilding(String building) { this.building = building; }
+    public void setUnit(String unit) { this.unit = unit; }
+    public void setStatus(String status) { this.status = status; }
+    public void setAreaRange(Double minArea, Double maxArea) {
+        this.minArea = minArea;
+        this.maxArea = maxArea;
+    }
+    public void setPriceRange(Double minPrice, Double maxPrice) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public boolean hasAreaRange() { return minArea != null || maxArea != null; }
+    public boolean hasPriceRange() { return minPrice != null || maxPrice != null; }
+
+    /**
+     * 判断房屋是否满足全部条件;状态条件与HouseIndex一样比较入账状态(House.getListedStatus)
+     */
+    public boolean matches(House house) {
+        if(project != null && !project.equals(house.getProject())) {
+            return false;
+        }
+        if(building != null && !building.equals(house.getBuilding())) {
+            return false;
+        }
+        if(unit != null && !unit.equals(house.getUnit())) {
+            return false;
+        }
+        if(status != null && !status.equals(house.getListedStatus())) {
+            return false;
+        }
+        if(!inRange(house.getArea(), minArea, maxArea)) {
+            return false;
+        }
+        return inRange(house.getPrice(), minPrice, maxPrice);
+    }
+
+    private static boolean inRange(double value, Double min, Double max) {
+        return (min == null || value >= min) && (max == null || value <= max);
+    }
+}
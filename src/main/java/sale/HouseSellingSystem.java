@@ -0,0 +1,1814 @@
+package sale;
+
+// 导入所需的Java Swing和AWT包
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 房屋预售系统主类
+ */
+public class HouseSellingSystem {
+    private static final String DEFAULT_PROJECT_LABEL = "默认项目";  // 项目名为空串的项目在界面上的名称
+    private static final int MY_HOUSES_PAGE_SIZE =                    // "我的房产"每页的套数
+        Math.max(1, Integer.getInteger("house.myHouses.pageSize", 100));
+    private static final int SEARCH_LIMIT =                           // 边输入边搜索最多显示的套数
+        Math.max(1, Integer.getInteger("house.search.limit", 200));
+    private static final int SEARCH_DEBOUNCE_MILLIS =                 // 停止输入多久后才搜索
+        Integer.getInteger("house.search.debounceMillis", 150);
+    private static final String DEFAULT_ADMIN_HASH =                  // 默认管理员admin/123456的散列,预先算好,首次启动不做PBKDF2
+        "pbkdf2-sha256$600000$1J1FGyUTTdHSHigA7iHjng==$y+Vh4Rh3BsKj54YHQuwDB+W+kppnDe8Ev7MzttU1Mp4=";
+    private static final long MAIN_STARTED = System.nanoTime();       // main开始执行的时刻,用于首帧耗时
+    private static final boolean STARTUP_REPORT =                     // 是否输出首帧和数据就绪耗时
+        Boolean.getBoolean("house.startup.report");
+    private static final boolean EXIT_AFTER_FIRST_FRAME =             // 首帧出现且后台加载完成后退出,用于CDS训练和启动测量
+        Boolean.getBoolean("house.startup.exitAfterFirstFrame");
+    private static final String[] PRELOAD_CLASSES = {                 // 登录窗口出现后在后台预先加载的类
+        "javax.swing.JFrame", "javax.swing.JTable", "javax.swing.JScrollPane", "javax.swing.JComboBox",
+        "javax.swing.JTabbedPane", "javax.swing.JSplitPane", "javax.swing.JTextArea", "javax.swing.JFileChooser",
+        "javax.swing.table.DefaultTableModel", "javax.swing.table.JTableHeader",
+        "sale.HouseTableModel", "sale.SalesRollups", "sale.SalesAggregates", "sale.HouseQuery",
+        "sale.InventoryEvents", "sale.OwnerIndex"
+    };
+    
+    // UI组件
+    private JFrame frame;           // 主窗口
+    private JPanel mainPanel;       // 主面板
+    
+    // 业务数据
+    private String currentUser;     // 当前登录用户
+    private String sessionToken;    // 当前登录的会话令牌
+    private final InventoryEngine engine = new InventoryEngine(); // 库存引擎
+    private final PresaleGate gate = PresaleGate.fromSystemProperties(engine);  // 预订准入队列
+    private final LoginService logins = LoginService.fromSystemProperties(engine);  // 密码校验和会话
+    private final UiExecutor executor =
+        new UiExecutor(Integer.getInteger("house.ui.threads", 8));  // 业务操作执行层
+    private final CompletableFuture<Void> dataReady = new CompletableFuture<>();   // 数据恢复完成、可以登录
+    private final CompletableFuture<Void> startupDone = new CompletableFuture<>(); // 后台加载全部完成
+    private boolean firstFrameShown;  // 登录窗口是否已经显示过
+    
+    // UI资源
+    private ImageIcon logoIcon;     // logo图标,后台加载完成前为null
+    
+    // 主题配置
+    private final ThemeConfig themeConfig = new ThemeConfig();  // 主题配置对象
+    private final ThemeResources theme = new ThemeResources(themeConfig);  // 共用的字体、边框、渲染器和按钮背景
+    private final DialogManager dialogs = new DialogManager(engine.getMetrics());  // 构建一次、反复显示的对话框
+
+    /**
+     * 构造函数,初始化系统
+     * 先显示登录窗口,数据恢复、HTTP接口、logo和各对话框用到的类在后台线程加载,
+     * 登录和注册在数据就绪后才执行
+     */
+    public HouseSellingSystem() {
+        // EDT卡顿超过阈值时报告,阈值可通过系统属性house.edt.stallMillis配置
+        new EdtStallMonitor(Long.getLong("house.edt.stallMillis", 200L)).start();
+        EdtStallMonitor.timeDispatch(engine.getMetrics().timer("界面.EDT事件分发"));
+        
+        Thread loader = new Thread(this::loadInBackground, "startup-loader");
+        loader.setDaemon(true);
+        loader.start();
+        showLoginDialog();
+    }
+    
+    /**
+     * 后台加载:先恢复数据,就绪后即可登录;再加载logo、预先加载对话框用到的类
+     */
+    private void loadInBackground() {
+        try {
+            // 从快照和销售日志恢复数据,新数据目录时才初始化管理员账号和测试数据
+            long restored = openStore();
+            if(restored == 0) {
+                addDefaultAdmin(engine);
+                addTestHouses(engine);
+            }
+            startHttpServer();
+            dataReady.complete(null);
+            if(STARTUP_REPORT) {
+                System.out.printf("数据就绪: %d ms%n", (System.nanoTime() - MAIN_STARTED) / 1_000_000);
+            }
+        } catch(RuntimeException e) {
+            dataReady.completeExceptionally(e);
+            startupDone.complete(null);
+            return;
+        }
+        
+        ImageIcon logo = loadLogo();
+        if(logo != null) {
+            SwingUtilities.invokeLater(() -> {
+                logoIcon = logo;
+                for(Window window : Window.getWindows()) {
+                    window.setIconImage(logo.getImage());
+                }
+            });
+        }
+        ClassLoader loader = HouseSellingSystem.class.getClassLoader();
+        for(String name : PRELOAD_CLASSES) {
+            try {
+                Class.forName(name, false, loader);
+            } catch(ClassNotFoundException e) {
+                // 预加载只为缩短首次打开对话框的耗时,类不存在不影响运行
+            }
+        }
+        startupDone.complete(null);
+    }
+    
+    /**
+     * 读取logo图片,路径可通过系统属性house.logo配置,读取失败时返回null
+     */
+    private static ImageIcon loadLogo() {
+        File file = new File(System.getProperty("house.logo", "src/lntu_logo.png"));
+        if(!file.isFile()) {
+            return null;
+        }
+        try {
+            Image image = ImageIO.read(file);
+            return image == null ? null : new ImageIcon(image);
+        } catch(IOException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * 在EDT上提示启动过程中的错误
+     */
+    private static void showStartupError(String message) {
+        SwingUtilities.invokeLater(() ->
+            JOptionPane.showMessageDialog(null, message, "错误", JOptionPane.ERROR_MESSAGE));
+    }
+    
+    /**
+     * 打开数据目录,从快照和日志恢复数据,返回恢复的条目数
+     * 打开失败时提示并以纯内存方式运行
+     */
+    private long openStore() {
+        try {
+            return InventoryStore.openDefault(engine);
+        } catch(IOException e) {
+            showStartupError("无法打开数据目录,本次运行的数据不会保存: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    /**
+     * 配置了系统属性house.http.port时,在同一个库存引擎上启动HTTP接口
+     */
+    private void startHttpServer() {
+        Integer port = Integer.getInteger("house.http.port");
+        if(port == null) {
+            return;
+        }
+        try {
+            new InventoryServer(engine, gate, logins, port, Integer.getInteger("house.http.threads", 64)).start();
+        } catch(IOException e) {
+            showStartupError("HTTP接口启动失败: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * 新数据目录的默认管理员账号admin,密码123456
+     */
+    static void addDefaultAdmin(InventoryEngine engine) {
+        engine.registerHashedUser("admin", DEFAULT_ADMIN_HASH, User.ROLE_ADMIN);
+    }
+
+    /**
+     * 添加测试用房屋数据
+     */
+    static void addTestHouses(InventoryEngine engine) {
+        engine.addHouse(new House("A101", "A", "1", "101", 89.5, 12000));
+        engine.addHouse(new House("A102", "A", "1", "102", 126.8, 13000));
+        engine.addHouse(new House("B101", "B", "1", "101", 89.5, 11500));
+        engine.addHouse(new House("B102", "B", "1", "102", 95.0, 12500));
+        engine.addHouse(new House("C101", "C", "2", "201", 110.0, 15000));
+        engine.addHouse(new House("C102", "C", "2", "202", 120.5, 16000));
+        engine.addHouse(new House("D101", "D", "3", "301", 85.0, 11000));
+        engine.addHouse(new House("D102", "D", "3", "302", 100.0, 14000));
+        engine.addHouse(new House("E101", "E", "4", "401", 130.0, 17000));
+        engine.addHouse(new House("E102", "E", "4", "402", 140.0, 18000));
+        engine.addHouse(new House("F101", "F", "5", "501", 150.0, 20000));
+        engine.addHouse(new House("F102", "F", "5", "502", 160.0, 21000));
+        engine.addHouse(new House("G101", "G", "6", "601", 170.0, 22000));
+        engine.addHouse(new House("G102", "G", "6", "602", 180.0, 23000));
+        engine.addHouse(new House("H101", "H", "7", "701", 190.0, 24000));
+        engine.addHouse(new House("H102", "H", "7", "702", 200.0, 25000));
+        engine.addHouse(new House("I101", "I", "8", "801", 210.0, 26000));
+        engine.addHouse(new House("I102", "I", "8", "802", 220.0, 27000));
+        engine.addHouse(new House("J101", "J", "9", "901", 230.0, 28000));
+        engine.addHouse(new House("J102", "J", "9", "902", 240.0, 29000));
+    }
+    
+    /**
+     * 显示登录对话框
+     */
+    private void showLoginDialog() {
+        JDialog loginDialog = new JDialog((Frame)null, "房屋预售系统", true);
+        loginDialog.setLayout(new GridBagLayout());
+        loginDialog.getContentPane().setBackground(Color.WHITE);
+        
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(30, 30, 30, 30); // 增加组件间距
+        gbc.anchor = GridBagConstraints.CENTER;
+        gbc.fill = GridBagConstraints.BOTH; // 组件填充方式改为BOTH以支持动态调整
+        
+        // 标题
+        JLabel titleLabel = new JLabel("用户登录", SwingConstants.CENTER);
+        titleLabel.setFont(theme.font(Font.BOLD, 48));
+        titleLabel.setForeground(themeConfig.themeColor);
+        
+        // 输入框
+        JTextField usernameField = new JTextField(30);
+        JPasswordField passwordField = new JPasswordField(30);
+        Font inputFont = theme.font(Font.PLAIN, 32);
+        usernameField.setFont(inputFont);
+        passwordField.setFont(inputFont);
+        
+        // 标签字体
+        Font labelFont = theme.font(Font.BOLD, 32);
+        JLabel usernameLabel = new JLabel("用户名:");
+        JLabel passwordLabel = new JLabel("密码:");
+        usernameLabel.setFont(labelFont);
+        passwordLabel.setFont(labelFont);
+        
+        // 按钮
+        JButton loginButton = createGradientButton("登录");
+        JButton registerButton = createGradientButton("注册");
+        loginButton.setFont(theme.font(Font.BOLD, 24));
+        registerButton.setFont(theme.font(Font.BOLD, 24));
+        
+        // 设置输入框和按钮的首选大小
+        Dimension fieldSize = new Dimension(400, 60); // 增加高度
+        Dimension buttonSize = new Dimension(200, 60);
+        usernameField.setPreferredSize(fieldSize);
+        passwordField.setPreferredSize(fieldSize);
+        loginButton.setPreferredSize(buttonSize);
+        registerButton.setPreferredSize(buttonSize);
+        
+        // 布局
+        gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 2;
+        loginDialog.add(titleLabel, gbc);
+        
+        gbc.gridy = 1; gbc.gridwidth = 1;
+        loginDialog.add(usernameLabel, gbc);
+        gbc.gridx = 1;
+        loginDialog.add(usernameField, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 2;
+        loginDialog.add(passwordLabel, gbc);
+        gbc.gridx = 1;
+        loginDialog.add(passwordField, gbc);
+        
+        gbc.gridx = 0; gbc.gridy = 3; gbc.gridwidth = 2;
+        JPanel buttonPanel = new JPanel();
+        buttonPanel.setBackground(Color.WHITE);
+        buttonPanel.add(loginButton);
+        buttonPanel.add(Box.createHorizontalStrut(60)); // 增加按钮间距
+        buttonPanel.add(registerButton);
+        loginDialog.add(buttonPanel, gbc);
+        
+        // 后台仍在恢复数据时提示,登录和注册会等到数据就绪再执行
+        JLabel statusLabel = new JLabel(dataReady.isDone() ? " " : "正在加载数据...", SwingConstants.CENTER);
+        statusLabel.setFont(theme.font(Font.PLAIN, 20));
+        statusLabel.setForeground(themeConfig.textColor);
+        gbc.gridy = 4;
+        loginDialog.add(statusLabel, gbc);
+        dataReady.whenComplete((v, error) -> SwingUtilities.invokeLater(() ->
+            statusLabel.setText(error == null ? " " : "数据加载失败: " + error.getMessage())));
+        
+        // 登录按钮事件处理
+        loginButton.addActionListener(e -> {
+            String username = usernameField.getText();
+            String password = String.valueOf(passwordField.getPassword());
+            
+            loginButton.setEnabled(false);
+            executor.run(() -> {
+                dataReady.join();
+                return logins.login(username, password);
+            }, session -> {
+                loginButton.setEnabled(true);
+                if(session != null) {
+                    currentUser = username;
+                    sessionToken = session.getToken();
+                    loginDialog.dispose();
+                    createMainGUI();
+                } else {
+                    JOptionPane.showMessageDialog(loginDialog, "用户名或密码错误!", "错误", 
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }, error -> {
+                loginButton.setEnabled(true);
+                showError(loginDialog, error);
+            });
+        });
+        
+        // 注册按钮事件处理
+        registerButton.addActionListener(e -> {
+            String username = usernameField.getText();
+            String password = String.valueOf(passwordField.getPassword());
+            
+            if(username.isEmpty() || password.isEmpty()) {
+                JOptionPane.showMessageDialog(loginDialog, "用户名和密码不能为空!", 
+                    "错误", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            registerButton.setEnabled(false);
+            executor.run(() -> {
+                dataReady.join();
+                return logins.register(username, password, User.ROLE_USER);
+            }, registered -> {
+                registerButton.setEnabled(true);
+                if(!registered) {
+                    JOptionPane.showMessageDialog(loginDialog, "用户名已存在!", 
+                        "错误", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                
+                JOptionPane.showMessageDialog(loginDialog, "注册成功!", 
+                    "成功", JOptionPane.INFORMATION_MESSAGE);
+            }, error -> {
+                registerButton.setEnabled(true);
+                showError(loginDialog, error);
+            });
+        });
+        
+        if(logoIcon != null) {
+            loginDialog.setIconImage(logoIcon.getImage());
+        }
+        if(!firstFrameShown) {
+            firstFrameShown = true;
+            loginDialog.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowOpened(WindowEvent e) {
+                    onFirstFrame();
+                }
+            });
+        }
+        loginDialog.setSize(1600, 800); // 增大对话框尺寸
+        loginDialog.setLocationRelativeTo(null);
+        loginDialog.setVisible(true);
+    }
+    
+    /**
+     * 登录窗口第一次显示:按系统属性输出首帧耗时,训练或测量运行在后台加载完成后退出
+     */
+    private void onFirstFrame() {
+        if(STARTUP_REPORT) {
+            System.out.printf("首帧: %d ms%n", (System.nanoTime() - MAIN_STARTED) / 1_000_000);
+        }
+        if(EXIT_AFTER_FIRST_FRAME) {
+            startupDone.whenComplete((v, error) -> System.exit(0));
+        }
+    }
+    
+    /**
+     * 创建渐变按钮,背景图像由ThemeResources缓存,悬停时换成较深的渐变
+     */
+    private JButton createGradientButton(String text) {
+        return new GradientButton(text, theme);
+    }
+    
+    /**
+     * 统计报表对话框用到的数据,在后台线程读取
+     */
+    private static class StatsData {
+        final SalesAggregates.Summary summary;  // 销售汇总
+        final SalesRollups.Report report;       // 销售分析
+        
+        StatsData(SalesAggregates.Summary summary, SalesRollups.Report report) {
+            this.summary = summary;
+            this.report = report;
+        }
+    }
+    
+    /**
+     * 一次前缀搜索的结果,按编号排序,最多比上限多一套,用来判断是否还有更多
+     */
+    private static class PrefixResult {
+        final String prefix;       // 搜索的前缀
+        final List<House> houses;  // 匹配的房屋
+
+        PrefixResult(String prefix, List<House> houses) {
+            this.prefix = prefix;
+            this.houses = houses;
+        }
+    }
+    
+    /**
+     * 显示统计报表,第一次打开时先在后台读取销售汇总和销售分析
+     */
+    private void openStatsDialog() {
+        if(dialogs.contains("统计报表")) {
+            dialogs.show("统计报表", null);
+            return;
+        }
+        LatencyRecorder timer = engine.getMetrics().timer("界面.统计报表");
+        executor.run(() -> {
+            long start = System.nanoTime();
+            StatsData data = new StatsData(engine.getSummary(), engine.getReport());
+            timer.recordSince(start);
+            return data;
+        }, data -> dialogs.show("统计报表", () -> buildStatsDialog(data.summary, data.report)),
+           error -> showError(frame, error));
+    }
+    
+    /**
+     * 构建统计报表对话框
+     */
+    private DialogManager.View buildStatsDialog(SalesAggregates.Summary summary, SalesRollups.Report report) {
+        JDialog dialog = new JDialog(frame, "统计报表", true);
+        dialog.setLayout(new BorderLayout(20, 20)); // 增加组件间距
+        
+        Font font = theme.font(Font.BOLD, 32);
+        
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.setFont(font);
+        tabbedPane.setBackground(themeConfig.bgColor);
+        
+        // 销售统计面板
+        JPanel salesPanel = createStatsPanel();
+        JTextArea salesStats = new JTextArea();
+        salesStats.setFont(font);
+        salesStats.setBackground(themeConfig.bgColor);
+        salesStats.setForeground(themeConfig.textColor);
+        salesPanel.add(new JScrollPane(salesStats), BorderLayout.CENTER);
+        
+        // 房屋状态统计面板
+        JPanel statusPanel = createStatsPanel();
+        JTextArea statusStats = new JTextArea();
+        statusStats.setFont(font);
+        statusStats.setBackground(themeConfig.bgColor);
+        statusStats.setForeground(themeConfig.textColor);
+        statusPanel.add(new JScrollPane(statusStats), BorderLayout.CENTER);
+        
+        Consumer<SalesAggregates.Summary> showSummary = s -> {
+            salesStats.setText("已售房屋数量: " + s.soldCount + "\n"
+                + "销售总额: " + String.format("%.2f", s.totalSales) + "元\n");
+            statusStats.setText("可售房屋数量: " + s.availableCount + "\n"
+                + "已售房屋数量: " + s.soldCount + "\n"
+                + "总房屋数量: " + s.totalCount + "\n");
+        };
+        showSummary.accept(summary);
+        List<Consumer<SalesRollups.Report>> reportViews = new ArrayList<>();
+        
+        tabbedPane.addTab("销售统计", salesPanel);
+        tabbedPane.addTab("房屋状态", statusPanel);
+        tabbedPane.addTab("销售分析", createAnalyticsPanel(report, reportViews));
+        
+        // 其他用户的预订、添加等变更合并成批后重新读取汇总和分析,同时最多只有一次读取在执行;
+        // 繁忙被拒绝时只计数并跳过,下一批变更会再次读取;其他错误计数后提示
+        LongAdder reloadsSkipped = engine.getMetrics().counter("界面.统计刷新跳过");
+        LongAdder reloadsFailed = engine.getMetrics().counter("界面.统计刷新失败");
+        Runnable reload = executor.coalescing(
+            () -> new StatsData(engine.getSummary(), engine.getReport()), data -> {
+                showSummary.accept(data.summary);
+                reportViews.forEach(view -> view.accept(data.report));
+            }, error -> {
+                if(error instanceof RejectedExecutionException) {
+                    reloadsSkipped.increment();
+                } else {
+                    reloadsFailed.increment();
+                    showError(dialog, error);
+                }
+            });
+        InventoryEvents.Subscription subscription =
+            engine.getEvents().subscribe(SwingUtilities::invokeLater, changes -> reload.run());
+        
+        // 导出按钮
+        JPanel exportPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 20));
+        exportPanel.setBackground(themeConfig.bgColor);
+        JButton summaryButton = createGradientButton("导出汇总");
+        JButton ledgerButton = createGradientButton("导出销售台账");
+        summaryButton.setFont(theme.font(Font.BOLD, 24));
+        ledgerButton.setFont(theme.font(Font.BOLD, 24));
+        exportPanel.add(summaryButton);
+        exportPanel.add(ledgerButton);
+        
+        SalesExporter exporter = new SalesExporter(engine);
+        summaryButton.addActionListener(e -> {
+            Path file = chooseExportFile(dialog, "销售汇总.csv");
+            if(file == null) {
+                return;
+            }
+            executor.run(() -> {
+                exporter.exportSummary(engine.getSummary(), file);
+                return file;
+            }, done -> JOptionPane.showMessageDialog(dialog, "已导出到" + done),
+               error -> showError(dialog, error));
+        });
+        
+        ledgerButton.addActionListener(e -> {
+            String input = JOptionPane.showInputDialog(dialog,
+                "只导出此日期之后的销售(yyyy-MM-dd),留空导出全部房屋:");
+            if(input == null) {
+                return;
+            }
+            Date since = null;
+            if(!input.trim().isEmpty()) {
+                try {
+                    since = new SimpleDateFormat("yyyy-MM-dd").parse(input.trim());
+                } catch(ParseException ex) {
+                    JOptionPane.showMessageDialog(dialog, "日期格式应为yyyy-MM-dd!");
+                    return;
+                }
+            }
+            Path file = chooseExportFile(dialog, since == null ? "销售台账.csv" : "销售台账_增量.csv");
+            if(file == null) {
+                return;
+            }
+            Date from = since;
+            executor.runWithProgress(dialog, "正在导出" + file.getFileName(),
+                progress -> exporter.exportLedger(file, from, progress),
+                rows -> JOptionPane.showMessageDialog(dialog, "已导出" + rows + "行到" + file),
+                error -> showError(dialog, error));
+        });
+        
+        dialog.add(tabbedPane, BorderLayout.CENTER);
+        dialog.add(exportPanel, BorderLayout.SOUTH);
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        // 关闭后暂停订阅,再次打开时期间有变更才重新读取
+        return new DialogManager.View(dialog)
+            .onShow(subscription::resume)
+            .onHide(subscription::pause)
+            .onDispose(subscription::close);
+    }
+    
+    /**
+     * 创建销售分析面板,按所选维度显示预聚合的成交套数、金额、面积、均价和去化率
+     * 面板向views登记一个回调,传入新的报表即可刷新
+     */
+    private JPanel createAnalyticsPanel(SalesRollups.Report report, List<Consumer<SalesRollups.Report>> views) {
+        JPanel panel = createStatsPanel();
+        Font font = theme.font(Font.BOLD, 24);
+        
+        JLabel overallLabel = new JLabel();
+        overallLabel.setFont(font);
+        overallLabel.setForeground(themeConfig.textColor);
+        
+        String[] dimensions = {"按日", "按周", "按月", "按楼栋", "按单价区间"};
+        JComboBox<String> dimensionBox = new JComboBox<>(dimensions);
+        dimensionBox.setFont(font);
+        dimensionBox.setSelectedIndex(2);
+        
+        JPanel topPanel = new JPanel(new BorderLayout(20, 20));
+        topPanel.setBackground(themeConfig.bgColor);
+        topPanel.add(overallLabel, BorderLayout.CENTER);
+        topPanel.add(dimensionBox, BorderLayout.EAST);
+        
+        String[] columnNames = {"区间", "成交套数", "成交金额(元)", "成交面积(平方米)", "均价(元/平方米)", "去化率"};
+        DefaultTableModel model = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 40);
+        
+        // 各维度的行已经在后台算好,切换维度只是换一组行
+        SalesRollups.Report[] current = {report};
+        Runnable fill = () -> {
+            SalesRollups.Report r = current[0];
+            List<List<SalesRollups.Row>> rowsByDimension = List.of(
+                r.byDay, r.byWeek, r.byMonth, r.byBuilding, r.byPriceBand);
+            model.setRowCount(0);
+            for(SalesRollups.Row row : rowsByDimension.get(dimensionBox.getSelectedIndex())) {
+                model.addRow(new Object[]{
+                    row.label,
+                    row.count,
+                    String.format("%.2f", row.amount),
+                    String.format("%.2f", row.area),
+                    String.format("%.2f", row.averagePrice()),
+                    String.format("%.1f%%", row.absorption() * 100)
+                });
+            }
+        };
+        Consumer<SalesRollups.Report> show = r -> {
+            SalesRollups.Row overall = r.overall;
+            overallLabel.setText(String.format("成交%d套,均价%.2f元/平方米,去化率%.1f%%",
+                overall.count, overall.averagePrice(), overall.absorption() * 100));
+            current[0] = r;
+            fill.run();
+        };
+        dimensionBox.addActionListener(e -> fill.run());
+        show.accept(report);
+        views.add(show);
+        
+        JScrollPane scrollPane = new JScrollPane(table);
+        theme.styleScrollPane(scrollPane);
+        
+        panel.add(topPanel, BorderLayout.NORTH);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        return panel;
+    }
+    
+    /**
+     * 性能指标对话框的表格数据,在后台线程读取
+     */
+    private static class MetricsData {
+        final List<Object[]> timerRows = new ArrayList<>();  // 延迟记录器,每行一个操作
+        Map<String, Long> counters;                           // 计数器
+    }
+    
+    /**
+     * 显示性能指标对话框:各操作的延迟分位数和计数器,可刷新、清零和导出
+     */
+    private void showMetricsDialog() {
+        JDialog dialog = new JDialog(frame, "性能指标", true);
+        dialog.setLayout(new BorderLayout(20, 20));
+        dialog.getContentPane().setBackground(themeConfig.bgColor);
+        
+        Font font = theme.font(Font.BOLD, 24);
+        Metrics metrics = engine.getMetrics();
+        
+        String[] columnNames = {"操作", "次数", "平均(ms)", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "最大(ms)"};
+        DefaultTableModel timerModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        DefaultTableModel counterModel = new DefaultTableModel(new String[]{"计数器", "数值"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable timerTable = new JTable(timerModel);
+        JTable counterTable = new JTable(counterModel);
+        for(JTable table : new JTable[]{timerTable, counterTable}) {
+            theme.styleTable(table, font, 40);
+        }
+        
+        // 快照在后台读取,表格在EDT上整体替换
+        Runnable refresh = () -> executor.run(() -> {
+            MetricsData data = new MetricsData();
+            for(LatencyRecorder.Snapshot snap : metrics.timerSnapshots()) {
+                data.timerRows.add(new Object[]{
+                    snap.name,
+                    snap.count,
+                    String.format("%.3f", snap.mean() / 1e6),
+                    String.format("%.3f", snap.percentile(0.5) / 1e6),
+                    String.format("%.3f", snap.percentile(0.9) / 1e6),
+                    String.format("%.3f", snap.percentile(0.99) / 1e6),
+                    String.format("%.3f", snap.percentile(0.999) / 1e6),
+                    String.format("%.3f", snap.max / 1e6)
+                });
+            }
+            data.counters = metrics.counterValues();
+            return data;
+        }, data -> {
+            timerModel.setRowCount(0);
+            data.timerRows.forEach(timerModel::addRow);
+            counterModel.setRowCount(0);
+            data.counters.forEach((name, value) -> counterModel.addRow(new Object[]{name, value}));
+        }, error -> showError(dialog, error));
+        
+        JScrollPane timerPane = new JScrollPane(timerTable);
+        JScrollPane counterPane = new JScrollPane(counterTable);
+        for(JScrollPane pane : new JScrollPane[]{timerPane, counterPane}) {
+            theme.styleScrollPane(pane);
+        }
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, timerPane, counterPane);
+        splitPane.setResizeWeight(0.7);
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 20));
+        buttonPanel.setBackground(themeConfig.bgColor);
+        JButton refreshButton = createGradientButton("刷新");
+        JButton resetButton = createGradientButton("清零");
+        JButton exportButton = createGradientButton("导出");
+        for(JButton button : new JButton[]{refreshButton, resetButton, exportButton}) {
+            button.setFont(font);
+            buttonPanel.add(button);
+        }
+        
+        refreshButton.addActionListener(e -> refresh.run());
+        resetButton.addActionListener(e -> {
+            metrics.reset();
+            refresh.run();
+        });
+        exportButton.addActionListener(e -> {
+            Path file = chooseExportFile(dialog, "性能指标.csv");
+            if(file == null) {
+                return;
+            }
+            executor.run(() -> {
+                metrics.exportCsv(file);
+                return file;
+            }, done -> JOptionPane.showMessageDialog(dialog, "已导出到" + done),
+               error -> showError(dialog, error));
+        });
+        refresh.run();
+        
+        dialog.add(splitPane, BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * 选择导出文件的保存位置,取消时返回null
+     */
+    private Path chooseExportFile(Component parent, String defaultName) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File(defaultName));
+        chooser.setFileFilter(new FileNameExtensionFilter("CSV文件", "csv"));
+        if(chooser.showSaveDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return null;
+        }
+        return chooser.getSelectedFile().toPath();
+    }
+    
+    /**
+     * 创建统计面板的辅助方法
+     */
+    private JPanel createStatsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.setBackground(themeConfig.bgColor);
+        panel.setBorder(BorderFactory.createEmptyBorder(40, 40, 40, 40)); // 增加边距
+        return panel;
+    }
+    
+    /**
+     * 显示用户管理对话框
+     */
+    private void showUserManageDialog() {
+        dialogs.show("用户管理", this::buildUserManageDialog);
+    }
+    
+    /**
+     * 构建用户管理对话框,每次显示时在后台读取用户列表,只改动新注册的用户和登录时间变化的行
+     */
+    private DialogManager.View buildUserManageDialog() {
+        JDialog dialog = new JDialog(frame, "用户管理", true);
+        dialog.setLayout(new BorderLayout(20, 20)); // 增加组件间距
+        
+        Font font = theme.font(Font.BOLD, 24);
+        
+        // 用户列表
+        String[] columnNames = {"用户名", "角色", "创建时间", "最后登录"};
+        DefaultTableModel model = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        Map<String, Integer> rowOf = new HashMap<>();  // 用户名 -> 行号
+        
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 60); // 增加行高
+        
+        JScrollPane scrollPane = new JScrollPane(table);
+        theme.styleScrollPane(scrollPane);
+        
+        dialog.add(scrollPane, BorderLayout.CENTER);
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        return new DialogManager.View(dialog).onShow(() ->
+            executor.run(() -> new ArrayList<>(engine.getUsers()), users -> {
+                for(User user : users) {
+                    Integer row = rowOf.get(user.getUsername());
+                    if(row == null) {
+                        rowOf.put(user.getUsername(), model.getRowCount());
+                        model.addRow(new Object[]{
+                            user.getUsername(),
+                            user.getRole(),
+                            user.getCreateTime(),
+                            user.getLastLoginTime()
+                        });
+                    } else if(!Objects.equals(model.getValueAt(row, 3), user.getLastLoginTime())) {
+                        model.setValueAt(user.getLastLoginTime(), row, 3);
+                    }
+                }
+            }, error -> showError(dialog, error)));
+    }
+    
+    /**
+     * 显示房屋管理对话框
+     */
+    private void showHouseManageDialog() {
+        dialogs.show("房屋信息管理", this::buildHouseManageDialog);
+    }
+    
+    /**
+     * 构建房屋管理对话框
+     */
+    private DialogManager.View buildHouseManageDialog() {
+        JDialog dialog = new JDialog(frame, "房屋信息管理", true);
+        dialog.setLayout(new BorderLayout(20, 20)); // 增加组件间距
+        
+        Font font = theme.font(Font.BOLD, 24);
+        
+        // 房屋列表
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+            HouseTableModel.Column.BUILDING, HouseTableModel.Column.UNIT,
+            HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+            HouseTableModel.Column.PRICE, HouseTableModel.Column.STATUS,
+            HouseTableModel.Column.BUYER, HouseTableModel.Column.SALE_DATE);
+        
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 50);
+        
+        // 按钮面板
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 20));
+        buttonPanel.setBackground(themeConfig.bgColor);
+        
+        JButton addButton = createGradientButton("添加房屋");
+        JButton editButton = createGradientButton("编辑房屋");
+        JButton deleteButton = createGradientButton("删除房屋");
+        JButton importButton = createGradientButton("批量导入");
+        
+        addButton.setFont(font);
+        editButton.setFont(font);
+        deleteButton.setFont(font);
+        importButton.setFont(font);
+        
+        buttonPanel.add(addButton);
+        buttonPanel.add(editButton);
+        buttonPanel.add(deleteButton);
+        buttonPanel.add(importButton);
+        
+        // 添加按钮事件
+        addButton.addActionListener(e -> {
+            showAddHouseDialog(dialog, model);
+        });
+        
+        importButton.addActionListener(e -> importHouses(dialog));
+        
+        editButton.addActionListener(e -> {
+            int selectedRow = table.getSelectedRow();
+            if(selectedRow < 0) {
+                JOptionPane.showMessageDialog(dialog, "请先选择要编辑的房屋!");
+                return;
+            }
+            
+            String id = (String)table.getValueAt(selectedRow, 0);
+            House house = engine.getHouse(id);
+            if(house == null) {
+                JOptionPane.showMessageDialog(dialog, "该房屋已被删除!");
+                return;
+            }
+            
+            JDialog editDialog = new JDialog(dialog, "编辑房屋", true);
+            editDialog.setLayout(new GridLayout(7, 2, 10, 10));
+            
+            JTextField buildingField = new JTextField(house.getBuilding());
+            JTextField unitField = new JTextField(house.getUnit());
+            JTextField roomField = new JTextField(house.getRoom());
+            JTextField areaField = new JTextField(String.valueOf(house.getArea()));
+            JTextField priceField = new JTextField(String.valueOf(house.getPrice()));
+            
+            JButton confirmButton = createGradientButton("确认");
+            JButton cancelButton = createGradientButton("取消");
+            
+            buildingField.setFont(font);
+            unitField.setFont(font);
+            roomField.setFont(font);
+            areaField.setFont(font);
+            priceField.setFont(font);
+            confirmButton.setFont(font);
+            cancelButton.setFont(font);
+            
+            confirmButton.addActionListener(ev -> {
+                try {
+                    double area = Double.parseDouble(areaField.getText());
+                    double price = Double.parseDouble(priceField.getText());
+                    String building = buildingField.getText();
+                    String unit = unitField.getText();
+                    String room = roomField.getText();
+                    executor.run(() -> engine.updateHouse(id, building, unit, room, area, price), updated -> {
+                        if(!updated) {
+                            JOptionPane.showMessageDialog(editDialog, "该房屋已被删除!");
+                            return;
+                        }
+                        
+                        model.houseUpdated(house);
+                        
+                        editDialog.dispose();
+                        JOptionPane.showMessageDialog(dialog, "修改成功!");
+                    }, error -> showError(editDialog, error));
+                } catch(NumberFormatException ex) {
+                    JOptionPane.showMessageDialog(editDialog, "请输入有效的数字!");
+                }
+            });
+            
+            cancelButton.addActionListener(ev -> editDialog.dispose());
+            
+            addLabelAndField(editDialog, "房屋编号: " + id, new JTextField(), font);
+            addLabelAndField(editDialog, "楼栋号:", buildingField, font);
+            addLabelAndField(editDialog, "单元号:", unitField, font);
+            addLabelAndField(editDialog, "房间号:", roomField, font);
+            addLabelAndField(editDialog, "面积:", areaField, font);
+            addLabelAndField(editDialog, "单价:", priceField, font);
+            
+            editDialog.add(confirmButton);
+            editDialog.add(cancelButton);
+            
+            editDialog.setSize(800, 600);
+            editDialog.setLocationRelativeTo(dialog);
+            editDialog.setVisible(true);
+        });
+        
+        deleteButton.addActionListener(e -> {
+            int selectedRow = table.getSelectedRow();
+            if(selectedRow < 0) {
+                JOptionPane.showMessageDialog(dialog, "请先选择要删除的房屋!");
+                return;
+            }
+            
+            String id = (String)table.getValueAt(selectedRow, 0);
+            int confirm = JOptionPane.showConfirmDialog(dialog, 
+                "确定要删除房屋 " + id + " 吗?", "确认删除",
+                JOptionPane.YES_NO_OPTION);
+                
+            if(confirm == JOptionPane.YES_OPTION) {
+                executor.run(() -> engine.removeHouse(id), removed -> {
+                    model.houseRemoved(id);
+                    if(removed == null) {
+                        // 其他会话或HTTP客户端已经删除
+                        JOptionPane.showMessageDialog(dialog, "该房屋已被删除!");
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(dialog, "删除成功!");
+                }, error -> showError(dialog, error));
+            }
+        });
+        
+        dialog.add(buttonPanel, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        
+        // 先订阅再装载,装载期间的变更由模型在装载后补上;其他用户的变更逐行刷新
+        InventoryEvents.Subscription subscription =
+            engine.getEvents().subscribe(SwingUtilities::invokeLater, model::applyChanges);
+        
+        // 表格数据在后台准备,对话框先显示
+        executor.run(() -> HouseTableModel.sortedRows(engine.getHouses(), h -> true),
+                     model::setSortedHouses, error -> showError(dialog, error));
+        
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        // 关闭后暂停订阅,再次打开时只补上期间变化的房屋
+        return new DialogManager.View(dialog)
+            .onShow(subscription::resume)
+            .onHide(subscription::pause)
+            .onDispose(subscription::close);
+    }
+    
+    /**
+     * 选择CSV文件批量导入房屋,导入在后台进行并显示进度
+     * 导入的房屋经变更通知成批合并到已订阅的表格中,完成后不再整表重读
+     */
+    private void importHouses(JDialog parent) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter(
+            "CSV文件(编号,楼栋号,单元号,房间号,面积,单价)", "csv", "txt"));
+        if(chooser.showOpenDialog(parent) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        
+        executor.runWithProgress(parent, "正在导入" + file.getFileName(),
+            progress -> new HouseImporter(engine).importCsv(file, progress), result -> {
+                StringBuilder message = new StringBuilder(result.cancelled ? "导入已取消!\n" : "导入完成!\n");
+                message.append("数据行数: ").append(result.rows).append("\n");
+                message.append("成功导入: ").append(result.imported).append("\n");
+                message.append("编号重复: ").append(result.duplicates).append("\n");
+                message.append("格式错误: ").append(result.invalid).append("\n");
+                message.append("耗时: ").append(result.elapsedMillis).append("ms");
+                for(int i = 0; i < Math.min(10, result.errors.size()); i++) {
+                    message.append("\n").append(result.errors.get(i));
+                }
+                JOptionPane.showMessageDialog(parent, message.toString());
+            }, error -> showError(parent, error));
+    }
+    
+    /**
+     * 显示添加房屋对话框
+     */
+    private void showAddHouseDialog(JDialog parent, HouseTableModel model) {
+        JDialog dialog = new JDialog(parent, "添加新房屋", true);
+        dialog.setLayout(new GridLayout(8, 2, 10, 10));
+        dialog.getContentPane().setBackground(themeConfig.bgColor);
+        
+        Font font = theme.font(Font.BOLD, 24);
+        
+        JTextField projectField = createStyledTextField();
+        JTextField idField = createStyledTextField();
+        JTextField buildingField = createStyledTextField();
+        JTextField unitField = createStyledTextField();
+        JTextField roomField = createStyledTextField();
+        JTextField areaField = createStyledTextField();
+        JTextField priceField = createStyledTextField();
+        
+        JButton confirmButton = createGradientButton("确认");
+        JButton cancelButton = createGradientButton("取消");
+        
+        // 设置字体
+        projectField.setFont(font);
+        idField.setFont(font);
+        buildingField.setFont(font);
+        unitField.setFont(font);
+        roomField.setFont(font);
+        areaField.setFont(font);
+        priceField.setFont(font);
+        confirmButton.setFont(font);
+        cancelButton.setFont(font);
+        
+        // 添加标签和输入框,项目留空为默认项目
+        addLabelAndField(dialog, "所属项目:", projectField, font);
+        addLabelAndField(dialog, "房屋编号:", idField, font);
+        addLabelAndField(dialog, "楼栋号:", buildingField, font);
+        addLabelAndField(dialog, "单元号:", unitField, font);
+        addLabelAndField(dialog, "房间号:", roomField, font);
+        addLabelAndField(dialog, "面积:", areaField, font);
+        addLabelAndField(dialog, "单价:", priceField, font);
+        
+        // 添加按钮
+        dialog.add(confirmButton);
+        dialog.add(cancelButton);
+        
+        // 按钮事件
+        confirmButton.addActionListener(e -> {
+            try {
+                String localId = idField.getText().trim();
+                if(localId.isEmpty() || localId.indexOf(House.PROJECT_SEPARATOR) >= 0
+                   || projectField.getText().indexOf(House.PROJECT_SEPARATOR) >= 0) {
+                    JOptionPane.showMessageDialog(dialog, "房屋编号不能为空,项目和编号中不能包含\""
+                        + House.PROJECT_SEPARATOR + "\"!");
+                    return;
+                }
+                String id = House.qualify(projectField.getText().trim(), localId);
+                if(engine.containsHouse(id)) {
+                    JOptionPane.showMessageDialog(dialog, "房屋编号已存在!");
+                    return;
+                }
+                
+                House newHouse = new House(
+                    id,
+                    buildingField.getText(),
+                    unitField.getText(),
+                    roomField.getText(),
+                    Double.parseDouble(areaField.getText()),
+                    Double.parseDouble(priceField.getText())
+                );
+                
+                executor.run(() -> engine.addHouse(newHouse), added -> {
+                    if(!added) {
+                        JOptionPane.showMessageDialog(dialog, "房屋编号已存在!");
+                        return;
+                    }
+                    model.houseAdded(newHouse);
+                    
+                    dialog.dispose();
+                    JOptionPane.showMessageDialog(parent, "添加成功!");
+                }, error -> showError(dialog, error));
+            } catch(NumberFormatException ex) {
+                JOptionPane.showMessageDialog(dialog, "请输入有效的数字!");
+            }
+        });
+        
+        cancelButton.addActionListener(e -> dialog.dispose());
+        
+        dialog.setSize(800, 680);
+        dialog.setLocationRelativeTo(parent);
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * 创建样式化的文本框
+     */
+    private JTextField createStyledTextField() {
+        JTextField field = new JTextField();
+        field.setBorder(theme.getFieldBorder());
+        field.setBackground(Color.WHITE);
+        field.setForeground(themeConfig.textColor);
+        return field;
+    }
+    
+    /**
+     * 添加标签和输入框的辅助方法
+     */
+    private void addLabelAndField(JDialog dialog, String labelText, 
+                                JTextField field, Font font) {
+        JLabel label = new JLabel(labelText);
+        label.setFont(font);
+        label.setForeground(themeConfig.textColor);
+        dialog.add(label);
+        dialog.add(field);
+    }
+    
+    /**
+     * 显示预售管理对话框
+     */
+    private void showPresaleDialog() {
+        dialogs.show("预售管理", this::buildPresaleDialog);
+    }
+    
+    /**
+     * 构建预售管理对话框
+     */
+    private DialogManager.View buildPresaleDialog() {
+        JDialog dialog = new JDialog(frame, "预售管理", true);
+        dialog.setLayout(new BorderLayout(10, 10));
+        
+        Font font = theme.font(Font.BOLD, 32);
+        
+        // 可售房屋列表
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+            HouseTableModel.Column.BUILDING, HouseTableModel.Column.UNIT,
+            HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+            HouseTableModel.Column.PRICE, HouseTableModel.Column.STATUS);
+        model.setFilter(House::isAvailable);
+        
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 50);
+        
+        JButton sellButton = new JButton("预订房屋");
+        JButton holdButton = new JButton("锁定待付款");
+        JButton myHoldsButton = new JButton("我的锁定");
+        JButton myHousesButton = new JButton("我的房产");
+        sellButton.setFont(font);
+        holdButton.setFont(font);
+        myHoldsButton.setFont(font);
+        myHousesButton.setFont(font);
+        
+        sellButton.addActionListener(e -> {
+            int selectedRow = table.getSelectedRow();
+            if(selectedRow >= 0) {
+                String houseId = (String)table.getValueAt(selectedRow, 0);
+                String buyer = currentUser;
+                sellButton.setEnabled(false);
+                executor.run(() -> gate.reserve(houseId, buyer), result -> {
+                    sellButton.setEnabled(true);
+                    switch(result) {
+                        case SUCCESS:
+                            JOptionPane.showMessageDialog(dialog, "预订成功!");
+                            dialog.setVisible(false);
+                            break;
+                        case SOLD_OUT:
+                            // 表格中的行已过时,只移除这一行
+                            model.houseRemoved(houseId);
+                            JOptionPane.showMessageDialog(dialog, "该房屋已被预订!");
+                            break;
+                        case LOST:
+                            model.houseRemoved(houseId);
+                            JOptionPane.showMessageDialog(dialog, "很遗憾,未中签!");
+                            break;
+                        case BUSY:
+                        case TIMEOUT:
+                            JOptionPane.showMessageDialog(dialog, "排队人数已满,请稍后再试!");
+                            break;
+                        case DUPLICATE:
+                            JOptionPane.showMessageDialog(dialog, "您已在该房屋的队列中!");
+                            break;
+                        case FAILED:
+                            JOptionPane.showMessageDialog(dialog, "抽签时预订出错,请稍后重新报名!");
+                            break;
+                        default:
+                            model.houseRemoved(houseId);
+                            JOptionPane.showMessageDialog(dialog, "该房屋已被删除!");
+                            break;
+                    }
+                }, error -> {
+                    sellButton.setEnabled(true);
+                    showError(dialog, error);
+                });
+            } else {
+                JOptionPane.showMessageDialog(dialog, "请先选择要预订的房屋!");
+            }
+        });
+        
+        // 锁定时长可通过系统属性house.hold.minutes配置
+        int holdMinutes = Integer.getInteger("house.hold.minutes", 15);
+        holdButton.addActionListener(e -> {
+            int selectedRow = table.getSelectedRow();
+            if(selectedRow < 0) {
+                JOptionPane.showMessageDialog(dialog, "请先选择要锁定的房屋!");
+                return;
+            }
+            String houseId = (String)table.getValueAt(selectedRow, 0);
+            String buyer = currentUser;
+            holdButton.setEnabled(false);
+            executor.run(() -> engine.hold(houseId, buyer, holdMinutes * 60_000L), result -> {
+                holdButton.setEnabled(true);
+                // 锁定成功后房屋不再可售,与冲突、删除一样从列表中移除
+                model.houseRemoved(houseId);
+                switch(result) {
+                    case SUCCESS:
+                        JOptionPane.showMessageDialog(dialog, "已锁定" + holdMinutes
+                            + "分钟,请在\"我的锁定\"中确认购买,到期未确认将自动释放!");
+                        break;
+                    case CONFLICT:
+                        JOptionPane.showMessageDialog(dialog, "该房屋已被预订或锁定!");
+                        break;
+                    default:
+                        JOptionPane.showMessageDialog(dialog, "该房屋已被删除!");
+                        break;
+                }
+            }, error -> {
+                holdButton.setEnabled(true);
+                showError(dialog, error);
+            });
+        });
+        
+        myHoldsButton.addActionListener(e -> showMyHoldsDialog());
+        
+        myHousesButton.addActionListener(e -> {
+            showMyHousesDialog();
+        });
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(sellButton);
+        buttonPanel.add(holdButton);
+        buttonPanel.add(myHoldsButton);
+        buttonPanel.add(myHousesButton);
+        
+        dialog.add(buttonPanel, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        
+        // 其他用户预订或锁定的房屋移出列表,锁定到期释放的房屋重新出现
+        InventoryEvents.Subscription subscription =
+            engine.getEvents().subscribe(SwingUtilities::invokeLater, model::applyChanges);
+        
+        executor.run(() -> HouseTableModel.sortedRows(engine.getHouses(), House::isAvailable),
+                     model::setSortedHouses, error -> showError(dialog, error));
+        
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        // 关闭后暂停订阅,再次打开时只补上期间变化的房屋
+        return new DialogManager.View(dialog)
+            .onShow(subscription::resume)
+            .onHide(subscription::pause)
+            .onDispose(subscription::close);
+    }
+    
+    /**
+     * 显示当前用户锁定中的房屋,可以确认购买或放弃
+     */
+    private void showMyHoldsDialog() {
+        JDialog dialog = new JDialog(frame, "我的锁定", true);
+        dialog.setLayout(new BorderLayout(10, 10));
+        
+        Font font = theme.font(Font.BOLD, 32);
+        
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+            HouseTableModel.Column.BUILDING, HouseTableModel.Column.UNIT,
+            HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+            HouseTableModel.Column.PRICE);
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 50);
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 20));
+        buttonPanel.setBackground(themeConfig.bgColor);
+        JButton confirmButton = createGradientButton("确认购买");
+        JButton releaseButton = createGradientButton("放弃锁定");
+        confirmButton.setFont(font);
+        releaseButton.setFont(font);
+        buttonPanel.add(confirmButton);
+        buttonPanel.add(releaseButton);
+        
+        String buyer = currentUser;
+        for(JButton button : new JButton[]{confirmButton, releaseButton}) {
+            boolean confirm = button == confirmButton;
+            button.addActionListener(e -> {
+                int selectedRow = table.getSelectedRow();
+                if(selectedRow < 0) {
+                    JOptionPane.showMessageDialog(dialog, "请先选择锁定的房屋!");
+                    return;
+                }
+                String houseId = (String)table.getValueAt(selectedRow, 0);
+                if(confirm) {
+                    Date expiry = engine.getHoldExpiry(houseId);
+                    String prompt = "确认购买" + houseId + "?"
+                        + (expiry == null ? "" : "\n锁定到期时间: " + new SimpleDateFormat("HH:mm:ss").format(expiry));
+                    if(JOptionPane.showConfirmDialog(dialog, prompt, "确认购买",
+                            JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+                        return;
+                    }
+                }
+                button.setEnabled(false);
+                executor.run(() -> confirm ? engine.confirm(houseId, buyer) : engine.release(houseId, buyer),
+                    result -> {
+                        button.setEnabled(true);
+                        model.houseRemoved(houseId);
+                        switch(result) {
+                            case SUCCESS:
+                                JOptionPane.showMessageDialog(dialog, confirm ? "购买成功!" : "已放弃锁定!");
+                                break;
+                            case NOT_HELD:
+                                JOptionPane.showMessageDialog(dialog, "锁定已过期!");
+                                break;
+                            default:
+                                JOptionPane.showMessageDialog(dialog, "该房屋已被删除!");
+                                break;
+                        }
+                    }, error -> {
+                        button.setEnabled(true);
+                        showError(dialog, error);
+                    });
+            });
+        }
+        
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        
+        executor.run(() -> HouseTableModel.sortedRows(engine.getHoldsOf(buyer), h -> true),
+                     model::setSortedHouses, error -> showError(dialog, error));
+        
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
+    }
+    
+    /**
+     * "我的房产"的一页,在后台线程读取
+     */
+    private static class HousePage {
+        final List<House> houses;  // 本页的房屋,多读一套用来判断是否还有下一页
+        final int total;           // 已购房屋总数
+        
+        HousePage(List<House> houses, int total) {
+            this.houses = houses;
+            this.total = total;
+        }
+    }
+    
+    /**
+     * 显示当前用户购买的房屋,按编号分页
+     */
+    private void showMyHousesDialog() {
+        JDialog dialog = new JDialog(frame, "我的房产", true);
+        dialog.setLayout(new BorderLayout(10, 10));
+        
+        Font font = theme.font(Font.BOLD, 32);
+        
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+            HouseTableModel.Column.BUILDING, HouseTableModel.Column.UNIT,
+            HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+            HouseTableModel.Column.PRICE, HouseTableModel.Column.PURCHASE_DATE);
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 50);
+
+        // 添加按钮面板
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 20));
+        buttonPanel.setBackground(themeConfig.bgColor);
+        
+        JButton prevButton = createGradientButton("上一页");
+        JButton nextButton = createGradientButton("下一页");
+        JButton viewButton = createGradientButton("查看详情");
+        JLabel pageLabel = new JLabel();
+        prevButton.setFont(font);
+        nextButton.setFont(font);
+        viewButton.setFont(font);
+        pageLabel.setFont(font);
+        pageLabel.setForeground(themeConfig.textColor);
+        buttonPanel.add(prevButton);
+        buttonPanel.add(pageLabel);
+        buttonPanel.add(nextButton);
+        buttonPanel.add(viewButton);
+        
+        // 按编号翻页:记下每一页之前最后一套的编号,第一页为null,向前翻页时退回上一个记录
+        String buyer = currentUser;
+        List<String> pageStarts = new ArrayList<>();
+        pageStarts.add(null);
+        Runnable loadPage = () -> {
+            String after = pageStarts.get(pageStarts.size() - 1);
+            prevButton.setEnabled(false);
+            nextButton.setEnabled(false);
+            executor.run(() -> new HousePage(engine.getHousesOf(buyer, after, MY_HOUSES_PAGE_SIZE + 1),
+                                             engine.getHouseCountOf(buyer)), page -> {
+                boolean hasMore = page.houses.size() > MY_HOUSES_PAGE_SIZE;
+                List<House> rows = hasMore ? page.houses.subList(0, MY_HOUSES_PAGE_SIZE) : page.houses;
+                model.setSortedHouses(rows);
+                pageLabel.setText("第" + pageStarts.size() + "页,共" + page.total + "套");
+                prevButton.setEnabled(pageStarts.size() > 1);
+                nextButton.setEnabled(hasMore);
+            }, error -> showError(dialog, error));
+        };
+        prevButton.addActionListener(e -> {
+            pageStarts.remove(pageStarts.size() - 1);
+            loadPage.run();
+        });
+        nextButton.addActionListener(e -> {
+            pageStarts.add(model.getHouseAt(model.getRowCount() - 1).getId());
+            loadPage.run();
+        });
+        
+        viewButton.addActionListener(e -> {
+            int selectedRow = table.getSelectedRow();
+            if(selectedRow >= 0) {
+                // 同一编号可能已被删除后重新添加为未售的房屋,以反向索引为准,不按编号重新查找
+                House house = model.getHouseAt(selectedRow);
+                if(!engine.ownsHouse(buyer, house.getId())) {
+                    JOptionPane.showMessageDialog(dialog, "该房屋已被删除!");
+                    return;
+                }
+                
+                JDialog detailDialog = new JDialog(dialog, "房产详情", true);
+                detailDialog.setLayout(new GridLayout(8, 2, 10, 10));
+                detailDialog.getContentPane().setBackground(themeConfig.bgColor);
+                
+                // 添加详细信息标签
+                addDetailLabel(detailDialog, "编号:", house.getId(), font);
+                addDetailLabel(detailDialog, "楼栋:", house.getBuilding(), font);
+                addDetailLabel(detailDialog, "单元:", house.getUnit(), font);
+                addDetailLabel(detailDialog, "房间号:", house.getRoom(), font);
+                addDetailLabel(detailDialog, "面积:", String.valueOf(house.getArea()), font);
+                addDetailLabel(detailDialog, "单价:", String.valueOf(house.getPrice()), font);
+                addDetailLabel(detailDialog, "购买日期:", house.getSaleDate().toString(), font);
+                
+                detailDialog.setSize(800, 600);
+                detailDialog.setLocationRelativeTo(dialog);
+                detailDialog.setVisible(true);
+            } else {
+                JOptionPane.showMessageDialog(dialog, "请先选择要查看的房产!");
+            }
+        });
+
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        
+        loadPage.run();
+        
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
+    }
+    
+    private void addDetailLabel(JDialog dialog, String labelText, String value, Font font) {
+        JLabel label = new JLabel(labelText);
+        label.setFont(font);
+        label.setForeground(themeConfig.textColor);
+        
+        JLabel valueLabel = new JLabel(value);
+        valueLabel.setFont(font);
+        valueLabel.setForeground(themeConfig.textColor);
+        
+        dialog.add(label);
+        dialog.add(valueLabel);
+    }
+
+    private void createMainGUI() {
+        frame = new JFrame("房屋预售系统 - 当前用户: " + currentUser);
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setUndecorated(true);
+        frame.setSize(1600, 1000);
+        if(logoIcon != null) {
+            frame.setIconImage(logoIcon.getImage());
+        }
+        
+        User currentUserObj = engine.getUser(currentUser);
+        boolean isAdmin = currentUserObj != null && currentUserObj.isAdmin();
+        
+        mainPanel = new JPanel();
+        mainPanel.setLayout(new GridLayout(isAdmin ? 7 : 6, 1, 50, 30));
+        mainPanel.setBackground(themeConfig.bgColor);
+        mainPanel.setBorder(BorderFactory.createEmptyBorder(0, 200, 0, 200));
+        
+        JButton houseInfoButton = createGradientButton("房屋信息管理");
+        JButton presaleButton = createGradientButton("预售管理");
+        JButton userButton = createGradientButton("用户管理");
+        JButton queryButton = createGradientButton("信息查询");
+        JButton statsButton = createGradientButton("统计报表");
+        JButton metricsButton = createGradientButton("性能指标");
+        JButton exitButton = createGradientButton("退出系统");
+        Font buttonFont = theme.font(Font.BOLD, 32);
+        
+        houseInfoButton.setFont(buttonFont);
+        presaleButton.setFont(buttonFont);
+        userButton.setFont(buttonFont);
+        queryButton.setFont(buttonFont);
+        statsButton.setFont(buttonFont);
+        metricsButton.setFont(buttonFont);
+        exitButton.setFont(buttonFont);
+        
+        // 根据用户角色显示不同的功能按钮
+        if(isAdmin) {
+            mainPanel.add(houseInfoButton);
+            mainPanel.add(presaleButton);
+            mainPanel.add(userButton);
+            mainPanel.add(queryButton);
+            mainPanel.add(statsButton);
+            mainPanel.add(metricsButton);
+            mainPanel.add(exitButton);
+            
+            houseInfoButton.addActionListener(e -> showHouseManageDialog());
+            presaleButton.addActionListener(e -> showPresaleDialog());
+            userButton.addActionListener(e -> showUserManageDialog());
+            queryButton.addActionListener(e -> showQueryDialog());
+            statsButton.addActionListener(e -> openStatsDialog());
+            metricsButton.addActionListener(e -> showMetricsDialog());
+        } else {
+            mainPanel.add(presaleButton);
+            mainPanel.add(queryButton);
+            mainPanel.add(exitButton);
+            
+            presaleButton.addActionListener(e -> showPresaleDialog());
+            queryButton.addActionListener(e -> showQueryDialog());
+        }
+        
+        exitButton.addActionListener(e -> {
+            logins.logout(sessionToken);
+            sessionToken = null;
+            dialogs.disposeAll();  // 对话框属于这个主窗口和当前用户,下次登录重新构建
+            frame.dispose();
+            showLoginDialog();
+        });
+        
+        frame.add(mainPanel);
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+    }
+    
+    /**
+     * 显示信息查询对话框
+     */
+    private void showQueryDialog() {
+        dialogs.show("信息查询", this::buildQueryDialog);
+    }
+    
+    /**
+     * 构建信息查询对话框,再次打开时保留上次的条件和结果,结果按条件随库存变更更新
+     */
+    private DialogManager.View buildQueryDialog() {
+        JDialog dialog = new JDialog(frame, "信息查询", true);
+        dialog.setLayout(new BorderLayout(10, 10));
+        dialog.getContentPane().setBackground(themeConfig.bgColor);
+        
+        Font font = theme.font(Font.BOLD, 32);
+        
+        // 搜索面板:第一行为编号/项目/楼栋/单元/状态,第二行为面积和单价范围
+        JPanel searchPanel = new JPanel(new GridLayout(2, 1));
+        searchPanel.setBackground(themeConfig.bgColor);
+        JPanel keyPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+        JPanel rangePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
+        keyPanel.setBackground(themeConfig.bgColor);
+        rangePanel.setBackground(themeConfig.bgColor);
+        
+        JTextField searchField = new JTextField(10);
+        JComboBox<String> projectBox = new JComboBox<>();
+        JTextField buildingField = new JTextField(3);
+        JTextField unitField = new JTextField(3);
+        JComboBox<String> statusBox = new JComboBox<>(
+            new String[]{"全部", House.STATUS_AVAILABLE, House.STATUS_HELD, House.STATUS_SOLD});
+        JTextField minAreaField = new JTextField(5);
+        JTextField maxAreaField = new JTextField(5);
+        JTextField minPriceField = new JTextField(5);
+        JTextField maxPriceField = new JTextField(5);
+        JButton searchButton = createGradientButton("搜索");
+        for(JComponent c : new JComponent[]{searchField, projectBox, buildingField, unitField, statusBox,
+                minAreaField, maxAreaField, minPriceField, maxPriceField, searchButton}) {
+            c.setFont(font);
+        }
+        
+        addSearchLabel(keyPanel, "编号/购买者:", font);
+        keyPanel.add(searchField);
+        addSearchLabel(keyPanel, "项目:", font);
+        keyPanel.add(projectBox);
+        addSearchLabel(keyPanel, "楼栋:", font);
+        keyPanel.add(buildingField);
+        addSearchLabel(keyPanel, "单元:", font);
+        keyPanel.add(unitField);
+        addSearchLabel(keyPanel, "状态:", font);
+        keyPanel.add(statusBox);
+        addSearchLabel(rangePanel, "面积:", font);
+        rangePanel.add(minAreaField);
+        addSearchLabel(rangePanel, "-", font);
+        rangePanel.add(maxAreaField);
+        addSearchLabel(rangePanel, "单价:", font);
+        rangePanel.add(minPriceField);
+        addSearchLabel(rangePanel, "-", font);
+        rangePanel.add(maxPriceField);
+        rangePanel.add(searchButton);
+        searchPanel.add(keyPanel);
+        searchPanel.add(rangePanel);
+        
+        // 结果表格
+        HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+            HouseTableModel.Column.BUILDING, HouseTableModel.Column.UNIT,
+            HouseTableModel.Column.ROOM, HouseTableModel.Column.AREA,
+            HouseTableModel.Column.PRICE, HouseTableModel.Column.STATUS,
+            HouseTableModel.Column.BUYER, HouseTableModel.Column.SALE_DATE);
+        JTable table = new JTable(model);
+        theme.styleTable(table, font, 50);
+        
+        // 搜索之前不显示任何房屋;之后满足本次条件的房屋随变更插入、刷新或移出结果
+        model.setFilter(h -> false);
+        model.setSortedHouses(new ArrayList<>());
+        InventoryEvents.Subscription subscription =
+            engine.getEvents().subscribe(SwingUtilities::invokeLater, model::applyChanges);
+        JLabel resultLabel = new JLabel(" ");
+        resultLabel.setFont(theme.font(Font.PLAIN, 24));
+        resultLabel.setForeground(themeConfig.textColor);
+        
+        // 编号/购买者边输入边搜索:停止输入一小段时间后在后台按前缀查找,同时最多一次查询在执行,
+        // 结果与输入框当前内容不符时丢弃,最多显示SEARCH_LIMIT套
+        AtomicReference<String> typed = new AtomicReference<>("");  // 最近一次触发搜索时的输入
+        Runnable prefixSearch = executor.coalescing(() -> {
+            String prefix = typed.get();
+            List<House> found = engine.searchPrefix(prefix, SEARCH_LIMIT + 1);
+            return new PrefixResult(prefix, HouseTableModel.sortedRows(found, h -> true));
+        }, result -> {
+            if(!result.prefix.equals(searchField.getText().trim())) {
+                // 输入已经变化:先把保存的变更补到现有结果;输入非空时更新的搜索还会完成,继续保存到那次装载
+                model.applyDeferred();
+                if(!searchField.getText().trim().isEmpty()) {
+                    model.deferChanges();
+                }
+                return;
+            }
+            List<House> houses = result.houses;
+            boolean more = houses.size() > SEARCH_LIMIT;
+            if(more) {
+                houses = new ArrayList<>(houses.subList(0, SEARCH_LIMIT));
+            }
+            model.setFilter(h -> InventoryEngine.matchesPrefix(h, result.prefix));
+            model.setSortedHouses(houses);
+            resultLabel.setText(houses.isEmpty() ? "未找到匹配的房屋"
+                : more ? "仅显示前" + SEARCH_LIMIT + "套,请继续输入缩小范围" : "共" + houses.size() + "套");
+        }, error -> {
+            model.applyDeferred();
+            resultLabel.setText("搜索失败: " + error.getMessage());
+        });
+        Timer debounce = new Timer(SEARCH_DEBOUNCE_MILLIS, e -> {
+            typed.set(searchField.getText().trim());
+            model.deferChanges();
+            prefixSearch.run();
+        });
+        debounce.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                changed();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                changed();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+            
+            private void changed() {
+                if(searchField.getText().trim().isEmpty()) {
+                    // 清空后不显示任何房屋,等待按条件搜索
+                    debounce.stop();
+                    model.setFilter(h -> false);
+                    model.setSortedHouses(new ArrayList<>());
+                    resultLabel.setText(" ");
+                } else {
+                    debounce.restart();
+                }
+            }
+        });
+        
+        searchButton.addActionListener(e -> {
+            String searchId = searchField.getText().trim();
+            if(!searchId.isEmpty()) {
+                debounce.stop();
+                typed.set(searchId);
+                model.deferChanges();
+                prefixSearch.run();
+                return;
+            }
+            HouseQuery query = new HouseQuery();
+            try {
+                if(projectBox.getSelectedIndex() > 0) {
+                    String project = (String)projectBox.getSelectedItem();
+                    query.setProject(DEFAULT_PROJECT_LABEL.equals(project) ? "" : project);
+                }
+                query.setBuilding(emptyToNull(buildingField.getText()));
+                query.setUnit(emptyToNull(unitField.getText()));
+                if(statusBox.getSelectedIndex() > 0) {
+                    query.setStatus((String)statusBox.getSelectedItem());
+                }
+                query.setAreaRange(parseBound(minAreaField), parseBound(maxAreaField));
+                query.setPriceRange(parseBound(minPriceField), parseBound(maxPriceField));
+            } catch(NumberFormatException ex) {
+                JOptionPane.showMessageDialog(dialog, "请输入有效的数字!");
+                return;
+            }
+            
+            model.setFilter(query::matches);
+            model.deferChanges();
+            searchButton.setEnabled(false);
+            executor.run(() -> HouseTableModel.sortedRows(engine.query(query), h -> true), result -> {
+                searchButton.setEnabled(true);
+                model.setSortedHouses(result);
+                resultLabel.setText("共" + result.size() + "套");
+                if(result.isEmpty()) {
+                    JOptionPane.showMessageDialog(dialog, "未找到该房屋!");
+                }
+            }, error -> {
+                searchButton.setEnabled(true);
+                model.setSortedHouses(new ArrayList<>());
+                showError(dialog, error);
+            });
+        });
+        
+        dialog.add(searchPanel, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(resultLabel, BorderLayout.SOUTH);
+        
+        dialog.setSize(1600, 1000);
+        dialog.setLocationRelativeTo(frame);
+        // 关闭后暂停订阅,再次打开时只补上期间变化的房屋;项目可能有增减,每次显示时核对
+        return new DialogManager.View(dialog)
+            .onShow(() -> {
+                subscription.resume();
+                refreshProjects(projectBox);
+            })
+            .onHide(subscription::pause)
+            .onDispose(subscription::close);
+    }
+    
+    /**
+     * 按当前的项目列表更新项目下拉框,列表没有变化时不做改动,保留原来的选择
+     */
+    private void refreshProjects(JComboBox<String> projectBox) {
+        List<String> labels = new ArrayList<>();
+        labels.add("全部");
+        for(String project : engine.getProjects()) {
+            labels.add(project.isEmpty() ? DEFAULT_PROJECT_LABEL : project);
+        }
+        boolean same = labels.size() == projectBox.getItemCount();
+        for(int i = 0; same && i < labels.size(); i++) {
+            same = labels.get(i).equals(projectBox.getItemAt(i));
+        }
+        if(same) {
+            return;
+        }
+        Object selected = projectBox.getSelectedItem();
+        projectBox.removeAllItems();
+        for(String label : labels) {
+            projectBox.addItem(label);
+        }
+        projectBox.setSelectedItem(labels.contains(selected) ? selected : "全部");
+    }
+    
+    /**
+     * 显示后台操作失败的原因
+     */
+    private void showError(Component parent, Throwable error) {
+        String message = error instanceof java.util.concurrent.RejectedExecutionException
+            ? "系统繁忙,请稍后再试!" : "操作失败: " + error.getMessage();
+        JOptionPane.showMessageDialog(parent, message, "错误", JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * 在搜索面板中添加标签
+     */
+    private void addSearchLabel(JPanel panel, String text, Font font) {
+        JLabel label = new JLabel(text);
+        label.setFont(font);
+        label.setForeground(themeConfig.textColor);
+        panel.add(label);
+    }
+    
+    /**
+     * 去掉首尾空白,空字符串视为不限
+     */
+    private static String emptyToNull(String text) {
+        String trimmed = text.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+    
+    /**
+     * 解析范围输入框,空白时返回null表示不限
+     */
+    private static Double parseBound(JTextField field) {
+        String text = emptyToNull(field.getText());
+        return text == null ? null : Double.valueOf(text);
+    }
+    
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(() -> {
+            new HouseSellingSystem();
+        });
+    }
+}
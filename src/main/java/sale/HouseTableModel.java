@@ -0,0 +1,282 @@
+package sale;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 房屋表格模型,直接引用库存中的House对象
+ *
+ * 模型只保存按编号排序的House引用,单元格的值在JTable绘制可见行时才从House读取,
+ * 不再为整个库存预先生成Object[]行和装箱的数值。
+ * 单套房屋变化时按编号二分定位到行,只通知该行的增删改。
+ * 订阅InventoryEvents后由applyChanges按批应用其他用户造成的变更,批量较大时整表合并一次。
+ */
+public class HouseTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private static final Comparator<House> BY_ID = Comparator.comparing(House::getId);
+    private static final int BULK_CHANGES = 256;  // 一批变更超过此数时整表合并,不再逐行通知
+
+    /**
+     * 表格列
+     */
+    public enum Column {
+        ID("编号"),
+        BUILDING("楼栋"),
+        UNIT("单元"),
+        ROOM("房间号"),
+        AREA("面积"),
+        PRICE("单价"),
+        STATUS("状态"),
+        BUYER("购买者"),
+        SALE_DATE("销售日期"),
+        PURCHASE_DATE("购买日期");
+
+        private final String title;  // 列标题
+
+        Column(String title) {
+            this.title = title;
+        }
+    }
+
+    private final Column[] columns;                   // 显示的列
+    private final List<House> rows = new ArrayList<>(); // 按编号排序的房屋
+    private Predicate<House> filter = h -> true;        // 表格只显示满足条件的房屋
+    private List<InventoryEvents.Change> deferred = new ArrayList<>(); // 首次装载前到达的变更,装载后为null
+
+    /**
+     * 构造函数
+     */
+    public HouseTableModel(Column... columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * 替换表格中的全部房屋
+     */
+    public void setHouses(Collection<House> houses) {
+        setHouses(houses, h -> true);
+    }
+
+    /**
+     * 替换表格中的全部房屋,只保留满足条件的房屋
+     */
+    public void setHouses(Collection<House> houses, Predicate<House> filter) {
+        setSortedHouses(sortedRows(houses, filter));
+    }
+
+    /**
+     * 筛选并按编号排序,可以在后台线程调用,结果再交给setSortedHouses
+     */
+    public static List<House> sortedRows(Collection<House> houses, Predicate<House> filter) {
+        List<House> list = new ArrayList<>();
+        for(House h : houses) {
+            if(filter.test(h)) {
+                list.add(h);
+            }
+        }
+        list.sort(BY_ID);
+        return list;
+    }
+
+    /**
+     * 用已按编号排序的房屋替换表格内容,必须在EDT上调用
+     */
+    public void setSortedHouses(List<House> sorted) {
+        rows.clear();
+        rows.addAll(sorted);
+        fireTableDataChanged();
+        // 装载的数据可能读在这些变更之前,按房屋的当前状态再应用一遍
+        List<InventoryEvents.Change> early = deferred;
+        deferred = null;
+        if(early != null && !early.isEmpty()) {
+            applyChanges(early);
+        }
+    }
+
+    /**
+     * 重新装载之前调用:此后到达的变更先保存,下一次setSortedHouses装载后再应用,
+     * 与首次装载一样不会丢失后台读取期间的变更
+     */
+    public void deferChanges() {
+        if(deferred == null) {
+            deferred = new ArrayList<>();
+        }
+    }
+
+    /**
+     * 不再等待这次装载时调用(结果作废或读取失败):把deferChanges以来保存的变更应用到现有内容,
+     * 恢复逐批刷新,保存的变更不会一直积累
+     */
+    public void applyDeferred() {
+        List<InventoryEvents.Change> early = deferred;
+        deferred = null;
+        if(early != null && !early.isEmpty()) {
+            applyChanges(early);
+        }
+    }
+
+    /**
+     * 设置表格的显示条件,applyChanges据此决定变更后的房屋是否留在表格中
+     */
+    public void setFilter(Predicate<House> filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * 应用一批库存变更,必须在EDT上调用
+     * 变更后仍满足显示条件的房屋插入或刷新,不再满足的和已删除的移除;
+     * 首次setSortedHouses之前到达的变更先保存,装载后再应用
+     */
+    public void applyChanges(List<InventoryEvents.Change> changes) {
+        if(deferred != null) {
+            deferred.addAll(changes);
+            return;
+        }
+        if(changes.size() > BULK_CHANGES) {
+            applyBulk(changes);
+            return;
+        }
+        for(InventoryEvents.Change change : changes) {
+            House house = change.getHouse();
+            if(change.getType() == InventoryEvents.Type.REMOVED || !filter.test(house)) {
+                houseRemoved(house.getId());
+            } else {
+                houseAdded(house);
+            }
+        }
+    }
+
+    /**
+     * 一次合并大批变更:去掉涉及的行,再把仍满足条件的房屋按编号归并回去,只通知一次整表变化
+     */
+    private void applyBulk(List<InventoryEvents.Change> changes) {
+        Map<String, InventoryEvents.Change> byId = new HashMap<>(changes.size() * 2);
+        List<House> incoming = new ArrayList<>();
+        for(InventoryEvents.Change change : changes) {
+            byId.put(change.getHouseId(), change);
+            if(change.getType() != InventoryEvents.Type.REMOVED && filter.test(change.getHouse())) {
+                incoming.add(change.getHouse());
+            }
+        }
+        incoming.sort(BY_ID);
+        List<House> merged = new ArrayList<>(rows.size() + incoming.size());
+        int next = 0;
+        for(House h : rows) {
+            if(byId.containsKey(h.getId())) {
+                continue;
+            }
+            while(next < incoming.size() && BY_ID.compare(incoming.get(next), h) < 0) {
+                merged.add(incoming.get(next++));
+            }
+            merged.add(h);
+        }
+        while(next < incoming.size()) {
+            merged.add(incoming.get(next++));
+        }
+        rows.clear();
+        rows.addAll(merged);
+        fireTableDataChanged();
+    }
+
+    /**
+     * 取指定行的房屋
+     */
+    public House getHouseAt(int row) {
+        return rows.get(row);
+    }
+
+    /**
+     * 新增一套房屋,插入到编号对应的位置
+     */
+    public void houseAdded(House house) {
+        int row = find(house.getId());
+        if(row >= 0) {
+            rows.set(row, house);
+            fireTableRowsUpdated(row, row);
+        } else {
+            row = -row - 1;
+            rows.add(row, house);
+            fireTableRowsInserted(row, row);
+        }
+    }
+
+    /**
+     * 房屋信息或状态发生变化,只刷新该行
+     */
+    public void houseUpdated(House house) {
+        int row = find(house.getId());
+        if(row >= 0) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * 删除一套房屋
+     */
+    public void houseRemoved(String houseId) {
+        int row = find(houseId);
+        if(row >= 0) {
+            rows.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+    }
+
+    /**
+     * 按编号二分查找行号,找不到时返回(-(插入位置) - 1)
+     */
+    private int find(String houseId) {
+        int low = 0;
+        int high = rows.size() - 1;
+        while(low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = rows.get(mid).getId().compareTo(houseId);
+            if(cmp < 0) {
+                low = mid + 1;
+            } else if(cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columns[column].title;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        House h = rows.get(row);
+        switch(columns[column]) {
+            case ID: return h.getId();
+            case BUILDING: return h.getBuilding();
+            case UNIT: return h.getUnit();
+            case ROOM: return h.getRoom();
+            case AREA: return h.getArea();
+            case PRICE: return h.getPrice();
+            case STATUS: return h.getStatus();
+            case BUYER: return h.getBuyer();
+            case SALE_DATE:
+            case PURCHASE_DATE: return h.getSaleDate();
+            default: return null;
+        }
+    }
+}
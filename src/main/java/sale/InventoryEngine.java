@@ -0,0 +1,1054 @@
+package sale;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 房屋库存引擎,与界面无关,所有销售数据的读写都经过这里
+ *
+ * 库存按项目分区(InventoryPartition),每个分区有自己的房屋表、分段锁、索引和汇总,
+ * 房屋编号中的项目名决定所属分区,不同项目的操作互不争用;查询不限项目时并行分发到各分区再合并。
+ * 预订通过House上的CAS完成状态切换,抢订失败的线程不占用任何锁,保证"可售"到"已售"只发生一次;
+ * 房屋信息的添加、修改、删除以及成交入账按编号散列到所在分区的分段锁上,不同房屋互不阻塞。
+ * 挂上销售日志后,每次变更都在分段锁内先追加到日志再改动内存,保证同一房屋的事件顺序与内存一致,
+ * 追加失败时内存保持原样;成交记录fsync失败时在分段锁内撤销该笔成交,房屋恢复可售。
+ * 用户注册按用户名使用引擎自己的一组分段锁,持有全部分区和用户的分段锁即可得到一致的快照。
+ * 购买者到已购房屋的反向索引(OwnerIndex)也在成交和删除的分段锁内维护,删除的房屋不会留在索引中。
+ * 锁定待付款同样以CAS从可售切换为已锁定,到期由时间轮在分段锁内释放;锁定不写日志,
+ * 重启后所有锁定视为已释放。
+ * 每次成功的变更同样在分段锁内发布到InventoryEvents,打开的界面据此增量刷新。
+ */
+public class InventoryEngine {
+    private static final int STRIPE_COUNT = InventoryPartition.STRIPE_COUNT;
+
+    private final Map<String, User> users = new ConcurrentHashMap<>();        // 用户数据
+    private final Map<String, InventoryPartition> partitions = new ConcurrentHashMap<>(); // 项目名 -> 分区
+    private final ReentrantLock partitionLock = new ReentrantLock();          // 创建分区,与withAllLocks互斥
+    private final Collection<House> allHouses = new AllHouses();              // 全部分区的房屋
+    private final OwnerIndex owners = new OwnerIndex();                       // 购买者 -> 已购房屋
+    private final ReentrantLock[] userStripes = new ReentrantLock[STRIPE_COUNT];  // 用户注册的分段锁
+    private final double bandWidth = Integer.getInteger("house.rollup.bandWidth", 5000);  // 销售分析的单价区间
+    private volatile SalesJournal journal;                                    // 销售日志,未打开时为null
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();        // 锁定中的房屋
+
+    // 运行指标,记录器在构造时取好,热点路径上不查表
+    private final Metrics metrics = new Metrics();
+    private final LatencyRecorder loginTimer = metrics.timer("引擎.登录");
+    private final LatencyRecorder queryTimer = metrics.timer("引擎.查询");
+    private final LatencyRecorder searchTimer = metrics.timer("引擎.前缀搜索");
+    private final LatencyRecorder reserveTimer = metrics.timer("引擎.预订");
+    private final LatencyRecorder addTimer = metrics.timer("引擎.添加房屋");
+    private final LatencyRecorder batchAddTimer = metrics.timer("引擎.批量添加房屋");
+    private final LatencyRecorder updateTimer = metrics.timer("引擎.修改房屋");
+    private final LatencyRecorder removeTimer = metrics.timer("引擎.删除房屋");
+    private final LatencyRecorder holdLatency = metrics.timer("引擎.锁定");
+    private final LatencyRecorder confirmLatency = metrics.timer("引擎.确认购买");
+    private final LongAdder holdsExpired = metrics.counter("锁定过期");
+    private final LongAdder holdsReleased = metrics.counter("锁定释放");
+    private final LongAdder loginFailures = metrics.counter("登录失败");
+    private final LongAdder[] reserveResults = new LongAdder[ReserveResult.values().length];
+    private final InventoryEvents events = new InventoryEvents(metrics);     // 库存变更通知
+    private final TimerWheel holdTimer = new TimerWheel(                      // 锁定到期时间轮
+            Long.getLong("house.hold.tickMillis", 100L), "hold-timer", metrics.counter("锁定到期任务异常"));
+    private volatile boolean holdTimerStarted;                                // 第一次锁定时才启动时间轮
+
+    /**
+     * 预订结果
+     */
+    public enum ReserveResult {
+        SUCCESS,    // 预订成功
+        CONFLICT,   // 房屋已被他人预订或锁定
+        NOT_FOUND,  // 房屋不存在
+        NOT_HELD    // 房屋没有被该用户锁定,或锁定已过期
+    }
+
+    /**
+     * 一次锁定,到期任务和确认、释放都以它为准
+     */
+    private static final class Hold {
+        final InventoryPartition partition;  // 房屋所在分区
+        final House house;                // 锁定的房屋
+        final House.SaleState state;      // 锁定后的状态
+        final long expiresAt;             // 到期时间(毫秒)
+        TimerWheel.Timeout timeout;       // 到期任务,在分段锁内设置和读取
+
+        Hold(InventoryPartition partition, House house, House.SaleState state, long expiresAt) {
+            this.partition = partition;
+            this.house = house;
+            this.state = state;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 构造函数
+     */
+    public InventoryEngine() {
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            userStripes[i] = new ReentrantLock();
+        }
+        for(ReserveResult result : ReserveResult.values()) {
+            reserveResults[result.ordinal()] = metrics.counter("预订结果." + result);
+        }
+    }
+
+    /**
+     * 编号所属项目的分区,该项目还没有添加过房屋时返回null
+     */
+    private InventoryPartition partitionOf(String houseId) {
+        return partitions.get(House.projectOf(houseId));
+    }
+
+    /**
+     * 取项目的分区,不存在时创建;持有全部分段锁期间(切换日志、做快照)新建分区会等待
+     */
+    private InventoryPartition partitionFor(String project) {
+        InventoryPartition p = partitions.get(project);
+        if(p != null) {
+            return p;
+        }
+        partitionLock.lock();
+        try {
+            return partitions.computeIfAbsent(project, k -> new InventoryPartition(k, bandWidth));
+        } finally {
+            partitionLock.unlock();
+        }
+    }
+
+    /**
+     * 按项目名排序的全部分区
+     */
+    private List<InventoryPartition> sortedPartitions() {
+        List<InventoryPartition> list = new ArrayList<>(partitions.values());
+        list.sort((a, b) -> a.project.compareTo(b.project));
+        return list;
+    }
+
+    // ---------------- 用户 ----------------
+
+    /**
+     * 注册用户,用户名已存在时返回false
+     * 密码散列很慢,在加锁之前计算,不占用分段锁
+     */
+    public boolean registerUser(String username, String password, String role) {
+        if(users.containsKey(username)) {
+            return false;
+        }
+        return addUser(new User(username, PasswordHasher.hash(password), role));
+    }
+
+    /**
+     * 用已经算好的密码散列注册用户,用户名已存在时返回false;用于预先散列好的默认账号
+     */
+    boolean registerHashedUser(String username, String passwordHash, String role) {
+        return addUser(new User(username, passwordHash, role));
+    }
+
+    private boolean addUser(User user) {
+        String username = user.getUsername();
+        ReentrantLock lock = userStripes[InventoryPartition.stripeIndex(username)];
+        lock.lock();
+        try {
+            if(users.containsKey(username)) {
+                return false;
+            }
+            SalesJournal j = journal;
+            if(j != null) {
+                j.logRegisterUser(user);
+            }
+            users.put(username, user);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从快照恢复用户,不写日志;旧版本快照中的明文密码在这里转换为散列
+     */
+    void restoreUser(User user) {
+        if(!PasswordHasher.isHashed(user.getPasswordHash())) {
+            user = new User(user.getUsername(), PasswordHasher.hash(user.getPasswordHash()), user.getRole(),
+                            user.getCreateTime(), user.getLastLoginTime());
+        }
+        users.putIfAbsent(user.getUsername(), user);
+    }
+
+    /**
+     * 校验用户名和密码,成功时更新最后登录时间并返回用户,否则返回null
+     * 每次调用都要计算一次密码散列,并发登录应经过LoginService限制同时计算的数量
+     */
+    public User authenticate(String username, String password) {
+        long start = System.nanoTime();
+        try {
+            User user = users.get(username);
+            if(user == null) {
+                PasswordHasher.verifyDummy(password);  // 用户不存在时耗时相同
+            } else if(PasswordHasher.verify(password, user.getPasswordHash())) {
+                user.updateLastLoginTime();
+                return user;
+            }
+            loginFailures.increment();
+            return null;
+        } finally {
+            loginTimer.recordSince(start);
+        }
+    }
+
+    public User getUser(String username) {
+        return users.get(username);
+    }
+
+    public Collection<User> getUsers() {
+        return Collections.unmodifiableCollection(users.values());
+    }
+
+    // ---------------- 房屋 ----------------
+
+    /**
+     * 添加房屋,编号已存在时返回false
+     */
+    public boolean addHouse(House house) {
+        long start = System.nanoTime();
+        InventoryPartition p = partitionFor(house.getProject());
+        ReentrantLock lock = p.stripeFor(house.getId());
+        lock.lock();
+        try {
+            return addLocked(p, house);
+        } finally {
+            lock.unlock();
+            addTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * 批量添加房屋,按项目和分段锁分组,每个分段只加锁一次;编号已存在的房屋跳过
+     *
+     * @return 实际添加的房屋数
+     */
+    public int addHouses(List<House> batch) {
+        long start = System.nanoTime();
+        Map<String, List<House>> byProject = new LinkedHashMap<>();
+        for(House house : batch) {
+            byProject.computeIfAbsent(house.getProject(), k -> new ArrayList<>()).add(house);
+        }
+        int added = 0;
+        for(Map.Entry<String, List<House>> e : byProject.entrySet()) {
+            added += addBatch(partitionFor(e.getKey()), e.getValue());
+        }
+        batchAddTimer.recordSince(start);
+        return added;
+    }
+
+    private int addBatch(InventoryPartition p, List<House> batch) {
+        List<List<House>> groups = new ArrayList<>(STRIPE_COUNT);
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for(House house : batch) {
+            groups.get(InventoryPartition.stripeIndex(house.getId())).add(house);
+        }
+        int added = 0;
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            List<House> group = groups.get(i);
+            if(group.isEmpty()) {
+                continue;
+            }
+            p.stripes[i].lock();
+            try {
+                for(House house : group) {
+                    if(addLocked(p, house)) {
+                        added++;
+                    }
+                }
+            } finally {
+                p.stripes[i].unlock();
+            }
+        }
+        return added;
+    }
+
+    /**
+     * 添加房屋,调用方持有该房屋的分段锁
+     */
+    private boolean addLocked(InventoryPartition p, House house) {
+        if(p.houses.containsKey(house.getId())) {
+            return false;
+        }
+        SalesJournal j = journal;
+        if(j != null) {
+            j.logAddHouse(house);
+        }
+        p.houses.put(house.getId(), house);
+        p.sortedIds.put(house.getId(), house);
+        p.aggregates.onAdd();
+        p.rollups.onAdd(house);
+        if(house.isSold()) {
+            settleSale(p, house);
+            owners.add(house);
+        }
+        p.index.add(house);
+        events.publish(InventoryEvents.Type.ADDED, house);
+        return true;
+    }
+
+    public House getHouse(String houseId) {
+        InventoryPartition p = partitionOf(houseId);
+        return p == null ? null : p.houses.get(houseId);
+    }
+
+    public boolean containsHouse(String houseId) {
+        return getHouse(houseId) != null;
+    }
+
+    /**
+     * 全部项目的房屋,是各分区的只读视图,不复制
+     */
+    public Collection<House> getHouses() {
+        return allHouses;
+    }
+
+    public int getHouseCount() {
+        int count = 0;
+        for(InventoryPartition p : partitions.values()) {
+            count += p.houses.size();
+        }
+        return count;
+    }
+
+    /**
+     * 全部项目名,按名称排序,默认项目为空串
+     */
+    public List<String> getProjects() {
+        List<String> list = new ArrayList<>(partitions.keySet());
+        Collections.sort(list);
+        return list;
+    }
+
+    /**
+     * 项目的分区,项目不存在时返回null
+     */
+    public InventoryPartition getPartition(String project) {
+        return partitions.get(project);
+    }
+
+    /**
+     * 按项目、楼栋、单元、状态、面积范围、单价范围组合查询,由各分区的二级索引给出候选集
+     * 指定项目时只查该分区,否则在ForkJoin公共池上并行查询各分区后合并
+     */
+    public List<House> query(HouseQuery query) {
+        long start = System.nanoTime();
+        try {
+            if(query.getProject() != null) {
+                InventoryPartition p = partitions.get(query.getProject());
+                return p == null ? new ArrayList<>() : p.query(query);
+            }
+            List<InventoryPartition> parts = new ArrayList<>(partitions.values());
+            if(parts.size() <= 1) {
+                return parts.isEmpty() ? new ArrayList<>() : parts.get(0).query(query);
+            }
+            List<List<House>> results = parts.parallelStream().map(p -> p.query(query))
+                                             .collect(Collectors.toList());
+            int size = 0;
+            for(List<House> r : results) {
+                size += r.size();
+            }
+            List<House> merged = new ArrayList<>(size);
+            for(List<House> r : results) {
+                merged.addAll(r);
+            }
+            return merged;
+        } finally {
+            queryTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * 与query相同的条件,返回按编号排序的[offset, offset+limit)和满足条件的总套数
+     * 各分区把满足条件的房屋直接送入只保留offset+limit套的堆,不复制全部结果;
+     * 不指定项目时各分区在ForkJoin公共池上并行收集后合并
+     */
+    public QueryPage queryPage(HouseQuery query, int offset, int limit) {
+        long start = System.nanoTime();
+        try {
+            int keep = (int)Math.min((long)offset + limit, Integer.MAX_VALUE);
+            List<InventoryPartition> parts;
+            if(query.getProject() != null) {
+                InventoryPartition p = partitions.get(query.getProject());
+                parts = p == null ? Collections.emptyList() : Collections.singletonList(p);
+            } else {
+                parts = new ArrayList<>(partitions.values());
+            }
+            QueryPage.Collector top;
+            if(parts.size() <= 1) {
+                top = new QueryPage.Collector(keep);
+                for(InventoryPartition p : parts) {
+                    p.forEachMatch(query, top);
+                }
+            } else {
+                top = parts.parallelStream().map(p -> {
+                    QueryPage.Collector c = new QueryPage.Collector(keep);
+                    p.forEachMatch(query, c);
+                    return c;
+                }).reduce(QueryPage.Collector::merge).get();
+            }
+            return top.page(offset);
+        } finally {
+            queryTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * 边输入边搜索:编号或购买者以prefix开头的房屋,最多limit套
+     *
+     * 先按编号前缀在各分区的有序编号表中查找,项目按名称排序、项目内按编号排序;不含项目名的前缀
+     * 在每个项目内匹配项目内编号,含项目名时只查该项目。不足limit套时再按名称前缀查找购买者,
+     * 依次追加他们按编号排序的已购房屋。两部分都只走到凑满limit为止,耗时与房屋总数无关。
+     */
+    public List<House> searchPrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            if(prefix.isEmpty() || limit <= 0) {
+                return new ArrayList<>();
+            }
+            Map<String, House> found = new LinkedHashMap<>();  // 编号 -> 房屋,编号和购买者都匹配的只出现一次
+            if(prefix.indexOf(House.PROJECT_SEPARATOR) >= 0) {
+                InventoryPartition p = partitionOf(prefix);
+                if(p != null) {
+                    addAll(found, p.withIdPrefix(prefix, limit));
+                }
+            } else {
+                for(String project : getProjects()) {
+                    InventoryPartition p = partitions.get(project);
+                    if(p == null || found.size() == limit) {
+                        continue;
+                    }
+                    addAll(found, p.withIdPrefix(House.qualify(project, prefix), limit - found.size()));
+                }
+            }
+            for(String buyer : owners.buyersWithPrefix(prefix, limit)) {
+                if(found.size() >= limit) {
+                    break;
+                }
+                for(House house : owners.page(buyer, null, limit)) {
+                    if(found.size() == limit) {
+                        break;
+                    }
+                    found.putIfAbsent(house.getId(), house);
+                }
+            }
+            return new ArrayList<>(found.values());
+        } finally {
+            searchTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * 房屋是否满足searchPrefix的条件:编号或项目内编号以prefix开头,或已成交且购买者以prefix开头
+     * 界面据此判断变更后的房屋是否留在搜索结果中
+     */
+    public static boolean matchesPrefix(House house, String prefix) {
+        String id = house.getId();
+        if(id.startsWith(prefix)
+           || id.startsWith(prefix, house.getProject().isEmpty() ? 0 : house.getProject().length() + 1)) {
+            return true;
+        }
+        String buyer = house.getBuyer();
+        return house.isSettled() && buyer != null && buyer.startsWith(prefix);
+    }
+
+    private static void addAll(Map<String, House> found, List<House> houses) {
+        for(House house : houses) {
+            found.putIfAbsent(house.getId(), house);
+        }
+    }
+
+    /**
+     * 修改房屋信息,房屋不存在时返回false
+     */
+    public boolean updateHouse(String houseId, String building, String unit, String room,
+                               double area, double price) {
+        long start = System.nanoTime();
+        InventoryPartition p = partitionOf(houseId);
+        if(p == null) {
+            updateTimer.recordSince(start);
+            return false;
+        }
+        ReentrantLock lock = p.stripeFor(houseId);
+        lock.lock();
+        try {
+            House house = p.houses.get(houseId);
+            if(house == null) {
+                return false;
+            }
+            SalesJournal j = journal;
+            if(j != null) {
+                j.logEditHouse(houseId, building, unit, room, area, price);
+            }
+            p.index.remove(house);
+            p.rollups.onRemove(house);
+            house.setBuilding(building);
+            house.setUnit(unit);
+            house.setRoom(room);
+            house.setArea(area);
+            house.setPrice(price);
+            if(house.isSettled()) {
+                double amount = house.getAmount();
+                p.aggregates.onAmountChange(house.getSettledAmount(), amount);
+                house.settle(true, amount);
+            }
+            p.rollups.onAdd(house);
+            if(house.isSettled()) {
+                p.rollups.onSell(house);
+            }
+            p.index.add(house);
+            events.publish(InventoryEvents.Type.UPDATED, house);
+            return true;
+        } finally {
+            lock.unlock();
+            updateTimer.recordSince(start);
+        }
+    }
+
+    /**
+     * 删除房屋,返回被删除的房屋,不存在时返回null
+     */
+    public House removeHouse(String houseId) {
+        long start = System.nanoTime();
+        InventoryPartition p = partitionOf(houseId);
+        if(p == null) {
+            removeTimer.recordSince(start);
+            return null;
+        }
+        ReentrantLock lock = p.stripeFor(houseId);
+        lock.lock();
+        try {
+            House house = p.houses.get(houseId);
+            if(house != null) {
+                SalesJournal j = journal;
+                if(j != null) {
+                    j.logDeleteHouse(houseId);
+                }
+                p.houses.remove(houseId);
+                p.sortedIds.remove(houseId, house);
+                Hold hold = holds.remove(houseId);
+                if(hold != null) {
+                    hold.timeout.cancel();
+                }
+                if(house.isSettled()) {
+                    owners.remove(house);
+                }
+                p.aggregates.onRemove(house.isSettled(), house.getSettledAmount());
+                p.rollups.onRemove(house);
+                p.index.remove(house);
+                events.publish(InventoryEvents.Type.REMOVED, house);
+            }
+            return house;
+        } finally {
+            lock.unlock();
+            removeTimer.recordSince(start);
+        }
+    }
+
+    // ---------------- 预订 ----------------
+
+    /**
+     * 预订房屋,只有房屋当前为可售时才会成功;已售房屋不会被覆盖
+     * 挂着日志时等成交记录fsync后才返回SUCCESS,写入失败时抛出IllegalStateException,不要在EDT上调用
+     */
+    public ReserveResult reserve(String houseId, String buyer) {
+        long start = System.nanoTime();
+        ReserveResult result = reserve(houseId, buyer, new Date());
+        reserveTimer.recordSince(start);
+        reserveResults[result.ordinal()].increment();
+        return result;
+    }
+
+    private ReserveResult reserve(String houseId, String buyer, Date saleDate) {
+        InventoryPartition p = partitionOf(houseId);
+        House house = p == null ? null : p.houses.get(houseId);
+        if(house == null) {
+            return ReserveResult.NOT_FOUND;
+        }
+        if(!house.trySell(buyer, saleDate)) {
+            return ReserveResult.CONFLICT;
+        }
+        House.SaleState sold = house.getSaleState();  // 已售状态不会再被其他线程切换
+        // 只有抢订成功的线程才会进入分段锁,入账与修改、删除互斥
+        ReentrantLock lock = p.stripeFor(houseId);
+        CompletableFuture<Void> commit;
+        lock.lock();
+        try {
+            if(p.houses.get(houseId) != house) {
+                return ReserveResult.NOT_FOUND;  // 成交前房屋已被删除
+            }
+            try {
+                commit = completeSale(p, house);
+            } catch(RuntimeException e) {
+                house.tryRestore(sold, House.SaleState.AVAILABLE);
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return awaitCommit(p, house, sold, commit);
+    }
+
+    /**
+     * 记录成交日志并入账,调用方必须持有该房屋的分段锁,且房屋已切换为已售
+     * 日志追加失败时抛出异常,此时还没有入账,由调用方撤销状态切换
+     *
+     * @return 成交记录fsync后完成的future,没有挂日志时为null;调用方应在释放分段锁之后等待
+     */
+    private CompletableFuture<Void> completeSale(InventoryPartition p, House house) {
+        SalesJournal j = journal;
+        CompletableFuture<Void> commit = j == null ? null : j.logSellHouse(house);
+        settleSale(p, house);
+        p.index.restatus(house);
+        owners.add(house);
+        events.publish(InventoryEvents.Type.UPDATED, house);
+        return commit;
+    }
+
+    /**
+     * 等待成交记录落盘,组提交的fsync完成后返回SUCCESS
+     * 写入失败时撤销这笔成交再抛出IllegalStateException,内存与日志保持一致
+     */
+    private ReserveResult awaitCommit(InventoryPartition p, House house, House.SaleState sold,
+                                      CompletableFuture<Void> commit) {
+        if(commit != null) {
+            try {
+                commit.join();
+            } catch(CompletionException e) {
+                rollbackSale(p, house, sold);
+                throw new IllegalStateException("成交记录未能写入销售日志", e.getCause());
+            }
+        }
+        return ReserveResult.SUCCESS;
+    }
+
+    /**
+     * 撤销一笔已入账但未能落盘的成交,房屋恢复可售;房屋已被删除时不做处理
+     */
+    private void rollbackSale(InventoryPartition p, House house, House.SaleState sold) {
+        ReentrantLock lock = p.stripeFor(house.getId());
+        lock.lock();
+        try {
+            if(p.houses.get(house.getId()) != house || house.getSaleState() != sold) {
+                return;
+            }
+            owners.remove(house);
+            p.aggregates.onUnsell(house.getSettledAmount());
+            p.rollups.onUnsell(house);
+            house.settle(false, 0);
+            house.tryRestore(sold, House.SaleState.AVAILABLE);
+            p.index.restatus(house);
+            events.publish(InventoryEvents.Type.UPDATED, house);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------------- 锁定待付款 ----------------
+
+    /**
+     * 锁定房屋holdMillis毫秒,期间其他人不能预订或锁定;到期未确认自动恢复可售
+     */
+    public ReserveResult hold(String houseId, String buyer, long holdMillis) {
+        long start = System.nanoTime();
+        try {
+            InventoryPartition p = partitionOf(houseId);
+            House house = p == null ? null : p.houses.get(houseId);
+            if(house == null) {
+                return ReserveResult.NOT_FOUND;
+            }
+            House.SaleState held = house.tryHold(buyer);
+            if(held == null) {
+                return ReserveResult.CONFLICT;
+            }
+            if(!holdTimerStarted) {
+                holdTimer.start();
+                holdTimerStarted = true;
+            }
+            ReentrantLock lock = p.stripeFor(houseId);
+            lock.lock();
+            try {
+                if(p.houses.get(houseId) != house) {
+                    house.tryRelease(held);
+                    return ReserveResult.NOT_FOUND;  // 锁定前房屋已被删除
+                }
+                Hold hold = new Hold(p, house, held, System.currentTimeMillis() + holdMillis);
+                // 到期任务要先拿到分段锁,不会早于下面的登记执行
+                hold.timeout = holdTimer.schedule(holdMillis, () -> expire(hold));
+                holds.put(houseId, hold);
+                house.setListedStatus(House.STATUS_HELD);
+                p.index.restatus(house);
+                events.publish(InventoryEvents.Type.UPDATED, house);
+                return ReserveResult.SUCCESS;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            holdLatency.recordSince(start);
+        }
+    }
+
+    /**
+     * 确认购买自己锁定的房屋,成交日期为确认时间;与reserve一样等成交记录fsync后才返回SUCCESS
+     */
+    public ReserveResult confirm(String houseId, String buyer) {
+        long start = System.nanoTime();
+        InventoryPartition p = partitionOf(houseId);
+        if(p == null) {
+            confirmLatency.recordSince(start);
+            return ReserveResult.NOT_FOUND;
+        }
+        ReentrantLock lock = p.stripeFor(houseId);
+        House house;
+        House.SaleState sold;
+        CompletableFuture<Void> commit;
+        try {
+            lock.lock();
+            try {
+                Hold hold = holds.get(houseId);
+                if(hold == null || !hold.state.buyer.equals(buyer)) {
+                    return p.houses.containsKey(houseId) ? ReserveResult.NOT_HELD : ReserveResult.NOT_FOUND;
+                }
+                sold = hold.house.tryConfirm(hold.state, new Date());
+                if(sold == null) {
+                    return ReserveResult.CONFLICT;  // 房屋已不是这次锁定的状态,不入账,锁定留给到期处理
+                }
+                try {
+                    commit = completeSale(p, hold.house);
+                } catch(RuntimeException e) {
+                    hold.house.tryRestore(sold, hold.state);  // 日志没有写入,锁定保持不变
+                    throw e;
+                }
+                takeHold(houseId, buyer);
+                house = hold.house;
+            } finally {
+                lock.unlock();
+            }
+            return awaitCommit(p, house, sold, commit);
+        } finally {
+            confirmLatency.recordSince(start);
+        }
+    }
+
+    /**
+     * 放弃自己锁定的房屋,房屋立即恢复可售
+     */
+    public ReserveResult release(String houseId, String buyer) {
+        InventoryPartition p = partitionOf(houseId);
+        if(p == null) {
+            return ReserveResult.NOT_FOUND;
+        }
+        ReentrantLock lock = p.stripeFor(houseId);
+        lock.lock();
+        try {
+            Hold hold = takeHold(houseId, buyer);
+            if(hold == null) {
+                return p.houses.containsKey(houseId) ? ReserveResult.NOT_HELD : ReserveResult.NOT_FOUND;
+            }
+            hold.house.tryRelease(hold.state);
+            hold.house.setListedStatus(House.STATUS_AVAILABLE);
+            p.index.restatus(hold.house);
+            holdsReleased.increment();
+            events.publish(InventoryEvents.Type.UPDATED, hold.house);
+            return ReserveResult.SUCCESS;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取下buyer对该房屋的锁定并取消到期任务,调用方持有分段锁;没有该用户的锁定时返回null
+     */
+    private Hold takeHold(String houseId, String buyer) {
+        Hold hold = holds.get(houseId);
+        if(hold == null || !hold.state.buyer.equals(buyer)) {
+            return null;
+        }
+        holds.remove(houseId);
+        hold.timeout.cancel();
+        return hold;
+    }
+
+    /**
+     * 锁定到期,在时间轮线程上执行
+     */
+    private void expire(Hold hold) {
+        ReentrantLock lock = hold.partition.stripeFor(hold.house.getId());
+        lock.lock();
+        try {
+            if(holds.remove(hold.house.getId(), hold)) {
+                hold.house.tryRelease(hold.state);
+                hold.house.setListedStatus(House.STATUS_AVAILABLE);
+                hold.partition.index.restatus(hold.house);
+                holdsExpired.increment();
+                events.publish(InventoryEvents.Type.UPDATED, hold.house);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 用户当前锁定的房屋,遍历的是锁定表而不是全部房屋
+     */
+    public List<House> getHoldsOf(String buyer) {
+        List<House> list = new ArrayList<>();
+        for(Hold hold : holds.values()) {
+            if(hold.state.buyer.equals(buyer)) {
+                list.add(hold.house);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 锁定的到期时间,房屋未被锁定时返回null
+     */
+    public Date getHoldExpiry(String houseId) {
+        Hold hold = holds.get(houseId);
+        return hold == null ? null : new Date(hold.expiresAt);
+    }
+
+    /**
+     * 当前锁定中的房屋数
+     */
+    public int getHoldCount() {
+        return holds.size();
+    }
+
+    /**
+     * 把一笔成交计入销售汇总和销售分析,调用方必须持有该房屋的分段锁
+     */
+    private void settleSale(InventoryPartition p, House house) {
+        double amount = house.getAmount();
+        p.aggregates.onSell(amount);
+        house.settle(true, amount);
+        p.rollups.onSell(house);
+    }
+
+    /**
+     * 全部项目的销售汇总,把各分区的汇总相加,耗时只与项目数有关
+     * 单个项目的汇总见getPartition(project).getAggregates()
+     */
+    public SalesAggregates.Summary getSummary() {
+        long total = 0;
+        long available = 0;
+        long sold = 0;
+        double sales = 0;
+        for(InventoryPartition p : partitions.values()) {
+            SalesAggregates.Summary s = p.aggregates.summary();
+            total += s.totalCount;
+            available += s.availableCount;
+            sold += s.soldCount;
+            sales += s.totalSales;
+        }
+        return new SalesAggregates.Summary(total, available, sold, sales);
+    }
+
+    /**
+     * 全部项目按日、周、月、楼栋、单价区间预聚合的销售分析,生成报表的耗时与房屋数无关
+     */
+    public SalesRollups.Report getReport() {
+        List<SalesRollups> parts = new ArrayList<>();
+        for(InventoryPartition p : sortedPartitions()) {
+            parts.add(p.rollups);
+        }
+        return SalesRollups.report(parts);
+    }
+
+    /**
+     * 以完整遍历逐个分区校验销售汇总和销售分析,一致时返回null,否则返回不一致的描述
+     */
+    public String verifyAggregates() {
+        StringBuilder sb = new StringBuilder();
+        for(InventoryPartition p : sortedPartitions()) {
+            String label = p.project.isEmpty() ? "" : "项目" + p.project + ": ";
+            String mismatch = p.aggregates.verify(p.houses.values());
+            if(mismatch != null) {
+                sb.append(label).append(mismatch);
+            }
+            String rollupMismatch = p.rollups.verify(p.houses.values());
+            if(rollupMismatch != null) {
+                sb.append(label).append(rollupMismatch);
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * 运行指标,界面和HTTP接口也把各自的操作记录在这里
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 库存变更通知,界面订阅后增量刷新
+     */
+    public InventoryEvents getEvents() {
+        return events;
+    }
+
+    /**
+     * 用户购买的全部房屋,按编号排序;已删除的房屋不会出现
+     */
+    public List<House> getHousesOf(String buyer) {
+        return owners.list(buyer);
+    }
+
+    /**
+     * 按编号分页读取用户购买的房屋,见OwnerIndex.page
+     */
+    public List<House> getHousesOf(String buyer, String afterId, int limit) {
+        return owners.page(buyer, afterId, limit);
+    }
+
+    /**
+     * 用户购买的房屋数
+     */
+    public int getHouseCountOf(String buyer) {
+        return owners.count(buyer);
+    }
+
+    /**
+     * 用户是否拥有该房屋,O(1)
+     */
+    public boolean ownsHouse(String buyer, String houseId) {
+        return owners.owns(buyer, houseId);
+    }
+
+    // ---------------- 持久化 ----------------
+
+    /**
+     * 挂上销售日志,此后的变更都会追加到该日志;传入null表示取下日志
+     * 切换日志段时由InventoryStore在持有全部分段锁时调用
+     */
+    void setJournal(SalesJournal journal) {
+        this.journal = journal;
+    }
+
+    SalesJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * 持有全部分区和用户的分段锁执行操作,期间所有变更、成交入账和新建分区都会等待
+     * 按项目名的顺序加锁,逆序释放
+     */
+    <T> T withAllLocks(Supplier<T> action) {
+        partitionLock.lock();
+        List<ReentrantLock> locks = new ArrayList<>();
+        try {
+            Collections.addAll(locks, userStripes);
+            for(InventoryPartition p : sortedPartitions()) {
+                Collections.addAll(locks, p.stripes);
+            }
+            for(ReentrantLock lock : locks) {
+                lock.lock();
+            }
+            try {
+                return action.get();
+            } finally {
+                for(int i = locks.size() - 1; i >= 0; i--) {
+                    locks.get(i).unlock();
+                }
+            }
+        } finally {
+            partitionLock.unlock();
+        }
+    }
+
+    /**
+     * 依次遍历各分区房屋的只读视图
+     */
+    private final class AllHouses extends AbstractCollection<House> {
+        @Override
+        public Iterator<House> iterator() {
+            Iterator<InventoryPartition> parts = partitions.values().iterator();
+            return new Iterator<House>() {
+                private Iterator<House> current = Collections.emptyIterator();
+
+                @Override
+                public boolean hasNext() {
+                    while(!current.hasNext()) {
+                        if(!parts.hasNext()) {
+                            return false;
+                        }
+                        current = parts.next().houses.values().iterator();
+                    }
+                    return true;
+                }
+
+                @Override
+                public House next() {
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return getHouseCount();
+        }
+    }
+
+    /**
+     * 重放日志时使用的回调,直接调用引擎方法,重放期间不应挂着日志
+     */
+    SalesJournal.Handler replayHandler() {
+        return new SalesJournal.Handler() {
+            @Override
+            public void addHouse(String id, String building, String unit, String room,
+                                 double area, double price) {
+                InventoryEngine.this.addHouse(new House(id, building, unit, room, area, price));
+            }
+
+            @Override
+            public void editHouse(String id, String building, String unit, String room,
+                                  double area, double price) {
+                updateHouse(id, building, unit, room, area, price);
+            }
+
+            @Override
+            public void sellHouse(String id, String buyer, Date saleDate) {
+                reserve(id, buyer, saleDate);
+            }
+
+            @Override
+            public void deleteHouse(String id) {
+                removeHouse(id);
+            }
+
+            @Override
+            public void registerUser(String username, String passwordHash, String role) {
+                if(!PasswordHasher.isHashed(passwordHash)) {
+                    passwordHash = PasswordHasher.hash(passwordHash);  // 旧版本日志中的明文密码
+                }
+                addUser(new User(username, passwordHash, role));
+            }
+        };
+    }
+}
@@ -0,0 +1,202 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 库存变更的进程内发布/订阅
+ *
+ * InventoryEngine在分段锁内发布每套房屋的添加、修改(含预订、锁定、释放)和删除,
+ * 同一房屋的事件顺序与内存一致。发布只把变更放进各订阅者的待处理表,不调用订阅者的代码:
+ * 待处理表按房屋编号合并,同一房屋在一批之内无论变化多少次只保留最后一次,
+ * 占用的内存以房屋数为上限;待处理表从空变为非空时向订阅者指定的Executor提交一次投递,
+ * 投递时把当时积累的全部变更作为一批交给订阅者。界面订阅时传入SwingUtilities::invokeLater,
+ * 一阵密集的变更在EDT上只引起一次更新。没有订阅者时发布只是一次volatile读。
+ */
+public class InventoryEvents {
+    /**
+     * 变更类型
+     */
+    public enum Type {
+        ADDED,    // 新增房屋
+        UPDATED,  // 房屋信息或销售状态变化
+        REMOVED   // 删除房屋
+    }
+
+    /**
+     * 一套房屋的变更;房屋的当前状态直接从House读取,事件不复制字段
+     */
+    public static final class Change {
+        private final Type type;    // 变更类型
+        private final House house;  // 变更的房屋,删除时为被删除的对象
+
+        Change(Type type, House house) {
+            this.type = type;
+            this.house = house;
+        }
+
+        public Type getType() { return type; }
+        public House getHouse() { return house; }
+        public String getHouseId() { return house.getId(); }
+    }
+
+    /**
+     * 订阅者,每次收到合并后的一批变更,批内同一房屋只出现一次,顺序不确定
+     */
+    public interface Listener {
+        void onChanges(List<Change> changes);
+    }
+
+    /**
+     * 订阅,关闭后不再投递
+     * 暂停期间变更照常合并到待处理表但不投递,恢复时把暂停以来的变更作为一批投递;
+     * 隐藏起来等待再次显示的界面用它只补上期间变化的房屋
+     */
+    public interface Subscription extends AutoCloseable {
+        void pause();
+        void resume();
+        @Override
+        void close();
+    }
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();  // 当前的订阅者
+    private final LongAdder published;  // 发布的变更数
+    private final LongAdder batches;    // 投递的批次数
+
+    /**
+     * 构造函数,发布数和批次数记到metrics中
+     */
+    public InventoryEvents(Metrics metrics) {
+        this.published = metrics.counter("事件.发布");
+        this.batches = metrics.counter("事件.投递批次");
+    }
+
+    /**
+     * 订阅库存变更
+     *
+     * @param deliverOn 投递变更的Executor,界面使用SwingUtilities::invokeLater
+     */
+    public Subscription subscribe(Executor deliverOn, Listener listener) {
+        Subscriber subscriber = new Subscriber(deliverOn, listener);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * 当前的订阅者数
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 发布一套房屋的变更,由InventoryEngine在该房屋的分段锁内调用
+     */
+    void publish(Type type, House house) {
+        if(subscribers.isEmpty()) {
+            return;
+        }
+        Change change = new Change(type, house);
+        for(Subscriber s : subscribers) {
+            s.offer(change);
+        }
+        published.increment();
+    }
+
+    /**
+     * 同一房屋的两次变更合并为一次:新增后的修改仍算新增,其余以后一次为准
+     */
+    private static Change coalesce(Change older, Change newer) {
+        return older.type == Type.ADDED && newer.type == Type.UPDATED ? older : newer;
+    }
+
+    /**
+     * 一个订阅者的待处理表和投递状态
+     */
+    private final class Subscriber implements Subscription {
+        final Executor deliverOn;
+        final Listener listener;
+        final Map<String, Change> pending = new ConcurrentHashMap<>();  // 房屋编号 -> 合并后的变更
+        final AtomicBoolean scheduled = new AtomicBoolean();            // 已提交投递,尚未开始
+        volatile boolean paused;
+        volatile boolean closed;
+
+        Subscriber(Executor deliverOn, Listener listener) {
+            this.deliverOn = deliverOn;
+            this.listener = listener;
+        }
+
+        void offer(Change change) {
+            pending.merge(change.getHouseId(), change, InventoryEvents::coalesce);
+            if(!paused) {
+                schedule();
+            }
+        }
+
+        void schedule() {
+            if(scheduled.compareAndSet(false, true)) {
+                try {
+                    deliverOn.execute(this::deliver);
+                } catch(RejectedExecutionException e) {
+                    scheduled.set(false);  // 下一次变更再提交,已合并的变更留在待处理表中
+                }
+            }
+        }
+
+        /**
+         * 取出待处理的全部变更交给订阅者;先清标记再取,取的过程中到达的变更会触发下一次投递
+         */
+        void deliver() {
+            scheduled.set(false);
+            if(closed) {
+                pending.clear();
+                return;
+            }
+            if(paused) {
+                return;  // 留在待处理表中,恢复时再投递
+            }
+            List<Change> batch = new ArrayList<>(pending.size());
+            for(String id : pending.keySet()) {
+                Change change = pending.remove(id);
+                if(change != null) {
+                    batch.add(change);
+                }
+            }
+            if(batch.isEmpty()) {
+                return;
+            }
+            batches.increment();
+            listener.onChanges(batch);
+        }
+
+        @Override
+        public void pause() {
+            paused = true;
+        }
+
+        /**
+         * 恢复投递;先清标记再检查待处理表,与offer的先合并后检查标记配合,不会漏掉暂停期间的变更
+         */
+        @Override
+        public void resume() {
+            paused = false;
+            if(!closed && !pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscribers.remove(this);
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 一个楼盘项目的库存分区
+ *
+ * 每个项目有自己的房屋表、分段锁、二级索引、销售汇总和销售分析,一个项目里的添加、修改、
+ * 预订和成交入账不会与其他项目争用锁或累加器。分区内按房屋编号散列到分段锁;
+ * 楼栋是分区内的第二层划分,由二级索引的楼栋桶和销售分析的楼栋分组承担。
+ * 楼栋可以修改,因此不参与锁的划分。
+ * 分区由InventoryEngine创建,写操作都经过引擎,这里的字段只在包内访问。
+ */
+public class InventoryPartition {
+    static final int STRIPE_COUNT = 64;  // 分段锁数量,必须为2的幂
+
+    final String project;                                             // 项目名,空串为默认项目
+    final Map<String, House> houses = new ConcurrentHashMap<>();      // 本项目的房屋
+    final NavigableMap<String, House> sortedIds = new ConcurrentSkipListMap<>();  // 同一批房屋按编号排序,用于前缀搜索
+    final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];  // 分段锁
+    final HouseIndex index = new HouseIndex();                        // 二级索引
+    final SalesAggregates aggregates = new SalesAggregates();         // 销售汇总
+    final SalesRollups rollups;                                       // 销售分析预聚合
+
+    InventoryPartition(String project, double bandWidth) {
+        this.project = project;
+        this.rollups = new SalesRollups(project, bandWidth);
+        for(int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 取房屋编号对应的分段锁
+     */
+    ReentrantLock stripeFor(String houseId) {
+        return stripes[stripeIndex(houseId)];
+    }
+
+    static int stripeIndex(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (STRIPE_COUNT - 1);
+    }
+
+    /**
+     * 在本分区内按组合条件查询
+     */
+    List<House> query(HouseQuery query) {
+        return index.query(query, houses.values());
+    }
+
+    /**
+     * 在本分区内按组合条件查询,满足条件的房屋逐一交给action
+     */
+    void forEachMatch(HouseQuery query, Consumer<? super House> action) {
+        index.forEachMatch(query, houses.values(), action);
+    }
+
+    /**
+     * 编号以prefix开头的房屋,按编号排序,最多limit套;prefix为完整编号(含项目名)
+     */
+    List<House> withIdPrefix(String prefix, int limit) {
+        List<House> result = new ArrayList<>(Math.min(limit, 64));
+        for(House house : sortedIds.tailMap(prefix, true).values()) {
+            if(result.size() == limit || !house.getId().startsWith(prefix)) {
+                break;
+            }
+            result.add(house);
+        }
+        return result;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public int getHouseCount() {
+        return houses.size();
+    }
+
+    public Collection<House> getHouses() {
+        return Collections.unmodifiableCollection(houses.values());
+    }
+
+    /**
+     * 本项目的销售汇总
+     */
+    public SalesAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * 本项目的销售分析
+     */
+    public SalesRollups getRollups() {
+        return rollups;
+    }
+}
@@ -0,0 +1,591 @@
+package sale;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 库存的HTTP/JSON接口,与桌面界面共用同一个库存引擎
+ *
+ * 接口:
+ *   GET  /api/houses                  查询房屋,参数project、building、unit、status、minArea、maxArea、
+ *                                     minPrice、maxPrice,按编号排序分页(offset、limit)
+ *   GET  /api/houses/{id}             查看一套房屋
+ *   POST /api/houses/{id}/reserve     预订房屋,经过准入队列(PresaleGate),需要Basic认证
+ *   POST /api/houses/{id}/hold        锁定待付款,参数minutes(默认15),需要Basic认证
+ *   POST /api/houses/{id}/confirm     确认购买自己锁定的房屋,需要Basic认证
+ *   POST /api/houses/{id}/release     放弃自己锁定的房屋,需要Basic认证
+ *   GET  /api/my-houses               当前用户已购的房屋,需要Basic认证;带参数after或limit时
+ *                                     按编号翻页,返回总数和下一页的after
+ *   GET  /api/stats                   销售汇总,参数project只统计一个项目
+ *   POST /api/login                   以Basic认证登录,返回会话令牌
+ *   POST /api/logout                  注销会话令牌
+ * 需要认证的接口既接受Basic认证,也接受"Authorization: Bearer 会话令牌";密码校验经过LoginService
+ * 的有界线程池,排队已满时回复503。
+ * 请求在虚拟线程(JDK 21+)或固定大小的线程池上处理,业务调用直接进入引擎,不经过EDT。
+ */
+public class InventoryServer {
+    private static final int DEFAULT_LIMIT = 100;  // 默认每页条数
+    private static final int MAX_LIMIT = 1000;     // 每页最多条数
+
+    static {
+        // 响应头和响应体分两次写出,开着Nagle算法时会与客户端的延迟确认叠加,每个请求多等约40ms
+        if(System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final InventoryEngine engine;  // 库存引擎
+    private final PresaleGate gate;        // 预订准入队列
+    private final LoginService logins;     // 密码校验和会话
+    private final HttpServer server;       // HTTP服务器
+    private final ExecutorService executor;  // 请求处理线程
+
+    /**
+     * 构造函数
+     *
+     * @param port 监听端口,0表示由系统分配
+     * @param maxThreads 不支持虚拟线程时的处理线程数
+     */
+    public InventoryServer(InventoryEngine engine, int port, int maxThreads) throws IOException {
+        this(engine, PresaleGate.fromSystemProperties(engine), LoginService.fromSystemProperties(engine),
+             port, maxThreads);
+    }
+
+    /**
+     * 构造函数,与桌面界面共用准入队列和登录服务
+     */
+    public InventoryServer(InventoryEngine engine, PresaleGate gate, LoginService logins,
+                           int port, int maxThreads) throws IOException {
+        this.engine = engine;
+        this.gate = gate;
+        this.logins = logins;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newExecutor(maxThreads);
+        server.setExecutor(executor);
+        Metrics metrics = engine.getMetrics();
+        server.createContext("/api/houses", guard(metrics.timer("HTTP./api/houses"), this::handleHouses));
+        server.createContext("/api/my-houses", guard(metrics.timer("HTTP./api/my-houses"), this::handleMyHouses));
+        server.createContext("/api/stats", guard(metrics.timer("HTTP./api/stats"), this::handleStats));
+        server.createContext("/api/login", guard(metrics.timer("HTTP./api/login"), this::handleLogin));
+        server.createContext("/api/logout", guard(metrics.timer("HTTP./api/logout"), this::handleLogout));
+    }
+
+    /**
+     * 优先使用虚拟线程(JDK 21+),否则使用固定大小的线程池
+     */
+    private static ExecutorService newExecutor(int maxThreads) {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            AtomicInteger seq = new AtomicInteger();
+            return Executors.newFixedThreadPool(maxThreads, r -> {
+                Thread t = new Thread(r, "http-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * 实际监听的端口
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 停止服务,最多等待delaySeconds秒让进行中的请求完成
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // ---------------- 接口 ----------------
+
+    private void handleHouses(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getPath();
+        if(!path.equals("/api/houses") && !path.startsWith("/api/houses/")) {
+            throw new BadRequest(404, "接口不存在");
+        }
+        String rest = path.length() > "/api/houses/".length() ? path.substring("/api/houses/".length()) : "";
+        if(rest.isEmpty()) {
+            requireMethod(ex, "GET");
+            listHouses(ex);
+        } else if(rest.endsWith("/reserve")) {
+            requireMethod(ex, "POST");
+            reserve(ex, rest.substring(0, rest.length() - "/reserve".length()));
+        } else if(rest.endsWith("/hold")) {
+            requireMethod(ex, "POST");
+            hold(ex, rest.substring(0, rest.length() - "/hold".length()));
+        } else if(rest.endsWith("/confirm")) {
+            requireMethod(ex, "POST");
+            String houseId = rest.substring(0, rest.length() - "/confirm".length());
+            String buyer = authenticate(ex);
+            if(buyer != null) {
+                respond(ex, houseId, engine.confirm(houseId, buyer));
+            }
+        } else if(rest.endsWith("/release")) {
+            requireMethod(ex, "POST");
+            String houseId = rest.substring(0, rest.length() - "/release".length());
+            String buyer = authenticate(ex);
+            if(buyer != null) {
+                respond(ex, houseId, engine.release(houseId, buyer));
+            }
+        } else {
+            requireMethod(ex, "GET");
+            House house = engine.getHouse(rest);
+            if(house == null) {
+                send(ex, 404, error("房屋不存在"));
+            } else {
+                StringBuilder sb = new StringBuilder();
+                appendHouse(sb, house);
+                send(ex, 200, sb.toString());
+            }
+        }
+    }
+
+    private void listHouses(HttpExchange ex) throws IOException {
+        Map<String, String> params = params(ex);
+        HouseQuery query = new HouseQuery();
+        query.setProject(params.get("project"));
+        query.setBuilding(params.get("building"));
+        query.setUnit(params.get("unit"));
+        query.setStatus(params.get("status"));
+        query.setAreaRange(number(params, "minArea"), number(params, "maxArea"));
+        query.setPriceRange(number(params, "minPrice"), number(params, "maxPrice"));
+        int offset = Math.max(0, integer(params, "offset", 0));
+        int limit = Math.max(0, Math.min(MAX_LIMIT, integer(params, "limit", DEFAULT_LIMIT)));
+
+        QueryPage page = engine.queryPage(query, offset, limit);
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"total\":").append(page.getTotal())
+          .append(",\"offset\":").append(offset)
+          .append(",\"houses\":");
+        appendHouses(sb, page.getHouses());
+        sb.append('}');
+        send(ex, 200, sb.toString());
+    }
+
+    private void reserve(HttpExchange ex, String houseId) throws IOException {
+        String buyer = authenticate(ex);
+        if(buyer == null) {
+            return;
+        }
+        PresaleGate.Outcome outcome = gate.reserve(houseId, buyer);
+        switch(outcome) {
+            case SUCCESS:
+                respond(ex, houseId, InventoryEngine.ReserveResult.SUCCESS);
+                break;
+            case NOT_FOUND:
+                respond(ex, houseId, InventoryEngine.ReserveResult.NOT_FOUND);
+                break;
+            case SOLD_OUT:
+                respond(ex, houseId, InventoryEngine.ReserveResult.CONFLICT);
+                break;
+            case LOST:
+                send(ex, 409, "{\"result\":\"LOST\",\"error\":\"未中签\"}");
+                break;
+            case DUPLICATE:
+                send(ex, 409, "{\"result\":\"DUPLICATE\",\"error\":\"已在该房屋的队列中\"}");
+                break;
+            case FAILED:
+                send(ex, 503, "{\"result\":\"FAILED\",\"error\":\"抽签时预订出错,本次报名作废\"}");
+                break;
+            default:
+                // 排队已满或超时,客户端稍后重试
+                ex.getResponseHeaders().set("Retry-After", "1");
+                send(ex, 429, "{\"result\":\"" + outcome + "\",\"error\":\"排队人数已满,请稍后再试\"}");
+                break;
+        }
+    }
+
+    private void hold(HttpExchange ex, String houseId) throws IOException {
+        int minutes = integer(params(ex), "minutes", 15);
+        if(minutes <= 0 || minutes > 24 * 60) {
+            throw new BadRequest(400, "minutes应在1到1440之间");
+        }
+        String buyer = authenticate(ex);
+        if(buyer != null) {
+            respond(ex, houseId, engine.hold(houseId, buyer, minutes * 60_000L));
+        }
+    }
+
+    /**
+     * 按预订、锁定、确认、释放的结果回复,成功时附带房屋的当前状态
+     */
+    private void respond(HttpExchange ex, String houseId, InventoryEngine.ReserveResult result)
+            throws IOException {
+        switch(result) {
+            case SUCCESS:
+                StringBuilder sb = new StringBuilder("{\"result\":\"SUCCESS\",\"house\":");
+                House house = engine.getHouse(houseId);
+                if(house == null) {
+                    sb.append("null");  // 操作完成后立即被删除
+                } else {
+                    appendHouse(sb, house);
+                }
+                sb.append('}');
+                send(ex, 200, sb.toString());
+                break;
+            case CONFLICT:
+                send(ex, 409, "{\"result\":\"CONFLICT\",\"error\":\"该房屋已被预订或锁定\"}");
+                break;
+            case NOT_HELD:
+                send(ex, 409, "{\"result\":\"NOT_HELD\",\"error\":\"没有锁定该房屋或锁定已过期\"}");
+                break;
+            default:
+                send(ex, 404, "{\"result\":\"NOT_FOUND\",\"error\":\"房屋不存在\"}");
+                break;
+        }
+    }
+
+    private void handleMyHouses(HttpExchange ex) throws IOException {
+        requireMethod(ex, "GET");
+        String buyer = authenticate(ex);
+        if(buyer == null) {
+            return;
+        }
+        Map<String, String> params = params(ex);
+        StringBuilder sb = new StringBuilder();
+        if(!params.containsKey("after") && !params.containsKey("limit")) {
+            appendHouses(sb, engine.getHousesOf(buyer));  // 不分页,兼容旧客户端
+            send(ex, 200, sb.toString());
+            return;
+        }
+        int limit = Math.max(1, Math.min(MAX_LIMIT, integer(params, "limit", DEFAULT_LIMIT)));
+        List<House> page = engine.getHousesOf(buyer, params.get("after"), limit + 1);
+        String next = null;
+        if(page.size() > limit) {
+            page = page.subList(0, limit);
+            next = page.get(limit - 1).getId();
+        }
+        sb.append("{\"total\":").append(engine.getHouseCountOf(buyer))
+          .append(",\"houses\":");
+        appendHouses(sb, page);
+        sb.append(",\"next\":");
+        if(next == null) {
+            sb.append("null");
+        } else {
+            appendString(sb, next);
+        }
+        sb.append('}');
+        send(ex, 200, sb.toString());
+    }
+
+    private void handleStats(HttpExchange ex) throws IOException {
+        requireMethod(ex, "GET");
+        SalesAggregates.Summary summary;
+        String project = params(ex).get("project");
+        if(project == null) {
+            summary = engine.getSummary();
+        } else {
+            InventoryPartition partition = engine.getPartition(project);
+            if(partition == null) {
+                throw new BadRequest(404, "项目不存在");
+            }
+            summary = partition.getAggregates().summary();
+        }
+        send(ex, 200, "{\"totalCount\":" + summary.totalCount
+                      + ",\"availableCount\":" + summary.availableCount
+                      + ",\"soldCount\":" + summary.soldCount
+                      + ",\"totalSales\":" + summary.totalSales + "}");
+    }
+
+    private void handleLogin(HttpExchange ex) throws IOException {
+        requireMethod(ex, "POST");
+        String[] credentials = basicCredentials(ex);
+        LoginService.Session session = null;
+        if(credentials != null) {
+            try {
+                session = logins.login(credentials[0], credentials[1]);
+            } catch(RejectedExecutionException e) {
+                sendBusy(ex);
+                return;
+            }
+        }
+        if(session == null) {
+            sendUnauthorized(ex);
+            return;
+        }
+        StringBuilder sb = new StringBuilder("{\"token\":");
+        appendString(sb, session.getToken());
+        sb.append(",\"username\":");
+        appendString(sb, session.getUser().getUsername());
+        sb.append(",\"expiresAt\":");
+        appendString(sb, new Date(session.getExpiresAt()).toInstant().toString());
+        sb.append('}');
+        send(ex, 200, sb.toString());
+    }
+
+    private void handleLogout(HttpExchange ex) throws IOException {
+        requireMethod(ex, "POST");
+        logins.logout(bearerToken(ex));
+        send(ex, 200, "{\"result\":\"SUCCESS\"}");
+    }
+
+    // ---------------- 请求处理 ----------------
+
+    /**
+     * 接口处理函数
+     */
+    private interface Handler {
+        void handle(HttpExchange ex) throws IOException;
+    }
+
+    /**
+     * 请求的参数或方法不合法
+     */
+    private static final class BadRequest extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequest(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * 统一处理异常,并保证请求体被读完、连接可以复用;每个请求的处理耗时记录到timer
+     */
+    private static HttpHandler guard(LatencyRecorder timer, Handler handler) {
+        return ex -> {
+            long start = System.nanoTime();
+            try(InputStream in = ex.getRequestBody()) {
+                in.readAllBytes();
+                handler.handle(ex);
+            } catch(BadRequest e) {
+                send(ex, e.status, error(e.getMessage()));
+            } catch(RuntimeException e) {
+                send(ex, 500, error("服务器内部错误: " + e));
+            } finally {
+                ex.close();
+                timer.recordSince(start);
+            }
+        };
+    }
+
+    private static void requireMethod(HttpExchange ex, String method) {
+        if(!method.equals(ex.getRequestMethod())) {
+            ex.getResponseHeaders().set("Allow", method);
+            throw new BadRequest(405, "只支持" + method + "请求");
+        }
+    }
+
+    /**
+     * 校验会话令牌或Basic认证,成功返回用户名;失败时已回复401或503并返回null
+     */
+    private String authenticate(HttpExchange ex) throws IOException {
+        String token = bearerToken(ex);
+        if(token != null) {
+            User user = logins.session(token);
+            if(user != null) {
+                return user.getUsername();
+            }
+        } else {
+            String[] credentials = basicCredentials(ex);
+            if(credentials != null) {
+                try {
+                    if(logins.basic(credentials[0], credentials[1]) != null) {
+                        return credentials[0];
+                    }
+                } catch(RejectedExecutionException e) {
+                    sendBusy(ex);
+                    return null;
+                }
+            }
+        }
+        sendUnauthorized(ex);
+        return null;
+    }
+
+    /**
+     * 解析Basic认证头,返回{用户名, 密码},没有或格式不对时返回null
+     */
+    private static String[] basicCredentials(HttpExchange ex) {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        if(header == null || !header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            return null;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch(IllegalArgumentException e) {
+            return null;
+        }
+        int colon = decoded.indexOf(':');
+        return colon > 0 ? new String[] {decoded.substring(0, colon), decoded.substring(colon + 1)} : null;
+    }
+
+    /**
+     * 取Bearer认证头中的会话令牌,没有时返回null
+     */
+    private static String bearerToken(HttpExchange ex) {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        if(header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return null;
+        }
+        return header.substring(7).trim();
+    }
+
+    private static void sendUnauthorized(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"house\", charset=\"UTF-8\"");
+        send(ex, 401, error("用户名或密码错误"));
+    }
+
+    /**
+     * 排队校验密码的请求已满,客户端稍后重试
+     */
+    private static void sendBusy(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Retry-After", "1");
+        send(ex, 503, error("登录请求过多,请稍后再试"));
+    }
+
+    private static Map<String, String> params(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String query = ex.getRequestURI().getRawQuery();
+        if(query == null) {
+            return params;
+        }
+        for(String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if(!value.isEmpty()) {
+                params.put(key, value);
+            }
+        }
+        return params;
+    }
+
+    private static Double number(Map<String, String> params, String name) {
+        String value = params.get(name);
+        try {
+            return value == null ? null : Double.valueOf(value);
+        } catch(NumberFormatException e) {
+            throw new BadRequest(400, "参数" + name + "不是有效的数字");
+        }
+    }
+
+    private static int integer(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch(NumberFormatException e) {
+            throw new BadRequest(400, "参数" + name + "不是有效的整数");
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        try(OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // ---------------- JSON ----------------
+
+    private static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        appendString(sb, message);
+        return sb.append('}').toString();
+    }
+
+    private static void appendHouses(StringBuilder sb, List<House> houses) {
+        sb.append('[');
+        for(int i = 0; i < houses.size(); i++) {
+            if(i > 0) {
+                sb.append(',');
+            }
+            appendHouse(sb, houses.get(i));
+        }
+        sb.append(']');
+    }
+
+    private static void appendHouse(StringBuilder sb, House h) {
+        Date saleDate = h.getSaleDate();
+        sb.append("{\"id\":");
+        appendString(sb, h.getId());
+        sb.append(",\"building\":");
+        appendString(sb, h.getBuilding());
+        sb.append(",\"unit\":");
+        appendString(sb, h.getUnit());
+        sb.append(",\"room\":");
+        appendString(sb, h.getRoom());
+        sb.append(",\"area\":").append(h.getArea());
+        sb.append(",\"price\":").append(h.getPrice());
+        sb.append(",\"status\":");
+        appendString(sb, h.getStatus());
+        sb.append(",\"buyer\":");
+        appendString(sb, h.getBuyer());
+        sb.append(",\"saleDate\":");
+        appendString(sb, saleDate == null ? null : saleDate.toInstant().toString());
+        sb.append('}');
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        if(s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch(c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if(c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * 无界面运行:打开数据目录并只提供HTTP接口
+     * 端口和线程数可通过系统属性house.http.port(默认8080)、house.http.threads配置
+     */
+    public static void main(String[] args) throws IOException {
+        InventoryEngine engine = new InventoryEngine();
+        if(InventoryStore.openDefault(engine) == 0) {
+            HouseSellingSystem.addDefaultAdmin(engine);
+            HouseSellingSystem.addTestHouses(engine);
+        }
+        InventoryServer server = new InventoryServer(engine, Integer.getInteger("house.http.port", 8080),
+                                                     Integer.getInteger("house.http.threads", 64));
+        server.start();
+        System.out.println("HTTP接口已启动,端口" + server.getPort());
+    }
+}
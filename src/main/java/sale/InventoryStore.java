@@ -0,0 +1,301 @@
+package sale;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 库存的持久化目录:分段销售日志加周期快照
+ *
+ * 目录中的文件:
+ *   sales-NNNNNN.journal  第N段日志
+ *   snapshot-NNNNNN.snap  覆盖第N段之前全部日志的快照
+ * 启动时映射最新的快照,再只重放快照之后的日志段;
+ * 每次快照先切换到新日志段,快照落盘后删除被覆盖的旧日志段和旧快照。
+ * 后台(周期快照、退出时关闭)遇到的错误计入运行指标,并交给可替换的报告输出。
+ */
+public class InventoryStore implements Closeable {
+    private static final Pattern SEGMENT = Pattern.compile("sales-(\\d+)\\.journal");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)\\.snap");
+    private static final String LEGACY_JOURNAL = "sales.journal";  // 分段之前的单文件日志
+
+    private final InventoryEngine engine;   // 库存引擎
+    private final Path dir;                 // 数据目录
+    private final int syncEveryRecords;     // 累计多少条记录fsync一次
+    private final long syncIntervalMillis;  // 距上次fsync超过多久必须fsync
+    private final Object snapshotLock = new Object();  // 同一时间只做一次快照
+    private long segment;                   // 当前写入的日志段号
+    private ScheduledExecutorService scheduler;  // 周期快照线程
+    private final LongAdder backgroundFailures;  // 后台快照或关闭失败的次数
+    private volatile Consumer<String> reporter = System.err::println;  // 后台错误的报告输出
+
+    /**
+     * 构造函数
+     */
+    public InventoryStore(InventoryEngine engine, Path dir, int syncEveryRecords, long syncIntervalMillis) {
+        this.engine = engine;
+        this.dir = dir;
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.backgroundFailures = engine.getMetrics().counter("数据目录.后台失败");
+    }
+
+    /**
+     * 设置后台错误的报告输出,默认输出到标准错误
+     */
+    public void setReporter(Consumer<String> reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * 记录一次后台错误
+     */
+    private void reportFailure(String what, Exception e) {
+        backgroundFailures.increment();
+        reporter.accept(what + "失败: " + e);
+    }
+
+    /**
+     * 打开默认数据目录:恢复数据、启动周期快照,并在JVM退出时关闭
+     * 目录、fsync批量参数和快照间隔可通过系统属性house.data.dir、house.journal.syncEvery、
+     * house.journal.syncMillis、house.snapshot.minutes配置
+     *
+     * @return 恢复的条目数,0表示这是一个新目录
+     */
+    public static long openDefault(InventoryEngine engine) throws IOException {
+        Path dataDir = Paths.get(System.getProperty("house.data.dir", "data"));
+        int syncEvery = Integer.getInteger("house.journal.syncEvery", 64);
+        long syncMillis = Long.getLong("house.journal.syncMillis", 50L);
+        long snapshotMinutes = Long.getLong("house.snapshot.minutes", 10L);
+        InventoryStore store = new InventoryStore(engine, dataDir, syncEvery, syncMillis);
+        long restored = store.open();
+        if(snapshotMinutes > 0) {
+            store.scheduleSnapshots(snapshotMinutes * 60_000L);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                store.close();
+            } catch(IOException e) {
+                store.reportFailure("关闭数据目录", e);
+            }
+        }, "inventory-store-shutdown"));
+        return restored;
+    }
+
+    /**
+     * 从最新快照和其后的日志段恢复引擎,然后挂上日志继续追加
+     * 必须在引擎开始对外服务之前调用
+     *
+     * @return 恢复的条目数(快照中的房屋和用户加上重放的日志记录),0表示这是一个新目录
+     */
+    public long open() throws IOException {
+        Files.createDirectories(dir);
+        migrateLegacyJournal();
+
+        long[] restored = new long[1];
+        long start = 0;
+        List<Long> snapshots = list(SNAPSHOT);
+        if(!snapshots.isEmpty()) {
+            long latest = snapshots.get(snapshots.size() - 1);
+            start = SnapshotFile.load(snapshotPath(latest), new SnapshotFile.Loader() {
+                @Override
+                public void house(House house) {
+                    engine.addHouse(house);
+                    restored[0]++;
+                }
+
+                @Override
+                public void user(User user) {
+                    engine.restoreUser(user);
+                    restored[0]++;
+                }
+            });
+        }
+
+        long last = start;
+        SalesJournal.Handler handler = engine.replayHandler();
+        for(long seg : list(SEGMENT)) {
+            if(seg >= start) {
+                restored[0] += SalesJournal.replay(segmentPath(seg), handler);
+                last = seg;
+            }
+        }
+
+        segment = last;
+        engine.setJournal(new SalesJournal(segmentPath(segment), syncEveryRecords, syncIntervalMillis));
+        return restored[0];
+    }
+
+    /**
+     * 把分段之前的单文件日志改名为日志段
+     * 通常改名为第0段;第0段已有内容时(迁移之后又被旧版本写过),改名为最新一段之后的一段,
+     * 在已有日志之后重放,不覆盖任何已有的段
+     */
+    private void migrateLegacyJournal() throws IOException {
+        Path legacy = dir.resolve(LEGACY_JOURNAL);
+        if(!Files.exists(legacy)) {
+            return;
+        }
+        Path target = segmentPath(0);
+        if(Files.exists(target) && Files.size(target) > 0) {
+            List<Long> segments = list(SEGMENT);
+            List<Long> snapshots = list(SNAPSHOT);
+            long next = 0;
+            if(!segments.isEmpty()) {
+                next = Math.max(next, segments.get(segments.size() - 1) + 1);
+            }
+            if(!snapshots.isEmpty()) {
+                next = Math.max(next, snapshots.get(snapshots.size() - 1));
+            }
+            target = segmentPath(next);
+        }
+        Files.move(legacy, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory();
+    }
+
+    /**
+     * 做一次快照并压缩日志
+     *
+     * 持有引擎全部分段锁的时间只包括切换日志段和复制各列,写文件在锁外进行。
+     */
+    public void snapshot() throws IOException {
+        synchronized(snapshotLock) {
+            SnapshotFile.Columns columns;
+            try {
+                columns = engine.withAllLocks(() -> {
+                    try {
+                        SalesJournal old = engine.getJournal();
+                        if(old != null) {
+                            old.close();
+                        }
+                        segment++;
+                        engine.setJournal(new SalesJournal(segmentPath(segment),
+                                                           syncEveryRecords, syncIntervalMillis));
+                        return new SnapshotFile.Columns(segment, engine.getHouses(), engine.getUsers());
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch(UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            Path target = snapshotPath(columns.segment);
+            Path tmp = dir.resolve(target.getFileName() + ".tmp");
+            SnapshotFile.write(tmp, columns);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            syncDirectory();  // 改名落盘之前不能删除旧日志段,否则崩溃后两者都可能丢失
+
+            // 新快照已落盘,删除被它覆盖的日志段和旧快照
+            for(long seg : list(SEGMENT)) {
+                if(seg < columns.segment) {
+                    Files.deleteIfExists(segmentPath(seg));
+                }
+            }
+            for(long seg : list(SNAPSHOT)) {
+                if(seg < columns.segment) {
+                    Files.deleteIfExists(snapshotPath(seg));
+                }
+            }
+        }
+    }
+
+    /**
+     * 启动周期快照
+     */
+    public synchronized void scheduleSnapshots(long intervalMillis) {
+        if(scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "inventory-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch(IOException | RuntimeException e) {
+                // 周期任务抛出异常后不会再执行,这里全部接住,下一周期重试
+                reportFailure("周期快照", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止周期快照,把日志写完并关闭
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized(this) {
+            if(scheduler != null) {
+                scheduler.shutdownNow();
+                scheduler = null;
+            }
+        }
+        synchronized(snapshotLock) {
+            SalesJournal j = engine.withAllLocks(() -> {
+                SalesJournal current = engine.getJournal();
+                engine.setJournal(null);
+                return current;
+            });
+            if(j != null) {
+                j.close();
+            }
+        }
+    }
+
+    /**
+     * fsync数据目录,使其中的改名、创建和删除落盘;不能打开目录的平台(Windows)上跳过
+     */
+    private void syncDirectory() throws IOException {
+        try(FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch(AccessDeniedException e) {
+            // Windows不允许以文件方式打开目录
+        }
+    }
+
+    private Path segmentPath(long seg) {
+        return dir.resolve(String.format("sales-%06d.journal", seg));
+    }
+
+    private Path snapshotPath(long seg) {
+        return dir.resolve(String.format("snapshot-%06d.snap", seg));
+    }
+
+    /**
+     * 列出目录中匹配的文件的段号,升序
+     */
+    private List<Long> list(Pattern pattern) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for(Path p : stream) {
+                Matcher m = pattern.matcher(p.getFileName().toString());
+                if(m.matches()) {
+                    result.add(Long.parseLong(m.group(1)));
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+package sale;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟记录器,按HdrHistogram的对数线性分桶记录纳秒级耗时
+ *
+ * 小于128ns的值每纳秒一个桶,更大的值在每个2的幂区间内再均分64个桶,相对误差不超过1/64;
+ * 超过约2.4小时的值计入最后一个桶。记录只做一次数组下标计算和几次无锁累加,不分配对象,
+ * 可以放在预订、查询等热点路径上。
+ */
+public class LatencyRecorder {
+    private static final int SUB_BUCKETS = 128;            // 第一段的桶数,也是精度的两倍
+    private static final int HALF = SUB_BUCKETS / 2;       // 之后每个2的幂区间的桶数
+    private static final int MAX_SHIFT = 36;               // 最大记录值约为2^43纳秒
+    private static final int BUCKET_COUNT = SUB_BUCKETS + MAX_SHIFT * HALF;
+
+    private final String name;                                    // 操作名称
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder total = new LongAdder();              // 耗时总和(纳秒)
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);  // 最大耗时(纳秒)
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 记录一次耗时
+     */
+    public void record(long nanos) {
+        if(nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(bucketOf(nanos));
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * 记录从startNanos(System.nanoTime())到现在的耗时
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucketOf(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 6;  // 使value >> shift落在[64, 128)
+        if(shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        return SUB_BUCKETS + (shift - 1) * HALF + (int)(value >> shift) - HALF;
+    }
+
+    /**
+     * 桶内取值范围的中点,作为该桶的代表值
+     */
+    static long valueOf(int bucket) {
+        if(bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF + 1;
+        long sub = (bucket - SUB_BUCKETS) % HALF + HALF;
+        return (sub << shift) + (1L << (shift - 1));
+    }
+
+    /**
+     * 清空记录
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * 取当前记录的快照,与并发的记录之间不保证原子
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long n = 0;
+        for(int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        return new Snapshot(name, n, total.sum(), max.get(), counts);
+    }
+
+    /**
+     * 延迟分布的快照,时间单位均为纳秒
+     */
+    public static final class Snapshot {
+        public final String name;   // 操作名称
+        public final long count;    // 记录次数
+        public final long total;    // 耗时总和
+        public final long max;      // 最大耗时
+        private final long[] counts;
+
+        Snapshot(String name, long count, long total, long max, long[] counts) {
+            this.name = name;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+            this.counts = counts;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double)total / count;
+        }
+
+        /**
+         * 分位数,p取值0-1
+         */
+        public long percentile(double p) {
+            if(count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long)Math.ceil(p * count));
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if(seen >= rank) {
+                    return Math.min(valueOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package sale;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 登录服务:有界的密码校验线程池和会话令牌缓存
+ *
+ * 密码散列有意做得很慢,同时计算的数量超过CPU核数只会让所有登录一起变慢,
+ * 因此校验和注册都提交到固定数量的线程上执行,排队超过上限时直接拒绝
+ * (RejectedExecutionException),由调用方提示稍后再试。
+ * 登录成功后发放会话令牌,有效期内凭令牌操作只需查一次表;HTTP Basic认证每个请求都带着密码,
+ * 校验成功后在短时间内缓存密码的HMAC,同一用户的后续请求比较HMAC即可,不再计算散列。
+ * 会话和缓存的过期由时间轮处理,不需要扫描。
+ */
+public class LoginService {
+    private static final int TOKEN_BYTES = 32;  // 会话令牌的随机字节数
+
+    private final InventoryEngine engine;       // 库存引擎
+    private final ThreadPoolExecutor verifiers; // 密码校验线程池
+    private final long sessionMillis;           // 会话有效期
+    private final long cacheMillis;             // Basic认证凭据的缓存时间
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();             // 令牌 -> 会话
+    private final Map<String, CachedCredential> credentials = new ConcurrentHashMap<>(); // 用户名 -> 凭据
+    private final TimerWheel expiry = new TimerWheel(1000, "login-expiry");  // 会话和凭据的过期
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec cacheKey;       // 凭据HMAC的密钥,每次启动随机生成,不落盘
+    private final LatencyRecorder verifyTimer;  // 校验耗时,含排队
+    private final LongAdder sessionHits;        // 凭令牌通过的次数
+    private final LongAdder cacheHits;          // 凭缓存的凭据通过的次数
+    private final LongAdder rejected;           // 排队已满被拒绝的次数
+
+    /**
+     * 登录会话
+     */
+    public static final class Session {
+        private final String token;       // 会话令牌
+        private final User user;          // 登录的用户
+        private final long expiresAt;     // 过期时间(毫秒)
+        private volatile TimerWheel.Timeout timeout;  // 过期任务
+
+        Session(String token, User user, long expiresAt) {
+            this.token = token;
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getToken() { return token; }
+        public User getUser() { return user; }
+        public long getExpiresAt() { return expiresAt; }
+    }
+
+    /**
+     * 缓存的Basic认证凭据
+     */
+    private static final class CachedCredential {
+        final byte[] digest;   // 用户名和密码的HMAC
+        final User user;
+        final long expiresAt;  // 过期时间(毫秒)
+
+        CachedCredential(byte[] digest, User user, long expiresAt) {
+            this.digest = digest;
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param threads 同时计算密码散列的线程数,一般等于CPU核数
+     * @param queueCapacity 排队等待校验的请求数上限
+     * @param sessionMillis 会话令牌的有效期
+     * @param cacheMillis Basic认证凭据的缓存时间,0表示不缓存
+     */
+    public LoginService(InventoryEngine engine, int threads, int queueCapacity, long sessionMillis, long cacheMillis) {
+        this.engine = engine;
+        this.sessionMillis = Math.max(1, sessionMillis);
+        this.cacheMillis = Math.max(0, cacheMillis);
+        int n = Math.max(1, threads);
+        AtomicInteger seq = new AtomicInteger();
+        this.verifiers = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                Thread t = new Thread(r, "password-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        verifiers.allowCoreThreadTimeOut(true);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        this.cacheKey = new SecretKeySpec(key, "HmacSHA256");
+        Metrics metrics = engine.getMetrics();
+        this.verifyTimer = metrics.timer("登录.密码校验");
+        this.sessionHits = metrics.counter("登录.令牌命中");
+        this.cacheHits = metrics.counter("登录.凭据缓存命中");
+        this.rejected = metrics.counter("登录.繁忙拒绝");
+        expiry.start();
+    }
+
+    /**
+     * 按系统属性house.auth.threads(默认CPU核数)、house.auth.queue(默认64)、
+     * house.auth.sessionMinutes(默认30)、house.auth.cacheSeconds(默认60)创建
+     */
+    public static LoginService fromSystemProperties(InventoryEngine engine) {
+        return new LoginService(engine,
+                                Integer.getInteger("house.auth.threads", Runtime.getRuntime().availableProcessors()),
+                                Integer.getInteger("house.auth.queue", 64),
+                                Integer.getInteger("house.auth.sessionMinutes", 30) * 60_000L,
+                                Integer.getInteger("house.auth.cacheSeconds", 60) * 1000L);
+    }
+
+    /**
+     * 校验用户名和密码,成功时发放会话令牌,失败返回null
+     *
+     * @throws RejectedExecutionException 排队校验的请求已满
+     */
+    public Session login(String username, String password) {
+        User user = submit(() -> engine.authenticate(username, password));
+        if(user == null) {
+            credentials.remove(username);
+            return null;
+        }
+        Session session = new Session(newToken(), user, System.currentTimeMillis() + sessionMillis);
+        sessions.put(session.token, session);
+        session.timeout = expiry.schedule(sessionMillis, () -> sessions.remove(session.token, session));
+        return session;
+    }
+
+    /**
+     * 令牌对应的用户,令牌不存在或已过期时返回null
+     */
+    public User session(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        if(session == null || session.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        sessionHits.increment();
+        return session.user;
+    }
+
+    /**
+     * 注销会话
+     */
+    public void logout(String token) {
+        Session session = token == null ? null : sessions.remove(token);
+        if(session != null && session.timeout != null) {
+            session.timeout.cancel();
+        }
+    }
+
+    /**
+     * 校验HTTP Basic认证的用户名和密码,成功返回用户,失败返回null
+     * 缓存时间内同一用户名和密码只计算一次散列
+     *
+     * @throws RejectedExecutionException 需要计算散列但排队的请求已满
+     */
+    public User basic(String username, String password) {
+        if(cacheMillis == 0) {
+            return submit(() -> engine.authenticate(username, password));
+        }
+        byte[] digest = hmac(username, password);
+        CachedCredential cached = credentials.get(username);
+        if(cached != null && cached.expiresAt > System.currentTimeMillis()
+           && MessageDigest.isEqual(cached.digest, digest)) {
+            cacheHits.increment();
+            return cached.user;
+        }
+        User user = submit(() -> engine.authenticate(username, password));
+        if(user == null) {
+            credentials.remove(username);
+            return null;
+        }
+        CachedCredential entry = new CachedCredential(digest, user, System.currentTimeMillis() + cacheMillis);
+        credentials.put(username, entry);
+        expiry.schedule(cacheMillis, () -> credentials.remove(username, entry));
+        return user;
+    }
+
+    /**
+     * 注册用户,与登录共用校验线程池,用户名已存在时返回false
+     *
+     * @throws RejectedExecutionException 排队的请求已满
+     */
+    public boolean register(String username, String password, String role) {
+        return submit(() -> engine.registerUser(username, password, role));
+    }
+
+    /**
+     * 当前有效的会话数
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 提交到校验线程池并等待结果
+     */
+    private <T> T submit(Callable<T> task) {
+        long start = System.nanoTime();
+        try {
+            Future<T> future;
+            try {
+                future = verifiers.submit(task);
+            } catch(RejectedExecutionException e) {
+                rejected.increment();
+                throw e;
+            }
+            try {
+                return future.get();
+            } catch(InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("等待密码校验时被中断", e);
+            } catch(ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        } finally {
+            verifyTimer.recordSince(start);
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private byte[] hmac(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(cacheKey);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte)0);
+            return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch(GeneralSecurityException e) {
+            throw new IllegalStateException("JDK不支持HmacSHA256", e);
+        }
+    }
+}
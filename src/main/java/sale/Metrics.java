@@ -0,0 +1,85 @@
+package sale;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 运行指标:各业务操作的延迟分布和计数器
+ *
+ * 记录器和计数器按名称登记,首次使用时创建;热点路径应在构造时取好引用保存在字段里,
+ * 之后每次记录不再查表。快照可以在管理员的性能指标面板查看,也可以导出为CSV。
+ */
+public class Metrics {
+    private final Map<String, LatencyRecorder> timers = new ConcurrentHashMap<>();  // 延迟记录器
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();       // 计数器
+
+    /**
+     * 取名称对应的延迟记录器,不存在时创建
+     */
+    public LatencyRecorder timer(String name) {
+        return timers.computeIfAbsent(name, LatencyRecorder::new);
+    }
+
+    /**
+     * 取名称对应的计数器,不存在时创建
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * 全部延迟记录器的快照,按名称排序
+     */
+    public List<LatencyRecorder.Snapshot> timerSnapshots() {
+        List<LatencyRecorder.Snapshot> list = new ArrayList<>();
+        for(LatencyRecorder recorder : new TreeMap<>(timers).values()) {
+            list.add(recorder.snapshot());
+        }
+        return list;
+    }
+
+    /**
+     * 全部计数器的当前值,按名称排序
+     */
+    public Map<String, Long> counterValues() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    /**
+     * 清空全部记录,记录器和计数器本身保留
+     */
+    public void reset() {
+        timers.values().forEach(LatencyRecorder::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * 把当前快照导出为带BOM的UTF-8 CSV,耗时单位为毫秒
+     */
+    public void exportCsv(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("\uFEFF导出时间," + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        lines.add("操作,次数,平均(ms),p50(ms),p90(ms),p99(ms),p99.9(ms),最大(ms)");
+        for(LatencyRecorder.Snapshot s : timerSnapshots()) {
+            lines.add(String.format("%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f", s.name, s.count,
+                s.mean() / 1e6, s.percentile(0.5) / 1e6, s.percentile(0.9) / 1e6,
+                s.percentile(0.99) / 1e6, s.percentile(0.999) / 1e6, s.max / 1e6));
+        }
+        lines.add("");
+        lines.add("计数器,数值");
+        counterValues().forEach((name, value) -> lines.add(name + "," + value));
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+}
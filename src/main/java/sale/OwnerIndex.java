@@ -0,0 +1,132 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 购买者到已购房屋的反向索引
+ *
+ * 每个购买者的房屋同时放在按编号散列的表和按编号排序的跳表中:判断是否拥有某套房屋为O(1),
+ * 按编号翻页每页O(log n + 页大小),持有上千套房屋的购买者或代理人也不必整表复制。
+ * 增删由InventoryEngine在成交入账、删除已售房屋时于该房屋的分段锁内调用,与房屋表、销售汇总、
+ * 日志在同一临界区内变化;同一购买者的增删经ConcurrentHashMap.compute串行,
+ * 最后一套房屋移除时连同购买者一起移除;按名称排序的购买者集合也在同一compute内增删,
+ * 供按名称前缀搜索。读取不加锁。
+ */
+public class OwnerIndex {
+    private final Map<String, Holdings> owners = new ConcurrentHashMap<>();  // 购买者 -> 已购房屋
+    private final NavigableSet<String> names = new ConcurrentSkipListSet<>(); // 有已购房屋的购买者,按名称排序
+
+    /**
+     * 一个购买者的房屋
+     */
+    private static final class Holdings {
+        final Map<String, House> byId = new ConcurrentHashMap<>();                 // 成员判断和计数
+        final NavigableMap<String, House> sorted = new ConcurrentSkipListMap<>();  // 按编号翻页
+    }
+
+    /**
+     * 登记一套已售房屋,购买者取房屋当前的购买者
+     */
+    void add(House house) {
+        String id = house.getId();
+        owners.compute(house.getBuyer(), (buyer, holdings) -> {
+            if(holdings == null) {
+                holdings = new Holdings();
+                names.add(buyer);
+            }
+            holdings.byId.put(id, house);
+            holdings.sorted.put(id, house);
+            return holdings;
+        });
+    }
+
+    /**
+     * 移除一套已售房屋,只移除索引中的同一个对象
+     */
+    void remove(House house) {
+        String id = house.getId();
+        owners.computeIfPresent(house.getBuyer(), (buyer, holdings) -> {
+            if(holdings.byId.remove(id, house)) {
+                holdings.sorted.remove(id, house);
+            }
+            if(holdings.byId.isEmpty()) {
+                names.remove(buyer);
+                return null;
+            }
+            return holdings;
+        });
+    }
+
+    /**
+     * 购买者是否拥有该房屋
+     */
+    public boolean owns(String buyer, String houseId) {
+        Holdings holdings = owners.get(buyer);
+        return holdings != null && holdings.byId.containsKey(houseId);
+    }
+
+    /**
+     * 购买者拥有的房屋数
+     */
+    public int count(String buyer) {
+        Holdings holdings = owners.get(buyer);
+        return holdings == null ? 0 : holdings.byId.size();
+    }
+
+    /**
+     * 购买者拥有的全部房屋,按编号排序
+     */
+    public List<House> list(String buyer) {
+        Holdings holdings = owners.get(buyer);
+        return holdings == null ? Collections.emptyList() : new ArrayList<>(holdings.sorted.values());
+    }
+
+    /**
+     * 按编号翻页:编号大于afterId的前limit套,afterId为null时从第一套开始
+     * 下一页以本页最后一套的编号作为afterId,翻页期间其他房屋的增删不会使已有的房屋重复出现或被跳过
+     */
+    public List<House> page(String buyer, String afterId, int limit) {
+        Holdings holdings = owners.get(buyer);
+        if(holdings == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        NavigableMap<String, House> tail = afterId == null ? holdings.sorted : holdings.sorted.tailMap(afterId, false);
+        List<House> page = new ArrayList<>(Math.min(limit, holdings.byId.size()));
+        for(House house : tail.values()) {
+            if(page.size() == limit) {
+                break;
+            }
+            page.add(house);
+        }
+        return page;
+    }
+
+    /**
+     * 名称以prefix开头的购买者,按名称排序,最多limit个
+     */
+    public List<String> buyersWithPrefix(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        for(String name : names.tailSet(prefix, true)) {
+            if(result.size() == limit || !name.startsWith(prefix)) {
+                break;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * 有已购房屋的购买者数
+     */
+    public int ownerCount() {
+        return owners.size();
+    }
+}
@@ -0,0 +1,96 @@
+package sale;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 密码散列,使用加盐的PBKDF2-HMAC-SHA256
+ *
+ * 存储格式为"pbkdf2-sha256$迭代次数$盐$散列",盐和散列为Base64;迭代次数随散列一起保存,
+ * 调整系统属性house.password.iterations(默认600000)只影响之后新设置的密码,旧散列照常校验。
+ * 一次散列在普通CPU上需要数百毫秒,这是有意为之,调用方不应在EDT或锁内调用。
+ */
+public final class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;   // 盐长度
+    private static final int HASH_BITS = 256;   // 散列长度
+    private static final int ITERATIONS =       // 新密码的迭代次数
+        Math.max(1, Integer.getInteger("house.password.iterations", 600_000));
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static volatile String dummy;  // 用户不存在时用来校验的散列,第一次使用时生成
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * 生成密码的散列,每次使用新的随机盐
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + ITERATIONS + "$" + base64.encodeToString(salt) + "$"
+               + base64.encodeToString(pbkdf2(password, salt, ITERATIONS));
+    }
+
+    /**
+     * 校验密码与散列是否匹配,散列格式不正确时返回false;比较耗时与不匹配的位置无关
+     */
+    public static boolean verify(String password, String encoded) {
+        if(!isHashed(encoded)) {
+            return false;
+        }
+        String[] parts = encoded.substring(PREFIX.length()).split("\\$");
+        if(parts.length != 3) {
+            return false;
+        }
+        try {
+            int iterations = Integer.parseInt(parts[0]);
+            byte[] salt = Base64.getDecoder().decode(parts[1]);
+            byte[] expected = Base64.getDecoder().decode(parts[2]);
+            if(iterations <= 0 || expected.length == 0) {
+                return false;
+            }
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, iterations));
+        } catch(IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 与一个不会匹配的散列做一次完整校验,用户不存在时调用,
+     * 使"用户不存在"和"密码错误"的耗时相同,无法据此探测用户名
+     */
+    public static void verifyDummy(String password) {
+        String d = dummy;
+        if(d == null) {
+            d = hash(Long.toHexString(RANDOM.nextLong()));
+            dummy = d;
+        }
+        verify(password, d);
+    }
+
+    /**
+     * 是否为本类生成的散列;旧版本的快照和日志中保存的是明文密码,加载时据此识别并转换
+     */
+    public static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch(GeneralSecurityException e) {
+            throw new IllegalStateException("JDK不支持" + ALGORITHM, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
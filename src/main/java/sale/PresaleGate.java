@@ -0,0 +1,335 @@
+package sale;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 开盘抢订的准入层,位于预订之前
+ *
+ * 每套房屋有一条有界队列,队列满时直接拒绝,同一套房屋上等待的线程数不会超过队列容量;
+ * 所有房屋上等待的线程总数另有上限,达到上限时同样立即拒绝,排队的请求不会占满HTTP线程池,
+ * 热门房屋的排队不影响其他请求。房屋一旦不再可售,后来的请求不进队列立即拒绝。
+ * 队列锁只用于登记和唤醒,预订(可能等待日志fsync)总是在释放队列锁之后进行,
+ * 新到的请求获取队列锁也以最长排队时间为限。两种模式:
+ *   FIFO     按进入队列的先后依次尝试预订,先到先得
+ *   LOTTERY  第一个请求到达后开放一个报名窗口,窗口结束时在报名者中随机抽签,
+ *            与到达先后无关;同一购买者在一次抽签中只能报名一次
+ * 队列在没有请求时即被移除,已售房屋不占用内存。
+ */
+public class PresaleGate {
+    /**
+     * 准入模式
+     */
+    public enum Mode {
+        FIFO,     // 先到先得
+        LOTTERY   // 窗口内报名,随机抽签
+    }
+
+    /**
+     * 准入结果
+     */
+    public enum Outcome {
+        SUCCESS,    // 预订成功
+        SOLD_OUT,   // 房屋已售出或已被锁定
+        LOST,       // 抽签未中
+        BUSY,       // 排队人数已满,稍后再试
+        DUPLICATE,  // 已在该房屋的队列中
+        TIMEOUT,    // 排队超时
+        NOT_FOUND,  // 房屋不存在
+        FAILED      // 抽签时预订出错(如销售日志写入失败),本次报名全部作废
+    }
+
+    private final InventoryEngine engine;     // 库存引擎
+    private final Mode mode;                  // 准入模式
+    private final int capacity;               // 每套房屋的队列容量
+    private final int maxWaiters;             // 所有房屋上排队的请求总数上限
+    private final long windowNanos;           // 抽签报名窗口
+    private final long maxWaitNanos;          // FIFO模式最长排队时间,也是两种模式获取队列锁的最长等待
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();  // 有请求的房屋的队列
+    private final AtomicInteger waiters = new AtomicInteger();  // 所有队列中的请求数
+    private final Random random = new Random();  // 抽签
+    private final LatencyRecorder timer;      // 准入耗时,含排队
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LongAdder drawFailures;     // 抽签时预订抛出异常的次数
+
+    /**
+     * 一套房屋的队列,所有字段在持有lock时访问
+     */
+    private static final class Lane {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition changed = lock.newCondition();
+        final ArrayDeque<Entry> queue = new ArrayDeque<>();
+        final Set<String> buyers = new HashSet<>();
+        long drawAt;       // 抽签时间(System.nanoTime)
+        boolean drawing;   // 已开始抽签,报名者等待抽签者填写结果
+        boolean dead;      // 已从lanes中移除,拿到它的请求应重新获取
+    }
+
+    /**
+     * 队列中的一个请求
+     */
+    private static final class Entry {
+        final String buyer;
+        Outcome outcome;  // 抽签模式下由抽签者填写
+
+        Entry(String buyer) {
+            this.buyer = buyer;
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 每套房屋最多排队的请求数
+     * @param maxWaiters 所有房屋上最多排队的请求数,应明显小于处理请求的线程数
+     * @param windowMillis 抽签模式的报名窗口
+     * @param maxWaitMillis FIFO模式的最长排队时间;两种模式获取队列锁也以此为限
+     */
+    public PresaleGate(InventoryEngine engine, Mode mode, int capacity, int maxWaiters,
+                       long windowMillis, long maxWaitMillis) {
+        this.engine = engine;
+        this.mode = mode;
+        this.capacity = Math.max(1, capacity);
+        this.maxWaiters = Math.max(1, maxWaiters);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+        Metrics metrics = engine.getMetrics();
+        this.timer = metrics.timer("准入.预订");
+        this.drawFailures = metrics.counter("准入.抽签出错");
+        for(Outcome outcome : Outcome.values()) {
+            outcomes[outcome.ordinal()] = metrics.counter("准入结果." + outcome);
+        }
+    }
+
+    /**
+     * 按系统属性house.gate.mode(fifo/lottery)、house.gate.capacity、house.gate.maxWaiters、
+     * house.gate.windowMillis、house.gate.maxWaitMillis创建
+     * 排队总数默认为HTTP线程数(house.http.threads)的四分之一,每套房屋默认最多8个
+     */
+    public static PresaleGate fromSystemProperties(InventoryEngine engine) {
+        Mode mode = "lottery".equalsIgnoreCase(System.getProperty("house.gate.mode")) ? Mode.LOTTERY : Mode.FIFO;
+        int maxWaiters = Integer.getInteger("house.gate.maxWaiters",
+                                            Math.max(1, Integer.getInteger("house.http.threads", 64) / 4));
+        return new PresaleGate(engine, mode,
+                               Integer.getInteger("house.gate.capacity", Math.min(8, maxWaiters)),
+                               maxWaiters,
+                               Long.getLong("house.gate.windowMillis", 200L),
+                               Long.getLong("house.gate.maxWaitMillis", 2000L));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * 经过准入队列预订房屋,可能阻塞到排队结束或抽签完成
+     */
+    public Outcome reserve(String houseId, String buyer) {
+        long start = System.nanoTime();
+        Outcome outcome;
+        try {
+            outcome = admit(houseId, buyer);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = Outcome.TIMEOUT;
+        }
+        timer.recordSince(start);
+        outcomes[outcome.ordinal()].increment();
+        return outcome;
+    }
+
+    private Outcome admit(String houseId, String buyer) throws InterruptedException {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while(true) {
+            House house = engine.getHouse(houseId);
+            if(house == null) {
+                return Outcome.NOT_FOUND;
+            }
+            if(!house.isAvailable()) {
+                return Outcome.SOLD_OUT;  // 已售出的房屋不进队列
+            }
+            Lane lane = lanes.computeIfAbsent(houseId, k -> new Lane());
+            if(!lane.lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return Outcome.TIMEOUT;
+            }
+            try {
+                if(lane.dead) {
+                    continue;
+                }
+                if(lane.queue.size() >= capacity) {
+                    return Outcome.BUSY;
+                }
+                if(lane.buyers.contains(buyer)) {
+                    return Outcome.DUPLICATE;
+                }
+                if(waiters.incrementAndGet() > maxWaiters) {
+                    waiters.decrementAndGet();
+                    if(lane.queue.isEmpty()) {
+                        lane.dead = true;  // 为这次请求新建的队列,不留在lanes中
+                        lanes.remove(houseId, lane);
+                    }
+                    return Outcome.BUSY;  // 排队总数已满,不占用线程等待
+                }
+                lane.buyers.add(buyer);
+                Entry entry = new Entry(buyer);
+                if(mode == Mode.LOTTERY && lane.queue.isEmpty()) {
+                    lane.drawAt = System.nanoTime() + windowNanos;
+                }
+                lane.queue.add(entry);
+                return mode == Mode.FIFO ? awaitTurn(houseId, house, lane, entry, deadline)
+                                         : awaitDraw(houseId, lane, entry);
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * FIFO:排到队首时释放队列锁去预订,预订期间仍占着队首,后面的请求继续等待;
+     * 房屋在排队期间被他人买走时立即返回。调用时持有队列锁,返回时仍持有
+     */
+    private Outcome awaitTurn(String houseId, House house, Lane lane, Entry entry, long deadline)
+            throws InterruptedException {
+        try {
+            while(lane.queue.peek() != entry) {
+                if(!house.isAvailable()) {
+                    return Outcome.SOLD_OUT;
+                }
+                long left = deadline - System.nanoTime();
+                if(left <= 0) {
+                    return Outcome.TIMEOUT;
+                }
+                lane.changed.awaitNanos(left);
+            }
+            if(!house.isAvailable()) {
+                return Outcome.SOLD_OUT;
+            }
+            lane.lock.unlock();
+            try {
+                return toOutcome(engine.reserve(houseId, entry.buyer));
+            } finally {
+                lane.lock.lock();
+            }
+        } finally {
+            leave(houseId, lane, entry);
+        }
+    }
+
+    /**
+     * 抽签:等到报名窗口结束,由第一个醒来的报名者为所有人抽签;抽签开始后其余报名者只等结果,
+     * 不再被中断打断,结果由抽签者填写。调用时持有队列锁,返回时仍持有
+     */
+    private Outcome awaitDraw(String houseId, Lane lane, Entry entry) throws InterruptedException {
+        try {
+            while(entry.outcome == null) {
+                if(lane.drawing) {
+                    lane.changed.awaitUninterruptibly();
+                    continue;
+                }
+                long left = lane.drawAt - System.nanoTime();
+                if(left <= 0) {
+                    draw(houseId, lane);
+                    break;
+                }
+                lane.changed.awaitNanos(left);
+            }
+            return entry.outcome;
+        } finally {
+            if(entry.outcome == null) {
+                leave(houseId, lane, entry);  // 抽签前被中断
+            }
+        }
+    }
+
+    /**
+     * 打乱报名顺序依次尝试预订,第一个成功者中签,其余未中签
+     * 先在队列锁内取下全部报名并移除队列,释放锁后再预订,最后在锁内填写每个人的结果;
+     * 预订抛出异常时本次报名全部以FAILED结束,不会由其他报名者对同一个出错的引擎重新抽签
+     * 调用时持有队列锁,返回时仍持有
+     */
+    private void draw(String houseId, Lane lane) {
+        List<Entry> entries = new ArrayList<>(lane.queue);
+        lane.queue.clear();
+        lane.buyers.clear();
+        lane.drawing = true;
+        lane.dead = true;
+        lanes.remove(houseId, lane);
+        Collections.shuffle(entries, random);
+
+        Outcome[] results = new Outcome[entries.size()];
+        lane.lock.unlock();
+        try {
+            Outcome rest = null;
+            for(int i = 0; i < results.length; i++) {
+                if(rest != null) {
+                    results[i] = rest;
+                    continue;
+                }
+                results[i] = toOutcome(engine.reserve(houseId, entries.get(i).buyer));
+                // 失败说明房屋已被队列外的请求买走或已被删除,其余报名者得到同样的结果
+                rest = results[i] == Outcome.SUCCESS ? Outcome.LOST : results[i];
+            }
+        } catch(RuntimeException e) {
+            drawFailures.increment();  // 尚未填写的结果在下面统一记为FAILED
+        } finally {
+            lane.lock.lock();
+            for(int i = 0; i < results.length; i++) {
+                entries.get(i).outcome = results[i] != null ? results[i] : Outcome.FAILED;
+            }
+            waiters.addAndGet(-entries.size());
+            lane.changed.signalAll();
+        }
+    }
+
+    /**
+     * 离开队列,队列空时移除
+     */
+    private void leave(String houseId, Lane lane, Entry entry) {
+        if(lane.queue.remove(entry)) {
+            waiters.decrementAndGet();
+        }
+        lane.buyers.remove(entry.buyer);
+        if(lane.queue.isEmpty()) {
+            lane.dead = true;
+            lanes.remove(houseId, lane);
+        }
+        lane.changed.signalAll();
+    }
+
+    private static Outcome toOutcome(InventoryEngine.ReserveResult result) {
+        switch(result) {
+            case SUCCESS:
+                return Outcome.SUCCESS;
+            case NOT_FOUND:
+                return Outcome.NOT_FOUND;
+            default:
+                return Outcome.SOLD_OUT;
+        }
+    }
+
+    /**
+     * 当前有请求排队的房屋数
+     */
+    public int getActiveLanes() {
+        return lanes.size();
+    }
+
+    /**
+     * 当前所有房屋上排队的请求数
+     */
+    public int getWaiters() {
+        return waiters.get();
+    }
+}
@@ -0,0 +1,77 @@
+package sale;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * 一页查询结果:满足条件的总套数和按编号排序的[offset, offset+limit)
+ */
+public class QueryPage {
+    static final Comparator<House> BY_ID = Comparator.comparing(House::getId);
+
+    private final int total;            // 满足条件的总套数
+    private final List<House> houses;   // 本页房屋,按编号排序
+
+    QueryPage(int total, List<House> houses) {
+        this.total = total;
+        this.houses = houses;
+    }
+
+    public int getTotal() { return total; }
+    public List<House> getHouses() { return houses; }
+
+    /**
+     * 逐一接收满足条件的房屋,只保留编号最小的keep套并计数,不保存其余结果
+     * 每个分区各用一个,最后合并;本身不是线程安全的
+     */
+    static final class Collector implements Consumer<House> {
+        private final int keep;
+        private final PriorityQueue<House> top;  // 堆顶是保留的房屋中编号最大的
+        private int total;
+
+        Collector(int keep) {
+            this.keep = keep;
+            this.top = new PriorityQueue<>(Math.max(1, Math.min(keep, 1024)), BY_ID.reversed());
+        }
+
+        @Override
+        public void accept(House house) {
+            total++;
+            offer(house);
+        }
+
+        private void offer(House house) {
+            if(top.size() < keep) {
+                top.add(house);
+            } else if(keep > 0 && BY_ID.compare(house, top.peek()) < 0) {
+                top.poll();
+                top.add(house);
+            }
+        }
+
+        /**
+         * 并入另一个分区的结果
+         */
+        Collector merge(Collector other) {
+            total += other.total;
+            for(House house : other.top) {
+                offer(house);
+            }
+            return this;
+        }
+
+        /**
+         * 跳过前offset套,返回其余保留的房屋
+         */
+        QueryPage page(int offset) {
+            List<House> sorted = new ArrayList<>(top);
+            sorted.sort(BY_ID);
+            List<House> houses = offset >= sorted.size() ? new ArrayList<>()
+                                                         : new ArrayList<>(sorted.subList(offset, sorted.size()));
+            return new QueryPage(total, houses);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package sale;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 销售汇总数据,随房屋的添加、修改、售出和删除增量更新
+ *
+ * 计数器使用LongAdder/DoubleAdder分段累加,写入时几乎无争用,读取为常数时间,
+ * 统计报表打开时不再需要遍历全部房屋。
+ */
+public class SalesAggregates {
+    private final LongAdder totalCount = new LongAdder();      // 房屋总数
+    private final LongAdder availableCount = new LongAdder();  // 可售数量
+    private final LongAdder soldCount = new LongAdder();       // 已售数量
+    private final DoubleAdder totalSales = new DoubleAdder();  // 销售总额(面积×单价)
+
+    /**
+     * 新增一套可售房屋
+     */
+    void onAdd() {
+        totalCount.increment();
+        availableCount.increment();
+    }
+
+    /**
+     * 删除一套房屋
+     *
+     * @param settled 该房屋的成交是否已计入统计
+     * @param amount  已计入的成交金额
+     */
+    void onRemove(boolean settled, double amount) {
+        totalCount.decrement();
+        if(settled) {
+            soldCount.decrement();
+            totalSales.add(-amount);
+        } else {
+            availableCount.decrement();
+        }
+    }
+
+    /**
+     * 一套房屋成交
+     */
+    void onSell(double amount) {
+        availableCount.decrement();
+        soldCount.increment();
+        totalSales.add(amount);
+    }
+
+    /**
+     * 撤销一笔成交,房屋恢复可售
+     */
+    void onUnsell(double amount) {
+        soldCount.decrement();
+        totalSales.add(-amount);
+        availableCount.increment();
+    }
+
+    /**
+     * 已售房屋的面积或单价被修改
+     */
+    void onAmountChange(double oldAmount, double newAmount) {
+        totalSales.add(newAmount - oldAmount);
+    }
+
+    /**
+     * 汇总数据的一次性读取结果,可在后台线程取得后交给界面显示
+     */
+    public static final class Summary {
+        public final long totalCount;      // 房屋总数
+        public final long availableCount;  // 可售数量
+        public final long soldCount;       // 已售数量
+        public final double totalSales;    // 销售总额
+
+        Summary(long totalCount, long availableCount, long soldCount, double totalSales) {
+            this.totalCount = totalCount;
+            this.availableCount = availableCount;
+            this.soldCount = soldCount;
+            this.totalSales = totalSales;
+        }
+    }
+
+    /**
+     * 读取当前汇总数据
+     */
+    public Summary summary() {
+        return new Summary(getTotalCount(), getAvailableCount(), getSoldCount(), getTotalSales());
+    }
+
+    // getter方法
+    public long getTotalCount() { return totalCount.sum(); }
+    public long getAvailableCount() { return availableCount.sum(); }
+    public long getSoldCount() { return soldCount.sum(); }
+    public double getTotalSales() { return totalSales.sum(); }
+
+    /**
+     * 对全部房屋做一次完整统计,与增量结果比较,返回不一致的描述;一致时返回null
+     * 应在没有并发写入时调用,否则正在入账的成交会被报告为不一致
+     */
+    public String verify(Collection<House> houses) {
+        long total = 0;
+        long available = 0;
+        long sold = 0;
+        double sales = 0;
+        for(House h : houses) {
+            total++;
+            if(h.isSold()) {
+                sold++;
+                sales += h.getArea() * h.getPrice();
+            } else {
+                available++;  // 锁定待付款的房屋仍计为可售
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        appendMismatch(sb, "总房屋数量", getTotalCount(), total);
+        appendMismatch(sb, "可售房屋数量", getAvailableCount(), available);
+        appendMismatch(sb, "已售房屋数量", getSoldCount(), sold);
+        double incremental = getTotalSales();
+        // 增量累加与一次性求和的舍入误差不同,按相对误差比较
+        if(Math.abs(incremental - sales) > 1e-6 * Math.max(1, Math.abs(sales))) {
+            sb.append("销售总额: 增量").append(String.format("%.2f", incremental))
+              .append(", 重算").append(String.format("%.2f", sales)).append('\n');
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private static void appendMismatch(StringBuilder sb, String name, long incremental, long full) {
+        if(incremental != full) {
+            sb.append(name).append(": 增量").append(incremental)
+              .append(", 重算").append(full).append('\n');
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package sale;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * 销售报表导出
+ *
+ * 导出为带BOM的UTF-8 CSV,Excel可以直接打开。台账导出用游标遍历库存,不复制房屋列表,
+ * 每行编码进固定大小的缓冲区,写满即写入文件通道,内存占用与房屋数无关。
+ */
+public class SalesExporter {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String LEDGER_HEADER = "编号,楼栋号,单元号,房间号,面积,单价,状态,购买者,销售日期,成交金额";
+
+    private final InventoryEngine engine;  // 库存引擎
+
+    public SalesExporter(InventoryEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * 导出统计报表中的汇总数据
+     */
+    public void exportSummary(SalesAggregates.Summary summary, Path file) throws IOException {
+        try(CsvWriter out = new CsvWriter(file)) {
+            out.text("指标,数值").endLine();
+            out.text("房屋总数,").text(String.valueOf(summary.totalCount)).endLine();
+            out.text("可售房屋数量,").text(String.valueOf(summary.availableCount)).endLine();
+            out.text("已售房屋数量,").text(String.valueOf(summary.soldCount)).endLine();
+            out.text("销售总额,").money(summary.totalSales).endLine();
+        }
+    }
+
+    /**
+     * 导出逐套房屋的销售台账,行的顺序不固定
+     *
+     * @param since 不为null时只导出销售日期不早于since的已售房屋,用于增量导出
+     * @return 导出的行数,不含表头
+     */
+    public long exportLedger(Path file, Date since, UiExecutor.Progress progress) throws IOException {
+        long total = Math.max(1, engine.getHouseCount());
+        long scanned = 0;
+        long rows = 0;
+        ZoneId zone = ZoneId.systemDefault();
+        long cachedSecond = Long.MIN_VALUE;  // 同一秒内的销售日期只格式化一次
+        String cachedDate = null;
+        try(CsvWriter out = new CsvWriter(file)) {
+            out.text(LEDGER_HEADER).endLine();
+            for(House h : engine.getHouses()) {
+                if(++scanned % 8192 == 0) {
+                    if(progress.isCancelled()) {
+                        break;
+                    }
+                    progress.update((int)Math.min(99, scanned * 100 / total), "已导出" + rows + "行");
+                }
+                Date saleDate = h.getSaleDate();
+                if(since != null && (saleDate == null || saleDate.before(since))) {
+                    continue;
+                }
+                out.field(h.getId()).comma()
+                   .field(h.getBuilding()).comma()
+                   .field(h.getUnit()).comma()
+                   .field(h.getRoom()).comma()
+                   .text(Double.toString(h.getArea())).comma()
+                   .text(Double.toString(h.getPrice())).comma()
+                   .field(h.getStatus()).comma()
+                   .field(h.getBuyer()).comma();
+                if(saleDate != null) {
+                    long second = Math.floorDiv(saleDate.getTime(), 1000);
+                    if(second != cachedSecond) {
+                        cachedSecond = second;
+                        cachedDate = DATE_FORMAT.format(saleDate.toInstant().atZone(zone));
+                    }
+                    out.text(cachedDate).comma().money(h.getAmount());
+                } else {
+                    out.comma();
+                }
+                out.endLine();
+                rows++;
+            }
+        }
+        progress.update(100, "已导出" + rows + "行");
+        return rows;
+    }
+
+    /**
+     * CSV输出:当前行先写进字符数组,行结束时编码进固定大小的缓冲区,写满即写入文件通道
+     */
+    private static final class CsvWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private char[] line = new char[256];  // 当前行
+        private int length;                   // 当前行已写的字符数
+
+        CsvWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                       StandardOpenOption.TRUNCATE_EXISTING);
+            buf.put((byte)0xEF).put((byte)0xBB).put((byte)0xBF);  // BOM,Excel据此按UTF-8识别
+        }
+
+        CsvWriter text(String s) {
+            int n = s.length();
+            ensure(n);
+            s.getChars(0, n, line, length);
+            length += n;
+            return this;
+        }
+
+        CsvWriter comma() {
+            ensure(1);
+            line[length++] = ',';
+            return this;
+        }
+
+        /**
+         * 写入一个字段,含逗号、引号或换行时加引号,null写为空
+         */
+        CsvWriter field(String value) {
+            if(value == null) {
+                return this;
+            }
+            boolean quote = false;
+            for(int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if(!quote) {
+                return text(value);
+            }
+            ensure(value.length() * 2 + 2);
+            line[length++] = '"';
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if(c == '"') {
+                    line[length++] = '"';
+                }
+                line[length++] = c;
+            }
+            line[length++] = '"';
+            return this;
+        }
+
+        /**
+         * 按两位小数写入金额,代替逐行调用String.format
+         */
+        CsvWriter money(double amount) {
+            long cents = Math.round(amount * 100);
+            if(cents < 0) {
+                text("-");
+                cents = -cents;
+            }
+            long fraction = cents % 100;
+            return text(Long.toString(cents / 100)).text(fraction < 10 ? ".0" : ".").text(Long.toString(fraction));
+        }
+
+        /**
+         * 结束当前行并编码到输出缓冲区
+         */
+        void endLine() throws IOException {
+            ensure(2);
+            line[length++] = '\r';
+            line[length++] = '\n';
+            CharBuffer in = CharBuffer.wrap(line, 0, length);
+            length = 0;
+            while(true) {
+                CoderResult result = encoder.encode(in, buf, false);
+                if(result.isOverflow()) {
+                    drain();
+                } else if(result.isUnderflow()) {
+                    return;
+                } else {
+                    result.throwException();
+                }
+            }
+        }
+
+        private void ensure(int extra) {
+            if(length + extra > line.length) {
+                line = Arrays.copyOf(line, Math.max(length + extra, line.length * 2));
+            }
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            while(buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package sale;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 销售日志,以追加方式记录全部库存事件,启动时重放以恢复数据
+ *
+ * 记录格式: [int 负载长度][int 负载CRC32][负载: byte 事件类型 + 各字段]
+ * 调用方线程只负责编码和入队,由后台写线程批量写入FileChannel(组提交),
+ * 累计一定条数或超过一定时间后才fsync一次,两者均可配置;有调用方等待的记录(成交)所在的批次写完即fsync,
+ * fsync期间到达的记录在下一批一起提交。写入失败后不再写入,之后的追加都抛出异常。
+ * 重放时遇到长度或校验和不正确的记录视为崩溃时写了一半的尾部,截断后继续使用。
+ */
+public class SalesJournal implements Closeable {
+    private static final byte ADD_HOUSE = 1;      // 添加房屋
+    private static final byte EDIT_HOUSE = 2;     // 修改房屋
+    private static final byte SELL_HOUSE = 3;     // 售出房屋
+    private static final byte DELETE_HOUSE = 4;   // 删除房屋
+    private static final byte REGISTER_USER = 5;  // 注册用户
+
+    private static final int HEADER_SIZE = 8;              // 长度+校验和
+    private static final int MAX_RECORD_SIZE = 1 << 20;    // 单条记录上限,超过视为损坏
+    private static final int QUEUE_CAPACITY = 65536;       // 待写队列容量
+    private static final long ENQUEUE_TIMEOUT_MILLIS =      // 队列写满时追加最多等待多久
+            Long.getLong("house.journal.enqueueTimeoutMillis", 1000L);
+
+    private final FileChannel channel;      // 日志文件
+    private final int syncEveryRecords;     // 累计多少条记录fsync一次
+    private final long syncIntervalMillis;  // 距上次fsync超过多久必须fsync
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;            // 后台写线程
+    private volatile boolean closed;        // 是否已关闭
+    private volatile IOException failure;   // 写线程遇到的异常,设置后不再写入
+
+    /**
+     * 待写条目,data为null时表示一个刷盘请求
+     */
+    private static final class Entry {
+        final byte[] data;
+        final CompletableFuture<Void> synced;  // fsync后完成,写入失败时异常完成;无人等待时为null
+
+        Entry(byte[] data, CompletableFuture<Void> synced) {
+            this.data = data;
+            this.synced = synced;
+        }
+    }
+
+    /**
+     * 重放回调,按日志中的顺序逐条调用
+     */
+    public interface Handler {
+        void addHouse(String id, String building, String unit, String room, double area, double price);
+        void editHouse(String id, String building, String unit, String room, double area, double price);
+        void sellHouse(String id, String buyer, Date saleDate);
+        void deleteHouse(String id);
+        void registerUser(String username, String passwordHash, String role);  // 旧版本日志中为明文密码
+    }
+
+    /**
+     * 打开日志文件用于追加
+     *
+     * @param file               日志文件,不存在时创建
+     * @param syncEveryRecords   累计多少条记录fsync一次,1表示每条都fsync
+     * @param syncIntervalMillis 距上次fsync超过多少毫秒必须fsync
+     */
+    public SalesJournal(Path file, int syncEveryRecords, long syncIntervalMillis) throws IOException {
+        this(openForAppend(file), syncEveryRecords, syncIntervalMillis);
+    }
+
+    /**
+     * 在已打开的通道上追加,测试用它注入写入失败
+     */
+    SalesJournal(FileChannel channel, int syncEveryRecords, long syncIntervalMillis) {
+        this.channel = channel;
+        this.syncEveryRecords = Math.max(1, syncEveryRecords);
+        this.syncIntervalMillis = Math.max(1, syncIntervalMillis);
+        this.writer = new Thread(this::writeLoop, "sales-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    private static FileChannel openForAppend(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if(parent != null) {
+            Files.createDirectories(parent);
+        }
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // ---------------- 写入 ----------------
+
+    public void logAddHouse(House h) {
+        append(new RecordBuilder(ADD_HOUSE).string(h.getId()).string(h.getBuilding())
+               .string(h.getUnit()).string(h.getRoom()).doubleValue(h.getArea()).doubleValue(h.getPrice()), null);
+    }
+
+    public void logEditHouse(House h) {
+        logEditHouse(h.getId(), h.getBuilding(), h.getUnit(), h.getRoom(), h.getArea(), h.getPrice());
+    }
+
+    /**
+     * 记录修改后的房屋信息,引擎在改动内存之前调用
+     */
+    public void logEditHouse(String id, String building, String unit, String room, double area, double price) {
+        append(new RecordBuilder(EDIT_HOUSE).string(id).string(building)
+               .string(unit).string(room).doubleValue(area).doubleValue(price), null);
+    }
+
+    /**
+     * 记录成交,返回的future在记录fsync后完成,写入失败时异常完成
+     */
+    public CompletableFuture<Void> logSellHouse(House h) {
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        append(new RecordBuilder(SELL_HOUSE).string(h.getId()).string(h.getBuyer())
+               .longValue(h.getSaleDate().getTime()), synced);
+        return synced;
+    }
+
+    public void logDeleteHouse(String houseId) {
+        append(new RecordBuilder(DELETE_HOUSE).string(houseId), null);
+    }
+
+    public void logRegisterUser(User u) {
+        append(new RecordBuilder(REGISTER_USER).string(u.getUsername()).string(u.getPasswordHash())
+               .string(u.getRole()), null);
+    }
+
+    /**
+     * 编码后入队,由写线程批量落盘;日志已关闭或写线程已经失败时抛出IllegalStateException
+     * 调用方通常持有分段锁,队列写满时最多等待ENQUEUE_TIMEOUT_MILLIS,仍然写不进去就抛出
+     * IllegalStateException,不会无限期占着锁;此时记录没有入队,调用方尚未改动内存
+     */
+    private void append(RecordBuilder record, CompletableFuture<Void> synced) {
+        if(closed) {
+            throw new IllegalStateException("销售日志已关闭");
+        }
+        IOException f = failure;
+        if(f != null) {
+            throw new IllegalStateException("销售日志写入失败", f);
+        }
+        Entry entry = new Entry(record.toBytes(), synced);
+        try {
+            if(!queue.offer(entry, ENQUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("销售日志写入繁忙,待写队列已满");
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("写入销售日志时被中断", e);
+        }
+    }
+
+    /**
+     * 入队刷盘或关闭请求,队列写满时等待;不在分段锁内调用
+     */
+    private void enqueue(Entry entry) {
+        try {
+            queue.put(entry);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("写入销售日志时被中断", e);
+        }
+    }
+
+    /**
+     * 等待此前提交的全部记录写入并fsync
+     */
+    public void flush() throws IOException {
+        if(failure != null) {
+            throw failure;
+        }
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        enqueue(new Entry(null, synced));
+        try {
+            synced.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("等待销售日志刷盘时被中断", e);
+        } catch(ExecutionException e) {
+            throw failure;
+        }
+    }
+
+    /**
+     * 写线程:每次取出队列中全部记录,一次写入,按条数或时间决定是否fsync,批次中有人等待时立即fsync
+     * 写入或fsync失败后记下异常,不再写入,此后取出的记录都以该异常结束
+     */
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        int unsynced = 0;
+        long lastSync = System.currentTimeMillis();
+        while(!closed || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(syncIntervalMillis, TimeUnit.MILLISECONDS);
+                if(first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                }
+
+                if(failure != null) {
+                    continue;  // 文件尾部可能是写了一半的记录,不再追加
+                }
+                boolean syncRequested = false;
+                for(Entry e : batch) {
+                    if(e.synced != null) {
+                        syncRequested = true;
+                    }
+                    if(e.data == null) {
+                        continue;
+                    }
+                    if(buffer.remaining() < e.data.length) {
+                        writeFully(buffer);
+                        if(buffer.capacity() < e.data.length) {
+                            buffer = ByteBuffer.allocateDirect(e.data.length);
+                        }
+                    }
+                    buffer.put(e.data);
+                    unsynced++;
+                }
+                writeFully(buffer);
+
+                long now = System.currentTimeMillis();
+                if(syncRequested || unsynced >= syncEveryRecords
+                        || (unsynced > 0 && now - lastSync >= syncIntervalMillis)) {
+                    channel.force(false);
+                    unsynced = 0;
+                    lastSync = now;
+                }
+            } catch(InterruptedException e) {
+                // 不响应中断:FileChannel在阻塞IO中被中断会直接关闭,由close()通过队列唤醒
+            } catch(IOException e) {
+                failure = e;
+            } catch(RuntimeException e) {
+                failure = new IOException("写入销售日志失败", e);
+            } finally {
+                IOException f = failure;
+                for(Entry e : batch) {
+                    if(e.synced == null) {
+                        continue;
+                    }
+                    if(f == null) {
+                        e.synced.complete(null);
+                    } else {
+                        e.synced.completeExceptionally(f);
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 写出缓冲区中的全部内容,失败时也清空缓冲区,不会留下翻转过或写了一半的状态
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * 写完队列中剩余的记录,fsync后关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        enqueue(new Entry(null, null));  // 唤醒写线程,写完剩余记录后退出
+        try {
+            writer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+        if(failure != null) {
+            throw failure;
+        }
+    }
+
+    // ---------------- 重放 ----------------
+
+    /**
+     * 按顺序重放日志文件中的全部记录,文件不存在时直接返回0
+     * 末尾不完整或校验失败的记录会被截断
+     *
+     * @return 重放的记录条数
+     */
+    public static long replay(Path file, Handler handler) throws IOException {
+        if(!Files.exists(file)) {
+            return 0;
+        }
+        long count = 0;
+        long validEnd = 0;
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+            CRC32 crc = new CRC32();
+            boolean eof = false;
+            while(true) {
+                if(!eof && buffer.hasRemaining() && ch.read(buffer) < 0) {
+                    eof = true;
+                }
+                buffer.flip();
+                while(buffer.remaining() >= HEADER_SIZE) {
+                    int length = buffer.getInt(buffer.position());
+                    if(length <= 0 || length > MAX_RECORD_SIZE) {
+                        return truncate(ch, validEnd, count);
+                    }
+                    if(buffer.remaining() < HEADER_SIZE + length) {
+                        break;
+                    }
+                    buffer.getInt();
+                    int checksum = buffer.getInt();
+                    byte[] payload = new byte[length];
+                    buffer.get(payload);
+                    crc.reset();
+                    crc.update(payload);
+                    if((int)crc.getValue() != checksum) {
+                        return truncate(ch, validEnd, count);
+                    }
+                    dispatch(ByteBuffer.wrap(payload), handler);
+                    validEnd += HEADER_SIZE + length;
+                    count++;
+                }
+                if(eof) {
+                    if(buffer.hasRemaining()) {
+                        return truncate(ch, validEnd, count);
+                    }
+                    return count;
+                }
+                buffer.compact();
+                if(!buffer.hasRemaining()) {
+                    // 当前记录比缓冲区大,扩容后继续读取
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+            }
+        }
+    }
+
+    private static long truncate(FileChannel ch, long validEnd, long count) throws IOException {
+        ch.truncate(validEnd);
+        ch.force(false);
+        return count;
+    }
+
+    private static void dispatch(ByteBuffer in, Handler handler) throws IOException {
+        byte type = in.get();
+        switch(type) {
+            case ADD_HOUSE:
+                handler.addHouse(readString(in), readString(in), readString(in), readString(in),
+                                 in.getDouble(), in.getDouble());
+                break;
+            case EDIT_HOUSE:
+                handler.editHouse(readString(in), readString(in), readString(in), readString(in),
+                                  in.getDouble(), in.getDouble());
+                break;
+            case SELL_HOUSE:
+                handler.sellHouse(readString(in), readString(in), new Date(in.getLong()));
+                break;
+            case DELETE_HOUSE:
+                handler.deleteHouse(readString(in));
+                break;
+            case REGISTER_USER:
+                handler.registerUser(readString(in), readString(in), readString(in));
+                break;
+            default:
+                throw new IOException("未知的日志记录类型: " + type);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if(length == 0xFFFF) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 记录编码器,输出带长度和校验和头部的完整记录
+     */
+    private static final class RecordBuilder {
+        private byte[] buf = new byte[64];
+        private int pos = HEADER_SIZE;
+
+        RecordBuilder(byte type) {
+            ensure(1);
+            buf[pos++] = type;
+        }
+
+        RecordBuilder string(String s) {
+            if(s == null) {
+                return shortValue(0xFFFF);
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            if(bytes.length >= 0xFFFF) {
+                throw new IllegalArgumentException("字段过长: " + bytes.length + "字节");
+            }
+            shortValue(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+            return this;
+        }
+
+        RecordBuilder doubleValue(double v) {
+            return longValue(Double.doubleToRawLongBits(v));
+        }
+
+        RecordBuilder longValue(long v) {
+            ensure(8);
+            for(int i = 7; i >= 0; i--) {
+                buf[pos++] = (byte)(v >>> (i * 8));
+            }
+            return this;
+        }
+
+        private RecordBuilder shortValue(int v) {
+            ensure(2);
+            buf[pos++] = (byte)(v >>> 8);
+            buf[pos++] = (byte)v;
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if(pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        byte[] toBytes() {
+            int length = pos - HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            crc.update(buf, HEADER_SIZE, length);
+            ByteBuffer header = ByteBuffer.wrap(buf, 0, HEADER_SIZE);
+            header.putInt(length);
+            header.putInt((int)crc.getValue());
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package sale;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 销售分析的预聚合数据,按日、周、月、楼栋、单价区间分组累计成交套数、金额和面积
+ *
+ * 与SalesAggregates一样由InventoryEngine在分段锁内随成交入账、修改、删除增量更新:
+ * 修改前先onRemove撤销旧的贡献,修改后再onAdd。分析报表只读取各分组的累加器,
+ * 分组数只与销售的天数、楼栋数有关,与房屋数无关。
+ * 每个项目分区有自己的一份,跨项目的报表由report(Collection)在读取时合并。
+ */
+public class SalesRollups {
+    private final String project;    // 所属项目
+    private final double bandWidth;  // 单价区间宽度(元/平方米)
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final Map<Long, Bucket> byDay = new ConcurrentHashMap<>();       // 按日,键为纪元日
+    private final Map<Long, Bucket> byWeek = new ConcurrentHashMap<>();      // 按周,键为周一的纪元日
+    private final Map<Long, Bucket> byMonth = new ConcurrentHashMap<>();     // 按月,键为年×12+月-1
+    private final Map<String, Bucket> byBuilding = new ConcurrentHashMap<>();  // 按楼栋
+    private final Map<Long, Bucket> byBand = new ConcurrentHashMap<>();      // 按单价区间,键为区间序号
+    private final Bucket overall = new Bucket();                             // 全部成交
+
+    /**
+     * 一个分组的累加器,units为该分组的房屋总数,用于计算去化率
+     */
+    private static final class Bucket {
+        final LongAdder units = new LongAdder();
+        final LongAdder count = new LongAdder();
+        final DoubleAdder amount = new DoubleAdder();
+        final DoubleAdder area = new DoubleAdder();
+
+        void sale(int sign, double saleAmount, double saleArea) {
+            count.add(sign);
+            amount.add(sign * saleAmount);
+            area.add(sign * saleArea);
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param project 所属项目,空串为默认项目
+     * @param bandWidth 单价区间宽度(元/平方米)
+     */
+    public SalesRollups(String project, double bandWidth) {
+        this.project = project;
+        this.bandWidth = bandWidth;
+    }
+
+    // ---------------- 增量更新,由引擎在分段锁内调用 ----------------
+
+    /**
+     * 新增一套房屋,或修改后重新计入;已入账的成交另由onSell计入
+     */
+    void onAdd(House house) {
+        overall.units.increment();
+        building(house).units.increment();
+        band(house).units.increment();
+    }
+
+    /**
+     * 删除一套房屋,或修改前撤销;已入账的成交一并撤销
+     */
+    void onRemove(House house) {
+        overall.units.decrement();
+        building(house).units.decrement();
+        band(house).units.decrement();
+        if(house.isSettled()) {
+            contribute(house, -1);
+        }
+    }
+
+    /**
+     * 一套房屋成交入账,必须在House.settle之后调用
+     */
+    void onSell(House house) {
+        contribute(house, 1);
+    }
+
+    /**
+     * 撤销一笔成交入账,必须在House.settle撤销之前调用
+     */
+    void onUnsell(House house) {
+        contribute(house, -1);
+    }
+
+    private void contribute(House house, int sign) {
+        double amount = house.getSettledAmount();
+        double area = house.getArea();
+        Date saleDate = house.getSaleDate();
+        if(saleDate != null) {  // 没有销售日期的已售房屋只计入楼栋和单价区间
+            LocalDate day = LocalDate.ofInstant(saleDate.toInstant(), zone);
+            long epochDay = day.toEpochDay();
+            bucket(byDay, epochDay).sale(sign, amount, area);
+            bucket(byWeek, epochDay - (day.getDayOfWeek().getValue() - 1)).sale(sign, amount, area);
+            bucket(byMonth, day.getYear() * 12L + day.getMonthValue() - 1).sale(sign, amount, area);
+        }
+        building(house).sale(sign, amount, area);
+        band(house).sale(sign, amount, area);
+        overall.sale(sign, amount, area);
+    }
+
+    private Bucket building(House house) {
+        return bucket(byBuilding, house.getBuilding() == null ? "" : house.getBuilding());
+    }
+
+    private Bucket band(House house) {
+        return bucket(byBand, (long)Math.floor(house.getPrice() / bandWidth));
+    }
+
+    private static <K> Bucket bucket(Map<K, Bucket> map, K key) {
+        Bucket b = map.get(key);
+        return b != null ? b : map.computeIfAbsent(key, k -> new Bucket());
+    }
+
+    // ---------------- 报表 ----------------
+
+    /**
+     * 一个分组的统计结果
+     */
+    public static final class Row {
+        public final String label;   // 分组名称
+        public final long units;     // 房屋总数,时间分组为全部房屋数
+        public final long count;     // 成交套数
+        public final double amount;  // 成交金额
+        public final double area;    // 成交面积
+
+        Row(String label, long units, long count, double amount, double area) {
+            this.label = label;
+            this.units = units;
+            this.count = count;
+            this.amount = amount;
+            this.area = area;
+        }
+
+        /**
+         * 成交均价(元/平方米)
+         */
+        public double averagePrice() {
+            return area > 0 ? amount / area : 0;
+        }
+
+        /**
+         * 去化率:成交套数占房屋总数的比例
+         */
+        public double absorption() {
+            return units > 0 ? (double)count / units : 0;
+        }
+    }
+
+    /**
+     * 分析报表,各分组按键排序,只包含有成交或有房屋的分组
+     */
+    public static final class Report {
+        public final Row overall;
+        public final List<Row> byDay;
+        public final List<Row> byWeek;
+        public final List<Row> byMonth;
+        public final List<Row> byBuilding;
+        public final List<Row> byPriceBand;
+
+        Report(Row overall, List<Row> byDay, List<Row> byWeek, List<Row> byMonth,
+               List<Row> byBuilding, List<Row> byPriceBand) {
+            this.overall = overall;
+            this.byDay = byDay;
+            this.byWeek = byWeek;
+            this.byMonth = byMonth;
+            this.byBuilding = byBuilding;
+            this.byPriceBand = byPriceBand;
+        }
+    }
+
+    /**
+     * 一个分组在读取时的合计,合并多个分区时逐个累加
+     */
+    private static final class Totals {
+        long units;
+        long count;
+        double amount;
+        double area;
+
+        void add(Bucket b) {
+            units += b.units.sum();
+            count += b.count.sum();
+            amount += b.amount.sum();
+            area += b.area.sum();
+        }
+    }
+
+    /**
+     * 读取全部分组生成报表,耗时只与分组数有关
+     */
+    public Report report() {
+        return report(Collections.singletonList(this));
+    }
+
+    /**
+     * 合并多个项目分区的预聚合生成一份报表,各分区的单价区间宽度应相同;
+     * 楼栋分组带上项目名,不同项目的同名楼栋分开统计
+     */
+    public static Report report(Collection<SalesRollups> parts) {
+        Totals overall = new Totals();
+        Map<Long, Totals> byDay = new TreeMap<>();
+        Map<Long, Totals> byWeek = new TreeMap<>();
+        Map<Long, Totals> byMonth = new TreeMap<>();
+        Map<String, Totals> byBuilding = new TreeMap<>();
+        Map<Long, Totals> byBand = new TreeMap<>();
+        double width = 1;
+        for(SalesRollups r : parts) {
+            width = r.bandWidth;
+            overall.add(r.overall);
+            merge(byDay, r.byDay, k -> k);
+            merge(byWeek, r.byWeek, k -> k);
+            merge(byMonth, r.byMonth, k -> k);
+            merge(byBuilding, r.byBuilding, k -> House.qualify(r.project, k));
+            merge(byBand, r.byBand, k -> k);
+        }
+        long units = overall.units;
+        double bandWidth = width;
+        return new Report(
+            row("全部", overall, units),
+            rows(byDay, units, k -> LocalDate.ofEpochDay(k).toString()),
+            rows(byWeek, units, k -> LocalDate.ofEpochDay(k) + "起"),
+            rows(byMonth, units, k -> String.format("%d-%02d", k / 12, k % 12 + 1)),
+            rows(byBuilding, -1, k -> k + "栋"),
+            rows(byBand, -1, k -> String.format("%.0f-%.0f", k * bandWidth, (k + 1) * bandWidth)));
+    }
+
+    private static <K, M> void merge(Map<M, Totals> target, Map<K, Bucket> source, Function<K, M> key) {
+        source.forEach((k, b) -> target.computeIfAbsent(key.apply(k), x -> new Totals()).add(b));
+    }
+
+    /**
+     * @param map 已按键排序的分组
+     * @param units 大于等于0时作为各分组的房屋总数,否则取分组自己的房屋数
+     */
+    private static <K> List<Row> rows(Map<K, Totals> map, long units, Function<K, String> label) {
+        List<Row> rows = new ArrayList<>();
+        for(Map.Entry<K, Totals> e : map.entrySet()) {
+            Totals t = e.getValue();
+            Row row = row(label.apply(e.getKey()), t, units >= 0 ? units : t.units);
+            if(row.count != 0 || (units < 0 && row.units != 0)) {
+                rows.add(row);
+            }
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    private static Row row(String label, Totals t, long units) {
+        return new Row(label, units, t.count, t.amount, t.area);
+    }
+
+    /**
+     * 与逐套房屋重新统计的结果比较全部成交和各楼栋的成交,一致时返回null,否则返回差异描述
+     * 只应在没有并发写入时调用
+     */
+    public String verify(Collection<House> houses) {
+        Map<String, long[]> expected = new HashMap<>();
+        long count = 0;
+        double amount = 0;
+        for(House h : houses) {
+            long[] b = expected.computeIfAbsent(h.getBuilding() == null ? "" : h.getBuilding(),
+                                                k -> new long[2]);
+            b[0]++;
+            if(h.isSettled()) {
+                b[1]++;
+                count++;
+                amount += h.getSettledAmount();
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        if(overall.count.sum() != count || overall.units.sum() != houses.size()) {
+            sb.append("成交套数/房屋数: 预聚合=").append(overall.count.sum()).append('/')
+              .append(overall.units.sum()).append(", 实际=").append(count).append('/')
+              .append(houses.size()).append('\n');
+        }
+        double actual = overall.amount.sum();
+        if(Math.abs(actual - amount) > 1e-6 * Math.max(1, Math.abs(amount))) {
+            sb.append("成交金额: 预聚合=").append(actual).append(", 实际=").append(amount).append('\n');
+        }
+        for(Map.Entry<String, Bucket> e : byBuilding.entrySet()) {
+            long[] b = expected.getOrDefault(e.getKey(), new long[2]);
+            Bucket bucket = e.getValue();
+            if(bucket.units.sum() != b[0] || bucket.count.sum() != b[1]) {
+                sb.append(e.getKey()).append("栋: 预聚合=").append(bucket.count.sum()).append('/')
+                  .append(bucket.units.sum()).append(", 实际=").append(b[1]).append('/').append(b[0])
+                  .append('\n');
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+}
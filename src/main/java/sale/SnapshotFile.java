@@ -0,0 +1,329 @@
+package sale;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 库存快照文件,按列存储
+ *
+ * 文件布局: 头部(魔数、版本、所覆盖的日志段号、房屋数、用户数),
+ * 随后依次为编号列、楼栋/单元/房间号字典列、面积列、单价列、状态列、购买者字典列、销售时间列,
+ * 再是用户记录,最后是前面全部内容的CRC32。
+ * 读取时把整个文件映射到内存,按列顺序解码。
+ */
+public class SnapshotFile {
+    private static final int MAGIC = 0x48534E50;  // "HSNP"
+    private static final int VERSION = 1;
+    private static final byte STATUS_AVAILABLE = 0;
+    private static final byte STATUS_SOLD = 1;
+
+    /**
+     * 在引擎全部分段锁内复制出的库存数据,之后可在锁外慢慢写盘
+     */
+    static final class Columns {
+        final long segment;         // 快照覆盖到此段之前的全部日志
+        final String[] ids;         // 房屋编号
+        final String[] buildings;   // 楼栋号
+        final String[] units;       // 单元号
+        final String[] rooms;       // 房间号
+        final double[] areas;       // 面积
+        final double[] prices;      // 单价
+        final byte[] statuses;      // 状态
+        final String[] buyers;      // 购买者
+        final long[] saleTimes;     // 销售时间
+        final List<User> users;     // 用户
+
+        /**
+         * 复制房屋和用户数据,调用方必须持有引擎的全部分段锁
+         * 只有已入账的成交才算已售,尚未入账的成交会出现在新日志段中
+         */
+        Columns(long segment, Collection<House> houses, Collection<User> users) {
+            int n = houses.size();
+            this.segment = segment;
+            this.ids = new String[n];
+            this.buildings = new String[n];
+            this.units = new String[n];
+            this.rooms = new String[n];
+            this.areas = new double[n];
+            this.prices = new double[n];
+            this.statuses = new byte[n];
+            this.buyers = new String[n];
+            this.saleTimes = new long[n];
+            int i = 0;
+            for(House h : houses) {
+                ids[i] = h.getId();
+                buildings[i] = h.getBuilding();
+                units[i] = h.getUnit();
+                rooms[i] = h.getRoom();
+                areas[i] = h.getArea();
+                prices[i] = h.getPrice();
+                if(h.isSettled()) {
+                    statuses[i] = STATUS_SOLD;
+                    buyers[i] = h.getBuyer();
+                    saleTimes[i] = h.getSaleDate().getTime();
+                }
+                i++;
+            }
+            this.users = new ArrayList<>(users);
+        }
+    }
+
+    /**
+     * 读取快照时的回调
+     */
+    interface Loader {
+        void house(House house);
+        void user(User user);
+    }
+
+    /**
+     * 写快照文件并fsync
+     */
+    static void write(Path file, Columns c) throws IOException {
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ColumnWriter out = new ColumnWriter(ch);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(c.segment);
+            out.putInt(c.ids.length);
+            out.putInt(c.users.size());
+            for(String id : c.ids) {
+                out.putString(id);
+            }
+            out.putDictionary(c.buildings);
+            out.putDictionary(c.units);
+            out.putDictionary(c.rooms);
+            for(double v : c.areas) {
+                out.putDouble(v);
+            }
+            for(double v : c.prices) {
+                out.putDouble(v);
+            }
+            for(byte v : c.statuses) {
+                out.putByte(v);
+            }
+            out.putDictionary(c.buyers);
+            for(long v : c.saleTimes) {
+                out.putLong(v);
+            }
+            for(User u : c.users) {
+                out.putString(u.getUsername());
+                out.putString(u.getPasswordHash());
+                out.putString(u.getRole());
+                out.putLong(u.getCreateTime().getTime());
+                out.putLong(u.getLastLoginTime().getTime());
+            }
+            out.finish();
+            ch.force(true);
+        }
+    }
+
+    /**
+     * 映射并读取快照文件
+     *
+     * @return 快照覆盖到的日志段号,重放应从该段开始
+     */
+    static long load(Path file, Loader loader) throws IOException {
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if(size < 28 || size > Integer.MAX_VALUE) {
+                throw new IOException("快照文件大小不正确: " + file);
+            }
+            MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyLength = (int)size - 4;
+            CRC32 crc = new CRC32();
+            ByteBuffer body = in.duplicate();
+            body.limit(bodyLength);
+            crc.update(body);
+            if((int)crc.getValue() != in.getInt(bodyLength)) {
+                throw new IOException("快照文件校验失败: " + file);
+            }
+
+            if(in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new IOException("不是有效的快照文件: " + file);
+            }
+            long segment = in.getLong();
+            int n = in.getInt();
+            int userCount = in.getInt();
+
+            String[] ids = new String[n];
+            for(int i = 0; i < n; i++) {
+                ids[i] = getString(in);
+            }
+            String[] buildings = getDictionary(in, n);
+            String[] units = getDictionary(in, n);
+            String[] rooms = getDictionary(in, n);
+            double[] areas = new double[n];
+            for(int i = 0; i < n; i++) {
+                areas[i] = in.getDouble();
+            }
+            double[] prices = new double[n];
+            for(int i = 0; i < n; i++) {
+                prices[i] = in.getDouble();
+            }
+            byte[] statuses = new byte[n];
+            in.get(statuses);
+            String[] buyers = getDictionary(in, n);
+            for(int i = 0; i < n; i++) {
+                long saleTime = in.getLong();
+                House h = new House(ids[i], buildings[i], units[i], rooms[i], areas[i], prices[i]);
+                if(statuses[i] == STATUS_SOLD) {
+                    h.trySell(buyers[i], new Date(saleTime));
+                }
+                loader.house(h);
+            }
+            for(int i = 0; i < userCount; i++) {
+                String username = getString(in);
+                String passwordHash = getString(in);  // 旧版本快照中为明文密码,由引擎在恢复时转换
+                String role = getString(in);
+                Date createTime = new Date(in.getLong());
+                Date lastLoginTime = new Date(in.getLong());
+                loader.user(new User(username, passwordHash, role, createTime, lastLoginTime));
+            }
+            return segment;
+        }
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if(length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 读取字典编码列: 字典大小、字典字符串、每行的编码(-1表示null)
+     */
+    private static String[] getDictionary(ByteBuffer in, int n) {
+        String[] dict = new String[in.getInt()];
+        for(int i = 0; i < dict.length; i++) {
+            dict[i] = getString(in);
+        }
+        String[] values = new String[n];
+        for(int i = 0; i < n; i++) {
+            int code = in.getInt();
+            values[i] = code < 0 ? null : dict[code];
+        }
+        return values;
+    }
+
+    /**
+     * 带缓冲和CRC32的顺序写入器
+     */
+    private static final class ColumnWriter {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+        private final CRC32 crc = new CRC32();
+
+        ColumnWriter(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if(buf.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while(buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            buf.clear();
+        }
+
+        void putByte(byte v) throws IOException {
+            ensure(1);
+            buf.put(v);
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        void putDouble(double v) throws IOException {
+            ensure(8);
+            buf.putDouble(v);
+        }
+
+        void putString(String s) throws IOException {
+            if(s == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int offset = 0;
+            while(offset < bytes.length) {
+                ensure(1);
+                int chunk = Math.min(buf.remaining(), bytes.length - offset);
+                buf.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void putDictionary(String[] values) throws IOException {
+            Map<String, Integer> codes = new HashMap<>();
+            List<String> dict = new ArrayList<>();
+            int[] encoded = new int[values.length];
+            for(int i = 0; i < values.length; i++) {
+                String v = values[i];
+                if(v == null) {
+                    encoded[i] = -1;
+                    continue;
+                }
+                Integer code = codes.get(v);
+                if(code == null) {
+                    code = dict.size();
+                    codes.put(v, code);
+                    dict.add(v);
+                }
+                encoded[i] = code;
+            }
+            putInt(dict.size());
+            for(String s : dict) {
+                putString(s);
+            }
+            for(int code : encoded) {
+                putInt(code);
+            }
+        }
+
+        /**
+         * 写入尾部CRC32并把缓冲区写完
+         */
+        void finish() throws IOException {
+            drain();
+            putInt((int)crc.getValue());
+            buf.flip();
+            while(buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            buf.clear();
+        }
+    }
+}
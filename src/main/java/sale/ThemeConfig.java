@@ -1,3 +1,5 @@
+package sale;
+
 import java.awt.Color;
 
 public class ThemeConfig {
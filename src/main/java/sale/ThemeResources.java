@@ -0,0 +1,137 @@
+package sale;
+
+import javax.swing.BorderFactory;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.border.Border;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按ThemeConfig生成并缓存的绘制资源
+ *
+ * 字体、颜色、边框和表格单元格渲染器都是不可变的或可以在多个组件间共用的,整个界面各用一份,
+ * 对话框打开时不再逐个新建、逐个字段设置。渐变按钮的背景按尺寸、缩放比例和悬停状态预先画成图像,
+ * 重绘时只需贴图,不再每次创建GradientPaint和圆角填充;缓存的图像数有上限,最久未用的先丢弃。
+ * 字体以外的缓存只在EDT上访问。
+ */
+public class ThemeResources {
+    private static final String FONT_FAMILY = "微软雅黑";  // 界面字体
+    private static final int BUTTON_ARC = 20;              // 按钮圆角
+    private static final int MAX_BUTTON_IMAGES = 64;       // 缓存的按钮背景数上限
+
+    private final ThemeConfig config;
+    private final Color themeColorDark;    // 按钮渐变的下端
+    private final Color hoverColor;        // 悬停时渐变的上端
+    private final Color hoverColorDark;    // 悬停时渐变的下端
+    private final Border themeBorder;      // 主题色边框
+    private final Border fieldBorder;      // 文本框边框,主题色边框加内边距
+    private final TableCellRenderer cellRenderer = new DefaultTableCellRenderer();  // 各表格共用的渲染器
+    private final Map<Integer, Font> fonts = new ConcurrentHashMap<>();            // 样式和字号 -> 字体
+    private final Map<Long, BufferedImage> buttonImages =                          // 按钮背景,按访问顺序淘汰
+        new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+                return size() > MAX_BUTTON_IMAGES;
+            }
+        };
+    private long buttonImagesRendered;  // 画过的按钮背景数,用于观察缓存命中
+
+    public ThemeResources(ThemeConfig config) {
+        this.config = config;
+        this.themeColorDark = config.themeColor.darker();
+        this.hoverColor = themeColorDark;
+        this.hoverColorDark = themeColorDark.darker();
+        this.themeBorder = BorderFactory.createLineBorder(config.themeColor, 2);
+        this.fieldBorder = BorderFactory.createCompoundBorder(themeBorder, BorderFactory.createEmptyBorder(5, 10, 5, 10));
+    }
+
+    /**
+     * 界面字体,同一样式和字号只创建一次
+     */
+    public Font font(int style, int size) {
+        return fonts.computeIfAbsent((style << 16) | size, k -> new Font(FONT_FAMILY, style, size));
+    }
+
+    /**
+     * 文本框的边框
+     */
+    public Border getFieldBorder() {
+        return fieldBorder;
+    }
+
+    /**
+     * 按主题设置表格的字体、行高、颜色和表头,并换上共用的单元格渲染器
+     */
+    public void styleTable(JTable table, Font font, int rowHeight) {
+        table.setFont(font);
+        table.setRowHeight(rowHeight);
+        table.setBackground(config.bgColor);
+        table.setForeground(config.textColor);
+        table.setDefaultRenderer(Object.class, cellRenderer);
+        table.getTableHeader().setFont(font);
+        table.getTableHeader().setBackground(config.themeColor);
+        table.getTableHeader().setForeground(Color.WHITE);
+    }
+
+    /**
+     * 按主题设置滚动面板的背景和边框
+     */
+    public void styleScrollPane(JScrollPane pane) {
+        pane.getViewport().setBackground(config.bgColor);
+        pane.setBorder(themeBorder);
+    }
+
+    /**
+     * 渐变按钮的背景,必须在EDT上调用
+     *
+     * @param width 按钮宽度(逻辑像素)
+     * @param height 按钮高度(逻辑像素)
+     * @param scale 设备缩放比例,图像按实际像素绘制,高分屏上贴图不会模糊
+     * @param hover 是否处于悬停状态
+     */
+    public BufferedImage buttonBackground(int width, int height, double scale, boolean hover) {
+        int scaleKey = (int)Math.round(scale * 100);
+        long key = ((long)width << 33) | ((long)height << 17) | ((long)scaleKey << 1) | (hover ? 1 : 0);
+        BufferedImage image = buttonImages.get(key);
+        if(image == null) {
+            image = renderButton(width, height, scale, hover);
+            buttonImages.put(key, image);
+            buttonImagesRendered++;
+        }
+        return image;
+    }
+
+    /**
+     * 画过的按钮背景数,缓存命中时不增加
+     */
+    public long getButtonImagesRendered() {
+        return buttonImagesRendered;
+    }
+
+    private BufferedImage renderButton(int width, int height, double scale, boolean hover) {
+        BufferedImage image = new BufferedImage(Math.max(1, (int)Math.ceil(width * scale)),
+                                                Math.max(1, (int)Math.ceil(height * scale)),
+                                                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = image.createGraphics();
+        try {
+            g2.scale(scale, scale);
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setPaint(hover ? new GradientPaint(0, 0, hoverColor, 0, height, hoverColorDark)
+                              : new GradientPaint(0, 0, config.themeColor, 0, height, themeColorDark));
+            g2.fillRoundRect(0, 0, width, height, BUTTON_ARC, BUTTON_ARC);
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+}
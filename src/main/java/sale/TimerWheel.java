@@ -0,0 +1,323 @@
+package sale;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮,管理大量到期时间不同的定时任务
+ *
+ * 共4层,每层64个槽,第0层每槽一个刻度,第1层每槽64个刻度,依此类推;刻度为100ms时
+ * 可以直接容纳约19天内到期的任务,更远的任务先放在最高层,转到时再重新放置。
+ * 登记和取消只是入队和改一个状态,可以在任意线程调用;槽位链表只由时间轮线程读写。
+ * 时间轮线程每个刻度只处理当前槽,高层的槽在低层转满一圈时整体下放一次,
+ * 因此每个任务最多被移动4次,开销与待处理任务总数无关。
+ * 到期的任务在时间轮线程上执行,应当很快返回;任务抛出的异常计数后交给报告输出,不影响其他任务。
+ */
+public class TimerWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;   // 每层槽数
+    private static final int LEVELS = 4;               // 层数
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);  // 能直接放置的最大刻度数
+
+    private final long tickNanos;                      // 每个刻度的时长
+    private final String threadName;                   // 时间轮线程名
+    private final Slot[][] wheel = new Slot[LEVELS][SLOTS];
+    private final Queue<Timeout> incoming = new ConcurrentLinkedQueue<>();  // 新登记的任务
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>(); // 待摘除的已取消任务
+    private final LongAdder pending = new LongAdder(); // 未到期且未取消的任务数
+    private final LongAdder failures;                  // 执行时抛出异常的任务数
+    private volatile Consumer<String> reporter = System.err::println;  // 任务异常的报告输出
+    private final long startNanos;                     // 第0个刻度的时间
+    private long currentTick;                          // 已处理到的刻度,只由时间轮线程访问
+    private Thread worker;                             // 时间轮线程
+
+    /**
+     * 定时任务的句柄
+     */
+    public static final class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimerWheel wheel;  // 所属的时间轮
+        private final long deadline;     // 到期刻度
+        private final Runnable task;     // 到期时执行的任务
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private Slot slot;               // 所在的槽,以下三个字段只由时间轮线程访问
+        private Timeout prev;
+        private Timeout next;
+
+        Timeout(TimerWheel wheel, long deadline, Runnable task) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        /**
+         * 取消任务,任务已到期或已取消时返回false
+         * 已放入槽的任务由时间轮线程在下一个刻度摘除
+         */
+        public boolean cancel() {
+            if(!state.compareAndSet(WAITING, CANCELLED)) {
+                return false;
+            }
+            wheel.pending.decrement();
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    /**
+     * 一个槽:双向链表,摘除已取消的任务为常数时间
+     */
+    private static final class Slot {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout t) {
+            t.slot = this;
+            t.prev = tail;
+            t.next = null;
+            if(tail == null) {
+                head = t;
+            } else {
+                tail.next = t;
+            }
+            tail = t;
+        }
+
+        void remove(Timeout t) {
+            if(t.prev == null) {
+                head = t.next;
+            } else {
+                t.prev.next = t.next;
+            }
+            if(t.next == null) {
+                tail = t.prev;
+            } else {
+                t.next.prev = t.prev;
+            }
+            t.slot = null;
+            t.prev = null;
+            t.next = null;
+        }
+
+        /**
+         * 取下整条链表
+         */
+        Timeout clear() {
+            Timeout first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param tickMillis 刻度时长,也是到期时间的精度
+     */
+    public TimerWheel(long tickMillis, String threadName) {
+        this(tickMillis, threadName, new LongAdder());
+    }
+
+    /**
+     * 构造函数,任务异常计入给定的计数器,通常取自Metrics
+     */
+    public TimerWheel(long tickMillis, String threadName, LongAdder failures) {
+        this.failures = failures;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        this.threadName = threadName;
+        for(int level = 0; level < LEVELS; level++) {
+            for(int i = 0; i < SLOTS; i++) {
+                wheel[level][i] = new Slot();
+            }
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 设置任务异常的报告输出,默认输出到标准错误
+     */
+    public void setReporter(Consumer<String> reporter) {
+        this.reporter = reporter;
+    }
+
+    /**
+     * 执行时抛出异常的任务数
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * 启动时间轮线程,重复调用无效
+     */
+    public synchronized void start() {
+        if(worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 停止时间轮线程,未到期的任务不再执行
+     */
+    public synchronized void stop() {
+        if(worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * 登记一个delayMillis毫秒后执行的任务,到期时间向上取整到刻度
+     */
+    public Timeout schedule(long delayMillis, Runnable task) {
+        long now = System.nanoTime() - startNanos;
+        return scheduleAt(ceilDiv(now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)), tickNanos), task);
+    }
+
+    /**
+     * 登记一个在指定刻度到期的任务
+     */
+    Timeout scheduleAt(long deadline, Runnable task) {
+        Timeout timeout = new Timeout(this, deadline, task);
+        pending.increment();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 未到期且未取消的任务数
+     */
+    public long pending() {
+        return pending.sum();
+    }
+
+    private void run() {
+        try {
+            while(!Thread.currentThread().isInterrupted()) {
+                long now = System.nanoTime() - startNanos;
+                advanceTo(now / tickNanos);
+                long sleep = (currentTick + 1) * tickNanos - (System.nanoTime() - startNanos);
+                if(sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+            }
+        } catch(InterruptedException e) {
+            // 停止
+        }
+    }
+
+    /**
+     * 处理到指定刻度为止到期的任务,由时间轮线程调用
+     */
+    void advanceTo(long tick) {
+        drainCancelled();
+        drainIncoming();
+        while(currentTick < tick) {
+            currentTick++;
+            // 低层转满一圈时把上一层当前槽的任务下放,从最高层开始
+            for(int level = LEVELS - 1; level > 0; level--) {
+                if((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    Timeout t = wheel[level][slotIndex(currentTick, level)].clear();
+                    while(t != null) {
+                        Timeout next = t.next;
+                        t.slot = null;
+                        place(t);
+                        t = next;
+                    }
+                }
+            }
+            Timeout t = wheel[0][slotIndex(currentTick, 0)].clear();
+            while(t != null) {
+                Timeout next = t.next;
+                t.slot = null;
+                if(t.deadline <= currentTick) {
+                    expire(t);
+                } else {
+                    place(t);  // 未到期的任务不应出现在第0层,防御性地重新放置
+                }
+                t = next;
+            }
+            drainIncoming();
+        }
+    }
+
+    /**
+     * 按剩余刻度数把任务放进对应的层和槽,已到期的立即执行
+     */
+    private void place(Timeout t) {
+        if(t.state.get() != Timeout.WAITING) {
+            return;  // 已取消,不再放回
+        }
+        long delta = t.deadline - currentTick;
+        if(delta <= 0) {
+            expire(t);
+            return;
+        }
+        long target = delta < SPAN ? t.deadline : currentTick + SPAN - 1;
+        long remaining = target - currentTick;
+        int level = 0;
+        while(level < LEVELS - 1 && remaining >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        wheel[level][slotIndex(target, level)].add(t);
+    }
+
+    private void expire(Timeout t) {
+        if(!t.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED)) {
+            return;
+        }
+        pending.decrement();
+        try {
+            t.task.run();
+        } catch(RuntimeException e) {
+            failures.increment();
+            reporter.accept(threadName + ": 定时任务异常: " + e);
+        }
+    }
+
+    private void drainIncoming() {
+        Timeout t;
+        while((t = incoming.poll()) != null) {
+            place(t);
+        }
+    }
+
+    /**
+     * 摘除已取消的任务,释放其占用的内存;尚未放入槽的已取消任务在放置时跳过
+     */
+    private void drainCancelled() {
+        Timeout t;
+        while((t = cancelled.poll()) != null) {
+            if(t.slot != null) {
+                t.slot.remove(t);
+            }
+        }
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int)((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+}
@@ -0,0 +1,211 @@
+package sale;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.awt.Component;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 界面业务操作的执行层
+ *
+ * 按钮事件只负责收集输入,业务操作提交到后台执行,结果再回到事件分发线程(EDT)更新界面。
+ * 运行在支持虚拟线程的JDK上时每个操作一个虚拟线程,否则使用有界线程池,
+ * 队列满时直接拒绝并在界面上提示,不会阻塞EDT。
+ */
+public class UiExecutor {
+    private final ExecutorService executor;  // 业务线程池
+
+    /**
+     * 长操作的进度回调,由后台线程调用
+     */
+    public interface Progress {
+        /**
+         * 报告进度,取值0-100
+         */
+        void update(int percent, String note);
+
+        /**
+         * 用户是否已点击取消,长操作应定期检查并尽快返回
+         */
+        boolean isCancelled();
+    }
+
+    /**
+     * 可报告进度的长操作
+     */
+    public interface ProgressTask<T> {
+        T run(Progress progress) throws Exception;
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param maxThreads 不支持虚拟线程时的线程数上限
+     */
+    public UiExecutor(int maxThreads) {
+        this.executor = newExecutor(maxThreads);
+    }
+
+    /**
+     * 优先使用虚拟线程(JDK 21+),否则退回有界线程池
+     */
+    private static ExecutorService newExecutor(int maxThreads) {
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException e) {
+            AtomicInteger seq = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads,
+                30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024), r -> {
+                    Thread t = new Thread(r, "business-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    /**
+     * 在后台执行操作,成功或失败的回调都在EDT上执行
+     */
+    public <T> Future<T> run(Callable<T> task, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        try {
+            return executor.submit(() -> {
+                try {
+                    T result = task.call();
+                    SwingUtilities.invokeLater(() -> onSuccess.accept(result));
+                    return result;
+                } catch(Throwable t) {
+                    SwingUtilities.invokeLater(() -> onError.accept(t));
+                    throw t;
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            SwingUtilities.invokeLater(() -> onError.accept(e));
+            return null;
+        }
+    }
+
+    /**
+     * 包装一个会被频繁触发的后台刷新,返回的Runnable只能在EDT上调用
+     * 没有正在执行的刷新时立即提交;已有刷新在执行时只做标记,完成后再执行一次。
+     * 无论触发多少次,同时最多只有一次刷新在执行,结果也不会乱序覆盖
+     */
+    public <T> Runnable coalescing(Callable<T> task, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        return new Runnable() {
+            private boolean running;  // 有刷新在执行,只在EDT上读写
+            private boolean again;    // 执行期间又被触发
+
+            @Override
+            public void run() {
+                if(running) {
+                    again = true;
+                    return;
+                }
+                running = true;
+                again = false;
+                UiExecutor.this.run(task, result -> {
+                    try {
+                        onSuccess.accept(result);
+                    } finally {
+                        finish();
+                    }
+                }, error -> {
+                    try {
+                        onError.accept(error);
+                    } finally {
+                        finish();
+                    }
+                });
+            }
+
+            private void finish() {
+                running = false;
+                if(again) {
+                    run();
+                }
+            }
+        };
+    }
+
+    /**
+     * 在后台执行长操作,显示带取消按钮的进度框
+     * 用户取消时中断后台线程,并通过Progress.isCancelled()通知任务
+     */
+    public <T> Future<T> runWithProgress(Component parent, String title, ProgressTask<T> task,
+                                         Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        ProgressMonitor monitor = new ProgressMonitor(parent, title, "", 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        monitor.setMillisToPopup(200);
+        ProgressState state = new ProgressState();
+
+        Future<T> future = run(() -> task.run(state), result -> {
+            state.done = true;
+            monitor.close();
+            onSuccess.accept(result);
+        }, error -> {
+            state.done = true;
+            monitor.close();
+            onError.accept(error);
+        });
+
+        // 进度框只能在EDT上更新,用定时器把后台报告的进度同步过去
+        Timer timer = new Timer(100, null);
+        timer.addActionListener(e -> {
+            if(state.done) {
+                timer.stop();
+                return;
+            }
+            if(monitor.isCanceled()) {
+                state.cancelled = true;
+                if(future != null) {
+                    future.cancel(true);
+                }
+                timer.stop();
+                return;
+            }
+            monitor.setProgress(state.percent);
+            monitor.setNote(state.note);
+        });
+        timer.start();
+        return future;
+    }
+
+    /**
+     * 后台线程与进度框之间共享的进度状态
+     */
+    private static final class ProgressState implements Progress {
+        volatile int percent;
+        volatile String note = "";
+        volatile boolean cancelled;
+        volatile boolean done;
+
+        @Override
+        public void update(int percent, String note) {
+            this.percent = Math.max(0, Math.min(100, percent));
+            this.note = note == null ? "" : note;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+    }
+
+    /**
+     * 停止接受新操作
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
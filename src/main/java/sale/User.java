@@ -0,0 +1,62 @@
+package sale;
+
+import java.util.Date;
+
+/**
+ * 用户类,存储用户信息
+ */
+public class User {
+    public static final String ROLE_ADMIN = "管理员";   // 管理员角色
+    public static final String ROLE_USER = "普通用户";  // 普通用户角色
+
+    private final String username;        // 用户名
+    private final String passwordHash;    // 密码散列,见PasswordHasher
+    private final String role;            // 角色(管理员/普通用户)
+    private final Date createTime;        // 创建时间
+    private volatile Date lastLoginTime;  // 最后登录时间
+
+    /**
+     * 构造函数
+     *
+     * @param passwordHash PasswordHasher生成的密码散列,不是明文密码
+     */
+    public User(String username, String passwordHash, String role) {
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.role = role;
+        this.createTime = new Date();
+        this.lastLoginTime = new Date();
+    }
+
+    /**
+     * 从快照恢复用户时使用的构造函数
+     */
+    User(String username, String passwordHash, String role, Date createTime, Date lastLoginTime) {
+        this.username = username;
+        this.passwordHash = passwordHash;
+        this.role = role;
+        this.createTime = createTime;
+        this.lastLoginTime = lastLoginTime;
+    }
+
+    // getter方法
+    public String getUsername() { return username; }
+    public String getPasswordHash() { return passwordHash; }
+    public String getRole() { return role; }
+    public Date getCreateTime() { return createTime; }
+    public Date getLastLoginTime() { return lastLoginTime; }
+
+    /**
+     * 是否为管理员
+     */
+    public boolean isAdmin() {
+        return ROLE_ADMIN.equals(role);
+    }
+
+    /**
+     * 更新最后登录时间
+     */
+    public void updateLastLoginTime() {
+        this.lastLoginTime = new Date();
+    }
+}
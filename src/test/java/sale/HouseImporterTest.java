@@ -0,0 +1,149 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CSV导入的引号、数字和表头处理
+ */
+class HouseImporterTest {
+    @TempDir
+    Path dir;
+
+    private final InventoryEngine engine = new InventoryEngine();
+
+    private HouseImporter.Result importText(String text) throws IOException {
+        return importBytes(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HouseImporter.Result importBytes(byte[] bytes) throws IOException {
+        Path file = dir.resolve("houses.csv");
+        Files.write(file, bytes);
+        return new HouseImporter(engine).importCsv(file);
+    }
+
+    @Test
+    void skipsHeaderAndImportsRows() throws Exception {
+        HouseImporter.Result result = importText("编号,楼栋号,单元号,房间号,面积,单价\n"
+                                                 + "A1,1,2,301,89.5,12000\n"
+                                                 + "A2,1,2,302,120,13500.75\n");
+        assertEquals(2, result.rows);
+        assertEquals(2, result.imported);
+        assertEquals(0, result.invalid);
+        House a2 = engine.getHouse("A2");
+        assertNotNull(a2);
+        assertEquals("302", a2.getRoom());
+        assertEquals(120, a2.getArea());
+        assertEquals(13500.75, a2.getPrice());
+    }
+
+    @Test
+    void firstRowWithNumericAreaIsData() throws Exception {
+        HouseImporter.Result result = importText("A1,1,2,301,89.5,12000\n");
+        assertEquals(1, result.imported);
+        assertNotNull(engine.getHouse("A1"));
+    }
+
+    @Test
+    void quotedFieldsKeepCommasAndDoubledQuotes() throws Exception {
+        HouseImporter.Result result = importText(
+            "\"A,1\",\"1号楼\",\"2\",\"3\"\"01\",\"89.5\",12000\n"
+            + "A2,  1 ,\t2 ,\"\",80,10000\n");
+        assertEquals(2, result.imported);
+        House a1 = engine.getHouse("A,1");
+        assertNotNull(a1);
+        assertEquals("1号楼", a1.getBuilding());
+        assertEquals("3\"01", a1.getRoom());
+        assertEquals(89.5, a1.getArea());
+        House a2 = engine.getHouse("A2");
+        assertEquals("1", a2.getBuilding());  // 未加引号的字段去掉首尾空白
+        assertEquals("2", a2.getUnit());
+        assertEquals("", a2.getRoom());
+    }
+
+    @Test
+    void rejectsMalformedQuotes() throws Exception {
+        HouseImporter.Result result = importText("A1,1,2,301,89.5,12000\n"
+                                                 + "\"A2,1,2,301,89.5,12000\n"
+                                                 + "\"A3\"x,1,2,301,89.5,12000\n");
+        assertEquals(3, result.rows);
+        assertEquals(1, result.imported);
+        assertEquals(2, result.invalid);
+        assertEquals(2, result.errors.size());
+    }
+
+    @Test
+    void parsesNumbersInEveryAcceptedForm() throws Exception {
+        HouseImporter.Result result = importText("A1,1,2,301,89,12000\n"
+                                                 + "A2,1,2,301,+89.25,0.5\n"
+                                                 + "A3,1,2,301,-1.5,1e4\n"
+                                                 + "A4,1,2,301, 88.125 ,\" 9999.5 \"\n"
+                                                 + "A5,1,2,301,12345678901234567,1\n"
+                                                 + "A6,1,2,301,.5,7.\n");
+        assertEquals(6, result.imported);
+        assertEquals(89, engine.getHouse("A1").getArea());
+        assertEquals(89.25, engine.getHouse("A2").getArea());
+        assertEquals(0.5, engine.getHouse("A2").getPrice());
+        assertEquals(-1.5, engine.getHouse("A3").getArea());
+        assertEquals(10000, engine.getHouse("A3").getPrice());
+        assertEquals(88.125, engine.getHouse("A4").getArea());
+        assertEquals(9999.5, engine.getHouse("A4").getPrice());
+        assertEquals(12345678901234567d, engine.getHouse("A5").getArea());
+        assertEquals(0.5, engine.getHouse("A6").getArea());
+        assertEquals(7, engine.getHouse("A6").getPrice());
+    }
+
+    @Test
+    void rejectsInvalidNumbersAndFieldCounts() throws Exception {
+        HouseImporter.Result result = importText("A1,1,2,301,89.5,12000\n"
+                                                 + "A2,1,2,301,abc,12000\n"
+                                                 + "A3,1,2,301,1e999,12000\n"
+                                                 + "A4,1,2,301,89.5\n"
+                                                 + "A5,1,2,301,89.5,12000,extra\n"
+                                                 + ",1,2,301,89.5,12000\n");
+        assertEquals(6, result.rows);
+        assertEquals(1, result.imported);
+        assertEquals(5, result.invalid);
+        for(String error : result.errors) {
+            assertTrue(error.startsWith("第"), error);
+        }
+    }
+
+    @Test
+    void handlesBomCrLfAndBlankLines() throws Exception {
+        byte[] body = ("编号,楼栋号,单元号,房间号,面积,单价\r\n"
+                       + "A1,1,2,301,89.5,12000\r\n"
+                       + "   \r\n"
+                       + "A2,1,2,302,90,12000").getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[body.length + 3];
+        bytes[0] = (byte)0xEF;
+        bytes[1] = (byte)0xBB;
+        bytes[2] = (byte)0xBF;
+        System.arraycopy(body, 0, bytes, 3, body.length);
+
+        HouseImporter.Result result = importBytes(bytes);
+        assertEquals(2, result.rows);
+        assertEquals(2, result.imported);
+        assertEquals(12000, engine.getHouse("A2").getPrice());
+    }
+
+    @Test
+    void skipsDuplicateIds() throws Exception {
+        engine.addHouse(new House("A1", "1", "2", "301", 89.5, 12000));
+        HouseImporter.Result result = importText("A1,1,2,301,89.5,12000\n"
+                                                 + "A2,1,2,302,90,12000\n"
+                                                 + "A2,1,2,303,91,12000\n");
+        assertEquals(1, result.imported);
+        assertEquals(2, result.duplicates);
+        assertEquals("302", engine.getHouse("A2").getRoom());
+    }
+}
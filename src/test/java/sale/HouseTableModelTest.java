@@ -0,0 +1,140 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 表格模型的逐行增量通知、大批合并和延迟应用的变更
+ */
+class HouseTableModelTest {
+    private final HouseTableModel model = new HouseTableModel(HouseTableModel.Column.ID,
+                                                              HouseTableModel.Column.STATUS);
+    private final List<String> fired = new ArrayList<>();  // 收到的表格事件
+
+    HouseTableModelTest() {
+        model.addTableModelListener(e -> {
+            if(e.getLastRow() == Integer.MAX_VALUE) {
+                fired.add("all");
+                return;
+            }
+            String type = e.getType() == TableModelEvent.INSERT ? "insert"
+                          : e.getType() == TableModelEvent.DELETE ? "delete" : "update";
+            fired.add(type + " " + e.getFirstRow());
+        });
+    }
+
+    private static House house(String id) {
+        return new House(id, "1", "2", "301", 89.5, 12000);
+    }
+
+    private static InventoryEvents.Change change(InventoryEvents.Type type, House house) {
+        return new InventoryEvents.Change(type, house);
+    }
+
+    private List<String> ids() {
+        List<String> ids = new ArrayList<>();
+        for(int row = 0; row < model.getRowCount(); row++) {
+            ids.add((String)model.getValueAt(row, 0));
+        }
+        return ids;
+    }
+
+    @Test
+    void notifiesOnlyTheChangedRow() {
+        model.setHouses(List.of(house("H3"), house("H1")));
+        assertEquals(List.of("H1", "H3"), ids());
+        fired.clear();
+
+        model.houseAdded(house("H2"));
+        model.houseAdded(house("H2"));  // 同编号的新对象替换原行
+        model.houseRemoved("H1");
+        model.houseRemoved("H9");       // 不在表格中,不通知
+        House h3 = model.getHouseAt(1);
+        model.houseUpdated(h3);
+
+        assertEquals(List.of("H2", "H3"), ids());
+        assertEquals(List.of("insert 1", "update 1", "delete 0", "update 1"), fired);
+    }
+
+    @Test
+    void appliesChangesAgainstTheFilter() {
+        House h1 = house("H1");
+        House h2 = house("H2");
+        model.setFilter(House::isAvailable);
+        model.setHouses(List.of(h1, h2), House::isAvailable);
+        fired.clear();
+
+        h1.trySell("alice", new Date());
+        model.applyChanges(List.of(change(InventoryEvents.Type.UPDATED, h1),
+                                   change(InventoryEvents.Type.ADDED, house("H0")),
+                                   change(InventoryEvents.Type.REMOVED, h2)));
+        assertEquals(List.of("H0"), ids());
+        assertEquals(List.of("delete 0", "insert 0", "delete 1"), fired);
+    }
+
+    @Test
+    void mergesLargeBatchesWithOneNotification() {
+        List<House> initial = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            initial.add(house(String.format("H%03d", i * 2)));
+        }
+        model.setHouses(initial);
+        fired.clear();
+
+        List<InventoryEvents.Change> changes = new ArrayList<>();
+        for(int i = 0; i < 300; i++) {
+            changes.add(change(InventoryEvents.Type.ADDED, house(String.format("H%03d", i * 2 + 1))));
+        }
+        changes.add(change(InventoryEvents.Type.REMOVED, initial.get(0)));
+        model.applyChanges(changes);
+
+        assertEquals(List.of("all"), fired);
+        assertEquals(309, model.getRowCount());
+        assertEquals("H001", model.getValueAt(0, 0));
+        List<String> ids = ids();
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        assertEquals(sorted, ids);
+    }
+
+    @Test
+    void changesBeforeTheFirstLoadAreAppliedAfterIt() {
+        House h1 = house("H1");
+        model.applyChanges(List.of(change(InventoryEvents.Type.ADDED, house("H2"))));
+        assertEquals(0, model.getRowCount());
+
+        model.setSortedHouses(List.of(h1));  // 后台读取早于H2的添加
+        assertEquals(List.of("H1", "H2"), ids());
+    }
+
+    @Test
+    void deferredChangesWaitForTheReloadOrApplyDeferred() {
+        model.setHouses(List.of(house("H1")));
+
+        model.deferChanges();
+        model.applyChanges(List.of(change(InventoryEvents.Type.ADDED, house("H2"))));
+        assertEquals(List.of("H1"), ids());
+        model.setSortedHouses(List.of(house("H1"), house("H3")));
+        assertEquals(List.of("H1", "H2", "H3"), ids());
+
+        // 装载作废时把保存的变更应用到现有内容,之后恢复逐批刷新
+        model.deferChanges();
+        model.applyChanges(List.of(change(InventoryEvents.Type.REMOVED, house("H1"))));
+        assertEquals(3, model.getRowCount());
+        model.applyDeferred();
+        assertEquals(List.of("H2", "H3"), ids());
+        model.applyChanges(List.of(change(InventoryEvents.Type.ADDED, house("H4"))));
+        assertEquals(List.of("H2", "H3", "H4"), ids());
+
+        fired.clear();
+        model.applyDeferred();  // 没有保存的变更时什么都不做
+        assertTrue(fired.isEmpty());
+    }
+}
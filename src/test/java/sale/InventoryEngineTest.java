@@ -0,0 +1,252 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 库存引擎的并发抢订只成交一次,销售日志写入失败时保持内存不变,前缀搜索的顺序和上限
+ */
+class InventoryEngineTest {
+    @TempDir
+    Path dir;
+
+    private final InventoryEngine engine = new InventoryEngine();
+
+    /**
+     * 只读打开的日志,写线程第一次写入就失败
+     */
+    private SalesJournal failingJournal() throws IOException {
+        Path file = dir.resolve("sales.journal");
+        Files.createFile(file);
+        return new SalesJournal(FileChannel.open(file, StandardOpenOption.READ), 1, 50);
+    }
+
+    /**
+     * 多个线程同时对一套房屋执行操作,返回各自的结果
+     */
+    private static List<String> race(int threads, Op op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> futures = new ArrayList<>();
+            for(int i = 0; i < threads; i++) {
+                int n = i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return op.run(n);
+                }));
+            }
+            start.countDown();
+            List<String> results = new ArrayList<>();
+            for(Future<String> f : futures) {
+                results.add(f.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface Op {
+        String run(int thread) throws Exception;
+    }
+
+    /**
+     * 只有一个购买者成交,房屋、购买者索引和销售汇总三者一致
+     */
+    private void assertSoldOnceTo(String houseId, String winner, int threads) {
+        House house = engine.getHouse(houseId);
+        assertTrue(house.isSold());
+        assertEquals(House.STATUS_SOLD, house.getListedStatus());
+        assertEquals(winner, house.getBuyer());
+        for(int i = 0; i < threads; i++) {
+            String buyer = "b" + i;
+            assertEquals(buyer.equals(winner), engine.ownsHouse(buyer, houseId), buyer);
+        }
+    }
+
+    @Test
+    void concurrentReservesSellEachHouseOnce() throws Exception {
+        int threads = 16;
+        for(int round = 0; round < 20; round++) {
+            String id = "R" + round;
+            engine.addHouse(new House(id, "1", "2", "301", 100, 10000 + round));
+            List<String> results = race(threads, n -> engine.reserve(id, "b" + n).name());
+
+            String winner = null;
+            for(int i = 0; i < threads; i++) {
+                if(results.get(i).equals("SUCCESS")) {
+                    assertNull(winner, "同一套房屋只能成交一次");
+                    winner = "b" + i;
+                } else {
+                    assertEquals("CONFLICT", results.get(i));
+                }
+            }
+            assertNotNull(winner);
+            assertSoldOnceTo(id, winner, threads);
+            assertEquals(InventoryEngine.ReserveResult.CONFLICT, engine.reserve(id, "late"));
+            assertEquals(winner, engine.getHouse(id).getBuyer());  // 原购买者不被覆盖
+        }
+        assertEquals(20, engine.getSummary().soldCount);
+        assertNull(engine.verifyAggregates());
+    }
+
+    @Test
+    void concurrentHoldConfirmAndReserveSellOnce() throws Exception {
+        int threads = 16;
+        for(int round = 0; round < 20; round++) {
+            String id = "H" + round;
+            engine.addHouse(new House(id, "1", "2", "301", 100, 10000 + round));
+            // 偶数线程锁定后确认,奇数线程直接预订
+            List<String> results = race(threads, n -> {
+                String buyer = "b" + n;
+                if(n % 2 == 1) {
+                    return engine.reserve(id, buyer).name();
+                }
+                InventoryEngine.ReserveResult held = engine.hold(id, buyer, 60_000);
+                return held == InventoryEngine.ReserveResult.SUCCESS ? engine.confirm(id, buyer).name()
+                                                                     : held.name();
+            });
+
+            String winner = null;
+            for(int i = 0; i < threads; i++) {
+                if(results.get(i).equals("SUCCESS")) {
+                    assertNull(winner, "同一套房屋只能成交一次");
+                    winner = "b" + i;
+                } else {
+                    assertEquals("CONFLICT", results.get(i));
+                }
+            }
+            assertNotNull(winner);
+            assertSoldOnceTo(id, winner, threads);
+            assertEquals(InventoryEngine.ReserveResult.NOT_HELD, engine.confirm(id, winner));
+        }
+        assertEquals(0, engine.getHoldCount());
+        assertEquals(20, engine.getSummary().soldCount);
+        assertNull(engine.verifyAggregates());
+    }
+
+    private static void assertSummary(SalesAggregates.Summary expected, SalesAggregates.Summary actual) {
+        assertEquals(expected.totalCount, actual.totalCount);
+        assertEquals(expected.availableCount, actual.availableCount);
+        assertEquals(expected.soldCount, actual.soldCount);
+        assertEquals(expected.totalSales, actual.totalSales, 1e-6);
+    }
+
+    @Test
+    void journalFailureLeavesStateUnchanged() throws Exception {
+        engine.addHouse(new House("A1", "1", "2", "301", 100, 10000));
+        engine.addHouse(new House("A2", "1", "2", "302", 90, 12000));
+        assertEquals(InventoryEngine.ReserveResult.SUCCESS, engine.reserve("A2", "alice"));
+        SalesAggregates.Summary before = engine.getSummary();
+
+        SalesJournal journal = failingJournal();
+        engine.setJournal(journal);
+
+        // 成交记录已入队但fsync失败:撤销这笔成交
+        assertThrows(IllegalStateException.class, () -> engine.reserve("A1", "bob"));
+        House a1 = engine.getHouse("A1");
+        assertTrue(a1.isAvailable());
+        assertEquals(House.STATUS_AVAILABLE, a1.getListedStatus());
+        assertFalse(engine.ownsHouse("bob", "A1"));
+        assertEquals(0, engine.getHouseCountOf("bob"));
+        assertSummary(before, engine.getSummary());
+        assertNull(engine.verifyAggregates());
+
+        // 日志已失败,之后的追加在改动内存之前就被拒绝
+        assertThrows(IllegalStateException.class,
+                     () -> engine.addHouse(new House("A3", "1", "2", "303", 80, 10000)));
+        assertNull(engine.getHouse("A3"));
+        assertThrows(IllegalStateException.class,
+                     () -> engine.updateHouse("A1", "9", "9", "909", 1, 1));
+        assertEquals("301", a1.getRoom());
+        assertEquals(100, a1.getArea());
+        assertThrows(IllegalStateException.class, () -> engine.removeHouse("A2"));
+        assertNotNull(engine.getHouse("A2"));
+        assertTrue(engine.ownsHouse("alice", "A2"));
+        assertThrows(IllegalStateException.class,
+                     () -> engine.registerHashedUser("carol", "hash", User.ROLE_USER));
+        assertNull(engine.getUser("carol"));
+
+        // 锁定不写日志;确认时日志追加失败,锁定保持不变
+        assertEquals(InventoryEngine.ReserveResult.SUCCESS, engine.hold("A1", "bob", 60_000));
+        assertThrows(IllegalStateException.class, () -> engine.confirm("A1", "bob"));
+        assertTrue(a1.isHeld());
+        assertEquals(House.STATUS_HELD, a1.getListedStatus());
+        assertEquals(1, engine.getHoldCount());
+        assertEquals(InventoryEngine.ReserveResult.SUCCESS, engine.release("A1", "bob"));
+
+        assertEquals(2, engine.getHouseCount());
+        assertSummary(before, engine.getSummary());
+        assertNull(engine.verifyAggregates());
+        engine.setJournal(null);
+        assertThrows(IOException.class, journal::close);
+    }
+
+    private static List<String> ids(List<House> houses) {
+        List<String> ids = new ArrayList<>();
+        for(House house : houses) {
+            ids.add(house.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void searchPrefixListsIdsByProjectThenBuyers() {
+        for(String id : new String[]{"B201", "A102", "A101", "云溪/A105", "云溪/A101", "湖畔/A2"}) {
+            engine.addHouse(new House(id, "1", "2", "301", 89.5, 12000));
+        }
+        engine.reserve("B201", "zhang");
+        engine.reserve("湖畔/A2", "A1x");
+        engine.reserve("A102", "A1x");  // 编号和购买者都匹配,只出现一次
+        engine.hold("云溪/A105", "zed", 60_000);
+
+        // 先按项目名、项目内按编号列出编号匹配的房屋,再追加购买者匹配的
+        assertEquals(List.of("A101", "A102", "云溪/A101", "云溪/A105", "湖畔/A2"),
+                     ids(engine.searchPrefix("A1", 10)));
+        assertEquals(List.of("A101", "A102", "云溪/A101"), ids(engine.searchPrefix("A1", 3)));
+        assertEquals(List.of("A101", "A102", "云溪/A101", "云溪/A105"), ids(engine.searchPrefix("A1", 4)));
+        assertEquals(List.of("云溪/A101", "云溪/A105"), ids(engine.searchPrefix("云溪/A10", 10)));
+        assertEquals(List.of("B201"), ids(engine.searchPrefix("zh", 10)));
+        assertTrue(engine.searchPrefix("ze", 10).isEmpty());  // 锁定人不是购买者
+        assertTrue(engine.searchPrefix("", 10).isEmpty());
+        assertTrue(engine.searchPrefix("A1", 0).isEmpty());
+
+        assertTrue(InventoryEngine.matchesPrefix(engine.getHouse("云溪/A105"), "A10"));
+        assertTrue(InventoryEngine.matchesPrefix(engine.getHouse("湖畔/A2"), "A1"));
+        assertFalse(InventoryEngine.matchesPrefix(engine.getHouse("云溪/A105"), "ze"));
+    }
+
+    @Test
+    void searchPrefixStopsAtTheLimitAcrossBuyers() {
+        for(int i = 0; i < 5; i++) {
+            String id = "H" + i;
+            engine.addHouse(new House(id, "1", "2", "301", 89.5, 12000));
+            engine.reserve(id, i < 3 ? "buyer1" : "buyer0");
+        }
+        // 购买者按名称排序,各自的房屋按编号排序
+        assertEquals(List.of("H3", "H4", "H0", "H1", "H2"), ids(engine.searchPrefix("buyer", 10)));
+        assertEquals(List.of("H3", "H4", "H0"), ids(engine.searchPrefix("buyer", 3)));
+        assertEquals(List.of("H0", "H1", "H2"), ids(engine.searchPrefix("buyer1", 10)));
+    }
+}
@@ -0,0 +1,142 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 变更通知按房屋合并、暂停恢复和关闭,投递由测试手动执行
+ */
+class InventoryEventsTest {
+    private final Metrics metrics = new Metrics();
+    private final InventoryEvents events = new InventoryEvents(metrics);
+    private final ArrayDeque<Runnable> submitted = new ArrayDeque<>();  // 已提交、尚未执行的投递
+    private final List<Map<String, InventoryEvents.Type>> batches = new ArrayList<>();
+
+    private InventoryEvents.Subscription subscribe(Executor executor) {
+        return events.subscribe(executor, changes -> {
+            Map<String, InventoryEvents.Type> batch = new TreeMap<>();
+            for(InventoryEvents.Change change : changes) {
+                batch.put(change.getHouseId(), change.getType());
+            }
+            assertEquals(changes.size(), batch.size(), "批内同一房屋只出现一次");
+            batches.add(batch);
+        });
+    }
+
+    private InventoryEvents.Subscription subscribe() {
+        return subscribe(submitted::add);
+    }
+
+    private void runSubmitted() {
+        Runnable r;
+        while((r = submitted.poll()) != null) {
+            r.run();
+        }
+    }
+
+    private static House house(String id) {
+        return new House(id, "1", "2", "301", 89.5, 12000);
+    }
+
+    @Test
+    void coalescesChangesPerHouse() {
+        subscribe();
+        House h1 = house("H1");
+        House h2 = house("H2");
+        House h3 = house("H3");
+        events.publish(InventoryEvents.Type.ADDED, h1);
+        events.publish(InventoryEvents.Type.UPDATED, h1);   // 新增后的修改仍算新增
+        events.publish(InventoryEvents.Type.UPDATED, h2);
+        events.publish(InventoryEvents.Type.UPDATED, h2);
+        events.publish(InventoryEvents.Type.ADDED, h3);
+        events.publish(InventoryEvents.Type.REMOVED, h3);
+
+        assertEquals(1, submitted.size(), "待处理表非空期间只提交一次投递");
+        runSubmitted();
+        assertEquals(List.of(Map.of("H1", InventoryEvents.Type.ADDED,
+                                    "H2", InventoryEvents.Type.UPDATED,
+                                    "H3", InventoryEvents.Type.REMOVED)), batches);
+        assertEquals(6, metrics.counter("事件.发布").sum());
+        assertEquals(1, metrics.counter("事件.投递批次").sum());
+
+        events.publish(InventoryEvents.Type.UPDATED, h1);
+        runSubmitted();
+        assertEquals(Map.of("H1", InventoryEvents.Type.UPDATED), batches.get(1));
+    }
+
+    @Test
+    void resumeDeliversExactlyThePendingSet() {
+        InventoryEvents.Subscription sub = subscribe();
+        sub.pause();
+        events.publish(InventoryEvents.Type.UPDATED, house("H1"));
+        events.publish(InventoryEvents.Type.ADDED, house("H2"));
+        events.publish(InventoryEvents.Type.UPDATED, house("H1"));
+        assertTrue(submitted.isEmpty());
+
+        sub.resume();
+        runSubmitted();
+        assertEquals(List.of(Map.of("H1", InventoryEvents.Type.UPDATED,
+                                    "H2", InventoryEvents.Type.ADDED)), batches);
+
+        sub.resume();  // 没有待处理的变更时恢复不投递
+        runSubmitted();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void pauseAfterSchedulingHoldsTheBatchUntilResume() {
+        InventoryEvents.Subscription sub = subscribe();
+        events.publish(InventoryEvents.Type.UPDATED, house("H1"));
+        sub.pause();
+        runSubmitted();  // 已提交的投递在暂停期间执行,不取走变更
+        assertTrue(batches.isEmpty());
+
+        events.publish(InventoryEvents.Type.UPDATED, house("H2"));
+        assertTrue(submitted.isEmpty());
+        sub.resume();
+        runSubmitted();
+        assertEquals(List.of(Map.of("H1", InventoryEvents.Type.UPDATED,
+                                    "H2", InventoryEvents.Type.UPDATED)), batches);
+    }
+
+    @Test
+    void closedSubscriptionReceivesNothing() {
+        InventoryEvents.Subscription sub = subscribe();
+        events.publish(InventoryEvents.Type.UPDATED, house("H1"));
+        sub.close();
+        runSubmitted();
+        events.publish(InventoryEvents.Type.UPDATED, house("H2"));
+        runSubmitted();
+        assertTrue(batches.isEmpty());
+        assertEquals(0, events.getSubscriberCount());
+    }
+
+    @Test
+    void rejectedDeliveryKeepsChangesForTheNextOne() {
+        boolean[] reject = {true};
+        subscribe(r -> {
+            if(reject[0]) {
+                throw new RejectedExecutionException();
+            }
+            submitted.add(r);
+        });
+        events.publish(InventoryEvents.Type.UPDATED, house("H1"));
+        assertTrue(submitted.isEmpty());
+
+        reject[0] = false;
+        events.publish(InventoryEvents.Type.UPDATED, house("H2"));
+        runSubmitted();
+        assertEquals(List.of(Map.of("H1", InventoryEvents.Type.UPDATED,
+                                    "H2", InventoryEvents.Type.UPDATED)), batches);
+    }
+}
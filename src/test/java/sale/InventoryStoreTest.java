@@ -0,0 +1,162 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 数据目录的恢复、快照压缩和旧版单文件日志的迁移
+ */
+class InventoryStoreTest {
+    @TempDir
+    Path dir;
+
+    private InventoryStore open(InventoryEngine engine) throws IOException {
+        InventoryStore store = new InventoryStore(engine, dir, 1, 50);
+        store.open();
+        return store;
+    }
+
+    private List<String> files() throws IOException {
+        try(Stream<Path> stream = Files.list(dir)) {
+            return stream.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * 重新打开目录恢复出的引擎
+     */
+    private InventoryEngine reopen() throws IOException {
+        InventoryEngine engine = new InventoryEngine();
+        open(engine).close();
+        return engine;
+    }
+
+    @Test
+    void newDirectoryStartsAtSegmentZero() throws Exception {
+        InventoryEngine engine = new InventoryEngine();
+        InventoryStore store = new InventoryStore(engine, dir, 1, 50);
+        assertEquals(0, store.open());
+        store.close();
+        assertEquals(List.of("sales-000000.journal"), files());
+    }
+
+    @Test
+    void replaysTailSegmentAfterSnapshot() throws Exception {
+        InventoryEngine engine = new InventoryEngine();
+        InventoryStore store = open(engine);
+        engine.addHouse(new House("A1", "1", "2", "301", 89.5, 12000));
+        engine.addHouse(new House("A2", "1", "2", "302", 90, 12000));
+        engine.registerHashedUser("alice", "hash", User.ROLE_USER);
+        assertEquals(InventoryEngine.ReserveResult.SUCCESS, engine.reserve("A1", "alice"));
+        store.snapshot();
+
+        // 快照之后的变更只在新日志段中
+        engine.addHouse(new House("A3", "1", "2", "303", 100, 15000));
+        engine.updateHouse("A2", "1", "2", "302", 95, 12500);
+        assertEquals(InventoryEngine.ReserveResult.SUCCESS, engine.reserve("A3", "bob"));
+        engine.removeHouse("A1");
+        store.close();
+        assertEquals(List.of("sales-000001.journal", "snapshot-000001.snap"), files());
+
+        InventoryEngine restored = reopen();
+        assertNull(restored.getHouse("A1"));
+        assertEquals(95, restored.getHouse("A2").getArea());
+        assertEquals(12500, restored.getHouse("A2").getPrice());
+        House a3 = restored.getHouse("A3");
+        assertTrue(a3.isSold());
+        assertEquals("bob", a3.getBuyer());
+        assertTrue(restored.ownsHouse("bob", "A3"));
+        assertFalse(restored.ownsHouse("alice", "A1"));
+        assertNotNull(restored.getUser("alice"));
+        assertEquals(2, restored.getHouseCount());
+        assertEquals(1, restored.getSummary().soldCount);
+        assertNull(restored.verifyAggregates());
+    }
+
+    @Test
+    void snapshotDeletesCoveredSegmentsAndSnapshots() throws Exception {
+        InventoryEngine engine = new InventoryEngine();
+        InventoryStore store = open(engine);
+        for(int round = 0; round < 3; round++) {
+            engine.addHouse(new House("H" + round, "1", "2", "301", 80, 10000));
+            store.snapshot();
+        }
+        store.close();
+        assertEquals(List.of("sales-000003.journal", "snapshot-000003.snap"), files());
+
+        InventoryEngine restored = reopen();
+        assertEquals(3, restored.getHouseCount());
+        assertNotNull(restored.getHouse("H2"));
+    }
+
+    @Test
+    void migratesLegacyJournalToSegmentZero() throws Exception {
+        try(SalesJournal legacy = new SalesJournal(dir.resolve("sales.journal"), 1, 50)) {
+            legacy.logAddHouse(new House("A1", "1", "2", "301", 89.5, 12000));
+            legacy.logDeleteHouse("A1");
+            legacy.logAddHouse(new House("A2", "1", "2", "302", 90, 12000));
+        }
+
+        InventoryEngine engine = new InventoryEngine();
+        InventoryStore store = new InventoryStore(engine, dir, 1, 50);
+        assertEquals(3, store.open());
+        store.close();
+        assertEquals(List.of("sales-000000.journal"), files());
+        assertNull(engine.getHouse("A1"));
+        assertNotNull(engine.getHouse("A2"));
+    }
+
+    @Test
+    void legacyJournalWrittenAfterMigrationIsReplayedLast() throws Exception {
+        InventoryEngine engine = new InventoryEngine();
+        InventoryStore store = open(engine);
+        engine.addHouse(new House("A1", "1", "2", "301", 89.5, 12000));
+        store.close();
+        // 迁移之后旧版本又写了一个单文件日志,不能覆盖已有的第0段
+        try(SalesJournal legacy = new SalesJournal(dir.resolve("sales.journal"), 1, 50)) {
+            legacy.logEditHouse(new House("A1", "1", "2", "301", 100, 12000));
+            legacy.logAddHouse(new House("A2", "1", "2", "302", 90, 12000));
+        }
+
+        InventoryEngine restored = reopen();
+        assertEquals(List.of("sales-000000.journal", "sales-000001.journal"), files());
+        assertEquals(100, restored.getHouse("A1").getArea());
+        assertNotNull(restored.getHouse("A2"));
+    }
+
+    @Test
+    void reopeningAppendsToTheLatestSegment() throws Exception {
+        InventoryEngine engine = new InventoryEngine();
+        InventoryStore store = open(engine);
+        engine.addHouse(new House("A1", "1", "2", "301", 89.5, 12000));
+        store.snapshot();
+        store.close();
+
+        InventoryEngine second = new InventoryEngine();
+        store = open(second);
+        second.addHouse(new House("A2", "1", "2", "302", 90, 12000));
+        store.close();
+
+        List<String> ids = new ArrayList<>();
+        for(House house : reopen().getHouses()) {
+            ids.add(house.getId());
+        }
+        ids.sort(null);
+        assertEquals(List.of("A1", "A2"), ids);
+        assertEquals(List.of("sales-000001.journal", "snapshot-000001.snap"), files());
+    }
+}
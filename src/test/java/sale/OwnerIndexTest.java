@@ -0,0 +1,105 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 购买者反向索引的增删、翻页和前缀查找
+ */
+class OwnerIndexTest {
+    private final OwnerIndex index = new OwnerIndex();
+
+    private static House sold(String id, String buyer) {
+        House house = new House(id, "1", "2", "301", 89.5, 12000);
+        assertTrue(house.trySell(buyer, new Date()));
+        return house;
+    }
+
+    private static List<String> ids(List<House> houses) {
+        List<String> ids = new ArrayList<>();
+        for(House house : houses) {
+            ids.add(house.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void addAndRemove() {
+        House a1 = sold("A1", "alice");
+        House a2 = sold("A2", "alice");
+        House b1 = sold("B1", "bob");
+        index.add(a2);
+        index.add(a1);
+        index.add(b1);
+
+        assertTrue(index.owns("alice", "A1"));
+        assertFalse(index.owns("bob", "A1"));
+        assertEquals(2, index.count("alice"));
+        assertEquals(List.of("A1", "A2"), ids(index.list("alice")));
+        assertEquals(2, index.ownerCount());
+
+        index.remove(a1);
+        assertFalse(index.owns("alice", "A1"));
+        assertEquals(List.of("A2"), ids(index.list("alice")));
+
+        index.remove(a2);
+        assertEquals(0, index.count("alice"));
+        assertTrue(index.list("alice").isEmpty());
+        assertEquals(1, index.ownerCount());  // 最后一套移除时购买者一起移除
+        assertEquals(List.of(), index.buyersWithPrefix("al", 10));
+    }
+
+    @Test
+    void removeOnlyTakesTheSameObject() {
+        House a1 = sold("A1", "alice");
+        index.add(a1);
+        index.remove(sold("A1", "alice"));  // 同编号的另一个对象,例如删除后重新添加的房屋
+
+        assertTrue(index.owns("alice", "A1"));
+        assertEquals(1, index.count("alice"));
+        index.remove(a1);
+        assertEquals(0, index.ownerCount());
+    }
+
+    @Test
+    void removingUnknownBuyerIsIgnored() {
+        index.remove(sold("A1", "nobody"));
+        assertEquals(0, index.ownerCount());
+        assertEquals(0, index.count("nobody"));
+    }
+
+    @Test
+    void pagesByIdAfterTheLastSeen() {
+        for(int i = 9; i >= 0; i--) {
+            index.add(sold("H" + i, "agent"));
+        }
+        List<House> first = index.page("agent", null, 4);
+        assertEquals(List.of("H0", "H1", "H2", "H3"), ids(first));
+
+        index.remove(first.get(3));  // 翻页期间删除已看过的房屋不影响下一页
+        index.add(sold("H35", "agent"));
+        assertEquals(List.of("H35", "H4", "H5", "H6"), ids(index.page("agent", "H3", 4)));
+        assertEquals(List.of("H9"), ids(index.page("agent", "H8", 4)));
+        assertTrue(index.page("agent", "H9", 4).isEmpty());
+        assertTrue(index.page("agent", null, 0).isEmpty());
+        assertTrue(index.page("nobody", null, 4).isEmpty());
+    }
+
+    @Test
+    void findsBuyersByPrefix() {
+        for(String buyer : new String[]{"buyer2", "buyer10", "buyer1", "seller", "buy"}) {
+            index.add(sold("H-" + buyer, buyer));
+        }
+        assertEquals(List.of("buy", "buyer1", "buyer10", "buyer2"), index.buyersWithPrefix("buy", 10));
+        assertEquals(List.of("buyer1", "buyer10"), index.buyersWithPrefix("buyer1", 10));
+        assertEquals(List.of("buy", "buyer1"), index.buyersWithPrefix("buy", 2));
+        assertEquals(List.of(), index.buyersWithPrefix("z", 10));
+    }
+}
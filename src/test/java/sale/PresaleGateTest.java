@@ -0,0 +1,201 @@
+package sale;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 准入队列的先后顺序、排队上限、重复报名和抽签
+ */
+class PresaleGateTest {
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    /**
+     * 预订时记下购买者并等待放行,不改变房屋状态;可以让预订抛出异常
+     */
+    private static final class BlockingEngine extends InventoryEngine {
+        final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile RuntimeException failure;
+
+        @Override
+        public ReserveResult reserve(String houseId, String buyer) {
+            calls.add(buyer);
+            if(failure != null) {
+                throw failure;
+            }
+            try {
+                release.await();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ReserveResult.CONFLICT;
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(!condition.getAsBoolean()) {
+            if(System.nanoTime() > deadline) {
+                fail("等待超时");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static <T> T get(Future<T> future) throws Exception {
+        return future.get(10, TimeUnit.SECONDS);
+    }
+
+    private static BlockingEngine engineWith(String... ids) {
+        BlockingEngine engine = new BlockingEngine();
+        for(String id : ids) {
+            engine.addHouse(new House(id, "1", "2", "301", 89.5, 12000));
+        }
+        return engine;
+    }
+
+    @Test
+    void fifoReservesInArrivalOrderOutsideTheLaneLock() throws Exception {
+        BlockingEngine engine = engineWith("A1");
+        PresaleGate gate = new PresaleGate(engine, PresaleGate.Mode.FIFO, 8, 8, 0, 10_000);
+        List<Future<PresaleGate.Outcome>> results = new ArrayList<>();
+        results.add(pool.submit(() -> gate.reserve("A1", "b0")));
+        await(() -> engine.calls.size() == 1);
+        // 队首正在预订时新请求仍能拿到队列锁排队
+        for(int i = 1; i < 4; i++) {
+            String buyer = "b" + i;
+            int expected = i + 1;
+            results.add(pool.submit(() -> gate.reserve("A1", buyer)));
+            await(() -> gate.getWaiters() == expected);
+        }
+        engine.release.countDown();
+        for(Future<PresaleGate.Outcome> result : results) {
+            assertEquals(PresaleGate.Outcome.SOLD_OUT, get(result));
+        }
+        assertEquals(List.of("b0", "b1", "b2", "b3"), engine.calls);
+        assertEquals(0, gate.getWaiters());
+        assertEquals(0, gate.getActiveLanes());
+    }
+
+    @Test
+    void rejectsDuplicatesAndFullLanes() throws Exception {
+        BlockingEngine engine = engineWith("A1");
+        PresaleGate gate = new PresaleGate(engine, PresaleGate.Mode.FIFO, 3, 10, 0, 10_000);
+        Future<PresaleGate.Outcome> first = pool.submit(() -> gate.reserve("A1", "b0"));
+        await(() -> engine.calls.size() == 1);
+        Future<PresaleGate.Outcome> second = pool.submit(() -> gate.reserve("A1", "b1"));
+        await(() -> gate.getWaiters() == 2);
+
+        assertEquals(PresaleGate.Outcome.DUPLICATE, gate.reserve("A1", "b1"));
+        Future<PresaleGate.Outcome> third = pool.submit(() -> gate.reserve("A1", "b2"));
+        await(() -> gate.getWaiters() == 3);
+        assertEquals(PresaleGate.Outcome.BUSY, gate.reserve("A1", "b3"));  // 该房屋的队列已满
+
+        engine.release.countDown();
+        get(first);
+        get(second);
+        get(third);
+        assertEquals(List.of("b0", "b1", "b2"), engine.calls);
+    }
+
+    @Test
+    void capsWaitersAcrossHouses() throws Exception {
+        BlockingEngine engine = engineWith("A1", "A2", "A3");
+        PresaleGate gate = new PresaleGate(engine, PresaleGate.Mode.FIFO, 8, 2, 0, 10_000);
+        Future<PresaleGate.Outcome> a1 = pool.submit(() -> gate.reserve("A1", "b0"));
+        Future<PresaleGate.Outcome> a2 = pool.submit(() -> gate.reserve("A2", "b1"));
+        await(() -> engine.calls.size() == 2);
+        assertEquals(2, gate.getWaiters());
+
+        assertEquals(PresaleGate.Outcome.BUSY, gate.reserve("A3", "b2"));  // 排队总数已满
+        assertEquals(2, gate.getWaiters());
+
+        engine.release.countDown();
+        get(a1);
+        get(a2);
+        assertEquals(0, gate.getWaiters());
+        assertEquals(0, gate.getActiveLanes());
+    }
+
+    @Test
+    void lotteryHasExactlyOneWinner() throws Exception {
+        InventoryEngine engine = new InventoryEngine();
+        engine.addHouse(new House("A1", "1", "2", "301", 89.5, 12000));
+        int entrants = 8;
+        PresaleGate gate = new PresaleGate(engine, PresaleGate.Mode.LOTTERY, entrants, entrants, 300, 10_000);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<PresaleGate.Outcome>> results = new ArrayList<>();
+        for(int i = 0; i < entrants; i++) {
+            String buyer = "b" + i;
+            results.add(pool.submit(() -> {
+                start.await();
+                return gate.reserve("A1", buyer);
+            }));
+        }
+        start.countDown();
+
+        String winner = null;
+        int lost = 0;
+        for(int i = 0; i < entrants; i++) {
+            PresaleGate.Outcome outcome = get(results.get(i));
+            if(outcome == PresaleGate.Outcome.SUCCESS) {
+                assertNull(winner, "只能有一个中签者");
+                winner = "b" + i;
+            } else {
+                assertTrue(outcome == PresaleGate.Outcome.LOST || outcome == PresaleGate.Outcome.SOLD_OUT,
+                           outcome.toString());
+                lost++;
+            }
+        }
+        assertEquals(entrants - 1, lost);
+        assertEquals(winner, engine.getHouse("A1").getBuyer());
+        assertEquals(0, gate.getWaiters());
+        assertEquals(0, gate.getActiveLanes());
+    }
+
+    @Test
+    void drawFailureEndsEveryEntry() throws Exception {
+        BlockingEngine engine = engineWith("A1");
+        engine.failure = new IllegalStateException("成交记录未能写入销售日志");
+        int entrants = 4;
+        PresaleGate gate = new PresaleGate(engine, PresaleGate.Mode.LOTTERY, entrants, entrants, 300, 10_000);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<PresaleGate.Outcome>> results = new ArrayList<>();
+        for(int i = 0; i < entrants; i++) {
+            String buyer = "b" + i;
+            results.add(pool.submit(() -> {
+                start.await();
+                return gate.reserve("A1", buyer);
+            }));
+        }
+        start.countDown();
+
+        for(Future<PresaleGate.Outcome> result : results) {
+            assertEquals(PresaleGate.Outcome.FAILED, get(result));
+        }
+        assertEquals(1, engine.calls.size());  // 其余报名者不会对出错的引擎重新抽签
+        assertEquals(0, gate.getWaiters());
+        assertEquals(0, gate.getActiveLanes());
+        assertEquals(1, engine.getMetrics().counter("准入.抽签出错").sum());
+    }
+}
@@ -0,0 +1,93 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 分页收集器只保留编号最小的若干套,跨分区合并后仍按编号分页
+ */
+class QueryPageTest {
+
+    private static House house(String id, double price) {
+        return new House(id, "1", "2", "301", 89.5, price);
+    }
+
+    private static List<String> ids(QueryPage page) {
+        List<String> ids = new ArrayList<>();
+        for(House house : page.getHouses()) {
+            ids.add(house.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void keepsTheSmallestIdsAndCountsEveryMatch() {
+        QueryPage.Collector c = new QueryPage.Collector(4);
+        for(String id : new String[]{"H7", "H2", "H9", "H0", "H5", "H1", "H8"}) {
+            c.accept(house(id, 10000));
+        }
+        QueryPage page = c.page(1);
+        assertEquals(7, page.getTotal());
+        assertEquals(List.of("H1", "H2", "H5"), ids(page));  // 保留H0 H1 H2 H5,跳过第1套
+    }
+
+    @Test
+    void offsetPastTheKeptHousesIsEmpty() {
+        QueryPage.Collector c = new QueryPage.Collector(3);
+        c.accept(house("H1", 10000));
+        c.accept(house("H2", 10000));
+        QueryPage page = c.page(5);
+        assertEquals(2, page.getTotal());
+        assertTrue(page.getHouses().isEmpty());
+
+        QueryPage.Collector none = new QueryPage.Collector(0);  // 只要总数
+        none.accept(house("H1", 10000));
+        assertEquals(1, none.page(0).getTotal());
+        assertTrue(none.page(0).getHouses().isEmpty());
+    }
+
+    @Test
+    void mergeKeepsTheGlobalSmallest() {
+        QueryPage.Collector a = new QueryPage.Collector(3);
+        QueryPage.Collector b = new QueryPage.Collector(3);
+        for(String id : new String[]{"A3", "C1", "A1", "C9"}) {
+            a.accept(house(id, 10000));
+        }
+        for(String id : new String[]{"B2", "A2", "D0"}) {
+            b.accept(house(id, 10000));
+        }
+        QueryPage page = a.merge(b).page(0);
+        assertEquals(7, page.getTotal());
+        assertEquals(List.of("A1", "A2", "A3"), ids(page));
+    }
+
+    @Test
+    void enginePagesAcrossProjectsInIdOrder() {
+        InventoryEngine engine = new InventoryEngine();
+        for(int i = 0; i < 10; i++) {
+            engine.addHouse(house("云溪/A" + i, 10000 + i));
+            engine.addHouse(house("湖畔/A" + i, 20000 + i));
+            engine.addHouse(house("A" + i, 30000 + i));
+        }
+        HouseQuery query = new HouseQuery();
+        query.setPriceRange(10005.0, 20004.0);  // 云溪A5..A9和湖畔A0..A4
+
+        QueryPage first = engine.queryPage(query, 0, 4);
+        assertEquals(10, first.getTotal());
+        assertEquals(List.of("云溪/A5", "云溪/A6", "云溪/A7", "云溪/A8"), ids(first));
+        QueryPage second = engine.queryPage(query, 4, 4);
+        assertEquals(List.of("云溪/A9", "湖畔/A0", "湖畔/A1", "湖畔/A2"), ids(second));
+        QueryPage last = engine.queryPage(query, 8, 4);
+        assertEquals(List.of("湖畔/A3", "湖畔/A4"), ids(last));
+
+        query.setProject("湖畔");
+        QueryPage project = engine.queryPage(query, 0, 100);
+        assertEquals(5, project.getTotal());
+        assertEquals(List.of("湖畔/A0", "湖畔/A1", "湖畔/A2", "湖畔/A3", "湖畔/A4"), ids(project));
+    }
+}
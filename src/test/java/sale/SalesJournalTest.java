@@ -0,0 +1,177 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 销售日志的写入、重放和尾部截断
+ */
+class SalesJournalTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * 把重放的记录按顺序记成文本
+     */
+    private static final class Recorder implements SalesJournal.Handler {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void addHouse(String id, String building, String unit, String room, double area, double price) {
+            events.add("add " + id + " " + building + " " + unit + " " + room + " " + area + " " + price);
+        }
+
+        @Override
+        public void editHouse(String id, String building, String unit, String room, double area, double price) {
+            events.add("edit " + id + " " + building + " " + unit + " " + room + " " + area + " " + price);
+        }
+
+        @Override
+        public void sellHouse(String id, String buyer, Date saleDate) {
+            events.add("sell " + id + " " + buyer + " " + saleDate.getTime());
+        }
+
+        @Override
+        public void deleteHouse(String id) {
+            events.add("delete " + id);
+        }
+
+        @Override
+        public void registerUser(String username, String passwordHash, String role) {
+            events.add("user " + username + " " + passwordHash + " " + role);
+        }
+    }
+
+    private static House sold(String id, String buyer, long time) {
+        House house = new House(id, "1", "2", "301", 89.5, 12000);
+        house.trySell(buyer, new Date(time));
+        return house;
+    }
+
+    @Test
+    void replaysRecordsInOrder() throws Exception {
+        Path file = dir.resolve("sales.journal");
+        try(SalesJournal journal = new SalesJournal(file, 64, 50)) {
+            journal.logAddHouse(new House("A1", "1", "2", "301", 89.5, 12000));
+            journal.logEditHouse(new House("A1", "1号楼", "2", "302", 90, 12500.25));
+            journal.logSellHouse(sold("A1", "张三", 1_700_000_000_000L)).join();
+            journal.logRegisterUser(new User("u", "hash", User.ROLE_USER));
+            journal.logDeleteHouse("A1");
+        }
+
+        Recorder recorder = new Recorder();
+        assertEquals(5, SalesJournal.replay(file, recorder));
+        assertEquals(List.of("add A1 1 2 301 89.5 12000.0",
+                             "edit A1 1号楼 2 302 90.0 12500.25",
+                             "sell A1 张三 1700000000000",
+                             "user u hash " + User.ROLE_USER,
+                             "delete A1"),
+                     recorder.events);
+    }
+
+    @Test
+    void keepsNullFields() throws Exception {
+        Path file = dir.resolve("sales.journal");
+        try(SalesJournal journal = new SalesJournal(file, 1, 50)) {
+            journal.logAddHouse(new House("A1", null, "2", "301", 1, 2));
+        }
+        Recorder recorder = new Recorder();
+        SalesJournal.replay(file, recorder);
+        assertEquals(List.of("add A1 null 2 301 1.0 2.0"), recorder.events);
+    }
+
+    @Test
+    void missingFileReplaysNothing() throws Exception {
+        assertEquals(0, SalesJournal.replay(dir.resolve("none.journal"), new Recorder()));
+    }
+
+    @Test
+    void truncatesTornTail() throws Exception {
+        Path file = dir.resolve("sales.journal");
+        long complete = writeHouses(file, 3);
+        // 模拟崩溃时第4条记录只写了一半
+        writeHouses(dir.resolve("extra.journal"), 1);
+        byte[] extra = Files.readAllBytes(dir.resolve("extra.journal"));
+        appendBytes(file, extra, extra.length / 2);
+
+        Recorder recorder = new Recorder();
+        assertEquals(3, SalesJournal.replay(file, recorder));
+        assertEquals(complete, Files.size(file));
+
+        // 截断后可以继续追加
+        try(SalesJournal journal = new SalesJournal(file, 1, 50)) {
+            journal.logDeleteHouse("H0");
+        }
+        recorder = new Recorder();
+        assertEquals(4, SalesJournal.replay(file, recorder));
+        assertEquals("delete H0", recorder.events.get(3));
+    }
+
+    @Test
+    void truncatesAtBadChecksum() throws Exception {
+        Path file = dir.resolve("sales.journal");
+        long complete = writeHouses(file, 2);
+        long third = writeHouses(file, 1) - complete;
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.write(ByteBuffer.wrap(new byte[]{'X'}), complete + third - 1);  // 改坏第3条负载的最后一个字节
+        }
+
+        Recorder recorder = new Recorder();
+        assertEquals(2, SalesJournal.replay(file, recorder));
+        assertEquals(complete, Files.size(file));
+    }
+
+    @Test
+    void truncatesAtImpossibleLength() throws Exception {
+        Path file = dir.resolve("sales.journal");
+        long complete = writeHouses(file, 2);
+        appendBytes(file, new byte[]{(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0, 0, 0, 0, 1}, 9);
+
+        assertEquals(2, SalesJournal.replay(file, new Recorder()));
+        assertEquals(complete, Files.size(file));
+    }
+
+    @Test
+    void replaysRecordsAcrossReadBufferBoundaries() throws Exception {
+        Path file = dir.resolve("sales.journal");
+        String room = "室".repeat(20_000);  // 单条记录约60KB,有的记录跨越重放读缓冲区的边界
+        try(SalesJournal journal = new SalesJournal(file, 64, 50)) {
+            for(int i = 0; i < 10; i++) {
+                journal.logAddHouse(new House("H" + i, "1", "2", room, 1, 2));
+            }
+        }
+        Recorder recorder = new Recorder();
+        assertEquals(10, SalesJournal.replay(file, recorder));
+        assertEquals("add H9 1 2 " + room + " 1.0 2.0", recorder.events.get(9));
+    }
+
+    /**
+     * 追加count条添加房屋的记录,返回之后的文件长度
+     */
+    private static long writeHouses(Path file, int count) throws IOException {
+        try(SalesJournal journal = new SalesJournal(file, 64, 50)) {
+            for(int i = 0; i < count; i++) {
+                journal.logAddHouse(new House("H" + i, "1", "2", "301", 80 + i, 10000));
+            }
+        }
+        return Files.size(file);
+    }
+
+    private static void appendBytes(Path file, byte[] bytes, int length) throws IOException {
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ch.write(ByteBuffer.wrap(bytes, 0, length));
+        }
+    }
+}
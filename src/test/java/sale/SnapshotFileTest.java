@@ -0,0 +1,132 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 列式快照的写入、读取和校验
+ */
+class SnapshotFileTest {
+    @TempDir
+    Path dir;
+
+    /**
+     * 把读到的房屋和用户收集起来
+     */
+    private static final class Collector implements SnapshotFile.Loader {
+        final List<House> houses = new ArrayList<>();
+        final List<User> users = new ArrayList<>();
+
+        @Override
+        public void house(House house) {
+            houses.add(house);
+        }
+
+        @Override
+        public void user(User user) {
+            users.add(user);
+        }
+    }
+
+    private Path writeSample() throws IOException {
+        InventoryEngine engine = new InventoryEngine();
+        engine.addHouse(new House("A1", "1号楼", "2", "301", 89.5, 12000));
+        engine.addHouse(new House("A2", "1号楼", "2", "302", 120, 13500.75));
+        engine.addHouse(new House("云溪/B1", null, "1", "101", 70, 9000));
+        engine.reserve("A2", "张三");
+        engine.registerHashedUser("alice", "hash-alice", User.ROLE_ADMIN);
+
+        Path file = dir.resolve("snapshot-000007.snap");
+        SnapshotFile.write(file, new SnapshotFile.Columns(7, engine.getHouses(), engine.getUsers()));
+        return file;
+    }
+
+    private static House find(List<House> houses, String id) {
+        for(House house : houses) {
+            if(house.getId().equals(id)) {
+                return house;
+            }
+        }
+        throw new AssertionError("快照中没有" + id);
+    }
+
+    @Test
+    void roundTripsHousesSalesAndUsers() throws Exception {
+        Path file = writeSample();
+        Collector loaded = new Collector();
+        assertEquals(7, SnapshotFile.load(file, loaded));
+
+        assertEquals(3, loaded.houses.size());
+        House a1 = find(loaded.houses, "A1");
+        assertEquals("1号楼", a1.getBuilding());
+        assertEquals("301", a1.getRoom());
+        assertEquals(89.5, a1.getArea());
+        assertTrue(a1.isAvailable());
+        House a2 = find(loaded.houses, "A2");
+        assertTrue(a2.isSold());
+        assertEquals("张三", a2.getBuyer());
+        assertEquals(13500.75, a2.getPrice());
+        House b1 = find(loaded.houses, "云溪/B1");
+        assertNull(b1.getBuilding());
+        assertEquals("云溪", b1.getProject());
+
+        assertEquals(1, loaded.users.size());
+        User alice = loaded.users.get(0);
+        assertEquals("alice", alice.getUsername());
+        assertEquals("hash-alice", alice.getPasswordHash());
+        assertEquals(User.ROLE_ADMIN, alice.getRole());
+    }
+
+    @Test
+    void unsettledSaleIsNotInTheSnapshot() throws Exception {
+        InventoryEngine engine = new InventoryEngine();
+        House house = new House("A1", "1", "2", "301", 89.5, 12000);
+        engine.addHouse(house);
+        house.trySell("bob", new Date());  // 已抢到但尚未入账,成交记录会在新日志段中
+
+        Path file = dir.resolve("snapshot-000001.snap");
+        SnapshotFile.write(file, new SnapshotFile.Columns(1, engine.getHouses(), engine.getUsers()));
+        Collector loaded = new Collector();
+        SnapshotFile.load(file, loaded);
+        assertTrue(loaded.houses.get(0).isAvailable());
+    }
+
+    @Test
+    void rejectsCorruptedSnapshot() throws Exception {
+        Path file = writeSample();
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            long middle = ch.size() / 2;
+            ch.read(b, middle);
+            b.put(0, (byte)(b.get(0) ^ 0x5A));
+            b.rewind();
+            ch.write(b, middle);
+        }
+        IOException e = assertThrows(IOException.class, () -> SnapshotFile.load(file, new Collector()));
+        assertTrue(e.getMessage().contains("校验失败"), e.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedSnapshot() throws Exception {
+        Path file = writeSample();
+        try(FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(Files.size(file) - 10);
+        }
+        assertThrows(IOException.class, () -> SnapshotFile.load(file, new Collector()));
+    }
+}
@@ -0,0 +1,137 @@
+package sale;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 时间轮按刻度推进,不启动时间轮线程
+ */
+class TimerWheelTest {
+
+    @Test
+    void expiresOnDeadlineInFirstLevel() {
+        TimerWheel wheel = new TimerWheel(100, "test-wheel");
+        List<Long> fired = new ArrayList<>();
+        TimerWheel.Timeout t = wheel.scheduleAt(5, () -> fired.add(5L));
+
+        wheel.advanceTo(4);
+        assertTrue(fired.isEmpty());
+        wheel.advanceTo(5);
+        assertEquals(List.of(5L), fired);
+        assertTrue(t.isExpired());
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void cascadesFromHigherLevelsOnTheExactTick() {
+        TimerWheel wheel = new TimerWheel(100, "test-wheel");
+        long[] deadlines = {63, 64, 65, 64 * 3 + 5, 4096, 4096 * 2 + 64 * 7 + 3, 262_144 + 1};
+        List<Long> fired = new ArrayList<>();
+        long[] firedAt = new long[1];
+        for(long deadline : deadlines) {
+            wheel.scheduleAt(deadline, () -> {
+                fired.add(deadline);
+                assertEquals(deadline, firedAt[0], "到期刻度");
+            });
+        }
+
+        for(long tick = 1; tick <= 262_144 + 1; tick++) {
+            firedAt[0] = tick;
+            wheel.advanceTo(tick);
+        }
+        List<Long> expected = new ArrayList<>();
+        for(long deadline : deadlines) {
+            expected.add(deadline);
+        }
+        assertEquals(expected, fired);
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void cascadesWhenAdvancingManyTicksAtOnce() {
+        TimerWheel wheel = new TimerWheel(100, "test-wheel");
+        List<Long> fired = new ArrayList<>();
+        wheel.scheduleAt(64 * 3 + 5, () -> fired.add(197L));
+        wheel.scheduleAt(4096 + 1, () -> fired.add(4097L));
+
+        wheel.advanceTo(196);
+        assertTrue(fired.isEmpty());
+        wheel.advanceTo(5000);
+        assertEquals(List.of(197L, 4097L), fired);
+    }
+
+    @Test
+    void holdsDeadlinesBeyondTheWheelSpan() {
+        TimerWheel wheel = new TimerWheel(100, "test-wheel");
+        long span = 1L << 24;
+        List<Long> fired = new ArrayList<>();
+        wheel.scheduleAt(span + 100, () -> fired.add(span + 100));
+
+        wheel.advanceTo(span + 99);
+        assertTrue(fired.isEmpty());
+        assertEquals(1, wheel.pending());
+        wheel.advanceTo(span + 100);
+        assertEquals(List.of(span + 100), fired);
+    }
+
+    @Test
+    void cancelledTimeoutsDoNotRun() {
+        TimerWheel wheel = new TimerWheel(100, "test-wheel");
+        List<String> fired = new ArrayList<>();
+        TimerWheel.Timeout before = wheel.scheduleAt(70, () -> fired.add("before"));
+        TimerWheel.Timeout placed = wheel.scheduleAt(80, () -> fired.add("placed"));
+        wheel.scheduleAt(90, () -> fired.add("kept"));
+
+        assertTrue(before.cancel());          // 尚未放入槽
+        wheel.advanceTo(10);
+        assertTrue(placed.cancel());          // 已经放入第1层
+        assertFalse(placed.cancel());
+        assertEquals(1, wheel.pending());
+
+        wheel.advanceTo(100);
+        assertEquals(List.of("kept"), fired);
+        assertTrue(before.isCancelled());
+        assertTrue(placed.isCancelled());
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    void pastDeadlinesExpireOnNextAdvance() {
+        TimerWheel wheel = new TimerWheel(100, "test-wheel");
+        wheel.advanceTo(50);
+        List<String> fired = new ArrayList<>();
+        TimerWheel.Timeout t = wheel.scheduleAt(10, () -> fired.add("late"));
+
+        wheel.advanceTo(50);
+        assertEquals(List.of("late"), fired);
+        assertFalse(t.cancel());
+    }
+
+    @Test
+    void failingTaskIsCountedAndReportedWithoutStoppingOthers() {
+        LongAdder failures = new LongAdder();
+        TimerWheel wheel = new TimerWheel(100, "test-wheel", failures);
+        List<String> reports = new ArrayList<>();
+        wheel.setReporter(reports::add);
+        List<String> fired = new ArrayList<>();
+        wheel.scheduleAt(3, () -> {
+            throw new IllegalStateException("boom");
+        });
+        wheel.scheduleAt(3, () -> fired.add("same tick"));
+        wheel.scheduleAt(4, () -> fired.add("next tick"));
+
+        wheel.advanceTo(4);
+        assertEquals(List.of("same tick", "next tick"), fired);
+        assertEquals(1, failures.sum());
+        assertEquals(1, wheel.getFailures());
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0).contains("boom"), reports.get(0));
+    }
+}